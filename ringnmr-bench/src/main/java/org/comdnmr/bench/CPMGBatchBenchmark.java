@@ -0,0 +1,98 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.comdnmr.eqnfit.CPMGEquation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Profiles per second for one CPMG dispersion profile, evaluated point by
+ * point with the scalar calculate and in one call with the batch calculate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CPMGBatchBenchmark {
+
+    @Param({"CPMGFAST", "CPMGSLOW"})
+    String equationName;
+
+    @Param({"20", "200"})
+    int nPoints;
+
+    CPMGEquation equation;
+    double[] pars;
+    int[] map;
+    double[][] xValues;
+    double[] ax;
+    double[] yCalc;
+
+    @Setup
+    public void setup() {
+        equation = CPMGEquation.valueOf(equationName);
+        if (equation == CPMGEquation.CPMGFAST) {
+            pars = new double[]{500.0, 12.0, 0.5};
+        } else {
+            pars = new double[]{500.0, 0.9, 12.0, 1.5};
+        }
+        map = new int[pars.length];
+        for (int i = 0; i < map.length; i++) {
+            map[i] = i;
+        }
+        xValues = new double[4][nPoints];
+        for (int i = 0; i < nPoints; i++) {
+            xValues[0][i] = 50.0 + i * 1950.0 / (nPoints - 1);
+            xValues[1][i] = 60.8;
+            xValues[2][i] = 600.0;
+            xValues[3][i] = 0.04;
+        }
+        ax = new double[xValues.length];
+        yCalc = new double[nPoints];
+    }
+
+    @Benchmark
+    public double[] scalar() {
+        for (int i = 0; i < nPoints; i++) {
+            for (int j = 0; j < ax.length; j++) {
+                ax[j] = xValues[j][i];
+            }
+            yCalc[i] = equation.calculate(pars, map, ax, 0);
+        }
+        return yCalc;
+    }
+
+    @Benchmark
+    public double[] batch() {
+        equation.calculate(pars, map, xValues, 0, yCalc);
+        return yCalc;
+    }
+}
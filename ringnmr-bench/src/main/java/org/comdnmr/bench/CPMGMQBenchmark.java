@@ -0,0 +1,130 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.bench;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.comdnmr.eqnfit.CPMGEquation;
+import org.comdnmr.eqnfit.CPMGFitFunction;
+import org.comdnmr.eqnfit.CPMGMQKernel;
+import org.comdnmr.util.CoMDOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Multiple-quantum CPMG: single point evaluations with the allocation free
+ * kernel and with the original Complex implementation, plus a whole CPMGMQ
+ * fit with and without bootstrap error estimation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CPMGMQBenchmark {
+
+    static final double[] PARS = {800.0, 0.92, 15.0, 1.2, 0.08};
+    static final double[] FIELDS_X = {150.9, 201.2};
+    static final double[] FIELDS_H = {600.0, 800.0};
+    static final int N_PER_FIELD = 16;
+
+    double[][] xValues;
+    double[] yValues;
+    double[] errValues;
+    int[][] map;
+    double[] lowerBounds;
+    double[] upperBounds;
+    CoMDOptions options;
+    double vcpmg;
+
+    @Setup
+    public void setup() {
+        int n = FIELDS_X.length * N_PER_FIELD;
+        xValues = new double[4][n];
+        yValues = new double[n];
+        errValues = new double[n];
+        int k = 0;
+        for (int iField = 0; iField < FIELDS_X.length; iField++) {
+            for (int i = 0; i < N_PER_FIELD; i++) {
+                xValues[0][k] = 50.0 + i * 120.0;
+                xValues[1][k] = FIELDS_X[iField];
+                xValues[2][k] = FIELDS_H[iField];
+                xValues[3][k] = 0.04;
+                yValues[k] = CPMGMQKernel.calculate(PARS[0], PARS[1], PARS[2], PARS[3], PARS[4],
+                        xValues[0][k], xValues[1][k], xValues[2][k], xValues[3][k])
+                        + ((k % 2 == 0) ? 0.2 : -0.2);
+                errValues[k] = 0.3;
+                k++;
+            }
+        }
+        map = new int[][]{{0, 1, 2, 3, 4}};
+        lowerBounds = new double[]{50.0, 0.5, 1.0, 0.0, 0.0};
+        upperBounds = new double[]{5000.0, 0.999, 50.0, 5.0, 1.0};
+        options = new CoMDOptions(false);
+        vcpmg = 650.0;
+    }
+
+    CPMGFitFunction getFitFunction() {
+        CPMGFitFunction fitFunction = new CPMGFitFunction(options);
+        fitFunction.setEquation(CPMGEquation.CPMGMQ.getName());
+        fitFunction.setXY(xValues, yValues);
+        fitFunction.setIds(new int[yValues.length]);
+        fitFunction.setErr(errValues);
+        fitFunction.setMap(map);
+        return fitFunction;
+    }
+
+    @Benchmark
+    public double pointPrimitive() {
+        return CPMGMQKernel.calculate(PARS[0], PARS[1], PARS[2], PARS[3], PARS[4],
+                vcpmg, FIELDS_X[0], FIELDS_H[0], 0.04);
+    }
+
+    @Benchmark
+    public double pointComplex() {
+        return CPMGMQKernel.calculateComplex(PARS[0], PARS[1], PARS[2], PARS[3], PARS[4],
+                vcpmg, FIELDS_X[0], FIELDS_H[0], 0.04);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Optional<PointValuePair> fit() {
+        return getFitFunction().refine(PARS, lowerBounds, upperBounds, 2.0, "CMA-ES");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Optional<double[]> fitWithBootstrap() {
+        CPMGFitFunction fitFunction = getFitFunction();
+        Optional<PointValuePair> result = fitFunction.refine(PARS, lowerBounds, upperBounds, 2.0, "CMA-ES");
+        if (result.isEmpty()) {
+            return Optional.empty();
+        }
+        return fitFunction.simBoundsStream(result.get().getPoint(), lowerBounds, upperBounds, 2.0, options);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.comdnmr.eqnfit.CPMGEquation;
+import org.comdnmr.eqnfit.CPMGFitFunction;
+import org.comdnmr.fit.FitQuality;
+import org.comdnmr.util.CoMDOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Objective function evaluations per second for a CPMG dispersion fit.
+ * The legacy methods reproduce the per-evaluation allocation and copying the
+ * fit function did before it kept point-major x values and a parameter
+ * buffer, so the two can be compared in one run. Run with {@code -prof gc}
+ * and read {@code gc.alloc.rate.norm} for the bytes allocated per evaluation:
+ * <pre>
+ * java -jar ringnmr-bench/target/benchmarks.jar CPMGObjective -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CPMGObjectiveBenchmark {
+
+    @Param({"CPMGFAST", "CPMGSLOW"})
+    String equationName;
+
+    @Param({"20", "200"})
+    int nPointsPerField;
+
+    static final double[] FIELDS_X = {60.8, 81.1};
+    static final double[] FIELDS_H = {600.0, 800.0};
+
+    CPMGFitFunction fitFunction;
+    CPMGEquation equation;
+    double[][] xValues;
+    double[] yValues;
+    double[] errValues;
+    int[] idNums;
+    int[][] map;
+    double[] pars;
+    double[] normPars;
+    double[] lowerBounds;
+    double[] upperBounds;
+
+    @Setup
+    public void setup() {
+        equation = CPMGEquation.valueOf(equationName);
+        if (equation == CPMGEquation.CPMGFAST) {
+            pars = new double[]{500.0, 12.0, 0.5};
+        } else {
+            pars = new double[]{500.0, 0.9, 12.0, 1.5};
+        }
+        int nPars = pars.length;
+        map = new int[1][nPars];
+        for (int i = 0; i < nPars; i++) {
+            map[0][i] = i;
+        }
+        lowerBounds = new double[nPars];
+        upperBounds = new double[nPars];
+        normPars = new double[nPars];
+        for (int i = 0; i < nPars; i++) {
+            lowerBounds[i] = 0.5 * pars[i];
+            upperBounds[i] = 2.0 * pars[i];
+            normPars[i] = 100.0 * (pars[i] - lowerBounds[i]) / (upperBounds[i] - lowerBounds[i]);
+        }
+
+        int n = FIELDS_X.length * nPointsPerField;
+        xValues = new double[4][n];
+        errValues = new double[n];
+        idNums = new int[n];
+        int k = 0;
+        for (int iField = 0; iField < FIELDS_X.length; iField++) {
+            for (int i = 0; i < nPointsPerField; i++) {
+                xValues[0][k] = 50.0 + i * 1950.0 / (nPointsPerField - 1);
+                xValues[1][k] = FIELDS_X[iField];
+                xValues[2][k] = FIELDS_H[iField];
+                xValues[3][k] = 0.04;
+                errValues[k] = 0.2;
+                k++;
+            }
+        }
+        yValues = new double[n];
+        double[] ax = new double[4];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < 4; j++) {
+                ax[j] = xValues[j][i];
+            }
+            yValues[i] = equation.calculate(pars, map[0], ax, 0) + ((i % 2 == 0) ? 0.1 : -0.1);
+        }
+
+        fitFunction = new CPMGFitFunction(new CoMDOptions(false));
+        fitFunction.setEquation(equationName);
+        fitFunction.setXY(xValues, yValues);
+        fitFunction.setIds(idNums);
+        fitFunction.setErr(errValues);
+        fitFunction.setMap(map);
+        fitFunction.setBounds(lowerBounds, upperBounds);
+    }
+
+    @Benchmark
+    public double value() {
+        return fitFunction.value(normPars);
+    }
+
+    @Benchmark
+    public double legacyValue() {
+        double[] par = new double[normPars.length];
+        for (int i = 0; i < par.length; i++) {
+            par[i] = normPars[i] / 100.0 * (upperBounds[i] - lowerBounds[i]) + lowerBounds[i];
+        }
+        double sumSq = 0.0;
+        double[] ax = new double[4];
+        for (int i = 0; i < yValues.length; i++) {
+            for (int j = 0; j < xValues.length; j++) {
+                ax[j] = xValues[j][i];
+            }
+            double value = equation.calculate(par, map[idNums[i]], ax, idNums[i]);
+            double delta = (value - yValues[i]) / errValues[i];
+            sumSq += delta * delta;
+        }
+        return sumSq / (yValues.length - par.length);
+    }
+
+    @Benchmark
+    public FitQuality fitQuality() {
+        return fitFunction.getFitQuality(pars);
+    }
+
+    @Benchmark
+    public FitQuality separateFitQuality() {
+        return new FitQuality(fitFunction.getRMS(pars), fitFunction.getAIC(pars),
+                fitFunction.getAICc(pars), fitFunction.getReducedChiSq(pars), pars.length);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.bench;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.comdnmr.eqnfit.CESTEquation;
+import org.comdnmr.eqnfit.CPMGEquation;
+import org.comdnmr.eqnfit.EquationType;
+import org.comdnmr.eqnfit.ExpEquation;
+import org.comdnmr.eqnfit.R1RhoEquation;
+import org.comdnmr.eqnfit.SSR1RhoEquation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to calculate one profile with each equation of the CPMG, CEST, R1rho,
+ * exponential and solid state R1rho families, through the batch calculate
+ * the fit functions use. The equation parameters have no values listed, so
+ * JMH runs every constant of each enum; a new equation is benchmarked as
+ * soon as it is added. Select one family with a regular expression:
+ * <pre>
+ * java -jar ringnmr-bench/target/benchmarks.jar "Equation.*cest"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EquationBenchmark {
+
+    static final int N_POINTS = 100;
+
+    static final Map<String, Double> CPMG_PARS = Map.of("Kex", 500.0, "kEx", 500.0, "pA", 0.9,
+            "R2", 12.0, "dPPMmin", 0.5, "dPPM", 1.5, "deltaCPPM", 1.5, "deltaHPPM", 0.15);
+    static final Map<String, Double> EXCHANGE_PARS = Map.of("Kex", 200.0, "Pb", 0.05,
+            "deltaA0", 2.0, "deltaB0", -3.0, "R1A", 1.5, "R1B", 1.5, "R2A", 10.0, "R2B", 30.0);
+    static final Map<String, Double> EXP_PARS = Map.of("A", 100.0, "R", 5.0, "C", 2.0);
+    static final Map<String, Double> SS_PARS = Map.of("tauc", 1.0e-6, "s2", 0.8);
+
+    /**
+     * The parameters, map and x values of one profile of an equation.
+     */
+    abstract static class Profile {
+
+        EquationType equation;
+        double[] par;
+        int[] map;
+        double[][] x;
+        double[] yCalc;
+
+        void init(EquationType equation, Map<String, Double> values, double[][] x) {
+            this.equation = equation;
+            String[] parNames = equation.getParNames();
+            par = new double[parNames.length];
+            map = new int[parNames.length];
+            for (int i = 0; i < parNames.length; i++) {
+                Double value = values.get(parNames[i]);
+                if (value == null) {
+                    throw new IllegalStateException("No benchmark value for " + parNames[i] + " of " + equation);
+                }
+                par[i] = value;
+                map[i] = i;
+            }
+            this.x = x;
+            yCalc = new double[x[0].length];
+        }
+
+        double[] calculate() {
+            equation.calculate(par, map, x, 0, yCalc);
+            return yCalc;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class CPMGProfile extends Profile {
+
+        @Param
+        CPMGEquation cpmgEquation;
+
+        @Setup
+        public void setup() {
+            double[][] x = new double[4][N_POINTS];
+            for (int i = 0; i < N_POINTS; i++) {
+                x[0][i] = 50.0 + i * 1950.0 / (N_POINTS - 1);
+                x[1][i] = 60.8;
+                x[2][i] = 600.0;
+                x[3][i] = 0.04;
+            }
+            init(cpmgEquation, CPMG_PARS, x);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class CESTProfile extends Profile {
+
+        @Param
+        CESTEquation cestEquation;
+
+        @Setup
+        public void setup() {
+            double[][] x = new double[4][N_POINTS];
+            for (int i = 0; i < N_POINTS; i++) {
+                x[0][i] = -10.0 + 20.0 * i / (N_POINTS - 1);
+                x[1][i] = 25.0;
+                x[2][i] = 0.3;
+                x[3][i] = 60.8;
+            }
+            init(cestEquation, EXCHANGE_PARS, x);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class R1RhoProfile extends Profile {
+
+        @Param
+        R1RhoEquation r1RhoEquation;
+
+        @Setup
+        public void setup() {
+            double[][] x = new double[4][N_POINTS];
+            for (int i = 0; i < N_POINTS; i++) {
+                x[0][i] = -5.0 + 10.0 * i / (N_POINTS - 1);
+                x[1][i] = 1500.0;
+                x[2][i] = 0.05;
+                x[3][i] = 60.8;
+            }
+            init(r1RhoEquation, EXCHANGE_PARS, x);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ExpProfile extends Profile {
+
+        @Param
+        ExpEquation expEquation;
+
+        @Setup
+        public void setup() {
+            double[][] x = new double[1][N_POINTS];
+            for (int i = 0; i < N_POINTS; i++) {
+                x[0][i] = 1.0 * i / (N_POINTS - 1);
+            }
+            init(expEquation, EXP_PARS, x);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SSR1RhoProfile extends Profile {
+
+        @Param
+        SSR1RhoEquation ssR1RhoEquation;
+
+        @Setup
+        public void setup() {
+            // nu1 and nuR in kHz
+            double[][] x = new double[4][N_POINTS];
+            for (int i = 0; i < N_POINTS; i++) {
+                x[0][i] = 5.0 + 45.0 * i / (N_POINTS - 1);
+                x[3][i] = 60.0;
+            }
+            init(ssR1RhoEquation, SS_PARS, x);
+        }
+    }
+
+    @Benchmark
+    public double[] cpmg(CPMGProfile profile) {
+        return profile.calculate();
+    }
+
+    @Benchmark
+    public double[] cest(CESTProfile profile) {
+        return profile.calculate();
+    }
+
+    @Benchmark
+    public double[] r1rho(R1RhoProfile profile) {
+        return profile.calculate();
+    }
+
+    @Benchmark
+    public double[] exp(ExpProfile profile) {
+        return profile.calculate();
+    }
+
+    @Benchmark
+    public double[] ssR1rho(SSR1RhoProfile profile) {
+        return profile.calculate();
+    }
+}
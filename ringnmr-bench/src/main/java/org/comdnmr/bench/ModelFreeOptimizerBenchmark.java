@@ -0,0 +1,106 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.comdnmr.modelfree.RelaxFit;
+import org.comdnmr.modelfree.models.MFModelIso;
+import org.comdnmr.util.CoMDPreferences;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time for one model free fit of a residue with R1, R2 and NOE values at
+ * 600 and 800 MHz, calculated halfway between the model's start parameters
+ * and upper bounds. The fit starts from the start parameters and fits tau
+ * within 25% of its target. The evaluations and fits counters give the
+ * objective evaluations per fit of each optimizer, with those of a least
+ * squares fit counting once per residual and derivative evaluation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelFreeOptimizerBenchmark {
+
+    @Param({"1", "2s", "2sf"})
+    String modelName;
+
+    @Param({"CMA-ES", "BOBYQA", "LM"})
+    String optimizer;
+
+    RelaxFit relaxFit;
+    double[] start;
+    double[] lower;
+    double[] upper;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long evaluations;
+        public long fits;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            evaluations = 0;
+            fits = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        CoMDPreferences.useSessionPreferences();
+        CoMDPreferences.setOptimizer(optimizer);
+        MFModelIso model = MFModelIso.buildModel(modelName, true, RelaxFitBenchmark.TAU, 0.25, false);
+        start = model.getStart();
+        lower = model.getLower();
+        upper = model.getUpper();
+        double[] pars = new double[start.length];
+        for (int i = 0; i < start.length; i++) {
+            pars[i] = 0.5 * (start[i] + upper[i]);
+        }
+        relaxFit = new RelaxFit();
+        relaxFit.setUseLambda(false);
+        relaxFit.setLogJMode(false);
+        relaxFit.setFitJ(false);
+        relaxFit.setRelaxViews(RelaxFitBenchmark.makeData(model, pars, 1));
+    }
+
+    @Benchmark
+    public PointValuePair fit(Counters counters) {
+        PointValuePair result = relaxFit.fitResidueToModel(start, lower, upper).orElse(null);
+        counters.evaluations += relaxFit.getEvaluations();
+        counters.fits++;
+        return result;
+    }
+}
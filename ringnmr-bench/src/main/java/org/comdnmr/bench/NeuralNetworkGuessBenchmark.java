@@ -0,0 +1,119 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.comdnmr.eqnfit.CPMGEquation;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Neural network parameter guesses for a group of residues that share the
+ * exchange parameters, each residue a copy of the synthetic CPMG data set.
+ * A batch size of 1 runs the network once per residue, as guesses were
+ * made before batching. The guesses counter gives residue guesses per
+ * second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeuralNetworkGuessBenchmark {
+
+    @Param({"CPMGFAST", "CPMGSLOW"})
+    String equationName;
+
+    @Param({"10", "200"})
+    int nResidues;
+
+    @Param({"1", "256"})
+    int maxBatch;
+
+    CPMGEquation equation;
+    double[][] xValues;
+    double[] yValues;
+    int[] idNums;
+    int[][] map;
+    int nID;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+
+        public long guesses;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            guesses = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        equation = CPMGEquation.valueOf(equationName);
+        SyntheticData data = SyntheticData.generate(equationName);
+        int nValues = data.yValues.length;
+        int nProfiles = data.map.length;
+        int nGroupPars = equation.getNGroupPars();
+        int nResPars = data.pars.length - nGroupPars;
+        xValues = new double[data.xValues.length][nValues * nResidues];
+        yValues = new double[nValues * nResidues];
+        idNums = new int[nValues * nResidues];
+        map = new int[nProfiles * nResidues][];
+        for (int iRes = 0; iRes < nResidues; iRes++) {
+            for (int j = 0; j < xValues.length; j++) {
+                System.arraycopy(data.xValues[j], 0, xValues[j], iRes * nValues, nValues);
+            }
+            System.arraycopy(data.yValues, 0, yValues, iRes * nValues, nValues);
+            for (int i = 0; i < nValues; i++) {
+                idNums[iRes * nValues + i] = data.idNums[i] + iRes * nProfiles;
+            }
+            for (int iProfile = 0; iProfile < nProfiles; iProfile++) {
+                int[] profileMap = data.map[iProfile].clone();
+                for (int j = 0; j < profileMap.length; j++) {
+                    if (profileMap[j] >= nGroupPars) {
+                        profileMap[j] += iRes * nResPars;
+                    }
+                }
+                map[iRes * nProfiles + iProfile] = profileMap;
+            }
+        }
+        nID = nProfiles * nResidues;
+    }
+
+    @Benchmark
+    public double[] guess(Counters counters) throws IOException {
+        double[] guess = equation.guessNeuralNetwork(xValues, yValues, map, idNums, nID, maxBatch);
+        counters.guesses += nResidues;
+        return guess;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.comdnmr.eqnfit.CPMGFitFunction;
+import org.comdnmr.util.CoMDOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time for one CMA-ES or BOBYQA refinement of a CPMG fit to synthetic two
+ * field data from {@link SyntheticData}. The fit starts from the generating
+ * parameters scaled by 0.8, inside the equation's own boundaries, with the
+ * default start radius.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptimizerBenchmark {
+
+    @Param({"CPMGFAST", "CPMGSLOW", "CPMGMQ"})
+    String equationName;
+
+    @Param({"CMA-ES", "BOBYQA"})
+    String optimizer;
+
+    CPMGFitFunction fitFunction;
+    double[] guess;
+    double[][] boundaries;
+    double sigma;
+
+    @Setup
+    public void setup() throws IOException {
+        SyntheticData data = SyntheticData.generate(equationName);
+        CoMDOptions options = new CoMDOptions(false);
+        fitFunction = setupFitFunction(data, options);
+        guess = new double[data.pars.length];
+        for (int i = 0; i < guess.length; i++) {
+            guess[i] = 0.8 * data.pars[i];
+        }
+        boundaries = fitFunction.boundaries(guess);
+        sigma = options.getStartRadius();
+    }
+
+    static CPMGFitFunction setupFitFunction(SyntheticData data, CoMDOptions options) {
+        CPMGFitFunction fitFunction = new CPMGFitFunction(options);
+        fitFunction.setEquation(data.equationName);
+        fitFunction.setXY(data.xValues, data.yValues);
+        fitFunction.setIds(data.idNums);
+        fitFunction.setErr(data.errValues);
+        fitFunction.setMap(data.map);
+        return fitFunction;
+    }
+
+    @Benchmark
+    public PointValuePair refine() {
+        return fitFunction.refine(guess, boundaries[0], boundaries[1], sigma, optimizer).orElse(null);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.comdnmr.eqnfit.CESTEquations;
+import org.comdnmr.util.BlochMcConnellPropagator;
+import org.comdnmr.util.MtxExp;
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.CommonOps_DDRM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Exponential of a 7x7 Bloch-McConnell matrix with {@link MtxExp} and with
+ * {@link BlochMcConnellPropagator}, and a whole 100 offset exact CEST
+ * profile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropagatorBenchmark {
+
+    static final int N_OFFSETS = 100;
+
+    double[] zData;
+    DMatrixRMaj z;
+    double[][] cestX;
+
+    @Setup
+    public void setup() {
+        double pb = 0.05;
+        double kex = 200.0;
+        double k1 = pb * kex;
+        double km1 = (1 - pb) * kex;
+        double deltaA = 300.0 * 2.0 * Math.PI;
+        double deltaB = -100.0 * 2.0 * Math.PI;
+        double omegaB1 = 25.0 * 2.0 * Math.PI;
+        double tdelay = 0.3;
+        double[][] Z = {
+            {0, 0, 0, 0, 0, 0, 0},
+            {0, -10.0 - k1, -deltaA, 0, km1, 0, 0},
+            {0, deltaA, -10.0 - k1, -omegaB1, 0, km1, 0},
+            {2 * 1.5 * (1 - pb), 0, omegaB1, -1.5 - k1, 0, 0, km1},
+            {0, k1, 0, 0, -30.0 - km1, -deltaB, 0},
+            {0, 0, k1, 0, deltaB, -30.0 - km1, -omegaB1},
+            {2 * 1.5 * pb, 0, 0, k1, 0, omegaB1, -1.5 - km1}};
+        z = new DMatrixRMaj(Z);
+        CommonOps_DDRM.scale(tdelay, z);
+        zData = z.data.clone();
+
+        cestX = new double[4][N_OFFSETS];
+        for (int i = 0; i < N_OFFSETS; i++) {
+            cestX[0][i] = -10.0 + 20.0 * i / (N_OFFSETS - 1);
+            cestX[1][i] = 25.0;
+            cestX[2][i] = 0.3;
+            cestX[3][i] = 60.8;
+        }
+    }
+
+    @Benchmark
+    public DMatrixRMaj mtxExp() {
+        // matrixExp scales its argument in place, so start from a fresh copy
+        System.arraycopy(zData, 0, z.data, 0, zData.length);
+        return MtxExp.matrixExp(z);
+    }
+
+    @Benchmark
+    public double propagator() {
+        BlochMcConnellPropagator propagator = BlochMcConnellPropagator.forSize(7);
+        propagator.exp(zData);
+        return propagator.get(3, 0);
+    }
+
+    @Benchmark
+    public double[] exactCESTProfile() {
+        return CESTEquations.exact0(cestX, 0.05, 200.0, 2.0, -3.0, 1.5, 1.5, 10.0, 30.0);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.comdnmr.data.DynamicsSource;
+import org.comdnmr.modelfree.MolDataValues;
+import org.comdnmr.modelfree.MolDataView;
+import org.comdnmr.modelfree.R1R2NOEDataValue;
+import org.comdnmr.modelfree.RelaxEquations;
+import org.comdnmr.modelfree.RelaxFit;
+import org.comdnmr.modelfree.Score;
+import org.comdnmr.modelfree.models.MFModelIso;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Model free objective evaluations per second: the RelaxFit score of
+ * R1, R2 and NOE values at 600 and 800 MHz, calculated from the model's
+ * start parameters, for one or many residues sharing the model. The score
+ * is evaluated halfway between the start parameters and the upper bounds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelaxFitBenchmark {
+
+    static final double[] FIELDS = {600.0e6, 800.0e6};
+    static final double TAU = 10.0;
+
+    @Param({"1", "2s", "2sf"})
+    String modelName;
+
+    @Param({"1", "100"})
+    int nResidues;
+
+    RelaxFit relaxFit;
+    double[] pars;
+
+    @Setup
+    public void setup() {
+        MFModelIso model = MFModelIso.buildModel(modelName, false, TAU, 1.0, false);
+        model.setTauFraction(1.0);
+        double[] start = model.getStart();
+        double[] upper = model.getUpper();
+        pars = new double[start.length];
+        for (int i = 0; i < start.length; i++) {
+            pars[i] = 0.5 * (start[i] + upper[i]);
+        }
+
+        Map<String, MolDataView> molDataRes = makeData(model, start, nResidues);
+
+        relaxFit = new RelaxFit();
+        relaxFit.setLambdaS(0.001);
+        relaxFit.setLambdaTau(0.01);
+        relaxFit.setUseLambda(false);
+        relaxFit.setLogJMode(false);
+        relaxFit.setFitJ(false);
+        relaxFit.setRelaxViews(molDataRes);
+    }
+
+    /**
+     * Residues with R1, R2 and NOE values at each of the FIELDS calculated
+     * from the model with the given parameters, each with an error of 3% for
+     * R1 and R2 and 0.05 for the NOE.
+     */
+    static Map<String, MolDataView> makeData(MFModelIso model, double[] modelPars, int nResidues) {
+        DynamicsSource dynamicsSourceFactory = new DynamicsSource(true, true, true, true);
+        double[] vector = {0.0, 1.0, 2.0};
+        Map<String, MolDataView> molDataRes = new LinkedHashMap<>();
+        for (int iRes = 0; iRes < nResidues; iRes++) {
+            String specifier = (iRes + 1) + ".N";
+            MolDataValues resData = new MolDataValues(specifier, vector, dynamicsSourceFactory);
+            for (double sf : FIELDS) {
+                RelaxEquations rlxEq = RelaxEquations.getRelaxEquations(sf, "H", "N");
+                double[] valJ = model.calc(rlxEq.getW(), modelPars);
+                double r1 = rlxEq.R1(valJ);
+                double r2 = rlxEq.R2(valJ, 0.0);
+                double noe = rlxEq.NOE(valJ);
+                resData.addData(new R1R2NOEDataValue(resData, r1, r1 * 0.03, r2, r2 * 0.03, noe, 0.05, rlxEq));
+            }
+            resData.setTestModel(model);
+            molDataRes.put(specifier, resData.view());
+        }
+        return molDataRes;
+    }
+
+    @Benchmark
+    public Score score() {
+        return relaxFit.score(pars, false);
+    }
+}
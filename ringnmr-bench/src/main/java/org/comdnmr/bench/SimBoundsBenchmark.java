@@ -0,0 +1,79 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.comdnmr.eqnfit.CPMGFitFunction;
+import org.comdnmr.util.CoMDOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time for the bootstrap error estimate of a CPMG fit, with the default
+ * sample size, bootstrap type and bootstrap optimizer. The random seed is
+ * reset before each call so every invocation fits the same replicates. The
+ * replicates run on the common pool, so the result scales with the number
+ * of cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SimBoundsBenchmark {
+
+    static final long SEED = 20180101L;
+
+    @Param({"CPMGFAST", "CPMGSLOW"})
+    String equationName;
+
+    CoMDOptions options;
+    CPMGFitFunction fitFunction;
+    double[] pars;
+    double[][] boundaries;
+    double sigma;
+
+    @Setup
+    public void setup() throws IOException {
+        SyntheticData data = SyntheticData.generate(equationName);
+        options = new CoMDOptions(false);
+        fitFunction = OptimizerBenchmark.setupFitFunction(data, options);
+        boundaries = fitFunction.boundaries(data.pars);
+        sigma = options.getStartRadius();
+        pars = fitFunction.refine(data.pars, boundaries[0], boundaries[1], sigma, options.getOptimizer())
+                .orElseThrow().getPoint();
+        sigma /= 2.0;
+    }
+
+    @Benchmark
+    public double[] simBoundsStream() {
+        fitFunction.setRandomSeed(SEED, equationName);
+        return fitFunction.simBoundsStream(pars.clone(), boundaries[0], boundaries[1], sigma, options).orElse(null);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.comdnmr.modelfree.RelaxEquations;
+import org.comdnmr.modelfree.models.MFModelIso;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * R1, R2 and NOE at 600 and 800 MHz from the spectral density of a model
+ * free model, per second. The separate benchmark allocates J and evaluates
+ * the three rates one at a time, as the fits used to; the fused benchmark
+ * fills a reused J array and gets the three rates in one call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpectralDensityBenchmark {
+
+    static final double TAU = 10.0;
+
+    @Param({"1", "2s", "2sf"})
+    String modelName;
+
+    MFModelIso model;
+    RelaxEquations[] relaxEquations;
+    double[] pars;
+    double[] J = new double[5];
+    double[] rates = new double[3];
+
+    @Setup
+    public void setup() {
+        model = MFModelIso.buildModel(modelName, true, TAU, 0.5, true);
+        pars = model.getStart();
+        relaxEquations = new RelaxEquations[RelaxFitBenchmark.FIELDS.length];
+        for (int i = 0; i < relaxEquations.length; i++) {
+            relaxEquations[i] = RelaxEquations.getRelaxEquations(RelaxFitBenchmark.FIELDS[i], "H", "N");
+        }
+    }
+
+    @Benchmark
+    public void separate(Blackhole blackhole) {
+        double rEx = pars[pars.length - 1];
+        for (RelaxEquations relaxObj : relaxEquations) {
+            double[] valJ = model.calc(relaxObj.getW(), pars);
+            blackhole.consume(relaxObj.R1(valJ));
+            blackhole.consume(relaxObj.R2(valJ, rEx));
+            blackhole.consume(relaxObj.NOE(valJ));
+        }
+    }
+
+    @Benchmark
+    public void fused(Blackhole blackhole) {
+        double rEx = pars[pars.length - 1];
+        for (RelaxEquations relaxObj : relaxEquations) {
+            model.calc(relaxObj.getW(), pars, J);
+            relaxObj.rates(J, rEx, rates);
+            blackhole.consume(rates);
+        }
+    }
+}
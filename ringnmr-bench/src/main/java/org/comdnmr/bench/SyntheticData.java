@@ -0,0 +1,151 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.comdnmr.util.traindata.DataGenerator;
+
+/**
+ * A CPMG data set made by {@link DataGenerator} from the synthetic-cpmg.json
+ * configuration, laid out the way the fitters pass data to a fit function:
+ * one profile (id) per field, with x values of nu_cpmg, heteronuclear field,
+ * proton field and tau. Parameters whose names start with R1 or R2 get one
+ * value per field, so map[id] selects the rates of that field.
+ */
+final class SyntheticData {
+
+    static final String CONFIG = "synthetic-cpmg.json";
+    static final double ERROR = 0.2;
+
+    final String equationName;
+    final double[][] xValues;
+    final double[] yValues;
+    final double[] errValues;
+    final int[] idNums;
+    final int[][] map;
+    final double[] pars;
+
+    private SyntheticData(String equationName, double[][] xValues, double[] yValues,
+            double[] errValues, int[] idNums, int[][] map, double[] pars) {
+        this.equationName = equationName;
+        this.xValues = xValues;
+        this.yValues = yValues;
+        this.errValues = errValues;
+        this.idNums = idNums;
+        this.map = map;
+        this.pars = pars;
+    }
+
+    /**
+     * Generate one noisy data set for a CPMG equation. The parameters are
+     * drawn from narrow ranges, so data sets from different runs are
+     * similar but not identical.
+     *
+     * @param equationName CPMGFAST, CPMGSLOW or CPMGMQ
+     * @return the data set
+     * @throws IOException if the configuration can't be read
+     */
+    @SuppressWarnings("unchecked")
+    static SyntheticData generate(String equationName) throws IOException {
+        Path configFile = Files.createTempFile("ringnmr-bench", ".json");
+        try (InputStream in = SyntheticData.class.getResourceAsStream("/" + CONFIG)) {
+            if (in == null) {
+                throw new IOException("Missing resource " + CONFIG);
+            }
+            Files.copy(in, configFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Map<String, Object> dataset;
+        try {
+            DataGenerator generator = new DataGenerator(configFile.toString());
+            do {
+                if (!generator.hasAnotherDataset()) {
+                    throw new IllegalArgumentException("No synthetic data for " + equationName);
+                }
+                generator.nextDataset();
+            } while (!equationName.equals(generator.currentEnumName));
+            dataset = generator.generateDataset();
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(e);
+        } finally {
+            Files.deleteIfExists(configFile);
+        }
+
+        List<Double> xList = firstValue((Map<String, Object>) dataset.get("x_values"));
+        List<Double> fields = firstValue((Map<String, Object>) dataset.get("variable"));
+        List<Map<String, Object>> dependants = (List<Map<String, Object>>) dataset.get("dependants");
+        List<Double> fieldsX = firstValue(dependants.get(0));
+        List<Map<String, Object>> constants = (List<Map<String, Object>>) dataset.get("constants");
+        double tau = (Double) firstValue(constants.get(0));
+        List<List<Double>> profiles = firstValue((Map<String, Object>) dataset.get("profile_noisy"));
+
+        int nFields = fields.size();
+        int nX = xList.size();
+        int n = nFields * nX;
+        double[][] xValues = new double[4][n];
+        double[] yValues = new double[n];
+        double[] errValues = new double[n];
+        int[] idNums = new int[n];
+        int k = 0;
+        for (int iField = 0; iField < nFields; iField++) {
+            List<Double> profile = profiles.get(iField);
+            for (int i = 0; i < nX; i++) {
+                xValues[0][k] = xList.get(i);
+                xValues[1][k] = fieldsX.get(iField);
+                xValues[2][k] = fields.get(iField);
+                xValues[3][k] = tau;
+                yValues[k] = profile.get(i);
+                errValues[k] = ERROR;
+                idNums[k] = iField;
+                k++;
+            }
+        }
+
+        List<Map<String, Object>> parameters = (List<Map<String, Object>>) dataset.get("parameters");
+        double[] pars = new double[parameters.size()];
+        Map<String, List<Integer>> parIndices = new LinkedHashMap<>();
+        for (int i = 0; i < pars.length; i++) {
+            Map<String, Object> parameter = parameters.get(i);
+            pars[i] = (Double) firstValue(parameter);
+            String name = (String) parameter.get("name");
+            int bracket = name.indexOf('<');
+            String baseName = bracket > 0 ? name.substring(0, bracket) : name;
+            parIndices.computeIfAbsent(baseName, key -> new ArrayList<>()).add(i);
+        }
+        int[][] map = new int[nFields][parIndices.size()];
+        for (int iField = 0; iField < nFields; iField++) {
+            int j = 0;
+            for (List<Integer> indices : parIndices.values()) {
+                map[iField][j++] = indices.get(iField % indices.size());
+            }
+        }
+        return new SyntheticData(equationName, xValues, yValues, errValues, idNums, map, pars);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T firstValue(Map<String, Object> dataList) {
+        return ((List<T>) dataList.get("values")).get(0);
+    }
+}
@@ -43,7 +43,6 @@ import javafx.scene.layout.Pane;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import org.comdnmr.util.CoMDPreferences;
-import org.comdnmr.data.Experiment;
 import org.controlsfx.control.PropertySheet;
 import org.nmrfx.utils.properties.DoubleRangeOperationItem;
 import org.nmrfx.utils.properties.NvFxPropertyEditorFactory;
@@ -72,7 +71,6 @@ public class PreferencesController implements Initializable {
     static File datasetDir = null;
     private static Map<String, String> recentMap = new HashMap<>();
     static String location = null;
-    static Integer nProcesses = null;
     DoubleRangeOperationItem maxFreqItem;
 
     @Override
@@ -117,6 +115,7 @@ public class PreferencesController implements Initializable {
         ArrayList<String> optimizers = new ArrayList<>();
         optimizers.add("CMA-ES");
         optimizers.add("BOBYQA");
+        optimizers.add("LM");
         maxFreqItem = new DoubleRangeOperationItem(prefSheet, (obs, oldV, newV) -> {
             CoMDPreferences.setCPMGMaxFreq((Double) newV);
         }, CoMDPreferences.getCPMGMaxFreq(), 100.0, 5000.0, 100.0, 20000.0, "Limits", "CPMG/CEST/R1Rho Max Freq", "Max Frequency");
@@ -134,14 +133,13 @@ public class PreferencesController implements Initializable {
             CoMDPreferences.setSampleSize((Integer) newV);
         }, CoMDPreferences.getSampleSize(), 10, 500, "Optimizer", "Bootstrap Samples", "Number of bootstrap samples");
         ChoiceOperationItem optimizerChoiceItem = new ChoiceOperationItem(prefSheet, optimizerListener,
-                CoMDPreferences.getOptimizer(), optimizers, "Optimizer", "Refine Optimizer", "Optimizer for refinement");
+                CoMDPreferences.getOptimizer(), optimizers, "Optimizer", "Refine Optimizer", "Optimizer for refinement, LM is only used for model free fits and others use CMA-ES");
         ChoiceOperationItem bootStrapOptimizerrChoiceItem = new ChoiceOperationItem(prefSheet, bootStrapOptimizerListener,
                 CoMDPreferences.getBootStrapOptimizer(), optimizers, "Optimizer", "Bootstrap Optimizer", "Optimizer for bootstrap");
 
         DirectoryOperationItem locationFileItem = new DirectoryOperationItem(prefSheet, datasetListener, getDatasetDirectory().getPath(), "File Locations", "Datasets", "desc");
 
-        int nProcessesDefault = Runtime.getRuntime().availableProcessors() / 2;
-        IntRangeOperationItem nProcessesItem = new IntRangeOperationItem(prefSheet, nprocessListener, nProcessesDefault, 1, 32, "Processor", "NProcesses", "How many parallel processes to run during processing");
+        IntRangeOperationItem nProcessesItem = new IntRangeOperationItem(prefSheet, nprocessListener, getNProcesses(), 1, 64, "Processor", "NProcesses", "How many parallel processes to run during processing");
 
         ArrayList<String> cestEqnChoices = new ArrayList<>();
         cestEqnChoices.addAll(Arrays.asList("NOEX", "TROTT_PALMER", "SD", "BALDWINKAY", "LAGUERRE",
@@ -187,6 +185,14 @@ public class PreferencesController implements Initializable {
                     CoMDPreferences.setNeuralNetworkGuess((Boolean) newV);
                 }, CoMDPreferences.getNeuralNetworkGuess(), "Optimizer", "Neural Network Guess",
                 "Use Neural Network for guesses");
+        BooleanOperationItem noExEarlyStopItem = new BooleanOperationItem(prefSheet,
+                (obs, oldV, newV) -> {
+                    CoMDPreferences.setNoExEarlyStop((Boolean) newV);
+                }, CoMDPreferences.getNoExEarlyStop(), "Limits", "NOEX Early Stop",
+                "Skip exchange equations when NOEX fits within the noise");
+        DoubleRangeOperationItem noExRChiSqItem = new DoubleRangeOperationItem(prefSheet, (obs, oldV, newV) -> {
+            CoMDPreferences.setNoExRChiSqLimit((Double) newV);
+        }, CoMDPreferences.getNoExRChiSqLimit(), 0.0, 5.0, "Limits", "NOEX Reduced ChiSq", "NOEX fits within the noise if its reduced chi-square is at or below this");
         BooleanOperationItem corrR1RhoItem = new BooleanOperationItem(prefSheet,
                 (obs, oldV, newV) -> {
                     CoMDPreferences.setCalR1rhoCorr((Boolean) newV);
@@ -209,7 +215,7 @@ public class PreferencesController implements Initializable {
             RelaxEquations.setSigma("C", (Double) newV * -1.0e-6);
         }, RelaxEquations.getSigma("C") * -1.0e6, 10, 220, "ModelFree", "C CSA", "C Chemical Shift Anisotropy (* -1.0)");
 
-        prefSheet.getItems().addAll(nProcessesItem, refFieldItem, maxFreqItem, rexRatioItem, deltaABdiffItem,
+        prefSheet.getItems().addAll(nProcessesItem, refFieldItem, maxFreqItem, rexRatioItem, deltaABdiffItem, noExEarlyStopItem, noExRChiSqItem,
                 absValueItem, nonParametricItem, nSamplesItem, optimizerChoiceItem, bootStrapOptimizerrChoiceItem,
                 startingRadiusItem, toleranceItem, finalRadiusItem, weightFitItem, neuralNetworkGuessItem, corrR1RhoItem, hnDistanceItem, hcDistanceItem, nSigmaItem, cSigmaItem);
         for (String eqn : cestEqnChoices) {
@@ -415,16 +421,7 @@ public class PreferencesController implements Initializable {
      * @return
      */
     public static Integer getNProcesses() {
-        if (nProcesses == null) {
-            Preferences prefs = Preferences.userNodeForPackage(MainApp.class);
-            String value = prefs.get("NPROCESSES", null);
-            if (value != null) {
-                nProcesses = Integer.parseInt(value);
-            } else {
-                nProcesses = Runtime.getRuntime().availableProcessors() / 2;
-            }
-        }
-        return nProcesses;
+        return CoMDPreferences.getNProcesses();
     }
 
     /**
@@ -433,15 +430,7 @@ public class PreferencesController implements Initializable {
      * @param value the number of processes to use
      */
     public static void setNProcesses(Integer value) {
-        Preferences prefs = Preferences.userNodeForPackage(Experiment.class);
-        if (value != null) {
-            nProcesses = value;
-            prefs.put("NPROCESSES", String.valueOf(value));
-        } else {
-            nProcesses = null;
-            prefs.remove("NPROCESSES");
-        }
-
+        CoMDPreferences.setNProcesses(value);
     }
 
 }
@@ -35,6 +35,8 @@ import org.yaml.snakeyaml.Yaml;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -46,6 +48,12 @@ import java.util.regex.Pattern;
  */
 public class DataIO {
 
+    // a parsed table takes several times the size of its file
+    static final long MAX_CACHED_BYTES = 8L * 1024 * 1024;
+    // the tables read most recently, by file, in access order, and the total size of their files
+    private static final Map<Path, PeakTable> tableCache = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedBytes = 0;
+
     public enum XCONV {
         IDENTITY() {
         },
@@ -294,10 +302,79 @@ public class DataIO {
                                     HashMap<String, Object> errorPars, double[] delayCalc,
                                     DynamicsSource dynamicsSourceFactory)
             throws IOException, IllegalArgumentException { //(String fileName, ExperimentSet resProp, String nucleus,
+        loadPeakFile(readPeakTable(fileName), fileName, experiment, experimientSet, xConv, yConv,
+                errorPars, delayCalc, dynamicsSourceFactory);
+    }
+
+    static PeakTable readPeakTable(String fileName) throws IOException {
         Path path = Paths.get(fileName);
         if (Files.notExists(path, LinkOption.NOFOLLOW_LINKS)) {
             throw new FileNotFoundException(fileName);
         }
+        return readTable(path, true);
+    }
+
+    /**
+     * Read a table, reusing the table read before from the same file if the
+     * file's contents haven't changed, so that reloading a project only
+     * parses the files that were edited. The least recently used tables are
+     * dropped once the files of the kept tables exceed MAX_CACHED_BYTES, and
+     * tables of larger files aren't kept at all.
+     *
+     * @param path the file
+     * @param skipComments whether lines starting with # are skipped
+     * @return the table
+     * @throws IOException if the file can't be read
+     */
+    static PeakTable readTable(Path path, boolean skipComments) throws IOException {
+        long start = System.nanoTime();
+        Path absPath = path.toAbsolutePath();
+        byte[] bytes = Files.readAllBytes(absPath);
+        String hash = ReloadManifest.hash(bytes);
+        synchronized (tableCache) {
+            PeakTable table = tableCache.get(absPath);
+            if ((table != null) && table.hash.equals(hash) && (table.skipComments == skipComments)) {
+                Logger.getLogger(DataIO.class.getName()).log(Level.FINE, "{0} unchanged, not read again", path);
+                return table;
+            }
+        }
+        PeakTable table = PeakTable.read(path, bytes, hash, skipComments, start);
+        cacheTable(absPath, table);
+        return table;
+    }
+
+    static void cacheTable(Path absPath, PeakTable table) {
+        synchronized (tableCache) {
+            PeakTable previous = tableCache.remove(absPath);
+            if (previous != null) {
+                cachedBytes -= previous.nBytes;
+            }
+            if (table.nBytes > MAX_CACHED_BYTES) {
+                return;
+            }
+            tableCache.put(absPath, table);
+            cachedBytes += table.nBytes;
+            var iter = tableCache.values().iterator();
+            while (cachedBytes > MAX_CACHED_BYTES) {
+                cachedBytes -= iter.next().nBytes;
+                iter.remove();
+            }
+        }
+    }
+
+    static void clearTableCache() {
+        synchronized (tableCache) {
+            tableCache.clear();
+            cachedBytes = 0;
+        }
+    }
+
+    static void loadPeakFile(PeakTable table, String fileName, Experiment experiment,
+                             ExperimentSet experimientSet, XCONV xConv, YCONV yConv,
+                             HashMap<String, Object> errorPars, double[] delayCalc,
+                             DynamicsSource dynamicsSourceFactory)
+            throws IOException, IllegalArgumentException {
+        long start = System.nanoTime();
         String expMode = experiment.getExpMode();
         double[] xVals = null;
         double tau = 0.0;
@@ -334,7 +411,6 @@ public class DataIO {
             }
         }
 
-        boolean gotHeader = false;
         boolean hasErrColumns = false;
         String[] peakRefs;
         double[] xValues = null;
@@ -345,278 +421,268 @@ public class DataIO {
         int fakeRes = 1;
         Map<String, List<Integer>> xValIndices = new HashMap<>();
         List<List<Integer>> repIndices = new ArrayList<>();
-        try (BufferedReader fileReader = Files.newBufferedReader(path)) {
-            while (true) {
-                String line = fileReader.readLine();
-                if (line == null) {
-                    break;
-                }
-                String sline = line.trim();
-                if (sline.isEmpty()) {
-                    continue;
-                }
-                if (sline.charAt(0) == '#') {
-                    continue;
-                }
-                String[] sfields = line.split("\t", -1);
-                if (!gotHeader) {
-                    int nfields = sfields.length;
-                    if (fileName.endsWith(".mpk2")) {
-                        // find last B0field that starts with "lab"
-                        //   .mpk2 files have peak labels in columns like "lab1", "lab2"
-                        //   intensities start in next column
-
-                        for (int i = nfields - 1; i >= 0; i--) {
-                            if (sfields[i].startsWith("lab")) {
-                                offset = i + 1;
-                                break;
-                            }
-                        }
-                        // find first lab1,lab2... B0field to get residue number from
-                        for (int i = 0; i < nfields; i++) {
-                            if (sfields[i].startsWith("lab")) {
-                                residueField = i;
-                                break;
-                            }
-                        }
-                        // find id label to get peak number
-                        for (int i = 0; i < nfields; i++) {
-                            if (sfields[i].startsWith("id")) {
-                                peakField = i;
-                                break;
-                            }
-                        }
-                        // check to see if file has err values
-                        for (int i = 0; i < nfields; i++) {
-                            if (sfields[i].startsWith("err")) {
-                                hasErrColumns = true;
-                                break;
-                            }
-                        }
-                        // find indices of x values, including any replicates
-                        for (int i = 0; i < nfields; i++) {
-                            if (!expMode.equalsIgnoreCase("noe") && Character.isDigit(sfields[i].charAt(0))
-                                    || (expMode.equalsIgnoreCase("noe") && Character.isDigit(sfields[i].charAt(0)) && sfields[i].contains("1"))) {
-                                xValIndices.computeIfAbsent(sfields[i], s -> new ArrayList<>()).add(i);
-                            }
-                        }
-                        for (List<Integer> indices : xValIndices.values()) {
-                            if (indices.size() > 1) {
-                                repIndices.add(indices);
-                                break;
-                            }
-                        }
-                    } else {
-                        for (int i = 0; i < nfields; i++) {
-                            if (sfields[i].startsWith("Res")) {
-                                residueField = i;
-                                offset = i + 1;
-                                break;
-                            }
-                        }
-                    }
-                    if (expMode.equalsIgnoreCase("cest") || expMode.equalsIgnoreCase("cpmg") || expMode.equalsIgnoreCase("noe")) {
-                        offset++;
-                        if (hasErrColumns) {
-                            offset++;
-                        }
+        if (table.header != null) {
+            String[] sfields = table.header;
+            int nfields = sfields.length;
+            if (fileName.endsWith(".mpk2")) {
+                // find last B0field that starts with "lab"
+                //   .mpk2 files have peak labels in columns like "lab1", "lab2"
+                //   intensities start in next column
+
+                for (int i = nfields - 1; i >= 0; i--) {
+                    if (sfields[i].startsWith("lab")) {
+                        offset = i + 1;
+                        break;
                     }
-                    int nValues = nfields - offset;
-                    if (hasErrColumns) {
-                        nValues /= 2;
+                }
+                // find first lab1,lab2... B0field to get residue number from
+                for (int i = 0; i < nfields; i++) {
+                    if (sfields[i].startsWith("lab")) {
+                        residueField = i;
+                        break;
                     }
-                    xValues = new double[nValues];
-                    peakRefs = new String[nValues];
-                    int iX = 0;
-                    for (int i = offset; i < nfields; i++) {
-                        // fixme assumes first vcpmg is the 0 ref   
-                        // fixme. need to explicitly account for alternating x-value, errorHeader fields
-                        if (xVals == null) {
-                            try {
-                                double x = Double.parseDouble(sfields[i].trim());
-                                if (hasErrColumns) {
-                                    i++;
-                                }
-                                xValues[iX] = xConv.convert(x, delayCalc, experiment);
-
-                            } catch (NumberFormatException nFE) {
-                            }
-                        } else {
-                            xValues[iX] = xVals[iX];
-                        }
-                        peakRefs[iX] = String.valueOf(iX);
-//                        peakRefList.add(peakRefs[iX]);
-                        iX++;
+                }
+                // find id label to get peak number
+                for (int i = 0; i < nfields; i++) {
+                    if (sfields[i].startsWith("id")) {
+                        peakField = i;
+                        break;
                     }
-                    gotHeader = true;
-                    if (experiment instanceof DoubleArrayExperiment) {
-                        ((DoubleArrayExperiment) experiment).setXVals(xValues);
+                }
+                // check to see if file has err values
+                for (int i = 0; i < nfields; i++) {
+                    if (sfields[i].startsWith("err")) {
+                        hasErrColumns = true;
+                        break;
                     }
-                } else {
-                    String residueNum = "";
-                    int peakNum = -1;
-                    if (residueField != -1) {
-                        residueNum = sfields[residueField].trim();
+                }
+                // find indices of x values, including any replicates
+                for (int i = 0; i < nfields; i++) {
+                    if (!expMode.equalsIgnoreCase("noe") && Character.isDigit(sfields[i].charAt(0))
+                            || (expMode.equalsIgnoreCase("noe") && Character.isDigit(sfields[i].charAt(0)) && sfields[i].contains("1"))) {
+                        xValIndices.computeIfAbsent(sfields[i], s -> new ArrayList<>()).add(i);
                     }
-                    if (peakField != -1) {
-                        peakNum = (int) Double.parseDouble(sfields[peakField].trim());
+                }
+                for (List<Integer> indices : xValIndices.values()) {
+                    if (indices.size() > 1) {
+                        repIndices.add(indices);
+                        break;
                     }
-                    if (residueNum.equals("")) {
-                        residueNum = String.valueOf(fakeRes);
-                    } else if (residueNum.indexOf('.') != -1) {
-                        int dotIndex = residueNum.indexOf('.');
-                        residueNum = residueNum.substring(0, dotIndex);
+                }
+            } else {
+                for (int i = 0; i < nfields; i++) {
+                    if (sfields[i].startsWith("Res")) {
+                        residueField = i;
+                        offset = i + 1;
+                        break;
                     }
-                    double refIntensity = 1.0;
-                    double refError = 0.0;
-                    double avgIntensity = 1.0;
-                    double avgRefIntensity = 1.0;
-                    if (expMode.equalsIgnoreCase("cest") || expMode.equalsIgnoreCase("cpmg") || expMode.equalsIgnoreCase("noe")) {
-                        int refOffset = offset - 1;
+                }
+            }
+            if (expMode.equalsIgnoreCase("cest") || expMode.equalsIgnoreCase("cpmg") || expMode.equalsIgnoreCase("noe")) {
+                offset++;
+                if (hasErrColumns) {
+                    offset++;
+                }
+            }
+            int nValues = nfields - offset;
+            if (hasErrColumns) {
+                nValues /= 2;
+            }
+            xValues = new double[nValues];
+            peakRefs = new String[nValues];
+            int iX = 0;
+            for (int i = offset; i < nfields; i++) {
+                // fixme assumes first vcpmg is the 0 ref   
+                // fixme. need to explicitly account for alternating x-value, errorHeader fields
+                if (xVals == null) {
+                    try {
+                        double x = Double.parseDouble(sfields[i].trim());
                         if (hasErrColumns) {
-                            refOffset = offset - 2;
-                            refError = Double.parseDouble(sfields[offset - 1].trim());
-                        }
-                        refIntensity = Double.parseDouble(sfields[refOffset].trim());
-                        for (List<Integer> list : repIndices) {
-                            if (list.contains(refOffset)) {
-                                double sum = 0.0;
-                                double refSum = 0.0;
-                                for (int index : list) {
-                                    sum += Double.parseDouble(sfields[index].trim());
-                                    refSum += Double.parseDouble(sfields[refOffset].trim());
-                                }
-                                avgIntensity = sum / list.size();
-                                avgRefIntensity = refSum / list.size();
-                            }
+                            i++;
                         }
+                        xValues[iX] = xConv.convert(x, delayCalc, experiment);
 
+                    } catch (NumberFormatException nFE) {
                     }
-                    List<XYErrValue> xyErrValueList = new ArrayList<>();
-                    boolean ok = true;
-                    int iX = 0;
-                    for (int i = offset; i < sfields.length; i++) {
-                        String valueStr = sfields[i].trim();
-                        if ((valueStr.isEmpty()) || valueStr.equalsIgnoreCase("NA")) {
-                            continue;
+                } else {
+                    xValues[iX] = xVals[iX];
+                }
+                peakRefs[iX] = String.valueOf(iX);
+//                        peakRefList.add(peakRefs[iX]);
+                iX++;
+            }
+            if (experiment instanceof DoubleArrayExperiment) {
+                ((DoubleArrayExperiment) experiment).setXVals(xValues);
+            }
+        }
+        for (PeakTable.Row row : table.rows) {
+            String residueNum = "";
+            int peakNum = -1;
+            if (residueField != -1) {
+                residueNum = row.getString(residueField);
+            }
+            if (peakField != -1) {
+                peakNum = (int) row.getDouble(peakField);
+            }
+            if (residueNum.equals("")) {
+                residueNum = String.valueOf(fakeRes);
+            } else if (residueNum.indexOf('.') != -1) {
+                int dotIndex = residueNum.indexOf('.');
+                residueNum = residueNum.substring(0, dotIndex);
+            }
+            double refIntensity = 1.0;
+            double refError = 0.0;
+            double avgIntensity = 1.0;
+            double avgRefIntensity = 1.0;
+            if (expMode.equalsIgnoreCase("cest") || expMode.equalsIgnoreCase("cpmg") || expMode.equalsIgnoreCase("noe")) {
+                int refOffset = offset - 1;
+                if (hasErrColumns) {
+                    refOffset = offset - 2;
+                    refError = row.getDouble(offset - 1);
+                }
+                refIntensity = row.getDouble(refOffset);
+                for (List<Integer> list : repIndices) {
+                    if (list.contains(refOffset)) {
+                        double sum = 0.0;
+                        double refSum = 0.0;
+                        for (int index : list) {
+                            sum += row.getDouble(index);
+                            refSum += row.getDouble(refOffset);
                         }
-                        Double yValue;
-                        double intensity;
-                        try {
-                            intensity = Double.parseDouble(sfields[i].trim());
-                            yValue = yConv.convert(intensity, refIntensity, tau);
-                        } catch (NumberFormatException nFE) {
-                            ok = false;
-                            continue;
+                        avgIntensity = sum / list.size();
+                        avgRefIntensity = refSum / list.size();
+                    }
+                }
+
+            }
+            List<XYErrValue> xyErrValueList = new ArrayList<>();
+            boolean ok = true;
+            int iX = 0;
+            for (int i = offset; i < row.size(); i++) {
+                if (row.isBlankOrNA(i)) {
+                    continue;
+                }
+                Double yValue;
+                double intensity;
+                try {
+                    intensity = row.getDouble(i);
+                    yValue = yConv.convert(intensity, refIntensity, tau);
+                } catch (NumberFormatException nFE) {
+                    ok = false;
+                    continue;
+                }
+                if ((yValue == null) || Double.isNaN(yValue) || Double.isInfinite(yValue)) {
+                    ok = false;
+                    continue;
+                }
+
+                double eValue = 0.0;
+                if (hasErrColumns) {
+                    i++;
+                }
+                double diffSum = 0.0;
+                double refDiffSum = 0.0;
+                int nReps = 0;
+                for (List<Integer> list : repIndices) {
+                    if (list.contains(i)) {
+                        nReps = list.size();
+                        for (int index : list) {
+                            diffSum += row.getDouble(index) - avgIntensity;
+                            refDiffSum += row.getDouble(index - 1) - avgRefIntensity;
                         }
-                        if ((yValue == null) || Double.isNaN(yValue) || Double.isInfinite(yValue)) {
-                            ok = false;
-                            continue;
+                    }
+                }
+                double normIntensity = diffSum / (nReps - 1);
+                double normRefIntensity = refDiffSum / (nReps - 1);
+                if (hasErrColumns && errorMode.equalsIgnoreCase("measured")) {
+                    eValue = row.getDouble(i);
+                    eSet = true;
+                    if (expMode.equalsIgnoreCase("cpmg")) {
+                        if (normIntensity != 0) {
+                            eValue = eValue / (normIntensity * tau);
+                        } else {
+                            eValue = eValue / (intensity * tau);
                         }
-
-                        double eValue = 0.0;
-                        if (hasErrColumns) {
-                            i++;
+                    } else if (expMode.equalsIgnoreCase("noe") && (yConv == YCONV.NORMALIZE)) {
+                        double r1 = refError / refIntensity;
+                        double r2 = eValue / intensity;
+                        if (normIntensity != 0 && normRefIntensity != 0) {
+                            r1 = refError / normRefIntensity;
+                            r2 = eValue / normIntensity;
                         }
-                        double diffSum = 0.0;
-                        double refDiffSum = 0.0;
-                        int nReps = 0;
-                        for (List<Integer> list : repIndices) {
-                            if (list.contains(i)) {
-                                nReps = list.size();
-                                for (int index : list) {
-                                    diffSum += Double.parseDouble(sfields[index].trim()) - avgIntensity;
-                                    refDiffSum += Double.parseDouble(sfields[index - 1].trim()) - avgRefIntensity;
-                                }
-                            }
+                        eValue = Math.abs(yValue) * Math.sqrt(r1 * r1 + r2 * r2);
+                    }
+                } else if (expMode.equalsIgnoreCase("cpmg")) {
+                    if (errorMode.equalsIgnoreCase("noise")) {
+                        if (normIntensity != 0) {
+                            eValue = noise / (normIntensity * tau);
+                        } else {
+                            eValue = noise / (intensity * tau);
                         }
-                        double normIntensity = diffSum / (nReps - 1);
-                        double normRefIntensity = refDiffSum / (nReps - 1);
-                        if (hasErrColumns && errorMode.equalsIgnoreCase("measured")) {
-                            eValue = Double.parseDouble(sfields[i].trim());
-                            eSet = true;
-                            if (expMode.equalsIgnoreCase("cpmg")) {
-                                if (normIntensity != 0) {
-                                    eValue = eValue / (normIntensity * tau);
-                                } else {
-                                    eValue = eValue / (intensity * tau);
-                                }
-                            } else if (expMode.equalsIgnoreCase("noe") && (yConv == YCONV.NORMALIZE)) {
-                                double r1 = refError / refIntensity;
-                                double r2 = eValue / intensity;
-                                if (normIntensity != 0 && normRefIntensity != 0) {
-                                    r1 = refError / normRefIntensity;
-                                    r2 = eValue / normIntensity;
-                                }
-                                eValue = Math.abs(yValue) * Math.sqrt(r1 * r1 + r2 * r2);
-                            }
-                        } else if (expMode.equalsIgnoreCase("cpmg")) {
-                            if (errorMode.equalsIgnoreCase("noise")) {
-                                if (normIntensity != 0) {
-                                    eValue = noise / (normIntensity * tau);
-                                } else {
-                                    eValue = noise / (intensity * tau);
-                                }
-                            } else if (errorMode.equalsIgnoreCase("percent")) {
-                                if (normIntensity != 0 && normRefIntensity != 0) {
-                                    eValue = (errF * normRefIntensity) / (normIntensity * tau);
-                                } else {
-                                    eValue = (errF * refIntensity) / (intensity * tau);
-                                }
-                            }
-                        } else if (expMode.equalsIgnoreCase("noe") && (yConv == YCONV.NORMALIZE)) {
-                            double r1 = noise / refIntensity;
-                            double r2 = noise / intensity;
-                            if (normIntensity != 0 && normRefIntensity != 0) {
-                                r1 = noise / normRefIntensity;
-                                r2 = noise / normIntensity;
-                            }
-                            eValue = Math.abs(yValue) * Math.sqrt(r1 * r1 + r2 * r2);
+                    } else if (errorMode.equalsIgnoreCase("percent")) {
+                        if (normIntensity != 0 && normRefIntensity != 0) {
+                            eValue = (errF * normRefIntensity) / (normIntensity * tau);
                         } else {
-                            if (errorMode.equalsIgnoreCase("percent")) {
-                                eValue = Math.abs(yValue) * errF;
-                            } else if (errorMode.equalsIgnoreCase("noise")) {
-                                eValue = noise;
-                            }
+                            eValue = (errF * refIntensity) / (intensity * tau);
                         }
-                        XYErrValue xyErrValue = new XYErrValue(xValues[iX], yValue, eValue);
-                        xyErrValueList.add(xyErrValue);
-                        iX++;
-                    }
-                    if (!ok) {
-                        continue;
-                    }
-                    Optional<ResonanceSource> resSourceOpt = dynamicsSourceFactory.createFromSpecifiers(expMode + "." + peakNum, residueNum, "H", "N");
-                    if (!resSourceOpt.isPresent()) {
-                        throw new IllegalArgumentException("Can't generate resonance source from peak " + expMode + "." + peakNum);
-                    }
-                    ResonanceSource dynSource = resSourceOpt.get();
-                    if (expMode.equalsIgnoreCase("cest")) {
-                        processCESTData((CESTExperiment) experiment, dynSource, xyErrValueList);
-                    } else {
-                        ExperimentData residueData = new ExperimentData(experiment, dynSource, xyErrValueList);
-                        experiment.addResidueData(dynSource, residueData);
                     }
-                    ExperimentResult residueInfo = experimientSet.getExperimentResult(dynSource);
-                    // DynamicsSource dynSource = expData.getSource();
-
-                    if (residueInfo == null) {
-                        residueInfo = new ExperimentResult(experimientSet, dynSource, 0, 0, 0);
-                        experimientSet.addExperimentResult(dynSource, residueInfo);
+                } else if (expMode.equalsIgnoreCase("noe") && (yConv == YCONV.NORMALIZE)) {
+                    double r1 = noise / refIntensity;
+                    double r2 = noise / intensity;
+                    if (normIntensity != 0 && normRefIntensity != 0) {
+                        r1 = noise / normRefIntensity;
+                        r2 = noise / normIntensity;
                     }
-                    if (expMode.equalsIgnoreCase("noe")) {
-                        residueInfo.value = xyErrValueList.get(0).x();
-                        residueInfo.err = xyErrValueList.get(0).err();
+                    eValue = Math.abs(yValue) * Math.sqrt(r1 * r1 + r2 * r2);
+                } else {
+                    if (errorMode.equalsIgnoreCase("percent")) {
+                        eValue = Math.abs(yValue) * errF;
+                    } else if (errorMode.equalsIgnoreCase("noise")) {
+                        eValue = noise;
                     }
-
-                    fakeRes++;
                 }
+                XYErrValue xyErrValue = new XYErrValue(xValues[iX], yValue, eValue);
+                xyErrValueList.add(xyErrValue);
+                iX++;
+            }
+            if (!ok) {
+                continue;
+            }
+            Optional<ResonanceSource> resSourceOpt = dynamicsSourceFactory.createFromSpecifiers(expMode + "." + peakNum, residueNum, "H", "N");
+            if (!resSourceOpt.isPresent()) {
+                throw new IllegalArgumentException("Can't generate resonance source from peak " + expMode + "." + peakNum);
+            }
+            ResonanceSource dynSource = resSourceOpt.get();
+            if (expMode.equalsIgnoreCase("cest")) {
+                processCESTData((CESTExperiment) experiment, dynSource, xyErrValueList);
+            } else {
+                ExperimentData residueData = new ExperimentData(experiment, dynSource, xyErrValueList);
+                experiment.addResidueData(dynSource, residueData);
             }
+            ExperimentResult residueInfo = experimientSet.getExperimentResult(dynSource);
+            // DynamicsSource dynSource = expData.getSource();
+
+            if (residueInfo == null) {
+                residueInfo = new ExperimentResult(experimientSet, dynSource, 0, 0, 0);
+                experimientSet.addExperimentResult(dynSource, residueInfo);
+            }
+            if (expMode.equalsIgnoreCase("noe")) {
+                residueInfo.value = xyErrValueList.get(0).x();
+                residueInfo.err = xyErrValueList.get(0).err();
+            }
+
+            fakeRes++;
         }
         if (!eSet) {
             double errValue = estimateErrors(experiment);
             setErrors(experiment, errValue);
         }
+        logLoad(table, System.nanoTime() - start);
+    }
+
+    static void logLoad(PeakTable table, long loadNanos) {
+        Logger.getLogger(DataIO.class.getName()).log(Level.INFO, String.format("%s: %d rows, read %.1f ms, loaded %.1f ms",
+                table.path.getFileName(), table.rows.size(), table.readNanos * 1.0e-6, loadNanos * 1.0e-6));
     }
 
     public static void processCESTData(OffsetExperiment expData, ResonanceSource dynSource, List<XYErrValue> xyErrValueList) {
@@ -758,72 +824,65 @@ public class DataIO {
                                     String nucleus, double temperature, double field, XCONV xConv,
                                     String expMode, DynamicsSource dynamicsSourceFactory)
             throws IOException, IllegalArgumentException {
+        loadTextFile(readTable(Paths.get(fileName), false), expData, fileName, experimentSet,
+                xConv, expMode, dynamicsSourceFactory);
+    }
+
+    static void loadTextFile(PeakTable table, Experiment expData, String fileName, ExperimentSet experimentSet,
+                             XCONV xConv, String expMode, DynamicsSource dynamicsSourceFactory)
+            throws IllegalArgumentException {
+        long start = System.nanoTime();
         Path path = Paths.get(fileName);
         String fileTail = path.getFileName().toString();
         fileTail = fileTail.substring(0, fileTail.indexOf('.'));
 
 //        ExperimentData expData = new ExperimentData(fileTail, nucleus, B0field, temperature);
         experimentSet.addExperimentData(fileTail, expData);
-        boolean gotHeader = false;
         String[] peakRefs;
         double[][] xValues = null;
 //        List<Double> xValues = new ArrayList<>();
         int peakNum = 0;
-        try (BufferedReader fileReader = Files.newBufferedReader(path)) {
-            while (true) {
-                String line = fileReader.readLine();
-                if (line == null) {
-                    break;
-                }
-//            String line = fileReader.readLine();
-                String sline = line.trim();
-                if (sline.length() == 0) {
-                    continue;
-                }
-                String[] sfields = line.split("\t", -1);
-                if (!gotHeader) {
-                    int j = 0;
-                    int nValues = (sfields.length - 1) / 2;
-                    xValues = new double[1][nValues];
-                    peakRefs = new String[nValues];
-                    for (int i = 1; i < sfields.length - 1; i += 2) {
-                        double xValue = Double.parseDouble(sfields[i].trim());
-                        xValues[0][j] = xConv.convert(xValue, null, expData);
-                        peakRefs[j] = String.valueOf(j);
-                        j++;
-                    }
-                    gotHeader = true;
-                } else {
-                    int nValues = (sfields.length - 1) / 2;
-                    String residueNum = sfields[0].trim();
-                    double[] yValues = new double[nValues];
-                    double[] errValues = new double[nValues];
-                    int j = 0;
-                    for (int i = 1; i < sfields.length - 1; i += 2) {
-                        double r2Eff = Double.parseDouble(sfields[i].trim());
-                        double r2EffErr = Double.parseDouble(sfields[i + 1].trim());
-                        yValues[j] = r2Eff;
-                        errValues[j] = r2EffErr;
-                        j++;
-                    }
-
-                    Optional<ResonanceSource> resSourceOpt = dynamicsSourceFactory.createFromSpecifiers(expMode + "." + peakNum, residueNum, "H", "N");
-                    if (!resSourceOpt.isPresent()) {
-                        throw new IllegalArgumentException("Can't generate resonance source from peak " + expMode + "." + peakNum);
-                    }
-                    ResonanceSource dynSource = resSourceOpt.get();
-                    ExperimentData residueData = new ExperimentData(expData, dynSource, xValues, yValues, errValues);
-                    expData.addResidueData(dynSource, residueData);
+        if (table.header != null) {
+            String[] sfields = table.header;
+            int j = 0;
+            int nValues = (sfields.length - 1) / 2;
+            xValues = new double[1][nValues];
+            peakRefs = new String[nValues];
+            for (int i = 1; i < sfields.length - 1; i += 2) {
+                double xValue = Double.parseDouble(sfields[i].trim());
+                xValues[0][j] = xConv.convert(xValue, null, expData);
+                peakRefs[j] = String.valueOf(j);
+                j++;
+            }
+        }
+        for (PeakTable.Row row : table.rows) {
+            int nValues = (row.size() - 1) / 2;
+            String residueNum = row.getString(0);
+            double[] yValues = new double[nValues];
+            double[] errValues = new double[nValues];
+            int j = 0;
+            for (int i = 1; i < row.size() - 1; i += 2) {
+                yValues[j] = row.getDouble(i);
+                errValues[j] = row.getDouble(i + 1);
+                j++;
+            }
 
-                    ExperimentResult residueInfo = experimentSet.getExperimentResult(dynSource);
-                    if (residueInfo == null) {
-                        residueInfo = new ExperimentResult(experimentSet, dynSource, 0, 0, 0);
-                        experimentSet.addExperimentResult(dynSource, residueInfo);
-                    }
-                    peakNum++;
-                }
+            Optional<ResonanceSource> resSourceOpt = dynamicsSourceFactory.createFromSpecifiers(expMode + "." + peakNum, residueNum, "H", "N");
+            if (!resSourceOpt.isPresent()) {
+                throw new IllegalArgumentException("Can't generate resonance source from peak " + expMode + "." + peakNum);
+            }
+            ResonanceSource dynSource = resSourceOpt.get();
+            ExperimentData residueData = new ExperimentData(expData, dynSource, xValues, yValues, errValues);
+            expData.addResidueData(dynSource, residueData);
+
+            ExperimentResult residueInfo = experimentSet.getExperimentResult(dynSource);
+            if (residueInfo == null) {
+                residueInfo = new ExperimentResult(experimentSet, dynSource, 0, 0, 0);
+                experimentSet.addExperimentResult(dynSource, residueInfo);
             }
+            peakNum++;
         }
+        logLoad(table, System.nanoTime() - start);
     }
 
     public static void setPercentileErrors(Experiment expData, double fraction) {
@@ -898,8 +957,19 @@ public class DataIO {
         Path path = Paths.get(fileName);
         String fileTail = path.getFileName().toString();
         fileTail = fileTail.substring(0, fileTail.indexOf('.'));
-        ExperimentSet experimentSet = new ExperimentSet(fileTail, fileName);
         File file = new File(fileName);
+        Path storePath = ResultsStore.storePath(fileName);
+        File storeFile = storePath.toFile();
+        if (storeFile.exists() && (!file.exists() || (storeFile.lastModified() >= file.lastModified()))) {
+            try {
+                return ResultsStore.load(fileName, storePath, dynamicsSourceFactory);
+            } catch (IOException | RuntimeException e) {
+                // a damaged store doesn't make the text results unusable
+                Logger.getLogger(DataIO.class.getName()).log(Level.WARNING,
+                        "Can't read results store " + storePath + ", reading " + fileName, e);
+            }
+        }
+        ExperimentSet experimentSet = new ExperimentSet(fileTail, fileName);
         if (!file.exists()) {
             return experimentSet;
         }
@@ -1158,8 +1228,88 @@ Residue	 Peak	GrpSz	Group	Equation	   RMS	   AIC	Best	     R2	  R2.sd	    Rex	 R
 
     }
 
-    public static void processYAMLDataSections(ExperimentSet experimentSet, Path dirPath, String expMode, List<HashMap<String, Object>> dataList) throws IOException {
+    /**
+     * Get the name of the peak or text file of a data section, resolved as
+     * the section's loader resolves it.
+     *
+     * @return the file name, or null for ires sections and sections without
+     * a file
+     */
+    static String getSectionFileName(Map<String, Object> dataMap3, Path dirPath) {
+        String dataFileName = (String) dataMap3.get("file");
+        String fileFormat = (String) dataMap3.get("format");
+        if (dataFileName == null) {
+            return null;
+        }
+        if ((fileFormat != null) && fileFormat.equalsIgnoreCase("mpk2")) {
+            if (!new File(dataFileName).isAbsolute()) {
+                dataFileName = dirPath.resolve(dataFileName).toString();
+            }
+            return dataFileName;
+        } else if ((fileFormat != null) && fileFormat.equalsIgnoreCase("ires")) {
+            return null;
+        } else if (dataMap3.get("vcpmg") == null) {
+            String fileName = new File(dataFileName).getAbsoluteFile().getName();
+            return FileSystems.getDefault().getPath(dirPath.toString(), fileName).toString();
+        } else {
+            return dataFileName;
+        }
+    }
+
+    /**
+     * Start reading the peak and text files of the data sections, each on
+     * its own task. The tables are only parsed here; creating the
+     * experiments and resonances from them is left to the caller, in the
+     * order of the sections, as that adds to shared molecule and peak list
+     * state.
+     *
+     * @return a future table for each section, null for sections without a
+     * table
+     */
+    static List<CompletableFuture<PeakTable>> readSectionTables(Path dirPath, List<HashMap<String, Object>> dataList) {
+        List<CompletableFuture<PeakTable>> tables = new ArrayList<>();
         for (HashMap<String, Object> dataMap3 : dataList) {
+            String fileName = getSectionFileName(dataMap3, dirPath);
+            if (fileName == null) {
+                tables.add(null);
+                continue;
+            }
+            String fileFormat = (String) dataMap3.get("format");
+            boolean peakFile = ((fileFormat != null) && fileFormat.equalsIgnoreCase("mpk2")) || (dataMap3.get("vcpmg") != null);
+            tables.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return peakFile ? readPeakTable(fileName) : readTable(Paths.get(fileName), false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        return tables;
+    }
+
+    /**
+     * Wait for the table of a section and record its hash in the manifest of
+     * the experiment set.
+     */
+    static PeakTable getSectionTable(ExperimentSet experimentSet, CompletableFuture<PeakTable> future) throws IOException {
+        try {
+            PeakTable table = future.join();
+            experimentSet.getManifest().setInput(table.path.toString(), table.hash);
+            return table;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            } else if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    public static void processYAMLDataSections(ExperimentSet experimentSet, Path dirPath, String expMode, List<HashMap<String, Object>> dataList) throws IOException {
+        List<CompletableFuture<PeakTable>> tables = readSectionTables(dirPath, dataList);
+        for (int iSection = 0; iSection < dataList.size(); iSection++) {
+            HashMap<String, Object> dataMap3 = dataList.get(iSection);
             Double temperature = getDoubleValue(dataMap3, "temperature", null);
             if (temperature != null) {
                 temperature += 273.15;
@@ -1274,10 +1424,8 @@ Residue	 Peak	GrpSz	Group	Equation	   RMS	   AIC	Best	     R2	  R2.sd	    Rex	 R
                 if (dataFile == null) {
                     throw new IllegalArgumentException("No file par in .yaml file");
                 }
-                if (!dataFile.isAbsolute()) {
-                    dataFileName = dirPath.resolve(dataFileName).toString();
-                }
-                loadPeakFile(dataFileName, experiment, experimentSet, xConv, yConv,
+                dataFileName = getSectionFileName(dataMap3, dirPath);
+                loadPeakFile(getSectionTable(experimentSet, tables.get(iSection)), dataFileName, experiment, experimentSet, xConv, yConv,
                         errorPars, delayCalc, dynamicsSourceFactory);
 
             } else if ((fileFormat != null) && fileFormat.equalsIgnoreCase("ires")) {
@@ -1307,23 +1455,64 @@ Residue	 Peak	GrpSz	Group	Equation	   RMS	   AIC	Best	     R2	  R2.sd	    Rex	 R
                             refIntensity, dynamicsSourceFactory);
                 }
             } else if (vcpmgList == null) {
-                File file = new File(dataFileName).getAbsoluteFile();
-                dataFileName = file.getName();
-                String textFileName = FileSystems.getDefault().getPath(dirPath.toString(), dataFileName).toString();
-                loadTextFile(experiment, textFileName, experimentSet, nucleus,
-                        temperature, B0field, xConv, expMode, dynamicsSourceFactory);
+                if (dataFileName == null) {
+                    throw new IOException("No file entry in yaml file");
+                }
+                String textFileName = getSectionFileName(dataMap3, dirPath);
+                loadTextFile(getSectionTable(experimentSet, tables.get(iSection)), experiment, textFileName, experimentSet,
+                        xConv, expMode, dynamicsSourceFactory);
             } else {
-                double[] vcpmgs = new double[vcpmgList.size()];
-                for (int i = 0; i < vcpmgs.length; i++) {
-                    vcpmgs[i] = vcpmgList.get(i).doubleValue();
+                if (dataFileName == null) {
+                    throw new IOException("No file entry in yaml file");
                 }
-                loadPeakFile(dataFileName, experiment, experimentSet, xConv, yConv,
+                loadPeakFile(getSectionTable(experimentSet, tables.get(iSection)), dataFileName, experiment, experimentSet, xConv, yConv,
                         errorPars, delayCalc, dynamicsSourceFactory);
             }
         }
 
     }
 
+    /**
+     * Read the manifest of a results file. A manifest older than its results
+     * file doesn't describe the results, so isn't used.
+     *
+     * @param resultsFileName the name of the results file
+     * @return the manifest, or empty if there's no current manifest
+     */
+    static Optional<ReloadManifest> readManifest(String resultsFileName) {
+        File resultsFile = new File(resultsFileName);
+        File manifestFile = ReloadManifest.manifestPath(resultsFileName).toFile();
+        if (!resultsFile.exists() || !manifestFile.exists() || (manifestFile.lastModified() < resultsFile.lastModified())) {
+            return Optional.empty();
+        }
+        return ReloadManifest.load(manifestFile.toPath());
+    }
+
+    static void writeManifest(String resultsFileName, ExperimentSet experimentSet) {
+        Path manifestPath = ReloadManifest.manifestPath(resultsFileName);
+        ReloadManifest manifest = experimentSet.getManifest();
+        try {
+            if (manifest.getSettings() == null) {
+                // the results weren't fit here, so an older manifest would misdescribe them
+                Files.deleteIfExists(manifestPath);
+            } else {
+                manifest.save(manifestPath, experimentSet);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(DataIO.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    static void logInputChanges(String fileName, Map<String, String> previousInputs, Map<String, String> inputs) {
+        if (previousInputs.isEmpty()) {
+            return;
+        }
+        long nChanged = inputs.entrySet().stream()
+                .filter(entry -> !entry.getValue().equals(previousInputs.get(entry.getKey()))).count();
+        Logger.getLogger(DataIO.class.getName()).log(Level.INFO,
+                String.format("%s: %d of %d input files changed", fileName, nChanged, inputs.size()));
+    }
+
     public static ExperimentSet loadYAMLFile(String fileName) throws FileNotFoundException, IOException {
         File yamlFile = new File(fileName).getAbsoluteFile();
         ExperimentSet experimentSet = null;
@@ -1353,10 +1542,16 @@ Residue	 Peak	GrpSz	Group	Equation	   RMS	   AIC	Best	     R2	  R2.sd	    Rex	 R
                     }
                     String parFileName = FileSystems.getDefault().getPath(dirPath.toString(), parName).toString();
                     experimentSet = DataIO.loadResultsFile(expMode, parFileName, dynamicsSourceFactory);
+                    ReloadManifest manifest = readManifest(parFileName).orElseGet(ReloadManifest::new);
+                    Map<String, String> previousInputs = manifest.getInputs();
+                    manifest.clearInputs();
+                    manifest.setInput(yamlFile.toString(), ReloadManifest.hash(Files.readAllBytes(path)));
+                    experimentSet.setManifest(manifest);
 
                     experimentSet.setExpMode(expMode);
                     getFitParameters(experimentSet, dataMap2);
                     processYAMLDataSections(experimentSet, dataMap2, dirPath, expMode);
+                    logInputChanges(fileName, previousInputs, manifest.getInputs());
                 }
             }
         }
@@ -1470,7 +1665,7 @@ Residue	 Peak	GrpSz	Group	Equation	   RMS	   AIC	Best	     R2	  R2.sd	    Rex	 R
         String[] headerFields = {"Residue", "Peak", "GrpSz", "Group", "State", "Equation", "RMS", "AIC", "Best"};
         String[] headerFields2 = {"Residue", "Peak", "GrpSz", "Group", "State", "RefineOpt", "RefineTime",
                 "BootstrapOpt", "BootstrapTime", "Samples", "AbsMode", "NonParametricMode", "StartRadius", "FinalRadius",
-                "Tolerance", "Weight", "Equation", "RMS", "AIC", "Best"};
+                "Tolerance", "Weight", "RandomSeed", "Equation", "RMS", "AIC", "Best"};
         if (saveStats) {
             headerFields = headerFields2;
         }
@@ -1517,6 +1712,12 @@ Residue	 Peak	GrpSz	Group	Equation	   RMS	   AIC	Best	     R2	  R2.sd	    Rex	 R
         } catch (IOException ex) {
             Logger.getLogger(DataIO.class.getName()).log(Level.SEVERE, null, ex);
         }
+        try {
+            ResultsStore.save(ResultsStore.storePath(fileName), resProp);
+        } catch (IOException ex) {
+            Logger.getLogger(DataIO.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        writeManifest(fileName, resProp);
 
     }
 
@@ -35,18 +35,64 @@ public class ExperimentSet implements ValueSet {
     private final HashMap<String, ExperimentResult> resultMap = new HashMap<>();
     final String name;
     String fileName = null;
-    Map<Double, Integer> fieldMap = new LinkedHashMap();
-    Map<Double, Integer> tempMap = new LinkedHashMap();
-    Map<Double, Integer> b1Map = new LinkedHashMap();
-    List<Double> fieldList = new ArrayList<>();
-    List<Double> tempList = new ArrayList<>();
-    List<Double> b1List = new ArrayList<>();
+    private volatile StateIndex stateIndex = null;
     private boolean absValueMode = false;
     private String bootStrapMode = "parametric";
     private String expMode = "cpmg";
+    private ReloadManifest manifest = new ReloadManifest();
 
     private boolean active = true;
 
+    /**
+     * The distinct B0 fields, temperatures and B1 fields of the experiments,
+     * each numbered in the order first seen. Values are matched by their
+     * floor, and the first value seen for each is kept. An index is never
+     * changed once built, so it can be read from any thread without locking.
+     */
+    record StateIndex(Map<Double, Integer> fieldMap, Map<Double, Integer> tempMap, Map<Double, Integer> b1Map,
+                      double[] fields, double[] temperatures, double[] b1Fields) {
+
+        static StateIndex build(Collection<Experiment> experiments) {
+            Map<Double, Integer> fieldMap = new LinkedHashMap<>();
+            Map<Double, Integer> tempMap = new LinkedHashMap<>();
+            Map<Double, Integer> b1Map = new LinkedHashMap<>();
+            List<Double> fieldList = new ArrayList<>();
+            List<Double> tempList = new ArrayList<>();
+            List<Double> b1List = new ArrayList<>();
+            for (Experiment experiment : experiments) {
+                if (fieldMap.putIfAbsent(Math.floor(experiment.getB0Field()), fieldMap.size()) == null) {
+                    fieldList.add(experiment.getB0Field());
+                }
+                if (tempMap.putIfAbsent(Math.floor(experiment.getTemperature()), tempMap.size()) == null) {
+                    tempList.add(experiment.getTemperature());
+                }
+                double b1Field = getB1Field(experiment);
+                if (b1Map.putIfAbsent(Math.floor(b1Field), b1Map.size()) == null) {
+                    b1List.add(b1Field);
+                }
+            }
+            return new StateIndex(Collections.unmodifiableMap(fieldMap), Collections.unmodifiableMap(tempMap),
+                    Collections.unmodifiableMap(b1Map), toArray(fieldList), toArray(tempList), toArray(b1List));
+        }
+
+        int[] getStateIndices(int resIndex, Experiment experiment) {
+            int[] state = new int[4];
+            state[0] = resIndex;
+            state[1] = fieldMap.get(Math.floor(experiment.getB0Field()));
+            state[2] = tempMap.get(Math.floor(experiment.getTemperature()));
+            state[3] = b1Map.get(Math.floor(getB1Field(experiment)));
+            return state;
+        }
+
+        static double getB1Field(Experiment experiment) {
+            return experiment instanceof OffsetExperiment offsetExperiment ? offsetExperiment.getB1Field() : 0.0;
+        }
+
+        static double[] toArray(List<Double> values) {
+            return values.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+    }
+
     public ExperimentSet(String name, String fileName) {
         this.name = name;
         this.fileName = fileName;
@@ -63,6 +109,13 @@ public class ExperimentSet implements ValueSet {
         return name;
     }
 
+    /**
+     * @return the name of the results file of the set
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
     /**
      * @return the absValueMode
      */
@@ -105,8 +158,21 @@ public class ExperimentSet implements ValueSet {
         this.expMode = expMode;
     }
 
-    public void addExperimentData(String name, Experiment data) {
+    /**
+     * @return the manifest of the inputs, settings and data the results of
+     * the set were fit with
+     */
+    public ReloadManifest getManifest() {
+        return manifest;
+    }
+
+    public void setManifest(ReloadManifest manifest) {
+        this.manifest = manifest;
+    }
+
+    public synchronized void addExperimentData(String name, Experiment data) {
         expMaps.put(name, data);
+        stateIndex = null;
     }
 
     public Experiment getExperimentData(String name) {
@@ -117,8 +183,12 @@ public class ExperimentSet implements ValueSet {
         return expMaps.values();
     }
 
+    /**
+     * @return an unmodifiable view of the experiments, by name. Experiments
+     * are added with addExperimentData so the state index is kept current.
+     */
     public Map<String, Experiment> getExperimentMap() {
-        return expMaps;
+        return Collections.unmodifiableMap(expMaps);
     }
 
     public List<String> getEquationNames() {
@@ -146,9 +216,7 @@ public class ExperimentSet implements ValueSet {
     }
 
     public List<String> getStateStrings() {
-        if (fieldMap.isEmpty()) {
-            setupMaps();
-        }
+        setupMaps();
         // List<String> stateStrings = 
         Set<String> states = expMaps.values().stream().map(e -> e.getState()).map(s
                 -> "0:" + s.substring(2)).collect(Collectors.toSet());
@@ -166,80 +234,63 @@ public class ExperimentSet implements ValueSet {
         return builder.toString();
     }
 
+    /**
+     * Make sure the state index is built for the current experiments and the
+     * state of each experiment is set. The index is only rebuilt after
+     * experiments are added, so this is cheap to call before each fit.
+     */
     public void setupMaps() {
-        fieldMap.clear();
-        tempMap.clear();
-        b1Map.clear();
-        fieldList.clear();
-        tempList.clear();
-        b1List.clear();
-        for (Experiment experiment : expMaps.values()) {
-            if (!fieldMap.containsKey(Math.floor(experiment.getB0Field()))) {
-                fieldMap.put(Math.floor(experiment.getB0Field()), fieldMap.size());
-                fieldList.add(experiment.getB0Field());
-            }
-            if (!tempMap.containsKey(Math.floor(experiment.getTemperature()))) {
-                tempMap.put(Math.floor(experiment.getTemperature()), tempMap.size());
-                tempList.add(experiment.getTemperature());
-            }
-            double b1Field = 0.0;
-            if (experiment instanceof OffsetExperiment offsetExperiment) {
-                b1Field = offsetExperiment.getB1Field();
-            }
-            double b1Floor = Math.floor(b1Field);
-            if (!b1Map.containsKey(b1Floor)) {
-                b1Map.put(b1Floor, b1Map.size());
-                b1List.add(b1Field);
+        getStateIndex();
+    }
+
+    StateIndex getStateIndex() {
+        StateIndex index = stateIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = stateIndex;
+                if (index == null) {
+                    index = StateIndex.build(expMaps.values());
+                    for (Experiment expData : expMaps.values()) {
+                        int[] state = index.getStateIndices(0, expData);
+                        expData.setState(getStateString(state));
+                    }
+                    stateIndex = index;
+                }
             }
         }
-        for (Experiment expData : expMaps.values()) {
-            int[] state = getStateIndices(0, expData);
-            expData.setState(getStateString(state));
-        }
+        return index;
     }
 
     public int[] getStateIndices(int resIndex, Experiment experiment) {
-        if (fieldMap.isEmpty()) {
-            setupMaps();
-        }
-        int[] state = new int[4];
-        state[0] = resIndex;
-        state[1] = fieldMap.get(Math.floor(experiment.getB0Field()));
-        state[2] = tempMap.get(Math.floor(experiment.getTemperature()));
-        double b1Field = 0.0;
-        if (experiment instanceof OffsetExperiment offsetExperiment) {
-            b1Field = offsetExperiment.getB1Field();
-        }
-        double b1Floor = Math.floor(b1Field);
-
-        state[3] = b1Map.get(b1Floor);
-//        System.out.println(resIndex + " " + experiment.field + " " + experiment.temperature + " " + experiment.nucleus);
-//        System.out.println("state index residue:" + state[0] + " field:" + state[1] + " temp:" + state[2] + " nuc:" + state[3]);
-
-        return state;
+        return getStateIndex().getStateIndices(resIndex, experiment);
     }
 
     public int[] getStateCount(int nResidues) {
-        if (fieldMap.isEmpty()) {
-            setupMaps();
-        }
+        StateIndex index = getStateIndex();
         int[] state = new int[4];
         state[0] = nResidues;
-        state[1] = fieldMap.size();
-        state[2] = tempMap.size();
-        state[3] = b1Map.size();
-//        System.out.println("state count residues:" + state[0] + " fields:" + state[1] + " temps:" + state[2] + " nucs:" + state[3]);
+        state[1] = index.fieldMap().size();
+        state[2] = index.tempMap().size();
+        state[3] = index.b1Map().size();
         return state;
     }
 
-    public void addExperimentResult(ResonanceSource dynSource, ExperimentResult value) {
+    public synchronized void addExperimentResult(ResonanceSource dynSource, ExperimentResult value) {
         resultMap.put(dynSource.getAtomKey(), value);
     }
 
-    public void clearResidueMap() {
+    public synchronized void clearResidueMap() {
         resultMap.clear();
     }
 
+    /**
+     * Remove the results of all resonances other than the given ones.
+     */
+    public synchronized void retainExperimentResults(Collection<ResonanceSource> resSources) {
+        Set<String> atomKeys = resSources.stream().map(ResonanceSource::getAtomKey).collect(Collectors.toSet());
+        resultMap.keySet().retainAll(atomKeys);
+    }
+
     public Set<ResonanceSource> resonanceSources() {
         return resultMap.values().stream().map(v -> v.getResonanceSource()).filter(resSource -> !resSource.deleted()).collect(Collectors.toSet());
     }
@@ -259,13 +310,13 @@ public class ExperimentSet implements ValueSet {
         return active;
     }
 
-    public List<ExperimentResult> getExperimentResults() {
+    public synchronized List<ExperimentResult> getExperimentResults() {
         List<ExperimentResult> values = new ArrayList<>();
         values.addAll(resultMap.values());
         return values;
     }
 
-    public ExperimentResult getExperimentResult(ResonanceSource dynSource) {
+    public synchronized ExperimentResult getExperimentResult(ResonanceSource dynSource) {
         return resultMap.get(dynSource.getAtomKey());
     }
 
@@ -283,30 +334,15 @@ public class ExperimentSet implements ValueSet {
     }
 
     public double[] getFields() {
-        double[] fields = new double[fieldList.size()];
-        int i = 0;
-        for (Double field : fieldList) {
-            fields[i++] = field;
-        }
-        return fields;
+        return getStateIndex().fields().clone();
     }
 
     public double[] getTemperatures() {
-        double[] temperatures = new double[tempList.size()];
-        int i = 0;
-        for (Double temperature : tempList) {
-            temperatures[i++] = temperature;
-        }
-        return temperatures;
+        return getStateIndex().temperatures().clone();
     }
 
     public double[] getB1Field() {
-        double[] b1Fields = new double[b1List.size()];
-        int i = 0;
-        for (double b1Field : b1List) {
-            b1Fields[i++] = b1Field;
-        }
-        return b1Fields;
+        return getStateIndex().b1Fields().clone();
     }
 
     public Map<Atom, ValueWithError> getParMapData(String eqnName, String state, String parName) {
@@ -18,16 +18,16 @@ import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
 import org.apache.commons.math3.optim.nonlinear.scalar.noderiv.BOBYQAOptimizer;
 import org.apache.commons.math3.optim.nonlinear.scalar.noderiv.CMAESOptimizer;
 import org.apache.commons.math3.random.RandomGenerator;
-import org.apache.commons.math3.random.SynchronizedRandomGenerator;
 import org.apache.commons.math3.random.Well19937c;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math3.util.FastMath;
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.sampling.distribution.NormalizedGaussianSampler;
 import org.comdnmr.util.CoMDPreferences;
+import org.comdnmr.util.RandomStreams;
 
 public class Fitter {
 
-    static RandomGenerator random = new SynchronizedRandomGenerator(new Well19937c());
-
     boolean reportFitness = false;
     int reportAt = 10;
     double[][] parValues;
@@ -40,6 +40,8 @@ public class Fitter {
     double[] start;
     double inputSigma;
     BiFunction<double[], double[][], Double> valuesFunction = null;
+    long randomSeed = 0;
+    long lastSeed = 0;
 
     private Fitter() {
 
@@ -89,9 +91,27 @@ public class Fitter {
         this.errValues = errValues;
     }
 
+    /**
+     * Set the master seed of the random numbers used by {@link #bootstrap}.
+     * With 0 a new seed is chosen for each bootstrap.
+     *
+     * @param seed the master seed
+     */
+    public void setRandomSeed(long seed) {
+        randomSeed = seed;
+    }
+
+    /**
+     * @return the master seed used by the most recent bootstrap, or 0 if
+     * there hasn't been one
+     */
+    public long getRandomSeed() {
+        return lastSeed;
+    }
+
     class Optimizer implements MultivariateFunction {
 
-        RandomGenerator random = new SynchronizedRandomGenerator(new Well19937c());
+        RandomGenerator random = new Well19937c();
 
         public class Checker extends SimpleValueChecker {
 
@@ -258,12 +278,17 @@ public class Fitter {
         reportFitness = false;
         int nPar = start.length;
         parValues = new double[nPar + 1][nSim];
+        long seed = RandomStreams.masterSeed(randomSeed == 0 ? CoMDPreferences.getRandomSeed() : randomSeed);
+        lastSeed = seed;
+        UniformRandomProvider[] streams = RandomStreams.split(RandomStreams.create(seed), nSim);
 
         IntStream.range(0, nSim).parallel().forEach(iSim -> {
             double[][] newX = new double[xValues.length][yValues.length];
             double[] newY = new double[yValues.length];
             double[] newErr = new double[yValues.length];
             Optimizer optimizer = new Optimizer();
+            UniformRandomProvider random = streams[iSim];
+            NormalizedGaussianSampler gaussian = RandomStreams.gaussian(random);
             for (int iValue = 0; iValue < yValues.length; iValue++) {
                 int rI = random.nextInt(yValues.length);
                 for (int xIndex = 0; xIndex < newX.length; xIndex++) {
@@ -271,7 +296,7 @@ public class Fitter {
                 }
                 if (parametric) {
 //                    System.out.println(iValue + ": yPred " + yPred[iValue] + " " + "errVal " + errValues[iValue]);
-                    newY[iValue] = yPred[iValue] + errValues[iValue] * random.nextGaussian(); //parametric
+                    newY[iValue] = yPred[iValue] + errValues[iValue] * gaussian.sample(); //parametric
                 } else {
                     newY[iValue] = yValues[rI]; //non-parametric
                 }
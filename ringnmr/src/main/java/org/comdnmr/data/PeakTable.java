@@ -0,0 +1,299 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.data;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A tab separated table of peak intensities or rates, read in one pass. The
+ * first line is the header, kept as strings. Each later line is a row whose
+ * fields are located by their trimmed start and end rather than split into
+ * strings, and whose numeric fields are parsed into a primitive array as
+ * the line is read. Fields that aren't numbers are kept as their status, so
+ * getDouble fails on them just as Double.parseDouble would on the field's
+ * text. Reading a table touches no shared state, so the tables of several
+ * files can be read at once. A table isn't changed once read, and keeps the
+ * content hash of its file, so it can be reused while the file is unchanged.
+ */
+final class PeakTable {
+
+    static final byte NUMBER = 0;
+    static final byte BLANK_OR_NA = 1;
+    static final byte INVALID = 2;
+    private static final double[] POWERS_OF_10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final int MAX_FAST_DIGITS = 15;
+
+    final Path path;
+    final String hash;
+    final long nBytes;
+    final boolean skipComments;
+    final String[] header;
+    final List<Row> rows;
+    final long readNanos;
+
+    private PeakTable(Path path, String hash, long nBytes, boolean skipComments, String[] header, List<Row> rows, long readNanos) {
+        this.path = path;
+        this.hash = hash;
+        this.nBytes = nBytes;
+        this.skipComments = skipComments;
+        this.header = header;
+        this.rows = rows;
+        this.readNanos = readNanos;
+    }
+
+    static final class Row {
+
+        private final String line;
+        private final int[] starts;
+        private final int[] ends;
+        private final double[] values;
+        private final byte[] status;
+
+        private Row(String line, int nFields) {
+            this.line = line;
+            starts = new int[nFields];
+            ends = new int[nFields];
+            values = new double[nFields];
+            status = new byte[nFields];
+        }
+
+        int size() {
+            return starts.length;
+        }
+
+        /**
+         * @return the trimmed text of a field
+         */
+        String getString(int i) {
+            return line.substring(starts[i], ends[i]);
+        }
+
+        boolean isBlankOrNA(int i) {
+            return status[i] == BLANK_OR_NA;
+        }
+
+        boolean isNumber(int i) {
+            return status[i] == NUMBER;
+        }
+
+        /**
+         * @return the value of a numeric field
+         * @throws NumberFormatException if the field isn't a number
+         */
+        double getDouble(int i) {
+            if (status[i] != NUMBER) {
+                throw new NumberFormatException("For input string: \"" + getString(i) + "\"");
+            }
+            return values[i];
+        }
+    }
+
+    /**
+     * Read a table.
+     *
+     * @param path the file
+     * @param skipComments whether lines starting with # are skipped
+     * @return the table, with a null header if the file has no lines
+     * @throws IOException if the file can't be read
+     */
+    static PeakTable read(Path path, boolean skipComments) throws IOException {
+        long start = System.nanoTime();
+        byte[] bytes = Files.readAllBytes(path);
+        return read(path, bytes, ReloadManifest.hash(bytes), skipComments, start);
+    }
+
+    /**
+     * Read a table from the contents of its file.
+     *
+     * @param path the file
+     * @param bytes the contents of the file
+     * @param hash the content hash of the file
+     * @param skipComments whether lines starting with # are skipped
+     * @param start the time the read started, in nanoseconds
+     * @return the table, with a null header if the file has no lines
+     * @throws IOException if the contents can't be decoded
+     */
+    static PeakTable read(Path path, byte[] bytes, String hash, boolean skipComments, long start) throws IOException {
+        String[] header = null;
+        List<Row> rows = new ArrayList<>();
+        try (BufferedReader fileReader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(bytes), StandardCharsets.UTF_8.newDecoder()))) {
+            while (true) {
+                String line = fileReader.readLine();
+                if (line == null) {
+                    break;
+                }
+                int first = skipSpace(line, 0, line.length());
+                if (first == line.length()) {
+                    continue;
+                }
+                if (skipComments && (line.charAt(first) == '#')) {
+                    continue;
+                }
+                if (header == null) {
+                    header = split(line);
+                } else {
+                    rows.add(tokenize(line));
+                }
+            }
+        }
+        return new PeakTable(path, hash, bytes.length, skipComments, header, rows, System.nanoTime() - start);
+    }
+
+    /**
+     * @return the fields of the line, as line.split("\t", -1) gives them
+     */
+    static String[] split(String line) {
+        String[] fields = new String[countFields(line)];
+        int fieldStart = 0;
+        for (int i = 0; i < fields.length; i++) {
+            int tab = line.indexOf('\t', fieldStart);
+            int fieldEnd = tab == -1 ? line.length() : tab;
+            fields[i] = line.substring(fieldStart, fieldEnd);
+            fieldStart = fieldEnd + 1;
+        }
+        return fields;
+    }
+
+    static Row tokenize(String line) {
+        Row row = new Row(line, countFields(line));
+        int fieldStart = 0;
+        for (int i = 0; i < row.size(); i++) {
+            int tab = line.indexOf('\t', fieldStart);
+            int fieldEnd = tab == -1 ? line.length() : tab;
+            int start = skipSpace(line, fieldStart, fieldEnd);
+            int end = fieldEnd;
+            while ((end > start) && (line.charAt(end - 1) <= ' ')) {
+                end--;
+            }
+            row.starts[i] = start;
+            row.ends[i] = end;
+            if ((end == start) || ((end - start == 2) && line.regionMatches(true, start, "NA", 0, 2))) {
+                row.status[i] = BLANK_OR_NA;
+            } else {
+                parse(row, i);
+            }
+            fieldStart = fieldEnd + 1;
+        }
+        return row;
+    }
+
+    private static int countFields(String line) {
+        int nFields = 1;
+        for (int i = line.indexOf('\t'); i != -1; i = line.indexOf('\t', i + 1)) {
+            nFields++;
+        }
+        return nFields;
+    }
+
+    private static int skipSpace(String line, int start, int end) {
+        while ((start < end) && (line.charAt(start) <= ' ')) {
+            start++;
+        }
+        return start;
+    }
+
+    // Parse plain decimals with at most 15 significant digits and a small
+    // exponent directly: the digits and the power of ten are both exact as
+    // doubles, so one multiply or divide gives the correctly rounded value,
+    // the same as Double.parseDouble. Anything else that could be a number
+    // goes to Double.parseDouble.
+    private static void parse(Row row, int iField) {
+        String line = row.line;
+        int start = row.starts[iField];
+        int end = row.ends[iField];
+        int i = start;
+        boolean negative = false;
+        char c = line.charAt(i);
+        if ((c == '-') || (c == '+')) {
+            negative = c == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int nDigits = 0;
+        int nSignificant = 0;
+        int scale = 0;
+        boolean fraction = false;
+        boolean fast = true;
+        for (; i < end; i++) {
+            c = line.charAt(i);
+            if ((c >= '0') && (c <= '9')) {
+                nDigits++;
+                if ((mantissa != 0) || (c != '0')) {
+                    nSignificant++;
+                }
+                mantissa = 10 * mantissa + (c - '0');
+                if (fraction) {
+                    scale--;
+                }
+            } else if ((c == '.') && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if ((i < end) && ((line.charAt(i) == 'e') || (line.charAt(i) == 'E')) && (nDigits > 0)) {
+            int j = i + 1;
+            boolean negativeExponent = false;
+            if ((j < end) && ((line.charAt(j) == '-') || (line.charAt(j) == '+'))) {
+                negativeExponent = line.charAt(j) == '-';
+                j++;
+            }
+            int exponent = 0;
+            int nExpDigits = 0;
+            for (; (j < end) && (line.charAt(j) >= '0') && (line.charAt(j) <= '9') && (nExpDigits < 4); j++) {
+                exponent = 10 * exponent + (line.charAt(j) - '0');
+                nExpDigits++;
+            }
+            if (nExpDigits > 0) {
+                scale += negativeExponent ? -exponent : exponent;
+                i = j;
+            }
+        }
+        if ((i != end) || (nDigits == 0) || (nSignificant > MAX_FAST_DIGITS) || (Math.abs(scale) >= POWERS_OF_10.length)) {
+            fast = false;
+        }
+        if (fast) {
+            double value = scale < 0 ? mantissa / POWERS_OF_10[-scale] : mantissa * POWERS_OF_10[scale];
+            row.values[iField] = negative ? -value : value;
+            row.status[iField] = NUMBER;
+            return;
+        }
+        c = line.charAt(start);
+        if (Character.isLetter(c) && (c != 'N') && (c != 'I')) {
+            row.status[iField] = INVALID;
+            return;
+        }
+        try {
+            row.values[iField] = Double.parseDouble(line.substring(start, end));
+            row.status[iField] = NUMBER;
+        } catch (NumberFormatException nFE) {
+            row.status[iField] = INVALID;
+        }
+    }
+}
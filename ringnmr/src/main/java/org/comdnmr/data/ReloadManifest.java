@@ -0,0 +1,255 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.data;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.comdnmr.util.CoMDOptions;
+import org.nmrfx.chemistry.relax.ResonanceSource;
+
+/**
+ * Content hashes describing what the fit results of an experiment set were
+ * computed from, written next to the results file. It holds the hash of the
+ * fit settings, the hash of each input file of the project and, for each
+ * fitted resonance, the hash of the data it was fit to. When a project is
+ * reloaded the results of a resonance can be kept if the settings and its
+ * data hash are unchanged, so only resonances whose data changed need to be
+ * fit again.
+ */
+public class ReloadManifest {
+
+    public static final String EXTENSION = ".manifest.json";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String SETTINGS = "settings";
+    private static final String INPUTS = "inputs";
+    private static final String RESONANCES = "resonances";
+
+    private String settings = null;
+    private final Map<String, String> inputs = new TreeMap<>();
+    private final Map<String, String> resonances = new HashMap<>();
+
+    /**
+     * @param resultsFileName the name of the text results file
+     * @return the path of the manifest for the results file: the file name
+     * with its extension replaced by {@link #EXTENSION}
+     */
+    public static Path manifestPath(String resultsFileName) {
+        Path path = Paths.get(resultsFileName);
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        if (dot > 0) {
+            fileName = fileName.substring(0, dot);
+        }
+        return path.resolveSibling(fileName + EXTENSION);
+    }
+
+    /**
+     * Read a manifest.
+     *
+     * @param path the manifest file
+     * @return the manifest, or empty if the file doesn't exist or can't be
+     * read
+     */
+    public static Optional<ReloadManifest> load(Path path) {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try {
+            Map<String, Object> map = objectMapper.readValue(path.toFile(), Map.class);
+            ReloadManifest manifest = new ReloadManifest();
+            manifest.settings = (String) map.get(SETTINGS);
+            manifest.inputs.putAll((Map<String, String>) map.get(INPUTS));
+            manifest.resonances.putAll((Map<String, String>) map.get(RESONANCES));
+            return Optional.of(manifest);
+        } catch (IOException | ClassCastException | NullPointerException e) {
+            Logger.getLogger(ReloadManifest.class.getName()).log(Level.WARNING, "Can't read manifest " + path, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Write the manifest. Only the resonances with results in the experiment
+     * set are written.
+     *
+     * @param path the file to write
+     * @param experimentSet the experiment set the manifest describes
+     * @throws IOException if the file can't be written
+     */
+    public synchronized void save(Path path, ExperimentSet experimentSet) throws IOException {
+        Map<String, String> fitHashes = new TreeMap<>();
+        for (ExperimentResult result : experimentSet.getExperimentResults()) {
+            String atomKey = result.getResonanceSource().getAtomKey();
+            String dataHash = resonances.get(atomKey);
+            if (dataHash != null) {
+                fitHashes.put(atomKey, dataHash);
+            }
+        }
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put(SETTINGS, settings);
+        map.put(INPUTS, inputs);
+        map.put(RESONANCES, fitHashes);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), map);
+    }
+
+    /**
+     * @return the hash of the settings the results were fit with, or null if
+     * they aren't known
+     */
+    public synchronized String getSettings() {
+        return settings;
+    }
+
+    public synchronized void setSettings(String settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * @return a copy of the input file hashes, by file name
+     */
+    public synchronized Map<String, String> getInputs() {
+        return new TreeMap<>(inputs);
+    }
+
+    public synchronized void setInput(String fileName, String hash) {
+        inputs.put(fileName, hash);
+    }
+
+    public synchronized void clearInputs() {
+        inputs.clear();
+    }
+
+    /**
+     * Record the hash of the data a resonance was fit to.
+     */
+    public synchronized void setFit(ResonanceSource resSource, String dataHash) {
+        resonances.put(resSource.getAtomKey(), dataHash);
+    }
+
+    public synchronized void clearFits() {
+        resonances.clear();
+    }
+
+    /**
+     * @return true if the resonance was fit to data with the given hash
+     */
+    public synchronized boolean isFitTo(ResonanceSource resSource, String dataHash) {
+        return dataHash.equals(resonances.get(resSource.getAtomKey()));
+    }
+
+    /**
+     * @return the hex encoded SHA-256 digest of the bytes
+     */
+    public static String hash(byte[] bytes) {
+        return HexFormat.of().formatHex(newDigest().digest(bytes));
+    }
+
+    /**
+     * Hash the settings that change the result of a fit. The number of
+     * threads doesn't, so it isn't included.
+     *
+     * @param options the fit options
+     * @param expMode the experiment mode
+     * @param equationNames the equations fit
+     * @return the hash
+     */
+    public static String hashSettings(CoMDOptions options, String expMode, List<String> equationNames) {
+        Object[] values = {expMode, equationNames, options.getRefField(), options.getCpmgMaxFreq(),
+            options.getRexRatio(), options.getDeltaABDiff(), options.getStartRadius(),
+            options.getFinalRadius(), options.getTolerance(), options.getNoExEarlyStop(),
+            options.getNoExRChiSqLimit(), options.getWeightFit(), options.getAbsValueFit(),
+            options.getNonParametricBootstrap(), options.getNeuralNetworkGuess(), options.getSampleSize(),
+            options.getRandomSeed(), options.getOptimizer(), options.getBootStrapOptimizer()};
+        StringBuilder sBuilder = new StringBuilder();
+        for (Object value : values) {
+            sBuilder.append(value).append('\t');
+        }
+        return hash(sBuilder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Hash the data of a resonance in every experiment of the set, along with
+     * the conditions of each experiment. The state maps of the set must be
+     * set up, as the state of each experiment is included.
+     *
+     * @param experimentSet the experiment set
+     * @param resSource the resonance
+     * @return the hash
+     */
+    public static String hashData(ExperimentSet experimentSet, ResonanceSource resSource) {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocate(Double.BYTES);
+        List<Experiment> experiments = experimentSet.getExperimentData().stream()
+                .sorted(Comparator.comparing(Experiment::getName)).toList();
+        for (Experiment experiment : experiments) {
+            ExperimentData expData = experiment.getResidueData(resSource);
+            if (expData == null) {
+                continue;
+            }
+            String conditions = String.join("\t", experiment.getName(), experiment.getNucleusName(),
+                    experiment.getState(), String.valueOf(experiment.getB0Field()),
+                    String.valueOf(experiment.getTemperature()), String.valueOf(experiment.getErrFraction()),
+                    String.valueOf(experiment.getExtras()), String.valueOf(experiment.getConstraints()));
+            if (experiment instanceof OffsetExperiment offsetExperiment) {
+                conditions += "\t" + offsetExperiment.getB1Field();
+            }
+            digest.update(conditions.getBytes(StandardCharsets.UTF_8));
+            for (double[] xValues : expData.getXValues()) {
+                update(digest, buffer, xValues);
+            }
+            update(digest, buffer, expData.getYValues());
+            update(digest, buffer, expData.getErrValues());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, ByteBuffer buffer, double[] values) {
+        buffer.clear();
+        buffer.putDouble(values.length);
+        digest.update(buffer.array());
+        for (double value : values) {
+            buffer.clear();
+            buffer.putDouble(value);
+            digest.update(buffer.array());
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
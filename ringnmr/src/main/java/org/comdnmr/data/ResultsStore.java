@@ -0,0 +1,480 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.data;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.comdnmr.eqnfit.CurveFit;
+import org.comdnmr.eqnfit.FitResult;
+import org.comdnmr.eqnfit.PlotEquation;
+import org.comdnmr.fit.FitQuality;
+import org.nmrfx.chemistry.Atom;
+import org.nmrfx.chemistry.relax.ResonanceSource;
+
+/**
+ * Binary store of the fit results of an experiment set, written next to the
+ * tab separated results file. Unlike the text file it keeps the bootstrap
+ * samples and fit statistics of each equation, so a project can be reopened
+ * without fitting again. Each resonance is one record holding its curve
+ * fits and, for each equation, the fit parameter names, fit quality,
+ * statistics and the samples of each parameter as a contiguous array. An
+ * index at the end of the file gives the offset of each resonance's record
+ * by its atom key, so a {@link Reader} can memory map the file and decode
+ * only the records that are needed.
+ * <p>
+ * The fit result of a group fit holds the curves of every resonance in the
+ * group. A fit result read from the store holds only the curves of its own
+ * resonance, with the group's samples.
+ */
+public class ResultsStore {
+
+    public static final String EXTENSION = ".rbin";
+    static final int MAGIC = 0x52494e47;
+    static final int VERSION = 1;
+
+    private ResultsStore() {
+    }
+
+    /**
+     * @param resultsFileName the name of the text results file
+     * @return the path of the store for the results file: the file name with
+     * its extension replaced by {@link #EXTENSION}
+     */
+    public static Path storePath(String resultsFileName) {
+        Path path = Paths.get(resultsFileName);
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        if (dot > 0) {
+            fileName = fileName.substring(0, dot);
+        }
+        return path.resolveSibling(fileName + EXTENSION);
+    }
+
+    /**
+     * Write the results of the experiment set. The store is written to a
+     * temporary file in the same directory that then replaces the file, so
+     * an interrupted save leaves the previous store in place.
+     *
+     * @param path the file to write
+     * @param experimentSet the experiment set
+     * @throws IOException if the file can't be written
+     */
+    public static void save(Path path, ExperimentSet experimentSet) throws IOException {
+        Path dirPath = path.toAbsolutePath().getParent();
+        Path tempPath = Files.createTempFile(dirPath, path.getFileName().toString(), ".tmp");
+        try {
+            write(tempPath, experimentSet);
+            try {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnsE) {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    static void write(Path path, ExperimentSet experimentSet) throws IOException {
+        List<ExperimentResult> results = new ArrayList<>(experimentSet.getExperimentResults());
+        results.sort(Comparator.comparingInt(a -> a.getAtom().getIndex()));
+        Map<String, Long> index = new LinkedHashMap<>();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, experimentSet.getExpMode());
+            for (ExperimentResult result : results) {
+                index.put(result.getResonanceSource().getAtomKey(), (long) out.size());
+                writeResult(out, result);
+            }
+            long indexOffset = out.size();
+            out.writeInt(index.size());
+            for (Map.Entry<String, Long> entry : index.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.writeLong(indexOffset);
+            if (out.size() == Integer.MAX_VALUE) {
+                throw new IOException("Results too large for store " + path);
+            }
+        }
+    }
+
+    /**
+     * Read all the results in a store into a new experiment set.
+     *
+     * @param fileName the name of the text results file the store was
+     * written with, which names the experiment set and its peaks
+     * @param path the store
+     * @param dynamicsSourceFactory the factory for the resonance sources
+     * @return the experiment set
+     * @throws IOException if the store can't be read
+     */
+    public static ExperimentSet load(String fileName, Path path, DynamicsSource dynamicsSourceFactory) throws IOException {
+        String fileTail = Paths.get(fileName).getFileName().toString();
+        fileTail = fileTail.substring(0, fileTail.indexOf('.'));
+        ExperimentSet experimentSet = new ExperimentSet(fileTail, fileName);
+        // every record is read, so read the file into memory rather than map it
+        try (Reader reader = new Reader(path, false)) {
+            experimentSet.setExpMode(reader.getExpMode());
+            for (String key : reader.keys()) {
+                reader.read(key, experimentSet, fileTail, dynamicsSourceFactory);
+            }
+        }
+        return experimentSet;
+    }
+
+    /**
+     * Random access to the records of a store.
+     */
+    public static class Reader implements Closeable {
+
+        private final ByteBuffer buffer;
+        private final String expMode;
+        private final Map<String, Integer> index = new LinkedHashMap<>();
+
+        /**
+         * Open a store for random access, memory mapping the file.
+         *
+         * @param path the store
+         * @throws IOException if the store can't be read
+         */
+        public Reader(Path path) throws IOException {
+            this(path, true);
+        }
+
+        /**
+         * Open a store. A mapping is only released when the buffer is garbage
+         * collected, and on some platforms a mapped file can't be replaced,
+         * so a store that is read in full should be read into memory.
+         *
+         * @param path the store
+         * @param map if true memory map the file, otherwise read it into
+         * memory
+         * @throws IOException if the store can't be read
+         */
+        Reader(Path path, boolean map) throws IOException {
+            if (map) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    long size = channel.size();
+                    if (size > Integer.MAX_VALUE) {
+                        throw new IOException("Results store too large " + path);
+                    }
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                }
+            } else {
+                buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            }
+            int size = buffer.capacity();
+            if ((size < 16) || (buffer.getInt(0) != MAGIC)) {
+                throw new IOException("Not a results store " + path);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported results store version " + buffer.getInt(4));
+            }
+            ByteBuffer view = buffer.duplicate();
+            view.position(8);
+            expMode = readString(view);
+            view.position((int) buffer.getLong(size - 8));
+            int nResults = view.getInt();
+            for (int i = 0; i < nResults; i++) {
+                String key = readString(view);
+                index.put(key, (int) view.getLong());
+            }
+        }
+
+        public String getExpMode() {
+            return expMode;
+        }
+
+        /**
+         * @return the atom keys of the stored resonances
+         */
+        public Set<String> keys() {
+            return index.keySet();
+        }
+
+        /**
+         * Read the results of a resonance into an experiment set.
+         *
+         * @param resonanceSource the resonance
+         * @param experimentSet the experiment set to add the results to
+         * @return the results, or empty if the store has none for the
+         * resonance
+         */
+        public Optional<ExperimentResult> read(ResonanceSource resonanceSource, ExperimentSet experimentSet) {
+            Integer offset = index.get(resonanceSource.getAtomKey());
+            if (offset == null) {
+                return Optional.empty();
+            }
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            readAtomSpecifiers(view);
+            ExperimentResult result = readResult(view, experimentSet, resonanceSource);
+            experimentSet.addExperimentResult(resonanceSource, result);
+            return Optional.of(result);
+        }
+
+        ExperimentResult read(String key, ExperimentSet experimentSet, String fileTail,
+                DynamicsSource dynamicsSourceFactory) throws IOException {
+            ByteBuffer view = buffer.duplicate();
+            view.position(index.get(key));
+            String[] atomSpecifiers = readAtomSpecifiers(view);
+            int peakNum = view.getInt(view.position() + 8);
+            Optional<ResonanceSource> resSourceOpt = dynamicsSourceFactory.createFromAtomSpecifiers(fileTail + "." + peakNum, atomSpecifiers);
+            if (resSourceOpt.isEmpty()) {
+                throw new IOException("Can't generate resonance source from peak " + fileTail + "." + peakNum);
+            }
+            ResonanceSource resSource = resSourceOpt.get();
+            ExperimentResult result = readResult(view, experimentSet, resSource);
+            experimentSet.addExperimentResult(resSource, result);
+            return result;
+        }
+
+        /**
+         * The file isn't held open once the reader is created, so there is
+         * nothing to release beyond the buffer itself.
+         */
+        @Override
+        public void close() {
+        }
+    }
+
+    static void writeResult(DataOutputStream out, ExperimentResult result) throws IOException {
+        Atom[] atoms = result.getResonanceSource().getAtoms();
+        out.writeInt(atoms.length);
+        for (Atom atom : atoms) {
+            writeString(out, atom.getResidueNumber() + "." + atom.getName());
+        }
+        out.writeInt(result.groupId);
+        out.writeInt(result.groupSize);
+        out.writeInt(result.peakNum);
+        writeString(out, result.getBestEquationName());
+        out.writeInt(result.curveFits.size());
+        for (Map.Entry<String, Map<String, CurveFit>> entry : result.curveFits.entrySet()) {
+            writeString(out, entry.getKey());
+            Collection<CurveFit> curveFits = entry.getValue().values();
+            out.writeInt(curveFits.size());
+            for (CurveFit curveFit : curveFits) {
+                writeCurveFit(out, curveFit);
+            }
+            FitResult fitResult = result.fitResults.get(entry.getKey());
+            out.writeBoolean(fitResult != null);
+            if (fitResult != null) {
+                writeFitResult(out, fitResult);
+            }
+        }
+    }
+
+    static void writeCurveFit(DataOutputStream out, CurveFit curveFit) throws IOException {
+        PlotEquation plotEquation = curveFit.getEquation();
+        writeString(out, curveFit.getState());
+        writeString(out, plotEquation.getExpType());
+        writeDoubles(out, plotEquation.getPars());
+        writeDoubles(out, plotEquation.getErrs());
+        writeDoubles(out, plotEquation.getExtras());
+        Map<String, Double> parMap = curveFit.getParMap();
+        out.writeInt(parMap.size());
+        for (Map.Entry<String, Double> entry : parMap.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeDouble(entry.getValue() == null ? Double.NaN : entry.getValue());
+        }
+    }
+
+    static void writeFitResult(DataOutputStream out, FitResult fitResult) throws IOException {
+        String[] fitParNames = fitResult.getFitParNames();
+        out.writeInt(fitParNames.length);
+        for (String fitParName : fitParNames) {
+            writeString(out, fitParName);
+        }
+        out.writeInt(fitResult.getnGroupPars());
+        out.writeBoolean(fitResult.exchangeValid());
+        FitQuality fitQuality = fitResult.getFitQuality();
+        out.writeDouble(nanIfNull(fitQuality.rms()));
+        out.writeDouble(nanIfNull(fitQuality.aic()));
+        out.writeDouble(nanIfNull(fitQuality.aicc()));
+        out.writeDouble(nanIfNull(fitQuality.rChiSq()));
+        out.writeInt(fitQuality.n() == null ? -1 : fitQuality.n());
+        CurveFit.CurveFitStats stats = fitResult.getCurveFitStats();
+        out.writeBoolean(stats != null);
+        if (stats != null) {
+            writeString(out, stats.getRefineOptimizer());
+            writeString(out, stats.getBootstrapOptimizer());
+            out.writeLong(stats.getRefineTime());
+            out.writeLong(stats.getBootstrapTime());
+            out.writeInt(stats.nSamples());
+            out.writeBoolean(stats.isAbsMode());
+            out.writeBoolean(stats.isNonParametricMode());
+            out.writeDouble(stats.getStartRadius());
+            out.writeDouble(stats.getFinalRadius());
+            out.writeDouble(stats.getTolerance());
+            out.writeBoolean(stats.isWeight());
+            out.writeLong(stats.getRandomSeed());
+        }
+        Map<String, double[]> simsMap = fitResult.getSimsMap();
+        out.writeInt(simsMap == null ? -1 : simsMap.size());
+        if (simsMap != null) {
+            for (Map.Entry<String, double[]> entry : simsMap.entrySet()) {
+                writeString(out, entry.getKey());
+                writeDoubles(out, entry.getValue());
+            }
+        }
+    }
+
+    static String[] readAtomSpecifiers(ByteBuffer view) {
+        String[] atomSpecifiers = new String[view.getInt()];
+        for (int i = 0; i < atomSpecifiers.length; i++) {
+            atomSpecifiers[i] = readString(view);
+        }
+        return atomSpecifiers;
+    }
+
+    static ExperimentResult readResult(ByteBuffer view, ExperimentSet experimentSet, ResonanceSource resSource) {
+        int groupId = view.getInt();
+        int groupSize = view.getInt();
+        int peakNum = view.getInt();
+        ExperimentResult result = new ExperimentResult(experimentSet, resSource, groupId, groupSize, peakNum);
+        String bestEquation = readString(view);
+        int nEquations = view.getInt();
+        for (int iEqn = 0; iEqn < nEquations; iEqn++) {
+            String equationName = readString(view);
+            int nCurves = view.getInt();
+            List<CurveFit> curveFits = new ArrayList<>(nCurves);
+            for (int iCurve = 0; iCurve < nCurves; iCurve++) {
+                CurveFit curveFit = readCurveFit(view, equationName, resSource);
+                curveFits.add(curveFit);
+                result.addCurveFit(curveFit, equationName.equals(bestEquation));
+            }
+            if (view.get() != 0) {
+                result.addFitResult(readFitResult(view, equationName, curveFits));
+            }
+        }
+        return result;
+    }
+
+    static CurveFit readCurveFit(ByteBuffer view, String equationName, ResonanceSource resSource) {
+        String state = readString(view);
+        String expType = readString(view);
+        double[] pars = readDoubles(view);
+        double[] errs = readDoubles(view);
+        double[] extras = readDoubles(view);
+        int nPars = view.getInt();
+        Map<String, Double> parMap = new HashMap<>();
+        for (int i = 0; i < nPars; i++) {
+            String parName = readString(view);
+            parMap.put(parName, view.getDouble());
+        }
+        PlotEquation plotEquation = new PlotEquation(expType, equationName, pars, errs, extras);
+        return new CurveFit(state, resSource, parMap, plotEquation);
+    }
+
+    static FitResult readFitResult(ByteBuffer view, String equationName, List<CurveFit> curveFits) {
+        String[] fitParNames = new String[view.getInt()];
+        for (int i = 0; i < fitParNames.length; i++) {
+            fitParNames[i] = readString(view);
+        }
+        int nGroupPars = view.getInt();
+        boolean hasExchange = view.get() != 0;
+        Double rms = nullIfNaN(view.getDouble());
+        Double aic = nullIfNaN(view.getDouble());
+        Double aicc = nullIfNaN(view.getDouble());
+        Double rChiSq = nullIfNaN(view.getDouble());
+        int n = view.getInt();
+        FitQuality fitQuality = new FitQuality(rms, aic, aicc, rChiSq, n < 0 ? null : n);
+        CurveFit.CurveFitStats stats = null;
+        if (view.get() != 0) {
+            String refineOpt = readString(view);
+            String bootstrapOpt = readString(view);
+            long refineTime = view.getLong();
+            long bootstrapTime = view.getLong();
+            int nSamples = view.getInt();
+            boolean absMode = view.get() != 0;
+            boolean nonParametric = view.get() != 0;
+            double startRadius = view.getDouble();
+            double finalRadius = view.getDouble();
+            double tolerance = view.getDouble();
+            boolean weight = view.get() != 0;
+            long seed = view.getLong();
+            stats = new CurveFit.CurveFitStats(refineOpt, bootstrapOpt, refineTime, bootstrapTime, nSamples,
+                    absMode, nonParametric, startRadius, finalRadius, tolerance, weight, seed);
+        }
+        int nSims = view.getInt();
+        Map<String, double[]> simsMap = null;
+        if (nSims >= 0) {
+            simsMap = new HashMap<>();
+            for (int i = 0; i < nSims; i++) {
+                String key = readString(view);
+                simsMap.put(key, readDoubles(view));
+            }
+        }
+        return new FitResult(fitParNames, curveFits, equationName, nGroupPars, fitQuality, simsMap, hasExchange, stats);
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer view) {
+        byte[] bytes = new byte[view.getInt()];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    static double[] readDoubles(ByteBuffer view) {
+        double[] values = new double[view.getInt()];
+        view.asDoubleBuffer().get(values);
+        view.position(view.position() + 8 * values.length);
+        return values;
+    }
+
+    static double nanIfNull(Double value) {
+        return value == null ? Double.NaN : value;
+    }
+
+    static Double nullIfNaN(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
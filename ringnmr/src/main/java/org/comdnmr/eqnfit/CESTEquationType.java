@@ -45,6 +45,12 @@ public interface CESTEquationType extends EquationType {
         return y[0];
     }
 
+    @Override
+    default void calculate(double[] par, int[] map, double[][] x, int idNum, double[] yCalc) {
+        double[] y = calculate(par, map, x, idNum);
+        System.arraycopy(y, 0, yCalc, 0, y.length);
+    }
+
     @Override
     default double[] guess(double[][] xValues, double[] yValues, int[][] map, int[] idNums, int nID) {
         double[] guesses;
@@ -22,7 +22,7 @@
  */
 package org.comdnmr.eqnfit;
 
-import org.comdnmr.util.MtxExp;
+import org.comdnmr.util.BlochMcConnellPropagator;
 import org.comdnmr.util.ANNLoader;
 import org.comdnmr.util.SavitzkyGolay;
 import org.comdnmr.util.Utilities;
@@ -160,6 +160,7 @@ public class CESTEquations {
         DMatrixRMaj K1 = new DMatrixRMaj(K);
 
         DMatrixRMaj Z = new DMatrixRMaj(La.length, La[0].length);
+        BlochMcConnellPropagator propagator = BlochMcConnellPropagator.forSize(La.length);
 
         for (int i = 0; i < omegarf.length; i++) {
             double omegaB1 = b1Field[i] * TWO_PI;
@@ -181,11 +182,11 @@ public class CESTEquations {
 
             CommonOps_DDRM.scale(tdelay, Z);
 
-            DMatrixRMaj at = MtxExp.matrixExp(Z);
+            propagator.exp(Z);
 
-            double a30 = at.get(3, 0);
-            double a33 = at.get(3, 3);
-            double a36 = at.get(3, 6);
+            double a30 = propagator.get(3, 0);
+            double a33 = propagator.get(3, 3);
+            double a36 = propagator.get(3, 6);
             double magA = a30 * m0[0] + a33 * m0[3] + a36 * m0[6];
             magA = magA - (a30 * m1[0] + a33 * m1[3] + a36 * m1[6]);
             magA = magA / 2;
@@ -22,17 +22,15 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.IntStream;
 
 import org.apache.commons.math3.optim.PointValuePair;
-import org.apache.commons.math3.random.RandomGenerator;
-import org.apache.commons.math3.random.SynchronizedRandomGenerator;
-import org.apache.commons.math3.random.Well19937c;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math3.util.FastMath;
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.sampling.distribution.NormalizedGaussianSampler;
 import org.comdnmr.util.CoMDOptions;
+import org.comdnmr.util.RandomStreams;
 
 public class CESTFitFunction extends FitFunction {
 
-    static RandomGenerator random = new SynchronizedRandomGenerator(new Well19937c());
-
     int[] r2Mask = {0, 1, 3};
     double[] rexErrors = new double[nID];
 
@@ -83,15 +81,21 @@ public class CESTFitFunction extends FitFunction {
 
     @Override
     public double value(double[] normPar) {
-        double[] par = deNormalize(normPar);
+        double[] par = deNormalizeToBuffer(normPar);
+        setupProfiles();
 
         double sumAbs = 0.0;
         double sumSq = 0.0;
-        double[] yCalc = new double[yValues.length];
+        if ((yCalcBuffer == null) || (yCalcBuffer.length != yValues.length)) {
+            yCalcBuffer = new double[yValues.length];
+        }
+        double[] yCalc = yCalcBuffer;
         for (int id = 0; id < map.length; id++) {
-            double[][] x = CESTEquations.getXValues(xValues, idNums, id);
-            double[] yCalc1 = equation.calculate(par, map[id], x, id);
-            int[] indicies = CESTEquations.getIndicies(idNums, id);
+            if ((id >= profileIndices.length) || (profileIndices[id].length == 0)) {
+                continue;
+            }
+            double[] yCalc1 = equation.calculate(par, map[id], profileX[id], id);
+            int[] indicies = profileIndices[id];
             for (int i = 0; i < indicies.length; i++) {
                 yCalc[indicies[i]] = yCalc1[i];
             }
@@ -129,33 +133,39 @@ public class CESTFitFunction extends FitFunction {
         int nSim = options.getSampleSize();
         parValues = new double[nPar + 1][nSim];
         double[] yPred = getPredicted(start);
-        double[] yValuesOrig = yValues.clone();
-        rexErrors = new double[nID];
-        String optimizer = options.getBootStrapOptimizer();
-        for (int i = 0; i < nSim; i++) {
-            for (int k = 0; k < yValues.length; k++) {
-                yValues[k] = yPred[k] + errValues[k] * random.nextGaussian();
-            }
-            var resultOpt = refine(start, lowerBounds, upperBounds,
-                    inputSigma, optimizer);
-            if (resultOpt.isEmpty()) {
-                return Optional.empty();
+        // sample into a copy, as the data arrays may be shared with other fits
+        double[] yValuesOrig = yValues;
+        yValues = yValues.clone();
+        try {
+            rexErrors = new double[nID];
+            String optimizer = options.getBootStrapOptimizer();
+            NormalizedGaussianSampler gaussian = RandomStreams.gaussian(getReplicateStreams(1)[0]);
+            for (int i = 0; i < nSim; i++) {
+                for (int k = 0; k < yValues.length; k++) {
+                    yValues[k] = yPred[k] + errValues[k] * gaussian.sample();
+                }
+                var resultOpt = refine(start, lowerBounds, upperBounds,
+                        inputSigma, optimizer);
+                if (resultOpt.isEmpty()) {
+                    return Optional.empty();
+                }
+                PointValuePair result = resultOpt.get();
+                double[] rPoint = result.getPoint();
+                for (int j = 0; j < nPar; j++) {
+                    parValues[j][i] = rPoint[j];
+                }
+                parValues[nPar][i] = result.getValue();
+
             }
-            PointValuePair result = resultOpt.get();
-            double[] rPoint = result.getPoint();
-            for (int j = 0; j < nPar; j++) {
-                parValues[j][i] = rPoint[j];
+            double[] parSDev = new double[nPar];
+            for (int i = 0; i < nPar; i++) {
+                DescriptiveStatistics dStat = new DescriptiveStatistics(parValues[i]);
+                parSDev[i] = dStat.getStandardDeviation();
             }
-            parValues[nPar][i] = result.getValue();
-
-        }
-        double[] parSDev = new double[nPar];
-        for (int i = 0; i < nPar; i++) {
-            DescriptiveStatistics dStat = new DescriptiveStatistics(parValues[i]);
-            parSDev[i] = dStat.getStandardDeviation();
+            return Optional.of(parSDev);
+        } finally {
+            yValues = yValuesOrig;
         }
-        yValues = yValuesOrig;
-        return Optional.of(parSDev);
     }
 
     @Override
@@ -179,12 +189,14 @@ public class CESTFitFunction extends FitFunction {
         String optimizer = options.getBootStrapOptimizer();
         AtomicBoolean hadError = new AtomicBoolean(false);
 
+        UniformRandomProvider[] streams = getReplicateStreams(nSim);
         IntStream.range(0, nSim).parallel().forEach(i -> {
             CESTFitFunction rDisp = new CESTFitFunction(options, xValues, yPred, errValues, idNums);
             rDisp.setEquation(equation.getName());
             double[] newY = new double[yValues.length];
+            NormalizedGaussianSampler gaussian = RandomStreams.gaussian(streams[i]);
             for (int k = 0; k < yValues.length; k++) {
-                newY[k] = yPred[k] + errValues[k] * random.nextGaussian();
+                newY[k] = yPred[k] + errValues[k] * gaussian.sample();
             }
             rDisp.setXY(xValues, newY);
             rDisp.setIds(idNums);
@@ -226,6 +238,7 @@ public class CESTFitFunction extends FitFunction {
         String optimizer = options.getBootStrapOptimizer();
 
         AtomicBoolean hadError = new AtomicBoolean(false);
+        UniformRandomProvider[] streams = getReplicateStreams(nSim);
         IntStream.range(0, nSim).parallel().forEach(i -> {
             CESTFitFunction rDisp = new CESTFitFunction(options, xValues, yValues, errValues, idNums);
             rDisp.setEquation(equation.getName());
@@ -236,7 +249,7 @@ public class CESTFitFunction extends FitFunction {
             int iTry = 0;
             do {
                 for (int k = 0; k < yValues.length; k++) {
-                    int rI = random.nextInt(yValues.length);
+                    int rI = streams[i].nextInt(yValues.length);
                     for (int j = 0; j < xValues.length; j++) {
                         newX[j][k] = xValues[j][rI];
                     }
@@ -250,6 +263,7 @@ public class CESTFitFunction extends FitFunction {
             rDisp.setXY(newX, newY);
             rDisp.setErr(newErr);
             rDisp.setIds(newID);
+            rDisp.setResampled(true);
             rDisp.setMap(map);
 
             var resultOpt = rDisp.refine(start, lowerBounds, upperBounds,
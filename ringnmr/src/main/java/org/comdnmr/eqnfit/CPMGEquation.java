@@ -26,7 +26,6 @@ import java.util.*;
 
 import org.apache.commons.lang3.tuple.Pair;
 
-import org.apache.commons.math3.complex.Complex;
 import org.apache.commons.math3.util.FastMath;
 
 import static org.comdnmr.modelfree.RelaxEquations.GAMMA_MAP;
@@ -34,9 +33,9 @@ import org.comdnmr.util.CoMDPreferences;
 import org.comdnmr.util.DataUtil;
 
 import org.tensorflow.SavedModelBundle;
-import org.tensorflow.ndarray.FloatNdArray;
-import org.tensorflow.ndarray.NdArrays;
+import org.tensorflow.Signature;
 import org.tensorflow.ndarray.Shape;
+import org.tensorflow.ndarray.buffer.DataBuffers;
 import org.tensorflow.types.TFloat32;
 
 import static org.comdnmr.util.traindata.DataGenerator.getInterpolatedProfile;
@@ -119,6 +118,33 @@ public enum CPMGEquation implements EquationType {
             return value;
         }
 
+        @Override
+        public void calculate(double[] par, int[] map, double[][] x, int idNum, double[] yCalc) {
+            double kEx = par[map[0]];
+            double R2 = par[map[1]];
+            double dPPMmin = par[map[2]];
+            double[] vus = x[0];
+            double[] fields = x[1];
+            int n = vus.length;
+            if (kEx <= 0.0) {
+                Arrays.fill(yCalc, 0, n, R2);
+                return;
+            }
+            // Rex only changes with the field, so compute it once per field
+            double lastField = Double.NaN;
+            double Rex = 0.0;
+            for (int i = 0; i < n; i++) {
+                double field = fields[i];
+                if (field != lastField) {
+                    double dPPMMinRad = 2.0 * Math.PI * dPPMmin * field;
+                    Rex = dPPMMinRad * dPPMMinRad / 4.0 / kEx;
+                    lastField = field;
+                }
+                double tauCP = 1.0 / (2.0 * vus[i]);
+                yCalc[i] = R2 + Rex * (1 - 2.0 * FastMath.tanh(0.5 * kEx * tauCP) / (kEx * tauCP));
+            }
+        }
+
         @Override
         public double[] guessRubric(double[][] xValues, double[] yValues, int[][] map, int[] idNums, int nID) {
             double[] guesses = new double[getNPars(map)];
@@ -238,159 +264,11 @@ public enum CPMGEquation implements EquationType {
             double deltaCPPM = par[map[3]];
             double deltaHPPM = par[map[4]];
 
-            double pB = 1.0 - pA;
             double vcpmg = x[0];
             double fieldX = x[1];
             double fieldH = x[2];
             double tau = x[3];
-
-            double deltaC = 2.0 * Math.PI * deltaCPPM * fieldX;
-            double deltaH = fieldH > 1.0e-6 ?  2.0 * Math.PI * deltaHPPM * fieldH : 0.0;
-
-            // TODO: Need to get number of CPMG cycles (n)
-            // TODO: or the total time of the CPMG elemnt (T) => n = T / (4 * delta)
-            // N.B. (2 * delta) is the time between successive 13C 180 pulses
-            double delta = 1.0 / (4.0 * vcpmg);
-
-            // >>> Building lambda1 (3.2 - 3.6) >>>
-
-            // num1: (p_A - p_B)k_{ex} + i \Delta \omega_H
-            Complex num1 = new Complex((pA - pB) * kEx, deltaH);
-
-            // 3.6
-            Complex zeta = num1.multiply(-2.0 * deltaC);
-
-            // 3.5
-            Complex Psi = num1
-                .pow(2.0)
-                .subtract(Math.pow(deltaC, 2.0))
-                .add(4.0 * pA * pB * Math.pow(kEx, 2.0));
-
-            // num2: \sqrt{\Psi^2 + \zeta^2}
-            Complex num2 = Psi
-                .pow(2.0)
-                .add(zeta.pow(2.0))
-                .sqrt();
-
-            // 3.4
-            Complex etaPlus = num2
-                .add(Psi)
-                .sqrt()
-                .multiply(Math.sqrt(2.0) * delta);
-            Complex etaMinus = num2
-                .subtract(Psi)
-                .sqrt()
-                .multiply(Math.sqrt(2.0) * delta);
-
-            // 3.3
-            Complex DPlus = Psi
-                .add(2.0 * Math.pow(deltaC, 2.0))
-                .divide(num2)
-                .add(1.0)
-                .multiply(0.5);
-            Complex DMinus = Psi
-                .add(2.0 * Math.pow(deltaC, 2.0))
-                .divide(num2)
-                .subtract(1.0)
-                .multiply(0.5);
-
-            // num3: D_{+} \cosh \eta_{+} - D_{-} \cos \eta_{-}
-            Complex num3 = etaPlus
-                .cosh()
-                .multiply(DPlus)
-                .subtract(etaMinus
-                    .cos()
-                    .multiply(DMinus)
-                );
-
-            // 3.2
-            // Using \cosh^{-1}(z) = \ln (z + \sqrt{z + 1}\sqrt{z - 1})
-            Complex lambda1 = num3
-                .add(num3
-                    .add(1.0)
-                    .sqrt()
-                    .multiply(num3
-                        .subtract(1.0)
-                        .sqrt()
-                    )
-                )
-                .log()
-                .divide(-2 * delta)
-                .add(kEx)
-                .multiply(0.5)
-                .add(R2);
-
-            // <<< Building lambda1 (3.2 - 3.6) <<<
-
-            // >>> Building Q (3.7 - 3.10) >>>
-
-            // 3.10
-            Complex dPlus = new Complex(deltaH + deltaC, kEx);
-            Complex dMinus = new Complex(deltaH + deltaC, -kEx);
-            Complex zPlus = new Complex(deltaH - deltaC, kEx);
-            Complex zMinus = new Complex(deltaH - deltaC, -kEx);
-
-            // num4: i k_{ex} \sqrt{p_A p_B}
-            Complex num4 = new Complex(0.0, kEx * Math.sqrt(pA * pB));
-
-            // 3.9
-            Complex mZ = dMinus
-                .subtract(dMinus
-                    .multiply(delta)
-                    .sin()
-                    .divide(dMinus
-                        .add(zMinus)
-                        .multiply(delta)
-                        .sin()
-                    )
-                    .multiply(2.0 * deltaC)
-                )
-                .multiply(num4
-                    .divide(dMinus
-                        .multiply(zMinus)
-                    )
-                )
-                .multiply(-1.0);
-
-            // 3.8
-            Complex mD = zPlus
-                .add(zPlus
-                    .multiply(delta)
-                    .sin()
-                    .divide(dPlus
-                        .add(zPlus)
-                        .multiply(delta)
-                        .sin()
-                    )
-                    .multiply(2.0 * deltaC)
-                )
-                .multiply(num4
-                    .divide(dPlus
-                        .multiply(zPlus)
-                    )
-                );
-
-            // 3.7
-            double Q = mD
-                .pow(2.0)
-                .multiply(-1.0)
-                .add(1.0)
-                .add(mD.multiply(mZ))
-                .subtract(mZ.pow(2.0))
-                .add(mD
-                    .add(mZ)
-                    .multiply(0.5 * Math.sqrt(pB / pA))
-                )
-                .getReal();
-
-            // <<< Building Q (3.7 - 3.10) <<<
-
-            // 3.1
-            if (tau > 1.0e-6) {
-                return lambda1.getReal() - Math.log(Q) / tau;
-            } else {
-                return lambda1.getReal();
-            }
+            return CPMGMQKernel.calculate(kEx, pA, R2, deltaCPPM, deltaHPPM, vcpmg, fieldX, fieldH, tau);
         }
 
         // TODO
@@ -557,6 +435,47 @@ public enum CPMGEquation implements EquationType {
             return r2 + rexContrib;
         }
 
+        @Override
+        public void calculate(double[] par, int[] map, double[][] x, int idNum, double[] yCalc) {
+            double kEx = par[map[0]];
+            double pA = par[map[1]]; // p1-p2
+            double r2 = par[map[2]];
+            double dPPM = par[map[3]];
+            double pB = 1.0 - pA;
+            double pDelta = pA - pB;
+            double[] nus = x[0];
+            double[] fields = x[1];
+            int n = nus.length;
+            // dW, psi, zeta and the terms built from them depend on the field
+            // but not on nu, so they are only recomputed when the field changes
+            double lastField = Double.NaN;
+            double sqrtP = 0.0;
+            double sqrtM = 0.0;
+            double dP = 0.0;
+            double dM = 0.0;
+            for (int i = 0; i < n; i++) {
+                double field = fields[i];
+                if (field != lastField) {
+                    double dW = dPPM * field * 2.0 * Math.PI;
+                    double psi = (pDelta * kEx) * (pDelta * kEx) - dW * dW + 4.0 * pA * pB * kEx * kEx;
+                    double zeta = -2.0 * dW * kEx * pDelta;
+                    double eta1 = Math.sqrt(psi * psi + zeta * zeta);
+                    sqrtP = Math.sqrt(eta1 + psi);
+                    sqrtM = Math.sqrt(eta1 - psi);
+                    double d1 = (psi + 2.0 * dW * dW) / Math.sqrt(psi * psi + zeta * zeta);
+                    dP = 0.5 * (d1 + 1);
+                    dM = 0.5 * (d1 - 1);
+                    lastField = field;
+                }
+                double tauCP = 1.0 / (2.0 * nus[i]);
+                double etaP = (1.0 / Math.sqrt(2.0)) * tauCP * sqrtP;
+                double etaM = (1.0 / Math.sqrt(2.0)) * tauCP * sqrtM;
+                double ch = dP * Math.cosh(etaP) - dM * Math.cos(etaM);
+                double rexContrib = 0.5 * (kEx - (1.0 / tauCP) * FastMath.acosh(ch));
+                yCalc[i] = r2 + rexContrib;
+            }
+        }
+
         @Override
         public double[] guessRubric(double[][] xValues, double[] yValues, int[][] map, int[] idNums, int nID) {
             double[] guesses = new double[getNPars(map)];
@@ -691,6 +610,8 @@ public enum CPMGEquation implements EquationType {
     // See `fetchMaxProfileSize()`
     //
     final int maxProfileSize = 16;
+    // Largest number of residues passed to a network in one call
+    static final int MAX_NETWORK_BATCH = 256;
     // nuCPMG values to interpolate of using neural networks which rely on
     // interpolation
     final List<Double> networkInterpolationXs = Arrays.asList(
@@ -809,33 +730,111 @@ public enum CPMGEquation implements EquationType {
 
     public double[] guessNeuralNetwork(
         double[][] xValues, double[] yValues, int[][] map, int[] idNums, int nID
+    ) throws IOException {
+        return guessNeuralNetwork(xValues, yValues, map, idNums, nID, MAX_NETWORK_BATCH);
+    }
+
+    /**
+     * Guess the parameters with the neural networks. Residues with the same
+     * number of profiles use the same network, so they are run through it
+     * together, up to maxBatch residues per call, or one residue per call if
+     * the network's input has a fixed batch size. The residue guesses are
+     * then combined in residue order, as the shared parameters are running
+     * means over the residues.
+     *
+     * @param xValues the x values
+     * @param yValues the y values
+     * @param map the parameter map of each profile
+     * @param idNums the profile of each value
+     * @param nID the number of profiles
+     * @param maxBatch the largest number of residues per network call
+     * @return the guesses
+     * @throws IOException if the networks can't be unpacked
+     */
+    public double[] guessNeuralNetwork(
+        double[][] xValues, double[] yValues, int[][] map, int[] idNums, int nID, int maxBatch
     ) throws IOException {
         NNDataCPMG data = new NNDataCPMG(xValues, yValues, map, idNums, maxProfileSize);
-        NetworkLoader networkLoader = NetworkLoader.getNetworkLoader();
-        double[] guess = new double[getNPars(map)];
+        NetworkLoader<SavedModelBundle> networkLoader = NetworkLoader.getNetworkLoader();
+        int nResidues = data.getNResidues();
 
-        for (int residue = 0; residue < data.getNResidues(); residue++) {
-            TFloat32 input = data.getInput(residue);
-            int nProfiles = data.getNProfiles(residue);
-            String networkPath = getNetworkPath(nProfiles);
-            SavedModelBundle network = networkLoader.fetchNetwork(networkPath);
-            TFloat32 residueGuessTF32 = (TFloat32) network.function("serving_default").call(input);
-
-            // TFloat32 -> double[]
-            int size = (int) residueGuessTF32.size();
-            double[] residueGuess = new double[size];
-            for (int i = 0; i < residueGuessTF32.size(); i++) {
-                residueGuess[i] = residueGuessTF32.getFloat(0, i);
-            }
+        Map<Integer, List<Integer>> groups = new TreeMap<>();
+        for (int residue = 0; residue < nResidues; residue++) {
+            groups.computeIfAbsent(data.getNProfiles(residue), k -> new ArrayList<>()).add(residue);
+        }
+        double[][] residueGuesses = new double[nResidues][];
+        for (Map.Entry<Integer, List<Integer>> group : groups.entrySet()) {
+            List<Integer> residues = group.getValue();
+            networkLoader.withNetwork(getNetworkPath(group.getKey()), network -> {
+                int batchLimit = networkBatchLimit(inputShape(network), maxBatch);
+                for (List<Integer> batch : batches(residues, batchLimit)) {
+                    runNetwork(network, data, batch, residueGuesses);
+                }
+                return null;
+            });
+        }
 
+        double[] guess = new double[getNPars(map)];
+        for (int residue = 0; residue < nResidues; residue++) {
             int[] residueMap = data.getResidueMap(residue);
-            guess = updateGuess(residue, guess, residueGuess, residueMap);
+            guess = updateGuess(residue, guess, residueGuesses[residue], residueMap);
         }
-        for (var v : guess) {
-            System.out.println(v);
+        return guess;
+    }
+
+    private static Shape inputShape(SavedModelBundle network) {
+        Map<String, Signature.TensorDescription> inputs = network.function("serving_default").signature().getInputs();
+        if (inputs.size() != 1) {
+            return Shape.unknown();
         }
+        return inputs.values().iterator().next().shape;
+    }
 
-        return guess;
+    /**
+     * The most residues to pass to a network in one call. Networks saved
+     * with a fixed batch size, rather than a dynamic one, are given one
+     * residue at a time.
+     *
+     * @param inputShape the shape of the network's input
+     * @param maxBatch the largest number of residues per call
+     * @return the number of residues per call
+     */
+    static int networkBatchLimit(Shape inputShape, int maxBatch) {
+        if (inputShape.isUnknown() || ((inputShape.numDimensions() > 1) && (inputShape.size(0) == Shape.UNKNOWN_SIZE))) {
+            return maxBatch;
+        }
+        return 1;
+    }
+
+    static List<List<Integer>> batches(List<Integer> residues, int batchLimit) {
+        List<List<Integer>> result = new ArrayList<>();
+        for (int start = 0; start < residues.size(); start += batchLimit) {
+            result.add(residues.subList(start, Math.min(residues.size(), start + batchLimit)));
+        }
+        return result;
+    }
+
+    private static void runNetwork(SavedModelBundle network, NNDataCPMG data, List<Integer> batch,
+                                   double[][] residueGuesses) {
+        int nBatch = batch.size();
+        int inputSize = data.getInput(batch.get(0)).length;
+        float[] inputs = new float[nBatch * inputSize];
+        for (int i = 0; i < nBatch; i++) {
+            System.arraycopy(data.getInput(batch.get(i)), 0, inputs, i * inputSize, inputSize);
+        }
+        try (TFloat32 input = TFloat32.tensorOf(Shape.of(nBatch, inputSize), DataBuffers.of(inputs, true, false));
+             TFloat32 output = (TFloat32) network.function("serving_default").call(input)) {
+            int outputSize = (int) output.shape().size(1);
+            float[] outputs = new float[nBatch * outputSize];
+            output.copyTo(DataBuffers.of(outputs, false, false));
+            for (int i = 0; i < nBatch; i++) {
+                double[] residueGuess = new double[outputSize];
+                for (int j = 0; j < outputSize; j++) {
+                    residueGuess[j] = outputs[i * outputSize + j];
+                }
+                residueGuesses[batch.get(i)] = residueGuess;
+            }
+        }
     }
 
     // TODO: update
@@ -1019,7 +1018,7 @@ class NNDataCPMG {
 
     private Map<Integer, Pair<Integer, Integer>> idToProfileMap;
     private List<List<ProfileInfo>> residues;
-    private List<TFloat32> inputs;
+    private List<float[]> inputs;
     private int[][] residueMap;
 
     public NNDataCPMG(double[][] xData, double[] yData, int[][] profileMap, int[] idNums, int maxProfileSize) {
@@ -1044,7 +1043,7 @@ class NNDataCPMG {
         return residues.get(residue).size();
     }
 
-    public TFloat32 getInput(int residue) {
+    public float[] getInput(int residue) {
         return inputs.get(residue);
     }
 
@@ -1186,27 +1185,16 @@ class NNDataCPMG {
         return dataset;
     }
 
-    private List<TFloat32> constructInputs()
+    private List<float[]> constructInputs()
     {
         // Assuming tau is identical across samples
-
-        float[] inputArray;
-        FloatNdArray inputNdArray;
-        TFloat32 inputTensor;
-
-        List<TFloat32> residueTensors = new ArrayList<>();
+        List<float[]> residueInputs = new ArrayList<>();
         for (List<ProfileInfo> residue : residues) {
             residue = filterXValuesNotInAllProfiles(residue);
-            inputArray = buildInputArray(residue);
-
-            inputNdArray = NdArrays.ofFloats(Shape.of(1, inputArray.length));
-            inputNdArray.set(TFloat32.vectorOf(inputArray), 0);
-            inputTensor = TFloat32.tensorOf(inputNdArray);
-
-            residueTensors.add(inputTensor);
+            residueInputs.add(buildInputArray(residue));
         }
 
-        return residueTensors;
+        return residueInputs;
     }
 
     private float[] buildInputArray(List<ProfileInfo> profiles) {
@@ -23,16 +23,15 @@ import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.IntStream;
 import org.apache.commons.math3.optim.PointValuePair;
-import org.apache.commons.math3.random.RandomGenerator;
-import org.apache.commons.math3.random.SynchronizedRandomGenerator;
-import org.apache.commons.math3.random.Well19937c;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math3.util.FastMath;
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.sampling.distribution.NormalizedGaussianSampler;
 import org.comdnmr.util.CoMDOptions;
+import org.comdnmr.util.RandomStreams;
 
 public class CPMGFitFunction extends FitFunction {
 
-    static RandomGenerator random = new SynchronizedRandomGenerator(new Well19937c());
     int[] r2Mask = {0, 1, 3};
     double[] rexErrors = new double[nID];
 
@@ -86,22 +85,26 @@ public class CPMGFitFunction extends FitFunction {
 
     @Override
     public double value(double[] normPar) {
-        double[] par = deNormalize(normPar);
+        double[] par = deNormalizeToBuffer(normPar);
+        setupProfiles();
         double sumAbs = 0.0;
         double sumSq = 0.0;
-        double[] ax = new double[4];
-        for (int i = 0; i < yValues.length; i++) {
-            final double value;
-            for (int j = 0; j < xValues.length; j++) {
-                ax[j] = xValues[j][i];
+        for (int id = 0; id < profileIndices.length; id++) {
+            int[] indices = profileIndices[id];
+            if (indices.length == 0) {
+                continue;
             }
-            value = equation.calculate(par, map[idNums[i]], ax, idNums[i]);
-            double delta = (value - yValues[i]);
-            if (weightFit) {
-                delta /= errValues[i];
+            double[] yCalc = profileCalc[id];
+            equation.calculate(par, map[id], profileX[id], id, yCalc);
+            for (int k = 0; k < indices.length; k++) {
+                int i = indices[k];
+                double delta = (yCalc[k] - yValues[i]);
+                if (weightFit) {
+                    delta /= errValues[i];
+                }
+                sumAbs += FastMath.abs(delta);
+                sumSq += delta * delta;
             }
-            sumAbs += FastMath.abs(delta);
-            sumSq += delta * delta;
         }
         if (reportFitness) {
             double rms = Math.sqrt(sumSq / yValues.length);
@@ -121,13 +124,18 @@ public class CPMGFitFunction extends FitFunction {
 
     @Override
     public double[] simY(double[] par) {
-        double[] ax = new double[4];
+        setupProfiles();
         double[] yv = new double[yValues.length];
-        for (int i = 0; i < yValues.length; i++) {
-            for (int j = 0; j < xValues.length; j++) {
-                ax[j] = xValues[j][i];
+        for (int id = 0; id < profileIndices.length; id++) {
+            int[] indices = profileIndices[id];
+            if (indices.length == 0) {
+                continue;
+            }
+            double[] yCalc = profileCalc[id];
+            equation.calculate(par, map[id], profileX[id], id, yCalc);
+            for (int k = 0; k < indices.length; k++) {
+                yv[indices[k]] = yCalc[k];
             }
-            yv[i] = equation.calculate(par, map[idNums[i]], ax, idNums[i]);
         }
         return yv;
     }
@@ -182,54 +190,61 @@ public class CPMGFitFunction extends FitFunction {
         int nPar = start.length;
         parValues = new double[nPar + 1][nSim];
         double[] yPred = simY(start);
-        double[] yValuesOrig = yValues.clone();
-        double[][] rexValues = new double[nID][nSim];
-        rexErrors = new double[nID];
-        String optimizer = options.getBootStrapOptimizer();
+        // sample into a copy, as the data arrays may be shared with other fits
+        double[] yValuesOrig = yValues;
+        yValues = yValues.clone();
+        try {
+            double[][] rexValues = new double[nID][nSim];
+            rexErrors = new double[nID];
+            String optimizer = options.getBootStrapOptimizer();
+            NormalizedGaussianSampler gaussian = RandomStreams.gaussian(getReplicateStreams(1)[0]);
 
-        for (int i = 0; i < nSim; i++) {
-            for (int k = 0; k < yValues.length; k++) {
-                yValues[k] = yPred[k] + errValues[k] * random.nextGaussian();
-            }
-            var resultOpt = refine(start, lowerBounds, upperBounds,
-                    inputSigma, optimizer);
-            PointValuePair result;
-            if (resultOpt.isEmpty()) {
-                return Optional.empty();
-            } else {
-                result = resultOpt.get();
-            }
+            for (int i = 0; i < nSim; i++) {
+                for (int k = 0; k < yValues.length; k++) {
+                    yValues[k] = yPred[k] + errValues[k] * gaussian.sample();
+                }
+                var resultOpt = refine(start, lowerBounds, upperBounds,
+                        inputSigma, optimizer);
+                PointValuePair result;
+                if (resultOpt.isEmpty()) {
+                    return Optional.empty();
+                } else {
+                    result = resultOpt.get();
+                }
 
-            double[] rPoint = result.getPoint();
-            for (int j = 0; j < nPar; j++) {
-                parValues[j][i] = rPoint[j];
+                double[] rPoint = result.getPoint();
+                for (int j = 0; j < nPar; j++) {
+                    parValues[j][i] = rPoint[j];
+                }
+                parValues[nPar][i] = result.getValue();
+                if (equation == CPMGEquation.CPMGSLOW) {
+                    for (int j = 0; j < map.length; j++) {
+                        rexValues[j][i] = equation.getRex(result.getPoint(), map[j], fieldValues[0]);
+                    }
+                }
+            }
+            double[] parSDev = new double[nPar];
+            for (int i = 0; i < nPar; i++) {
+                DescriptiveStatistics dStat = new DescriptiveStatistics(parValues[i]);
+                parSDev[i] = dStat.getStandardDeviation();
             }
-            parValues[nPar][i] = result.getValue();
             if (equation == CPMGEquation.CPMGSLOW) {
-                for (int j = 0; j < map.length; j++) {
-                    rexValues[j][i] = equation.getRex(result.getPoint(), map[j], fieldValues[0]);
+                for (int j = 0; j < nID; j++) {
+                    DescriptiveStatistics dStat = new DescriptiveStatistics(rexValues[j]);
+                    rexErrors[j] = dStat.getStandardDeviation();
                 }
             }
+            return Optional.of(parSDev);
+        } finally {
+            yValues = yValuesOrig;
         }
-        double[] parSDev = new double[nPar];
-        for (int i = 0; i < nPar; i++) {
-            DescriptiveStatistics dStat = new DescriptiveStatistics(parValues[i]);
-            parSDev[i] = dStat.getStandardDeviation();
-        }
-        if (equation == CPMGEquation.CPMGSLOW) {
-            for (int j = 0; j < nID; j++) {
-                DescriptiveStatistics dStat = new DescriptiveStatistics(rexValues[j]);
-                rexErrors[j] = dStat.getStandardDeviation();
-            }
-        }
-        yValues = yValuesOrig;
-        return Optional.of(parSDev);
     }
 
-    private synchronized CPMGFitFunction setupParametricBootstrap(double[] yPred) {
+    private CPMGFitFunction setupParametricBootstrap(double[] yPred, UniformRandomProvider rng) {
+        NormalizedGaussianSampler gaussian = RandomStreams.gaussian(rng);
         double[] newY = new double[yValues.length];
         for (int k = 0; k < yValues.length; k++) {
-            newY[k] = yPred[k] + errValues[k] * random.nextGaussian();
+            newY[k] = yPred[k] + errValues[k] * gaussian.sample();
         }
         CPMGFitFunction rDisp = new CPMGFitFunction(options, xValues, newY, errValues, idNums);
         rDisp.setEquation(equation.getName());
@@ -239,7 +254,7 @@ public class CPMGFitFunction extends FitFunction {
         return rDisp;
     }
 
-    private CPMGFitFunction setupNonParametricBootstrap(double[] yPred) {
+    private CPMGFitFunction setupNonParametricBootstrap(UniformRandomProvider rng) {
         CPMGFitFunction rDisp = new CPMGFitFunction(options, xValues, yValues, errValues, idNums);
         rDisp.setEquation(equation.getName());
         double[][] newX = new double[xValues.length][yValues.length];
@@ -249,7 +264,7 @@ public class CPMGFitFunction extends FitFunction {
         int iTry = 0;
         do {
             for (int k = 0; k < yValues.length; k++) {
-                int rI = random.nextInt(yValues.length);
+                int rI = rng.nextInt(yValues.length);
                 for (int j=0;j<xValues.length;j++) {
                     newX[j][k] = xValues[j][rI];
                 }
@@ -263,6 +278,7 @@ public class CPMGFitFunction extends FitFunction {
         rDisp.setXY(newX, newY);
         rDisp.setErr(newErr);
         rDisp.setIds(newID);
+        rDisp.setResampled(true);
         rDisp.setMap(map);
         return rDisp;
     }
@@ -278,12 +294,13 @@ public class CPMGFitFunction extends FitFunction {
         double[] yPred = simY(start);
         String optimizer = options.getBootStrapOptimizer();
         AtomicBoolean hadError = new AtomicBoolean(false);
+        UniformRandomProvider[] streams = getReplicateStreams(nSim);
         IntStream.range(0, nSim).parallel().forEach(i -> {
             CPMGFitFunction rDisp;
             if (options.getNonParametricBootstrap()) {
-                rDisp = setupNonParametricBootstrap(yPred);
+                rDisp = setupNonParametricBootstrap(streams[i]);
             } else {
-                rDisp = setupParametricBootstrap(yPred);
+                rDisp = setupParametricBootstrap(yPred, streams[i]);
             }
 
             var resultOpt = rDisp.refine(start, lowerBounds, upperBounds,
@@ -29,6 +29,7 @@ import org.apache.commons.math3.stat.inference.TTest;
 import org.comdnmr.data.Experiment;
 import org.comdnmr.fit.FitQuality;
 import org.comdnmr.util.CoMDOptions;
+import org.comdnmr.util.RandomStreams;
 import org.comdnmr.util.CoMDPreferences;
 import org.nmrfx.chemistry.relax.ResonanceSource;
 
@@ -42,10 +43,7 @@ public class CPMGFitter implements EquationFitter {
 
     CPMGFitFunction calcR;
     CoMDOptions options;
-    List<Double>[] xValues = new ArrayList[4];
-    List<Double> yValues = new ArrayList<>();
-    List<Double> errValues = new ArrayList<>();
-    List<Integer> idValues = new ArrayList<>();
+    FitData fitData;
     int nCurves = 1;
     int nResidues = 1;
     int[][] states;
@@ -90,34 +88,27 @@ public class CPMGFitter implements EquationFitter {
 
     @Override
     public void setData(List<Double>[] allXValues, List<Double> yValues, List<Double> errValues) {
-        for (int i = 0;i<allXValues.length;i++) {
-            xValues[i] = new ArrayList<>();
-            xValues[i].addAll(allXValues[i]);
-        }
-        this.yValues.clear();
-        this.yValues.addAll(yValues);
-        this.errValues.clear();
-        this.errValues.addAll(errValues);
-        this.idValues.clear();
-        for (Double yValue : yValues) {
-            this.idValues.add(0);
-        }
-        dynSources = new ResonanceSource[1];
-        dynSources[0] = null;
-        nCurves = 1;
-        stateCount = new int[4];
-        stateCount[0] = nResidues;
-        stateCount[1] = 1;
-        stateCount[2] = 1;
-        stateCount[3] = 1;
-        states = new int[1][4];
+        setData(FitData.of(allXValues, yValues, errValues, 4, nResidues));
+    }
+
+    @Override
+    public void setData(FitData fitData) {
+        this.fitData = fitData;
+        dynSources = fitData.dynSources;
+        stateCount = fitData.stateCount;
+        nResidues = stateCount[0];
+        states = fitData.states;
+        nCurves = states.length;
+    }
+
+    @Override
+    public FitData getFitData() {
+        return fitData;
     }
 
     @Override
     public void setData(ExperimentSet experimentSet, ResonanceSource[] dynSources) {
-        for (int i = 0;i<xValues.length;i++) {
-            xValues[i] = new ArrayList<>();
-        }
+        FitData.Builder builder = new FitData.Builder(4, FitData.countValues(experimentSet, dynSources));
         this.dynSources = dynSources.clone();
         nResidues = dynSources.length;
 
@@ -138,24 +129,13 @@ public class CPMGFitter implements EquationFitter {
                     //  need peakRefs
                     double fieldX = experiment.getNucleusField();
                     double fieldH = experiment.getB0Field();
-                    double[][] x = experimentalData.getXValues();
-                    double[] y = experimentalData.getYValues();
-                    double[] err = experimentalData.getErrValues();
-
-                    for (int i = 0; i < y.length; i++) {
-                        xValues[0].add(x[0][i]);
-                        xValues[1].add(fieldX);
-                        xValues[2].add(fieldH);
-                        xValues[3].add(cpmgExperiment.getTau());
-                        yValues.add(y[i]);
-                        errValues.add(err[i]);
-                        idValues.add(id);
-                    }
+                    builder.add(experimentalData, id, fieldX, fieldH, cpmgExperiment.getTau());
                     id++;
                 }
             }
             resIndex++;
         }
+        fitData = builder.build(states, stateCount, this.dynSources);
     }
 
     @Override
@@ -191,25 +171,11 @@ public class CPMGFitter implements EquationFitter {
 
     @Override
     public void setupFit(String eqn) {
-        double[][] x = new double[xValues.length][yValues.size()];
-        double[] y = new double[yValues.size()];
-        double[] err = new double[yValues.size()];
-        int[] idNums = new int[yValues.size()];
-        for (int i = 0; i < x[0].length; i++) {
-            for (int j = 0;j < xValues.length;j++) {
-                if (xValues[j] != null) {
-                    x[j][i] = xValues[j].get(i);
-                }
-            }
-            y[i] = yValues.get(i);
-            err[i] = errValues.get(i);
-            idNums[i] = idValues.get(i);
-        }
         calcR.setEquation(eqn);
 
-        calcR.setXY(x, y);
-        calcR.setIds(idNums);
-        calcR.setErr(err);
+        calcR.setXY(fitData.x, fitData.y);
+        calcR.setIds(fitData.ids);
+        calcR.setErr(fitData.err);
         calcR.setMap(stateCount, states);
     }
 
@@ -314,6 +280,7 @@ public class CPMGFitter implements EquationFitter {
 
         if (FitFunction.getCalcError()) {
             long startTime = System.currentTimeMillis();
+            calcR.setRandomSeed(RandomStreams.masterSeed(options.getRandomSeed()), EquationFitter.getRandomTask(dynSources));
             var errOpt = calcR.simBoundsStream(pars.clone(),
                     boundaries[0], boundaries[1], sigma, options);
             if (errOpt.isPresent()) {
@@ -362,8 +329,8 @@ public class CPMGFitter implements EquationFitter {
         double tol = options.getTolerance();
         boolean useWeight = options.getWeightFit();
         CurveFit.CurveFitStats curveStats = new CurveFit.CurveFitStats(refineOpt, bootstrapOpt, fitTime, bootTime, nSamples, useAbs,
-                useNonParametric, sRadius, fRadius, tol, useWeight);
-        double[][] extras = getFields(xValues, idValues);
+                useNonParametric, sRadius, fRadius, tol, useWeight, calcR.getRandomSeed());
+        double[][] extras = fitData.getFields();
         return Optional.of(getResults(this, eqn, parNames, dynSources, map, states, extras, nGroupPars, pars, errEstimates, fitQuality, simPars, exchangeValid, curveStats));
     }
 
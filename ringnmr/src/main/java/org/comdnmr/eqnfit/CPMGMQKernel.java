@@ -0,0 +1,326 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.eqnfit;
+
+import org.apache.commons.math3.complex.Complex;
+import org.comdnmr.util.MutableComplex;
+
+/**
+ * Multiple-quantum CPMG relaxation dispersion (Korzhnev et al., JACS 2004,
+ * 10.1021/ja039587i), used by {@link CPMGEquation#CPMGMQ}. The equations
+ * are evaluated with {@link MutableComplex} values held in a per thread
+ * scratch object, so a call doesn't allocate. The operations, including
+ * pow, are done the same way as by {@link Complex} so the results match the
+ * original implementation, which is kept as {@link #calculateComplex} to
+ * validate and benchmark against.
+ */
+public final class CPMGMQKernel {
+
+    private static final ThreadLocal<CPMGMQKernel> SCRATCH = ThreadLocal.withInitial(CPMGMQKernel::new);
+    private static final double SQRT2 = Math.sqrt(2.0);
+
+    private final MutableComplex num1 = new MutableComplex();
+    private final MutableComplex zeta = new MutableComplex();
+    private final MutableComplex psi = new MutableComplex();
+    private final MutableComplex num2 = new MutableComplex();
+    private final MutableComplex etaPlus = new MutableComplex();
+    private final MutableComplex etaMinus = new MutableComplex();
+    private final MutableComplex dPlusCoef = new MutableComplex();
+    private final MutableComplex dMinusCoef = new MutableComplex();
+    private final MutableComplex num3 = new MutableComplex();
+    private final MutableComplex lambda1 = new MutableComplex();
+    private final MutableComplex dPlus = new MutableComplex();
+    private final MutableComplex dMinus = new MutableComplex();
+    private final MutableComplex zPlus = new MutableComplex();
+    private final MutableComplex zMinus = new MutableComplex();
+    private final MutableComplex num4 = new MutableComplex();
+    private final MutableComplex mZ = new MutableComplex();
+    private final MutableComplex mD = new MutableComplex();
+    private final MutableComplex work1 = new MutableComplex();
+    private final MutableComplex work2 = new MutableComplex();
+
+    private CPMGMQKernel() {
+    }
+
+    /**
+     * Calculate R2,eff for a multiple-quantum CPMG experiment.
+     *
+     * @param kEx exchange rate
+     * @param pA population of the major state
+     * @param R2 intrinsic relaxation rate
+     * @param deltaCPPM heteronuclear chemical shift difference (ppm)
+     * @param deltaHPPM proton chemical shift difference (ppm)
+     * @param vcpmg CPMG frequency
+     * @param fieldX heteronuclear spectrometer frequency (MHz)
+     * @param fieldH proton spectrometer frequency (MHz)
+     * @param tau total CPMG time, or 0 to skip the Q term
+     * @return the effective relaxation rate
+     */
+    public static double calculate(double kEx, double pA, double R2, double deltaCPPM, double deltaHPPM,
+            double vcpmg, double fieldX, double fieldH, double tau) {
+        return SCRATCH.get().evaluate(kEx, pA, R2, deltaCPPM, deltaHPPM, vcpmg, fieldX, fieldH, tau);
+    }
+
+    private double evaluate(double kEx, double pA, double R2, double deltaCPPM, double deltaHPPM,
+            double vcpmg, double fieldX, double fieldH, double tau) {
+        double pB = 1.0 - pA;
+        double deltaC = 2.0 * Math.PI * deltaCPPM * fieldX;
+        double deltaH = fieldH > 1.0e-6 ? 2.0 * Math.PI * deltaHPPM * fieldH : 0.0;
+        double delta = 1.0 / (4.0 * vcpmg);
+        double deltaC2 = Math.pow(deltaC, 2.0);
+
+        // >>> Building lambda1 (3.2 - 3.6) >>>
+        // num1: (p_A - p_B)k_{ex} + i \Delta \omega_H
+        num1.set((pA - pB) * kEx, deltaH);
+        // 3.6
+        zeta.set(num1).multiply(-2.0 * deltaC);
+        // 3.5
+        psi.set(num1).pow(2.0).subtract(deltaC2).add(4.0 * pA * pB * Math.pow(kEx, 2.0));
+        // num2: \sqrt{\Psi^2 + \zeta^2}
+        num2.set(psi).pow(2.0).add(work1.set(zeta).pow(2.0)).sqrt();
+        // 3.4
+        etaPlus.set(num2).add(psi).sqrt().multiply(SQRT2 * delta);
+        etaMinus.set(num2).subtract(psi).sqrt().multiply(SQRT2 * delta);
+        // 3.3
+        work1.set(psi).add(2.0 * deltaC2).divide(num2);
+        dPlusCoef.set(work1).add(1.0).multiply(0.5);
+        dMinusCoef.set(work1).subtract(1.0).multiply(0.5);
+        // num3: D_{+} \cosh \eta_{+} - D_{-} \cos \eta_{-}
+        num3.set(etaPlus).cosh().multiply(dPlusCoef)
+                .subtract(work1.set(etaMinus).cos().multiply(dMinusCoef));
+        // 3.2
+        // Using \cosh^{-1}(z) = \ln (z + \sqrt{z + 1}\sqrt{z - 1})
+        work1.set(num3).add(1.0).sqrt();
+        work2.set(num3).subtract(1.0).sqrt();
+        lambda1.set(num3).add(work1.multiply(work2))
+                .log()
+                .divide(-2 * delta)
+                .add(kEx)
+                .multiply(0.5)
+                .add(R2);
+        // <<< Building lambda1 (3.2 - 3.6) <<<
+
+        // >>> Building Q (3.7 - 3.10) >>>
+        // 3.10
+        dPlus.set(deltaH + deltaC, kEx);
+        dMinus.set(deltaH + deltaC, -kEx);
+        zPlus.set(deltaH - deltaC, kEx);
+        zMinus.set(deltaH - deltaC, -kEx);
+        // num4: i k_{ex} \sqrt{p_A p_B}
+        num4.set(0.0, kEx * Math.sqrt(pA * pB));
+
+        // 3.9
+        work1.set(dMinus).multiply(delta).sin()
+                .divide(work2.set(dMinus).add(zMinus).multiply(delta).sin())
+                .multiply(2.0 * deltaC);
+        work2.set(num4).divide(mZ.set(dMinus).multiply(zMinus));
+        mZ.set(dMinus).subtract(work1).multiply(work2).multiply(-1.0);
+
+        // 3.8
+        work1.set(zPlus).multiply(delta).sin()
+                .divide(work2.set(dPlus).add(zPlus).multiply(delta).sin())
+                .multiply(2.0 * deltaC);
+        work2.set(num4).divide(mD.set(dPlus).multiply(zPlus));
+        mD.set(zPlus).add(work1).multiply(work2);
+
+        // 3.7
+        double Q = work1.set(mD).pow(2.0).multiply(-1.0)
+                .add(1.0)
+                .add(work2.set(mD).multiply(mZ))
+                .subtract(work2.set(mZ).pow(2.0))
+                .add(work2.set(mD).add(mZ).multiply(0.5 * Math.sqrt(pB / pA)))
+                .re;
+        // <<< Building Q (3.7 - 3.10) <<<
+
+        // 3.1
+        if (tau > 1.0e-6) {
+            return lambda1.re - Math.log(Q) / tau;
+        } else {
+            return lambda1.re;
+        }
+    }
+
+    /**
+     * The original implementation of {@link #calculate} using
+     * {@link Complex}. It allocates a new object for every operation so it
+     * is only used as a reference.
+     *
+     * @param kEx exchange rate
+     * @param pA population of the major state
+     * @param R2 intrinsic relaxation rate
+     * @param deltaCPPM heteronuclear chemical shift difference (ppm)
+     * @param deltaHPPM proton chemical shift difference (ppm)
+     * @param vcpmg CPMG frequency
+     * @param fieldX heteronuclear spectrometer frequency (MHz)
+     * @param fieldH proton spectrometer frequency (MHz)
+     * @param tau total CPMG time, or 0 to skip the Q term
+     * @return the effective relaxation rate
+     */
+    public static double calculateComplex(double kEx, double pA, double R2, double deltaCPPM, double deltaHPPM,
+            double vcpmg, double fieldX, double fieldH, double tau) {
+        double pB = 1.0 - pA;
+
+        double deltaC = 2.0 * Math.PI * deltaCPPM * fieldX;
+        double deltaH = fieldH > 1.0e-6 ?  2.0 * Math.PI * deltaHPPM * fieldH : 0.0;
+
+        // TODO: Need to get number of CPMG cycles (n)
+        // TODO: or the total time of the CPMG elemnt (T) => n = T / (4 * delta)
+        // N.B. (2 * delta) is the time between successive 13C 180 pulses
+        double delta = 1.0 / (4.0 * vcpmg);
+
+        // >>> Building lambda1 (3.2 - 3.6) >>>
+
+        // num1: (p_A - p_B)k_{ex} + i \Delta \omega_H
+        Complex num1 = new Complex((pA - pB) * kEx, deltaH);
+
+        // 3.6
+        Complex zeta = num1.multiply(-2.0 * deltaC);
+
+        // 3.5
+        Complex Psi = num1
+            .pow(2.0)
+            .subtract(Math.pow(deltaC, 2.0))
+            .add(4.0 * pA * pB * Math.pow(kEx, 2.0));
+
+        // num2: \sqrt{\Psi^2 + \zeta^2}
+        Complex num2 = Psi
+            .pow(2.0)
+            .add(zeta.pow(2.0))
+            .sqrt();
+
+        // 3.4
+        Complex etaPlus = num2
+            .add(Psi)
+            .sqrt()
+            .multiply(Math.sqrt(2.0) * delta);
+        Complex etaMinus = num2
+            .subtract(Psi)
+            .sqrt()
+            .multiply(Math.sqrt(2.0) * delta);
+
+        // 3.3
+        Complex DPlus = Psi
+            .add(2.0 * Math.pow(deltaC, 2.0))
+            .divide(num2)
+            .add(1.0)
+            .multiply(0.5);
+        Complex DMinus = Psi
+            .add(2.0 * Math.pow(deltaC, 2.0))
+            .divide(num2)
+            .subtract(1.0)
+            .multiply(0.5);
+
+        // num3: D_{+} \cosh \eta_{+} - D_{-} \cos \eta_{-}
+        Complex num3 = etaPlus
+            .cosh()
+            .multiply(DPlus)
+            .subtract(etaMinus
+                .cos()
+                .multiply(DMinus)
+            );
+
+        // 3.2
+        // Using \cosh^{-1}(z) = \ln (z + \sqrt{z + 1}\sqrt{z - 1})
+        Complex lambda1 = num3
+            .add(num3
+                .add(1.0)
+                .sqrt()
+                .multiply(num3
+                    .subtract(1.0)
+                    .sqrt()
+                )
+            )
+            .log()
+            .divide(-2 * delta)
+            .add(kEx)
+            .multiply(0.5)
+            .add(R2);
+
+        // <<< Building lambda1 (3.2 - 3.6) <<<
+
+        // >>> Building Q (3.7 - 3.10) >>>
+
+        // 3.10
+        Complex dPlus = new Complex(deltaH + deltaC, kEx);
+        Complex dMinus = new Complex(deltaH + deltaC, -kEx);
+        Complex zPlus = new Complex(deltaH - deltaC, kEx);
+        Complex zMinus = new Complex(deltaH - deltaC, -kEx);
+
+        // num4: i k_{ex} \sqrt{p_A p_B}
+        Complex num4 = new Complex(0.0, kEx * Math.sqrt(pA * pB));
+
+        // 3.9
+        Complex mZ = dMinus
+            .subtract(dMinus
+                .multiply(delta)
+                .sin()
+                .divide(dMinus
+                    .add(zMinus)
+                    .multiply(delta)
+                    .sin()
+                )
+                .multiply(2.0 * deltaC)
+            )
+            .multiply(num4
+                .divide(dMinus
+                    .multiply(zMinus)
+                )
+            )
+            .multiply(-1.0);
+
+        // 3.8
+        Complex mD = zPlus
+            .add(zPlus
+                .multiply(delta)
+                .sin()
+                .divide(dPlus
+                    .add(zPlus)
+                    .multiply(delta)
+                    .sin()
+                )
+                .multiply(2.0 * deltaC)
+            )
+            .multiply(num4
+                .divide(dPlus
+                    .multiply(zPlus)
+                )
+            );
+
+        // 3.7
+        double Q = mD
+            .pow(2.0)
+            .multiply(-1.0)
+            .add(1.0)
+            .add(mD.multiply(mZ))
+            .subtract(mZ.pow(2.0))
+            .add(mD
+                .add(mZ)
+                .multiply(0.5 * Math.sqrt(pB / pA))
+            )
+            .getReal();
+
+        // <<< Building Q (3.7 - 3.10) <<<
+
+        // 3.1
+        if (tau > 1.0e-6) {
+            return lambda1.getReal() - Math.log(Q) / tau;
+        } else {
+            return lambda1.getReal();
+        }
+    }
+}
@@ -79,9 +79,15 @@ public class CurveFit {
         final double finalRadius;
         final double tolerance;
         final boolean weight;
+        final long randomSeed;
 
         public CurveFitStats(String refineOpt, String bootstrapOpt, long fitTime, long bootTime, int nSamples, boolean useAbs, 
                 boolean useNonParametric, double sRadius, double fRadius, double tol, boolean useWeight) {
+            this(refineOpt, bootstrapOpt, fitTime, bootTime, nSamples, useAbs, useNonParametric, sRadius, fRadius, tol, useWeight, 0);
+        }
+
+        public CurveFitStats(String refineOpt, String bootstrapOpt, long fitTime, long bootTime, int nSamples, boolean useAbs,
+                boolean useNonParametric, double sRadius, double fRadius, double tol, boolean useWeight, long seed) {
             this.refineOptimizer = refineOpt;
             this.bootstrapOptimizer = bootstrapOpt;
             this.refineTime = fitTime;
@@ -93,6 +99,7 @@ public class CurveFit {
             this.finalRadius = fRadius;
             this.tolerance = tol;
             this.weight = useWeight;
+            this.randomSeed = seed;
         }
 
         public String getRefineOptimizer() {
@@ -115,6 +122,38 @@ public class CurveFit {
             return nBootstrapSamples;
         }
 
+        public boolean isAbsMode() {
+            return absMode;
+        }
+
+        public boolean isNonParametricMode() {
+            return nonParametricMode;
+        }
+
+        public double getStartRadius() {
+            return startRadius;
+        }
+
+        public double getFinalRadius() {
+            return finalRadius;
+        }
+
+        public double getTolerance() {
+            return tolerance;
+        }
+
+        public boolean isWeight() {
+            return weight;
+        }
+
+        /**
+         * @return the master seed of the bootstrap random numbers. Fitting
+         * again with this seed reproduces the error estimates.
+         */
+        public long getRandomSeed() {
+            return randomSeed;
+        }
+
         @Override
         public String toString() {
             char sep = '\t';
@@ -130,6 +169,7 @@ public class CurveFit {
             sBuilder.append(finalRadius).append(sep);
             sBuilder.append(tolerance).append(sep);
             sBuilder.append(weight).append(sep);
+            sBuilder.append(randomSeed).append(sep);
             return sBuilder.toString();
         }
     }
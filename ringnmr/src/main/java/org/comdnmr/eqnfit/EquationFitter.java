@@ -49,23 +49,37 @@ public interface EquationFitter extends BasicFitter {
 
     int[][] getStates();
 
+    /**
+     * @return the data set with setData, to be shared with other fitters of
+     * the same resonances
+     */
+    FitData getFitData();
+
+    /**
+     * Fit data collected by another fitter. The arrays of the data are
+     * shared, not copied.
+     *
+     * @param fitData the data, as returned by getFitData
+     */
+    void setData(FitData fitData);
+
     double[] getSimX(int nPts, double xLB, double xUB);
 
-    default double[][] getFields(List<Double>[] xValues, List<Integer> idNums) {
-        Map<Integer, double[]> fieldMap = new HashMap<>();
-        int nExtra = xValues.length - 1;
-        for (int i = 0; i < xValues[0].size(); i++) {
-            double[] v = new double[nExtra];
-            for (int j = 0; j < nExtra; j++) {
-                v[j] = xValues[j + 1].get(i);
+    /**
+     * Returns a name for the resonances being fit, so that each residue, or
+     * group of residues, bootstraps with its own random numbers.
+     *
+     * @param dynSources the resonances being fit
+     * @return the name
+     */
+    static String getRandomTask(ResonanceSource[] dynSources) {
+        StringBuilder sBuilder = new StringBuilder();
+        for (ResonanceSource dynSource : dynSources) {
+            if ((dynSource != null) && (dynSource.getAtom() != null)) {
+                sBuilder.append(dynSource.getAtom().getShortName()).append(' ');
             }
-            fieldMap.put(idNums.get(i), v);
-        }
-        double[][] values = new double[fieldMap.size()][nExtra];
-        for (int i = 0; i < fieldMap.size(); i++) {
-            values[i] = fieldMap.get(i);
         }
-        return values;
+        return sBuilder.toString();
     }
 
     default FitResult getResults(EquationFitter fitter, String eqn, String[] parNames, ResonanceSource[] dynSources, int[][] map, int[][] states,
@@ -42,6 +42,29 @@ public interface EquationType {
         return yValues;
     }
 
+    /**
+     * Evaluate the equation at every point of one profile, writing the
+     * results into yCalc so that repeated evaluations don't allocate. The x
+     * values are indexed by variable and then by point, as in the array form
+     * of calculate. Equations can override this to compute terms that don't
+     * change from point to point only once per profile.
+     *
+     * @param par the parameters
+     * @param map the parameter indices for this profile
+     * @param x the x values of the profile
+     * @param idNum the id of the profile
+     * @param yCalc array of at least x[0].length values to store the result
+     */
+    default void calculate(double[] par, int[] map, double[][] x, int idNum, double[] yCalc) {
+        double[] ax = new double[x.length];
+        for (int i = 0; i < x[0].length; i++) {
+            for (int j = 0; j < ax.length; j++) {
+                ax[j] = x[j][i];
+            }
+            yCalc[i] = calculate(par, map, ax, idNum);
+        }
+    }
+
     default void constrain(String parName, double[] guesses, double[][] boundaries, int[][] map, int id, double lower, double upper) {
         String[] parNames = getParNames();
         int index = -1;
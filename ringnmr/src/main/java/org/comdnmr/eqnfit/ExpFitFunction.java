@@ -23,16 +23,15 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.IntStream;
 
 import org.apache.commons.math3.optim.PointValuePair;
-import org.apache.commons.math3.random.RandomGenerator;
-import org.apache.commons.math3.random.SynchronizedRandomGenerator;
-import org.apache.commons.math3.random.Well19937c;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math3.util.FastMath;
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.sampling.distribution.NormalizedGaussianSampler;
 import org.comdnmr.util.CoMDOptions;
+import org.comdnmr.util.RandomStreams;
 
 public class ExpFitFunction extends FitFunction {
 
-    static RandomGenerator random = new SynchronizedRandomGenerator(new Well19937c());
     int[] r2Mask = {0, 1, 3};
     double[] rexErrors = new double[nID];
 
@@ -86,14 +85,13 @@ public class ExpFitFunction extends FitFunction {
 
     @Override
     public double value(double[] normPar) {
-        double[] par = deNormalize(normPar);
+        double[] par = deNormalizeToBuffer(normPar);
+        double[][] xPts = getXPoints();
         double sumAbs = 0.0;
         double sumSq = 0.0;
-        double[] ax = new double[1];
         for (int i = 0; i < yValues.length; i++) {
             final double value;
-            ax[0] = xValues[0][i];
-            value = equation.calculate(par, map[idNums[i]], ax, idNums[i]);
+            value = equation.calculate(par, map[idNums[i]], xPts[i], idNums[i]);
             //System.out.println( "xxxxxxxxxxx " + value + " " + yValues[i] + " " + equation.name());
             double delta = (value - yValues[i]);
             if (weightFit) {
@@ -136,36 +134,42 @@ public class ExpFitFunction extends FitFunction {
         int nPar = start.length;
         parValues = new double[nPar + 1][nSim];
         double[] yPred = getPredicted(start);
-        double[] yValuesOrig = yValues.clone();
-        double[][] rexValues = new double[nID][nSim];
-        rexErrors = new double[nID];
-        String optimizer = options.getBootStrapOptimizer();
+        // sample into a copy, as the data arrays may be shared with other fits
+        double[] yValuesOrig = yValues;
+        yValues = yValues.clone();
+        try {
+            double[][] rexValues = new double[nID][nSim];
+            rexErrors = new double[nID];
+            String optimizer = options.getBootStrapOptimizer();
 
-        for (int i = 0; i < nSim; i++) {
-            for (int k = 0; k < yValues.length; k++) {
-                yValues[k] = yPred[k] + errValues[k] * random.nextGaussian();
-            }
-            var resultOpt = refine(start, lowerBounds, upperBounds,
-                    inputSigma, optimizer);
-            if (resultOpt.isEmpty()) {
-                return Optional.empty();
+            NormalizedGaussianSampler gaussian = RandomStreams.gaussian(getReplicateStreams(1)[0]);
+            for (int i = 0; i < nSim; i++) {
+                for (int k = 0; k < yValues.length; k++) {
+                    yValues[k] = yPred[k] + errValues[k] * gaussian.sample();
+                }
+                var resultOpt = refine(start, lowerBounds, upperBounds,
+                        inputSigma, optimizer);
+                if (resultOpt.isEmpty()) {
+                    return Optional.empty();
+                }
+                PointValuePair result = resultOpt.get();
+                double[] rPoint = result.getPoint();
+                for (int j = 0; j < nPar; j++) {
+                    parValues[j][i] = rPoint[j];
+                }
+                parValues[nPar][i] = result.getValue();
             }
-            PointValuePair result = resultOpt.get();
-            double[] rPoint = result.getPoint();
-            for (int j = 0; j < nPar; j++) {
-                parValues[j][i] = rPoint[j];
+            double[] parSDev = new double[nPar];
+            for (int i = 0; i < nPar; i++) {
+                DescriptiveStatistics dStat = new DescriptiveStatistics(parValues[i]);
+                double p5 = dStat.getPercentile(5.0);
+                double p95 = dStat.getPercentile(95.0);
+                parSDev[i] = dStat.getStandardDeviation();
             }
-            parValues[nPar][i] = result.getValue();
+            return Optional.of(parSDev);
+        } finally {
+            yValues = yValuesOrig;
         }
-        double[] parSDev = new double[nPar];
-        for (int i = 0; i < nPar; i++) {
-            DescriptiveStatistics dStat = new DescriptiveStatistics(parValues[i]);
-            double p5 = dStat.getPercentile(5.0);
-            double p95 = dStat.getPercentile(95.0);
-            parSDev[i] = dStat.getStandardDeviation();
-        }
-        yValues = yValuesOrig;
-        return Optional.of(parSDev);
     }
 
     @Override
@@ -190,13 +194,15 @@ public class ExpFitFunction extends FitFunction {
         String optimizer = options.getBootStrapOptimizer();
         AtomicBoolean failed = new AtomicBoolean(false);
 
+        UniformRandomProvider[] streams = getReplicateStreams(nSim);
         IntStream.range(0, nSim).parallel().forEach(i -> {
 //        IntStream.range(0, nSim).forEach(i -> {
             ExpFitFunction rDisp = new ExpFitFunction(options, xValues, yPred, errValues, idNums);
             rDisp.setEquation(equation.getName());
             double[] newY = new double[yValues.length];
+            NormalizedGaussianSampler gaussian = RandomStreams.gaussian(streams[i]);
             for (int k = 0; k < yValues.length; k++) {
-                newY[k] = yPred[k] + errValues[k] * random.nextGaussian();
+                newY[k] = yPred[k] + errValues[k] * gaussian.sample();
             }
             rDisp.setXY(xValues, newY);
             rDisp.setIds(idNums);
@@ -237,6 +243,7 @@ public class ExpFitFunction extends FitFunction {
         String optimizer = options.getBootStrapOptimizer();
         AtomicBoolean failed = new AtomicBoolean(false);
 
+        UniformRandomProvider[] streams = getReplicateStreams(nSim);
         IntStream.range(0, nSim).parallel().forEach(i -> {
             ExpFitFunction rDisp = new ExpFitFunction(options, xValues, yValues, errValues, idNums);
             rDisp.setEquation(equation.getName());
@@ -247,7 +254,7 @@ public class ExpFitFunction extends FitFunction {
             int iTry = 0;
             do {
                 for (int k = 0; k < yValues.length; k++) {
-                    int rI = random.nextInt(yValues.length);
+                    int rI = streams[i].nextInt(yValues.length);
                     newX[0][k] = xValues[0][rI];
                     newY[k] = yValues[rI];
                     newErr[k] = errValues[rI];
@@ -23,6 +23,7 @@ import org.comdnmr.data.ExperimentData;
 import org.comdnmr.data.ExperimentSet;
 import org.comdnmr.fit.FitQuality;
 import org.comdnmr.util.CoMDOptions;
+import org.comdnmr.util.RandomStreams;
 import org.comdnmr.util.CoMDPreferences;
 import org.nmrfx.chemistry.relax.ResonanceSource;
 
@@ -37,10 +38,7 @@ public class ExpFitter implements EquationFitter {
 
     FitFunction expModel;
     CoMDOptions options;
-    List<Double>[] xValues;
-    List<Double> yValues = new ArrayList<>();
-    List<Double> errValues = new ArrayList<>();
-    List<Integer> idValues = new ArrayList<>();
+    FitData fitData;
     int nCurves = 1;
     int nResidues = 1;
     int[][] states;
@@ -92,37 +90,28 @@ public class ExpFitter implements EquationFitter {
 
     @Override
     public void setData(List<Double>[] allXValues, List<Double> yValues, List<Double> errValues) {
-        xValues = new ArrayList[allXValues.length];
-        for (int j = 0; j < allXValues.length; j++) {
-            xValues[j] = new ArrayList<>();
-            xValues[j].addAll(allXValues[j]);
-        }
-        this.yValues.clear();
-        this.yValues.addAll(yValues);
-        this.errValues.clear();
-        this.errValues.addAll(errValues);
-        this.idValues.clear();
-        yValues.forEach((_item) -> {
-            this.idValues.add(0);
-        });
-        dynSources = new ResonanceSource[1];
-        dynSources[0] = null;
-        nCurves = 1;
-        stateCount = new int[4];
-        stateCount[0] = nResidues;
-        stateCount[1] = 1;
-        stateCount[2] = 1;
-        stateCount[3] = 1;
-        states = new int[1][4];
+        setData(FitData.of(allXValues, yValues, errValues, 1, nResidues));
+    }
+
+    @Override
+    public void setData(FitData fitData) {
+        this.fitData = fitData;
+        dynSources = fitData.dynSources;
+        stateCount = fitData.stateCount;
+        nResidues = stateCount[0];
+        states = fitData.states;
+        nCurves = states.length;
+    }
+
+    @Override
+    public FitData getFitData() {
+        return fitData;
     }
 
     // public void setData(Collection<ExperimentData> expDataList, String[] resNums) {
     @Override
     public void setData(ExperimentSet experimentSet, ResonanceSource[] dynSources) {
-        xValues = new ArrayList[1];
-        for (int j = 0; j < 1; j++) {
-            xValues[j] = new ArrayList<>();
-        }
+        FitData.Builder builder = new FitData.Builder(1, FitData.countValues(experimentSet, dynSources));
         this.dynSources = dynSources.clone();
         nResidues = dynSources.length;
         int id = 0;
@@ -138,22 +127,12 @@ public class ExpFitter implements EquationFitter {
                 states[k++] = experimentSet.getStateIndices(resIndex, expData);
                 ExperimentData experimentalData = expData.getResidueData(dynSource);
                 //  need peakRefs
-                double field = expData.getNucleusField();
-                double[][] x = experimentalData.getXValues();
-                double[] y = experimentalData.getYValues();
-                double[] err = experimentalData.getErrValues();
-                for (int i = 0; i < y.length; i++) {
-                    for (int j = 0; j < xValues.length; j++) {
-                        xValues[j].add(x[j][i]);
-                    }
-                    yValues.add(y[i]);
-                    errValues.add(err[i]);
-                    idValues.add(id);
-                }
+                builder.add(experimentalData, id);
                 id++;
             }
             resIndex++;
         }
+        fitData = builder.build(states, stateCount, this.dynSources);
     }
 
     @Override
@@ -188,22 +167,10 @@ public class ExpFitter implements EquationFitter {
 
     @Override
     public void setupFit(String eqn) {
-        double[][] x = new double[1][yValues.size()];
-        double[] y = new double[yValues.size()];
-        double[] err = new double[yValues.size()];
-        int[] idNums = new int[yValues.size()];
-        for (int i = 0; i < x[0].length; i++) {
-            for (int j = 0; j < x.length; j++) {
-                x[j][i] = xValues[j].get(i);
-            }
-            y[i] = yValues.get(i);
-            err[i] = errValues.get(i);
-            idNums[i] = idValues.get(i);
-        }
         expModel.setEquation(eqn);
-        expModel.setXY(x, y);
-        expModel.setIds(idNums);
-        expModel.setErr(err);
+        expModel.setXY(fitData.x, fitData.y);
+        expModel.setIds(fitData.ids);
+        expModel.setErr(fitData.err);
         expModel.setMap(stateCount, states);
     }
 
@@ -275,6 +242,7 @@ public class ExpFitter implements EquationFitter {
         double[][] simPars = null;
         if (FitFunction.getCalcError()) {
             long startTime = System.currentTimeMillis();
+            expModel.setRandomSeed(RandomStreams.masterSeed(options.getRandomSeed()), EquationFitter.getRandomTask(dynSources));
             var errOpt = expModel.simBoundsStream(pars.clone(),
                     boundaries[0], boundaries[1], sigma, options);
             long endTime = System.currentTimeMillis();
@@ -297,7 +265,7 @@ public class ExpFitter implements EquationFitter {
         double tol = options.getTolerance();
         boolean useWeight = options.getWeightFit();
         CurveFit.CurveFitStats curveStats = new CurveFit.CurveFitStats(refineOpt, bootstrapOpt, fitTime, bootTime, nSamples, useAbs,
-                useNonParametric, sRadius, fRadius, tol, useWeight);
+                useNonParametric, sRadius, fRadius, tol, useWeight, expModel.getRandomSeed());
         return Optional.of(getResults(this, eqn, parNames, dynSources, map, states, null, nGroupPars, pars, errEstimates, fitQuality, simPars, true, curveStats));
     }
 
@@ -0,0 +1,203 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.eqnfit;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.comdnmr.data.Experiment;
+import org.comdnmr.data.ExperimentData;
+import org.comdnmr.data.ExperimentSet;
+import org.nmrfx.chemistry.relax.ResonanceSource;
+
+/**
+ * The data of a group of resonances laid out for a fitter: a column of
+ * values for each x variable, the y values and errors, and the id of the
+ * curve each point belongs to, along with the state of each curve. The
+ * arrays are allocated at their final size and filled directly from the
+ * arrays of each ExperimentData, without boxing. They are shared, not
+ * copied, by the fitters and fit functions given the data, so that each
+ * equation of a group can be fit by its own fitter without collecting the
+ * data again. Nothing that is given the data may change the arrays.
+ */
+public final class FitData {
+
+    final double[][] x;
+    final double[] y;
+    final double[] err;
+    final int[] ids;
+    final int[][] states;
+    final int[] stateCount;
+    final ResonanceSource[] dynSources;
+    final Map<String, List<Double>>[] constraints;
+
+    FitData(double[][] x, double[] y, double[] err, int[] ids, int[][] states, int[] stateCount,
+            ResonanceSource[] dynSources, Map<String, List<Double>>[] constraints) {
+        this.x = x;
+        this.y = y;
+        this.err = err;
+        this.ids = ids;
+        this.states = states;
+        this.stateCount = stateCount;
+        this.dynSources = dynSources;
+        this.constraints = constraints;
+    }
+
+    /**
+     * @return the number of points
+     */
+    public int size() {
+        return y.length;
+    }
+
+    /**
+     * Make the data of a single curve from lists of values, as given to
+     * BasicFitter.setData.
+     *
+     * @param allXValues the values of each x variable. Variables beyond nX
+     * are ignored, and missing ones are zero.
+     * @param yValues the y values
+     * @param errValues the errors
+     * @param nX the number of x variables
+     * @param nResidues the number of residues in the state count
+     * @return the data
+     */
+    static FitData of(List<Double>[] allXValues, List<Double> yValues, List<Double> errValues, int nX, int nResidues) {
+        int n = yValues.size();
+        double[][] x = new double[nX][n];
+        for (int j = 0; j < Math.min(nX, allXValues.length); j++) {
+            for (int i = 0; i < n; i++) {
+                x[j][i] = allXValues[j].get(i);
+            }
+        }
+        double[] y = new double[n];
+        double[] err = new double[n];
+        for (int i = 0; i < n; i++) {
+            y[i] = yValues.get(i);
+            err[i] = errValues.get(i);
+        }
+        int[] stateCount = {nResidues, 1, 1, 1};
+        return new FitData(x, y, err, new int[n], new int[1][4], stateCount, new ResonanceSource[1], null);
+    }
+
+    /**
+     * @return the number of points of the resonances in all experiments of
+     * the set
+     */
+    static int countValues(ExperimentSet experimentSet, ResonanceSource[] dynSources) {
+        int n = 0;
+        for (ResonanceSource dynSource : dynSources) {
+            for (Experiment experiment : experimentSet.getExperimentData()) {
+                ExperimentData experimentalData = experiment.getResidueData(dynSource);
+                if (experimentalData != null) {
+                    n += experimentalData.getYValues().length;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Get the values of the x variables other than the first for each curve,
+     * as the extras of the curve fits.
+     *
+     * @return the values, indexed by curve id
+     */
+    double[][] getFields() {
+        Map<Integer, double[]> fieldMap = new HashMap<>();
+        int nExtra = x.length - 1;
+        for (int i = 0; i < y.length; i++) {
+            double[] v = new double[nExtra];
+            for (int j = 0; j < nExtra; j++) {
+                v[j] = x[j + 1][i];
+            }
+            fieldMap.put(ids[i], v);
+        }
+        double[][] values = new double[fieldMap.size()][nExtra];
+        for (int i = 0; i < fieldMap.size(); i++) {
+            values[i] = fieldMap.get(i);
+        }
+        return values;
+    }
+
+    /**
+     * Fills the arrays of a FitData, one ExperimentData at a time.
+     */
+    static final class Builder {
+
+        private final double[][] x;
+        private final double[] y;
+        private final double[] err;
+        private final int[] ids;
+        private int n = 0;
+
+        /**
+         * @param nX the number of x variables
+         * @param nValues the total number of points, as from countValues
+         */
+        Builder(int nX, int nValues) {
+            x = new double[nX][nValues];
+            y = new double[nValues];
+            err = new double[nValues];
+            ids = new int[nValues];
+        }
+
+        /**
+         * Add the points of an ExperimentData. Its x values fill the leading
+         * columns and the constants the trailing ones, with any x values
+         * that don't fit before the constants left out.
+         *
+         * @param experimentalData the data
+         * @param id the id of the curve
+         * @param constants values that are the same for every point
+         */
+        void add(ExperimentData experimentalData, int id, double... constants) {
+            double[][] dataX = experimentalData.getXValues();
+            double[] dataY = experimentalData.getYValues();
+            int nPoints = dataY.length;
+            int nConstant = x.length - constants.length;
+            for (int j = 0; j < Math.min(dataX.length, nConstant); j++) {
+                System.arraycopy(dataX[j], 0, x[j], n, nPoints);
+            }
+            for (int j = 0; j < constants.length; j++) {
+                Arrays.fill(x[nConstant + j], n, n + nPoints, constants[j]);
+            }
+            System.arraycopy(dataY, 0, y, n, nPoints);
+            System.arraycopy(experimentalData.getErrValues(), 0, err, n, nPoints);
+            Arrays.fill(ids, n, n + nPoints, id);
+            n += nPoints;
+        }
+
+        FitData build(int[][] states, int[] stateCount, ResonanceSource[] dynSources) {
+            return build(states, stateCount, dynSources, null);
+        }
+
+        /**
+         * @param constraints the parameter constraints of each curve, or null
+         * if there are none
+         */
+        FitData build(int[][] states, int[] stateCount, ResonanceSource[] dynSources,
+                Map<String, List<Double>>[] constraints) {
+            if (n != y.length) {
+                throw new IllegalStateException("Added " + n + " of " + y.length + " values");
+            }
+            return new FitData(x, y, err, ids, states, stateCount, dynSources, constraints);
+        }
+    }
+}
@@ -27,8 +27,11 @@ import org.apache.commons.math3.optim.nonlinear.scalar.noderiv.CMAESOptimizer;
 import org.apache.commons.math3.random.MersenneTwister;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.util.FastMath;
+import org.apache.commons.rng.JumpableUniformRandomProvider;
+import org.apache.commons.rng.UniformRandomProvider;
 import org.comdnmr.fit.FitQuality;
 import org.comdnmr.util.CoMDOptions;
+import org.comdnmr.util.RandomStreams;
 
 import java.util.Arrays;
 import java.util.Optional;
@@ -50,6 +53,16 @@ public abstract class FitFunction implements MultivariateFunction {
     long endTime = 0;
     long fitTime = 0;
     double[][] xValues;
+    double[][] xPoints;
+    private double[][] xPointsSource;
+    int[][] profileIndices;
+    double[][][] profileX;
+    double[][] profileCalc;
+    double[] yCalcBuffer;
+    private double[][] profileXSource;
+    private int[] profileIdSource;
+    boolean resampled = false;
+    double[] parBuffer;
     double[] fieldValues;
     double[] yValues;
     double[] errValues;
@@ -63,6 +76,8 @@ public abstract class FitFunction implements MultivariateFunction {
     double[] lowerBounds;
     double[] upperBounds;
     final boolean weightFit;
+    long randomSeed = 0;
+    JumpableUniformRandomProvider randomSource = null;
 
     public class Checker extends SimpleValueChecker {
 
@@ -95,6 +110,38 @@ public abstract class FitFunction implements MultivariateFunction {
 
     public abstract void setEquation(String eqName);
 
+    /**
+     * Set the source of the random numbers used for bootstrapping this fit.
+     *
+     * @param masterSeed the master seed of the fit
+     * @param task the name of the residue, or residues, being fit
+     */
+    public void setRandomSeed(long masterSeed, String task) {
+        randomSeed = masterSeed;
+        randomSource = RandomStreams.create(masterSeed, task);
+    }
+
+    /**
+     * @return the master seed of the random numbers used for bootstrapping
+     */
+    public long getRandomSeed() {
+        return randomSeed;
+    }
+
+    /**
+     * Returns one independent random stream for each bootstrap replicate. If
+     * no seed has been set, a master seed is chosen from the options.
+     *
+     * @param nSim the number of replicates
+     * @return the streams
+     */
+    UniformRandomProvider[] getReplicateStreams(int nSim) {
+        if (randomSource == null) {
+            setRandomSeed(RandomStreams.masterSeed(options.getRandomSeed()), "");
+        }
+        return RandomStreams.split(randomSource, nSim);
+    }
+
     public Optional<PointValuePair> refine(double[] guess, double[] lowerBounds, double[] upperBounds, double inputSigma, String type) {
         if (type.equals("BOBYQA")) {
             return refineBOBYQA(guess, lowerBounds, upperBounds, inputSigma);
@@ -219,14 +266,97 @@ public abstract class FitFunction implements MultivariateFunction {
         return normPars;
     }
 
+    /**
+     * Set the bounds used to map normalized parameters back to their natural
+     * units. The refine methods set these before optimizing.
+     *
+     * @param lowerBounds the lower bound of each parameter
+     * @param upperBounds the upper bound of each parameter
+     */
+    public void setBounds(double[] lowerBounds, double[] upperBounds) {
+        this.lowerBounds = lowerBounds.clone();
+        this.upperBounds = upperBounds.clone();
+    }
+
     double[] deNormalize(double[] normPars) {
-        double[] pars = new double[normPars.length];
+        return deNormalize(normPars, new double[normPars.length]);
+    }
+
+    double[] deNormalize(double[] normPars, double[] pars) {
         for (int i = 0; i < pars.length; i++) {
             pars[i] = normPars[i] / 100.0 * (upperBounds[i] - lowerBounds[i]) + lowerBounds[i];
         }
         return pars;
     }
 
+    /**
+     * Denormalize into a buffer owned by this function so objective
+     * evaluations don't allocate. The returned array is overwritten by the next
+     * call, so it must not be kept.
+     *
+     * @param normPars the normalized parameters
+     * @return the parameters in their natural units
+     */
+    double[] deNormalizeToBuffer(double[] normPars) {
+        if ((parBuffer == null) || (parBuffer.length != normPars.length)) {
+            parBuffer = new double[normPars.length];
+        }
+        return deNormalize(normPars, parBuffer);
+    }
+
+    /**
+     * Returns the x values stored point by point, so that getXPoints()[i] is
+     * the x vector of data point i and can be passed to calculate without
+     * copying. The array is rebuilt only when xValues is replaced.
+     *
+     * @return the x values indexed by point and then by variable
+     */
+    double[][] getXPoints() {
+        if ((xPoints == null) || (xPointsSource != xValues)) {
+            int nX = xValues.length;
+            int nPoints = xValues[0].length;
+            double[][] points = new double[nPoints][nX];
+            for (int j = 0; j < nX; j++) {
+                double[] xRow = xValues[j];
+                if (xRow != null) {
+                    for (int i = 0; i < nPoints; i++) {
+                        points[i][j] = xRow[i];
+                    }
+                }
+            }
+            xPoints = points;
+            xPointsSource = xValues;
+        }
+        return xPoints;
+    }
+
+    /**
+     * Group the points by id so that each profile can be evaluated with one
+     * call to the batch calculate of the equation. profileX[id] holds the x
+     * values of the profile indexed by variable and then by point,
+     * profileIndices[id] the index of each of its points in yValues and
+     * profileCalc[id] is scratch space for the calculated values. The
+     * grouping comes from the shared {@link ProfileLayout} cache, unless the
+     * data is resampled, and is looked up again only when xValues or idNums is
+     * replaced.
+     */
+    void setupProfiles() {
+        if ((profileIndices != null) && (profileXSource == xValues) && (profileIdSource == idNums)) {
+            return;
+        }
+        ProfileLayout layout = resampled ? ProfileLayout.of(xValues, idNums, yValues.length)
+                : ProfileLayout.get(xValues, idNums, yValues.length);
+        double[][] calc = new double[layout.indices.length][];
+        for (int id = 0; id < calc.length; id++) {
+            calc[id] = new double[layout.indices[id].length];
+        }
+        profileIndices = layout.indices;
+        profileX = layout.x;
+        profileCalc = calc;
+        profileXSource = xValues;
+        profileIdSource = idNums;
+    }
+
     public double[] simY(double[] par) {
         double[] yCalc = equation.calculate(par, map[0], xValues, idNums[0]);
         return yCalc;
@@ -249,6 +379,15 @@ public abstract class FitFunction implements MultivariateFunction {
 
     public abstract double[][] getSimPars();
 
+    /**
+     * Mark the data as resampled, as for a non-parametric bootstrap
+     * replicate. Its conditions won't be seen again, so its profile layout
+     * isn't cached.
+     */
+    void setResampled(boolean resampled) {
+        this.resampled = resampled;
+    }
+
     public void setXY(double[][] x, double[] y) {
         this.xValues = x;
         this.yValues = y;
@@ -300,72 +439,78 @@ public abstract class FitFunction implements MultivariateFunction {
         return equation.calculate(par, map, x, idNum);
     }
 
-    public double getRSS(double[] par) {
-        double rss = 0.0;
-        double[] x = new double[xValues.length];
+    /**
+     * Sum the squared residuals, optionally weighted by the errors, in a single
+     * pass that doesn't allocate.
+     */
+    double sumSquaredResiduals(double[] par, boolean weighted) {
+        double[][] xPts = getXPoints();
+        double sum = 0.0;
         for (int i = 0; i < yValues.length; i++) {
-            for (int j = 0; j < x.length; j++) {
-                x[j] = xValues[j][i];
-            }
-            final double value;
-            value = calculate(par, map[idNums[i]], x, idNums[i]);
+            double value = calculate(par, map[idNums[i]], xPts[i], idNums[i]);
             double delta = value - yValues[i];
-            rss += delta * delta;
+            if (weighted) {
+                delta /= errValues[i];
+            }
+            sum += delta * delta;
         }
-        return rss;
+        return sum;
     }
 
-    public double getRMS(double[] par) {
-        double rss = 0.0;
-        double[] x = new double[xValues.length];
-        for (int i = 0; i < yValues.length; i++) {
-            for (int j = 0; j < x.length; j++) {
-                x[j] = xValues[j][i];
-            }
-            final double value;
-            value = calculate(par, map[idNums[i]], x, idNums[i]);
+    public double getRSS(double[] par) {
+        return sumSquaredResiduals(par, false);
+    }
 
-            double delta = value - yValues[i];
-            rss += delta * delta;
-        }
+    public double getRMS(double[] par) {
+        double rss = sumSquaredResiduals(par, false);
         return Math.sqrt(rss / yValues.length);
     }
 
+    static double aic(double rss, int k, int n) {
+        return 2 * k + n * Math.log(rss);
+    }
+
+    static double aicc(double rss, int k, int n) {
+        return aic(rss, k, n) + 2 * k * (k + 1) / (n - k - 1);
+    }
+
     public double getAIC(double[] par) {
         double rss = getRSS(par);
-        int k = par.length;
-        int n = yValues.length;
-        return 2 * k + n * Math.log(rss);
+        return aic(rss, par.length, yValues.length);
     }
 
     public double getAICc(double[] par) {
         double rss = getRSS(par);
-        int k = par.length;
-        int n = yValues.length;
-        double aic = getAIC(par);
-        double aicc = aic + 2 * k * (k + 1) / (n - k - 1);
-        return aicc;
+        return aicc(rss, par.length, yValues.length);
     }
 
+    /**
+     * Calculate all the fit statistics from one evaluation of the model at
+     * each data point.
+     *
+     * @param pars the fitted parameters
+     * @return the RMS, AIC, AICc and reduced chi-square of the fit
+     */
     public FitQuality getFitQuality(double[] pars) {
-        return new FitQuality(getRMS(pars), getAIC(pars),
-                getAICc(pars), getReducedChiSq(pars), pars.length);
-    }
-
-    public double getReducedChiSq(double[] par) {
+        double[][] xPts = getXPoints();
         double rss = 0.0;
-        double[] x = new double[xValues.length];
+        double chiSq = 0.0;
         for (int i = 0; i < yValues.length; i++) {
-            for (int j = 0; j < x.length; j++) {
-                x[j] = xValues[j][i];
-            }
-            final double value;
-            value = calculate(par, map[idNums[i]], x, idNums[i]);
-
-            double delta = (value - yValues[i]) / errValues[i];
+            double value = calculate(pars, map[idNums[i]], xPts[i], idNums[i]);
+            double delta = value - yValues[i];
             rss += delta * delta;
+            double normDelta = delta / errValues[i];
+            chiSq += normDelta * normDelta;
         }
-        return rss / (yValues.length - par.length);
+        int k = pars.length;
+        int n = yValues.length;
+        return new FitQuality(Math.sqrt(rss / n), aic(rss, k, n),
+                aicc(rss, k, n), chiSq / (n - k), k);
+    }
+
+    public double getReducedChiSq(double[] par) {
+        double chiSq = sumSquaredResiduals(par, true);
+        return chiSq / (yValues.length - par.length);
     }
 
     public double[] getPredicted(double[] par) {
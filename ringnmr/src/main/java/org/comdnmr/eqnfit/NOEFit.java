@@ -28,6 +28,7 @@ import org.comdnmr.data.ExperimentData;
 import org.comdnmr.data.ExperimentSet;
 import org.comdnmr.fit.FitQuality;
 import org.comdnmr.util.CoMDOptions;
+import org.comdnmr.util.RandomStreams;
 import org.comdnmr.util.CoMDPreferences;
 import org.nmrfx.chemistry.relax.ResonanceSource;
 
@@ -47,11 +48,7 @@ public class NOEFit implements EquationFitter {
 
     FitFunction noeModel;
     CoMDOptions options;
-    List<Double> xValues = new ArrayList<>();
-    List<Double> yValues = new ArrayList<>();
-    List<Double> errValues = new ArrayList<>();
-    List<Double> fieldValues = new ArrayList<>();
-    List<Integer> idValues = new ArrayList<>();
+    FitData fitData;
     int nCurves = 1;
     int nResidues = 1;
     int[][] states;
@@ -138,6 +135,7 @@ public class NOEFit implements EquationFitter {
         double[][] simPars = null;
         if (FitFunction.getCalcError()) {
             long startTime = System.currentTimeMillis();
+            noeModel.setRandomSeed(RandomStreams.masterSeed(options.getRandomSeed()), EquationFitter.getRandomTask(dynSources));
             var errOpt = noeModel.simBoundsStream(pars.clone(),
                     boundaries[0], boundaries[1], sigma, options);
             if (errOpt.isPresent()) {
@@ -161,30 +159,18 @@ public class NOEFit implements EquationFitter {
         double tol = options.getTolerance();
         boolean useWeight = options.getWeightFit();
         CurveFit.CurveFitStats curveStats = new CurveFit.CurveFitStats(refineOpt, bootstrapOpt, fitTime, bootTime, nSamples, useAbs,
-                useNonParametric, sRadius, fRadius, tol, useWeight);
+                useNonParametric, sRadius, fRadius, tol, useWeight, noeModel.getRandomSeed());
         return Optional.of(getResults(this, eqn, parNames, dynSources, map, states, null, nGroupPars, pars, errEstimates,fitQuality, simPars, true, curveStats));
     }
 
     @Override
     public void setupFit(String eqn) {
-        double[][] x = new double[1][yValues.size()];
-        double[] y = new double[yValues.size()];
-        double[] err = new double[yValues.size()];
-        int[] idNums = new int[yValues.size()];
-        double[] fields = new double[yValues.size()];
-        for (int i = 0; i < x[0].length; i++) {
-            x[0][i] = xValues.get(i);
-            y[i] = yValues.get(i);
-            err[i] = errValues.get(i);
-            //System.out.println(x[0][i]+", "+x[0][i]+", "+x[0][i]+", "+x[0][i]);
-            fields[i] = fieldValues.get(i);
-            idNums[i] = idValues.get(i);
-        }
+        // the field of each point is kept as the second x variable
         noeModel.setEquation(eqn);
-        noeModel.setXY(x, y);
-        noeModel.setIds(idNums);
-        noeModel.setErr(err);
-        noeModel.setFieldValues(fields);
+        noeModel.setXY(new double[][]{fitData.x[0]}, fitData.y);
+        noeModel.setIds(fitData.ids);
+        noeModel.setErr(fitData.err);
+        noeModel.setFieldValues(fitData.x[1]);
         noeModel.setMap(stateCount, states);
     }
 
@@ -211,6 +197,7 @@ public class NOEFit implements EquationFitter {
 
     @Override
     public void setData(ExperimentSet experimentSet, ResonanceSource[] dynSources) {
+        FitData.Builder builder = new FitData.Builder(2, FitData.countValues(experimentSet, dynSources));
         this.dynSources = dynSources.clone();
         nResidues = dynSources.length;
         int id = 0;
@@ -226,47 +213,35 @@ public class NOEFit implements EquationFitter {
                 states[k++] = experimentSet.getStateIndices(resIndex, expData);
                 ExperimentData experimentalData = expData.getResidueData(dynSource);
                 //  need peakRefs
-                double field = expData.getNucleusField();
-                double[][] x = experimentalData.getXValues();
-                double[] y = experimentalData.getYValues();
-                double[] err = experimentalData.getErrValues();
-                for (int i = 0; i < y.length; i++) {
-                    xValues.add(x[0][i]);
-                    yValues.add(y[i]);
-                    errValues.add(err[i]);
-                    fieldValues.add(field);
-                    idValues.add(id);
+                if (experimentalData != null) {
+                    builder.add(experimentalData, id, expData.getNucleusField());
                 }
                 id++;
 
             }
             resIndex++;
         }
+        fitData = builder.build(states, stateCount, this.dynSources);
     }
 
     @Override
     public void setData(List<Double>[] allXValues, List<Double> yValues, List<Double> errValues) {
-        xValues.clear();
-        xValues.addAll(allXValues[0]);
-        this.yValues.clear();
-        this.yValues.addAll(yValues);
-        this.errValues.clear();
-        this.errValues.addAll(errValues);
-        this.fieldValues.clear();
-        this.fieldValues.addAll(fieldValues);
-        this.idValues.clear();
-        yValues.forEach((_item) -> {
-            this.idValues.add(0);
-        });
-        dynSources = new ResonanceSource[1];
-        dynSources[0] = null;
-        nCurves = 1;
-        stateCount = new int[4];
-        stateCount[0] = nResidues;
-        stateCount[1] = 1;
-        stateCount[2] = 1;
-        stateCount[3] = 1;
-        states = new int[1][4];
+        setData(FitData.of(Arrays.copyOf(allXValues, 1), yValues, errValues, 2, nResidues));
+    }
+
+    @Override
+    public void setData(FitData fitData) {
+        this.fitData = fitData;
+        dynSources = fitData.dynSources;
+        stateCount = fitData.stateCount;
+        nResidues = stateCount[0];
+        states = fitData.states;
+        nCurves = states.length;
+    }
+
+    @Override
+    public FitData getFitData() {
+        return fitData;
     }
 
     @Override
@@ -2,18 +2,46 @@ package org.comdnmr.eqnfit;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.tensorflow.SavedModelBundle;
 
-import org.nmrfx.utilities.UnZipper;
-
 /**
+ * Loads the parameter networks from the archive bundled in the jar. The
+ * archive is streamed into a staging directory that is moved into place
+ * once complete, with a checksum, size and modification time of the archive,
+ * so later sessions reuse the extraction without unzipping. The archive is
+ * only read to verify its checksum when its size or modification time have
+ * changed. Networks are loaded on first use, each by one thread while others
+ * needing it wait, and the least recently used idle networks are closed to
+ * keep at most maxNetworks loaded.
+ *
+ * @param <M> the type of the loaded networks
  *
  * @author simonhulse
  */
@@ -21,53 +49,298 @@ import org.nmrfx.utilities.UnZipper;
 // TODO: currently, NetworkLoader is specifically used to load CPMG parameter
 // prediction NNs, however it could be generalised to any zipfile containing
 // tensorflow SavedModelBundle models.
-class NetworkLoader {
-    private static NetworkLoader instance = null;
+class NetworkLoader<M extends AutoCloseable> {
+    static final int DEFAULT_MAX_NETWORKS = 8;
+    static final String NAME = "parameter-networks";
+    static final String CHECKSUM_FILE = ".checksum";
+    private static volatile NetworkLoader<SavedModelBundle> instance = null;
+
+    private final String name = NAME;
 
-    private Map<String, SavedModelBundle> loadedNetworks;
+    private final URL archive;
+    private final File rootDir;
+    private final Function<File, M> modelLoader;
 
-    private String name = "parameter-networks";
+    private final LinkedHashMap<String, Entry<M>> loadedNetworks = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxNetworks = DEFAULT_MAX_NETWORKS;
 
-    private File zipSrc = new File(String.format("/data/%s.zip", name));
-    private File zipDst = new File(System.getProperty("java.io.tmpdir"), String.format("%s.zip", name));
-    private File zipDstParent = zipDst.getParentFile();
-    private File rootDir = new File(zipDstParent, name);
+    private final boolean extracted;
+    private final long startupNanos;
+    private final LongAdder nLoads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder nHits = new LongAdder();
+    private final LongAdder nEvictions = new LongAdder();
 
-    private NetworkLoader() throws IOException {
-        if (!rootDir.exists()) {
-            // TODO: Gracefully handle IOException
-            Files.copy(
-                getClass().getResourceAsStream(zipSrc.getPath()),
-                zipDst.toPath(),
-                StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Load time metrics of the loader.
+     *
+     * @param extracted whether the archive was unzipped at startup, rather
+     * than an earlier extraction being reused
+     * @param startupNanos the time to check and, if needed, unzip the archive
+     * @param nLoads the number of networks loaded
+     * @param loadNanos the total time spent loading networks
+     * @param nHits the number of requests for a network that was already
+     * loaded or being loaded
+     * @param nEvictions the number of networks closed to stay within the
+     * limit
+     * @param nResident the number of networks currently loaded
+     */
+    public record Metrics(boolean extracted, long startupNanos, long nLoads, long loadNanos,
+                          long nHits, long nEvictions, int nResident) {
+    }
 
-            UnZipper unZipper = new UnZipper(zipDstParent, zipDst.getPath());
-            unZipper.unzip();
+    private static final class Entry<M> {
+        final CompletableFuture<M> future = new CompletableFuture<>();
+        int users = 0;
+    }
 
-            Files.deleteIfExists(zipDst.toPath());
+    /**
+     * @param archive the zip file of the networks, with the networks under a
+     * top level directory named parameter-networks
+     * @param rootDir the directory the networks are extracted to
+     * @param modelLoader loads the network in a directory
+     * @throws IOException if the archive can't be read or extracted
+     */
+    NetworkLoader(URL archive, File rootDir, Function<File, M> modelLoader) throws IOException {
+        if (archive == null) {
+            throw new IOException("Missing network archive");
         }
+        this.archive = archive;
+        this.rootDir = rootDir;
+        this.modelLoader = modelLoader;
+        long start = System.nanoTime();
+        String stamp = archiveStamp();
+        String[] saved = readChecksum();
+        if ((saved == null) || !stamp.equals(saved[1])) {
+            String checksum = archiveChecksum();
+            if ((saved == null) || !checksum.equals(saved[0])) {
+                extract(checksum, stamp);
+                extracted = true;
+            } else {
+                // only touched, the extraction is still current
+                writeChecksum(rootDir.toPath(), checksum, stamp);
+                extracted = false;
+            }
+        } else {
+            extracted = false;
+        }
+        startupNanos = System.nanoTime() - start;
+    }
+
+    public static NetworkLoader<SavedModelBundle> getNetworkLoader() throws IOException {
+        NetworkLoader<SavedModelBundle> result = instance;
+        if (result == null) {
+            synchronized (NetworkLoader.class) {
+                result = instance;
+                if (result == null) {
+                    result = new NetworkLoader<>(NetworkLoader.class.getResource(String.format("/data/%s.zip", NAME)),
+                            new File(System.getProperty("java.io.tmpdir"), NAME),
+                            dir -> SavedModelBundle.load(dir.getPath(), "serve"));
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
 
-        loadedNetworks = new HashMap<>();
+    private InputStream openArchive() throws IOException {
+        return archive.openStream();
     }
 
-    public static synchronized NetworkLoader getNetworkLoader() throws IOException {
-        if (instance == null) {
-            instance = new NetworkLoader();
+    // The size and modification time of the archive, read without reading
+    // the archive itself
+    private String archiveStamp() throws IOException {
+        if (archive.getProtocol().equals("file")) {
+            try {
+                Path path = Path.of(archive.toURI());
+                return Files.size(path) + " " + Files.getLastModifiedTime(path).toMillis();
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
         }
+        URLConnection connection = archive.openConnection();
+        if (connection instanceof JarURLConnection jarConnection) {
+            ZipEntry zipEntry = jarConnection.getJarEntry();
+            if (zipEntry != null) {
+                return zipEntry.getSize() + " " + zipEntry.getTime();
+            }
+        }
+        return connection.getContentLengthLong() + " " + connection.getLastModified();
+    }
 
-        return instance;
+    private String archiveChecksum() throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] buffer = new byte[65536];
+        try (InputStream inputStream = new CheckedInputStream(openArchive(), crc)) {
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                size += n;
+            }
+        }
+        return Long.toHexString(crc.getValue()) + " " + size;
     }
 
-    public SavedModelBundle fetchNetwork(String path) {
-        SavedModelBundle network;
-        if (loadedNetworks.containsKey(path)) {
-            network = loadedNetworks.get(path);
-        } else {
+    // The checksum and the stamp of the archive that was extracted, or null if
+    // there's no complete extraction
+    private String[] readChecksum() {
+        Path checksumPath = rootDir.toPath().resolve(CHECKSUM_FILE);
+        try {
+            String[] lines = Files.readString(checksumPath, StandardCharsets.UTF_8).split("\n");
+            return lines.length == 2 ? new String[]{lines[0].trim(), lines[1].trim()} : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeChecksum(Path dir, String checksum, String stamp) throws IOException {
+        Files.writeString(dir.resolve(CHECKSUM_FILE), checksum + "\n" + stamp + "\n", StandardCharsets.UTF_8);
+    }
+
+    private void extract(String checksum, String stamp) throws IOException {
+        Path parent = rootDir.toPath().getParent();
+        Path staging = Files.createTempDirectory(parent, name);
+        try {
+            try (ZipInputStream zipStream = new ZipInputStream(openArchive())) {
+                ZipEntry zipEntry;
+                while ((zipEntry = zipStream.getNextEntry()) != null) {
+                    Path target = staging.resolve(zipEntry.getName()).normalize();
+                    if (!target.startsWith(staging)) {
+                        throw new IOException("Bad entry in network archive " + zipEntry.getName());
+                    }
+                    if (zipEntry.isDirectory()) {
+                        Files.createDirectories(target);
+                    } else {
+                        Files.createDirectories(target.getParent());
+                        Files.copy(zipStream, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+            Path stagedRoot = staging.resolve(name);
+            Files.createDirectories(stagedRoot);
+            writeChecksum(stagedRoot, checksum, stamp);
+            deleteTree(rootDir.toPath());
+            try {
+                Files.move(stagedRoot, rootDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(stagedRoot, rootDir.toPath());
+            }
+        } finally {
+            deleteTree(staging);
+        }
+    }
+
+    private static void deleteTree(Path path) throws IOException {
+        if (Files.exists(path)) {
+            try (Stream<Path> paths = Files.walk(path)) {
+                for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the most networks kept loaded while not in use.
+     *
+     * @param value the limit, at least 1
+     */
+    public void setMaxNetworks(int value) {
+        synchronized (loadedNetworks) {
+            maxNetworks = Math.max(1, value);
+            evict();
+        }
+    }
+
+    public Metrics getMetrics() {
+        int nResident;
+        synchronized (loadedNetworks) {
+            nResident = loadedNetworks.size();
+        }
+        return new Metrics(extracted, startupNanos, nLoads.sum(), loadNanos.sum(),
+                nHits.sum(), nEvictions.sum(), nResident);
+    }
+
+    /**
+     * Run an action with a network, loading it if needed. The network stays
+     * open until the action returns, so it must not be kept afterwards.
+     *
+     * @param path the path of the network within the archive
+     * @param action the action
+     * @param <T> the type of the action's result
+     * @return the action's result
+     */
+    public <T> T withNetwork(String path, Function<M, T> action) {
+        Entry<M> entry;
+        boolean load = false;
+        synchronized (loadedNetworks) {
+            entry = loadedNetworks.get(path);
+            if (entry == null) {
+                entry = new Entry<>();
+                loadedNetworks.put(path, entry);
+                load = true;
+            } else {
+                nHits.increment();
+            }
+            entry.users++;
+        }
+        try {
+            if (load) {
+                load(path, entry);
+            }
+            return action.apply(entry.future.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        } finally {
+            synchronized (loadedNetworks) {
+                entry.users--;
+                evict();
+            }
+        }
+    }
+
+    private void load(String path, Entry<M> entry) {
+        long start = System.nanoTime();
+        try {
             File absolutePath = getAbsolutePath(path);
-            network = SavedModelBundle.load(absolutePath.getPath(), "serve");
-            loadedNetworks.put(path, network);
+            entry.future.complete(modelLoader.apply(absolutePath));
+            nLoads.increment();
+            loadNanos.add(System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            synchronized (loadedNetworks) {
+                loadedNetworks.remove(path, entry);
+            }
+            entry.future.completeExceptionally(e);
+        }
+    }
+
+    // Close the least recently used networks that aren't in use until no more
+    // than maxNetworks are loaded. Must be called holding the lock.
+    private void evict() {
+        Iterator<Entry<M>> iterator = loadedNetworks.values().iterator();
+        int nExcess = loadedNetworks.size() - maxNetworks;
+        while ((nExcess > 0) && iterator.hasNext()) {
+            Entry<M> entry = iterator.next();
+            if ((entry.users == 0) && entry.future.isDone()) {
+                iterator.remove();
+                nExcess--;
+                if (!entry.future.isCompletedExceptionally()) {
+                    close(entry.future.join());
+                    nEvictions.increment();
+                }
+            }
+        }
+    }
+
+    private static void close(AutoCloseable network) {
+        try {
+            network.close();
+        } catch (Exception e) {
+            Logger.getLogger(NetworkLoader.class.getName()).log(Level.WARNING, "Can't close network", e);
         }
-        return network;
     }
 
     private File getAbsolutePath(String relativePath) {
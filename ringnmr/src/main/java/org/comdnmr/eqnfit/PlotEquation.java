@@ -54,6 +54,10 @@ public class PlotEquation {
         return name;
     }
 
+    public String getExpType() {
+        return expType;
+    }
+
     public void setExtra(double[] extras) {
         this.extras = extras.clone();
     }
@@ -0,0 +1,265 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.eqnfit;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The points of a data set grouped by id. x[id] holds the x values of the
+ * profile (offsets, B1 field, Tex and field for CEST and R1rho) indexed by
+ * variable and then by point, and indices[id] the position of each of its
+ * points in the full data set. A layout depends only on the experimental
+ * conditions, not on the parameters being fit, so layouts are shared through
+ * a bounded cache: every objective evaluation, and every parametric bootstrap
+ * replicate fit to the same conditions, reuses the same arrays. Non-parametric
+ * replicates resample the points, so their layouts are built with
+ * {@link #of} and not cached. The arrays must not be modified.
+ */
+public final class ProfileLayout {
+
+    static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final Map<Key, ProfileLayout> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static long cacheBytes = 0;
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+
+    final int[][] indices;
+    final double[][][] x;
+    final long sizeBytes;
+
+    private ProfileLayout(int[][] indices, double[][][] x, long sizeBytes) {
+        this.indices = indices;
+        this.x = x;
+        this.sizeBytes = sizeBytes;
+    }
+
+    /**
+     * Returns the layout for the first nPoints points of a data set, from
+     * the cache if the same conditions have been seen before.
+     *
+     * @param xValues the x values indexed by variable and then by point
+     * @param idNums the id of each point
+     * @param nPoints the number of points
+     * @return the layout
+     */
+    static ProfileLayout get(double[][] xValues, int[] idNums, int nPoints) {
+        // the lookup key refers to the caller's arrays, only a cached key is a copy
+        Key lookup = new Key(xValues, idNums, nPoints);
+        synchronized (CACHE) {
+            ProfileLayout layout = CACHE.get(lookup);
+            if (layout != null) {
+                HITS.incrementAndGet();
+                return layout;
+            }
+        }
+        MISSES.incrementAndGet();
+        Key key = lookup.copy();
+        ProfileLayout layout = of(key.xValues, key.idNums, nPoints);
+        synchronized (CACHE) {
+            ProfileLayout current = CACHE.putIfAbsent(key, layout);
+            if (current != null) {
+                return current;
+            }
+            cacheBytes += layout.sizeBytes + key.sizeBytes;
+            evict();
+        }
+        return layout;
+    }
+
+    /**
+     * Build the layout for the first nPoints points of a data set without
+     * using the cache, for data, like a resampled replicate, whose conditions
+     * won't be seen again.
+     *
+     * @param xValues the x values indexed by variable and then by point
+     * @param idNums the id of each point
+     * @param nPoints the number of points
+     * @return the layout
+     */
+    static ProfileLayout of(double[][] xValues, int[] idNums, int nPoints) {
+        int nProfiles = 0;
+        for (int i = 0; i < nPoints; i++) {
+            nProfiles = Math.max(nProfiles, idNums[i] + 1);
+        }
+        int[] counts = new int[nProfiles];
+        for (int i = 0; i < nPoints; i++) {
+            counts[idNums[i]]++;
+        }
+        int nX = xValues.length;
+        int[][] indices = new int[nProfiles][];
+        double[][][] profileX = new double[nProfiles][][];
+        for (int id = 0; id < nProfiles; id++) {
+            indices[id] = new int[counts[id]];
+            profileX[id] = new double[nX][counts[id]];
+        }
+        int[] filled = new int[nProfiles];
+        for (int i = 0; i < nPoints; i++) {
+            int id = idNums[i];
+            int k = filled[id]++;
+            indices[id][k] = i;
+            for (int j = 0; j < nX; j++) {
+                if (xValues[j] != null) {
+                    profileX[id][j][k] = xValues[j][i];
+                }
+            }
+        }
+        long sizeBytes = 64L + nPoints * (4L + 8L * nX) + nProfiles * (48L + 16L * nX);
+        return new ProfileLayout(indices, profileX, sizeBytes);
+    }
+
+    private static void evict() {
+        var iter = CACHE.entrySet().iterator();
+        while ((cacheBytes > maxBytes) && (CACHE.size() > 1) && iter.hasNext()) {
+            var entry = iter.next();
+            cacheBytes -= entry.getValue().sizeBytes + entry.getKey().sizeBytes;
+            iter.remove();
+        }
+    }
+
+    /**
+     * @return the number of lookups that found a cached layout
+     */
+    public static long getHits() {
+        return HITS.get();
+    }
+
+    /**
+     * @return the number of lookups that had to build a layout
+     */
+    public static long getMisses() {
+        return MISSES.get();
+    }
+
+    /**
+     * @return the approximate memory used by the cached layouts, in bytes
+     */
+    public static long getCacheBytes() {
+        synchronized (CACHE) {
+            return cacheBytes;
+        }
+    }
+
+    /**
+     * Set the approximate memory the cache may use before the least
+     * recently used layouts are evicted.
+     *
+     * @param bytes the limit in bytes
+     */
+    public static void setMaxBytes(long bytes) {
+        synchronized (CACHE) {
+            maxBytes = bytes;
+            evict();
+        }
+    }
+
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+            cacheBytes = 0;
+        }
+        HITS.set(0);
+        MISSES.set(0);
+    }
+
+    /**
+     * The experimental conditions of the first nPoints points of a data set.
+     * A key used for a lookup refers to the caller's arrays. The keys in the
+     * cache are copies, so later changes to the caller's arrays can't corrupt
+     * it.
+     */
+    private static final class Key {
+
+        final double[][] xValues;
+        final int[] idNums;
+        final int nPoints;
+        final int hash;
+        final long sizeBytes;
+
+        Key(double[][] xValues, int[] idNums, int nPoints) {
+            this(xValues, idNums, nPoints, hash(xValues, idNums, nPoints));
+        }
+
+        private Key(double[][] xValues, int[] idNums, int nPoints, int hash) {
+            this.xValues = xValues;
+            this.idNums = idNums;
+            this.nPoints = nPoints;
+            this.hash = hash;
+            sizeBytes = 64L + nPoints * (4L + 8L * xValues.length);
+        }
+
+        Key copy() {
+            double[][] xCopy = new double[xValues.length][];
+            for (int j = 0; j < xValues.length; j++) {
+                if (xValues[j] != null) {
+                    xCopy[j] = Arrays.copyOf(xValues[j], nPoints);
+                }
+            }
+            return new Key(xCopy, Arrays.copyOf(idNums, nPoints), nPoints, hash);
+        }
+
+        private static int hash(double[][] xValues, int[] idNums, int nPoints) {
+            int h = 1;
+            for (double[] xRow : xValues) {
+                if (xRow == null) {
+                    h = 31 * h;
+                } else {
+                    for (int i = 0; i < nPoints; i++) {
+                        h = 31 * h + Double.hashCode(xRow[i]);
+                    }
+                }
+            }
+            for (int i = 0; i < nPoints; i++) {
+                h = 31 * h + idNums[i];
+            }
+            return h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key other)) {
+                return false;
+            }
+            if ((hash != other.hash) || (nPoints != other.nPoints) || (xValues.length != other.xValues.length)
+                    || !Arrays.equals(idNums, 0, nPoints, other.idNums, 0, nPoints)) {
+                return false;
+            }
+            for (int j = 0; j < xValues.length; j++) {
+                if ((xValues[j] == null) || (other.xValues[j] == null)) {
+                    if (xValues[j] != other.xValues[j]) {
+                        return false;
+                    }
+                } else if (!Arrays.equals(xValues[j], 0, nPoints, other.xValues[j], 0, nPoints)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
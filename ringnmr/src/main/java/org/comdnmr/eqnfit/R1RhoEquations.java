@@ -17,13 +17,12 @@
  */
 package org.comdnmr.eqnfit;
 
-import org.comdnmr.util.MtxExp;
+import org.comdnmr.util.BlochMcConnellPropagator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import org.ejml.data.Complex_F64;
 import org.ejml.data.DMatrixRMaj;
-import org.ejml.dense.row.CommonOps_DDRM;
 import org.ejml.dense.row.decomposition.eig.WatchedDoubleStepQRDecomposition_DDRM;
 import org.ejml.dense.row.factory.DecompositionFactory_DDRM;
 
@@ -154,13 +153,16 @@ public class R1RhoEquations {
         // R2A, R2B: R20 relaxation rate constants of A and B states
 
         // time delay is hard-coded below
-        DMatrixRMaj at = MtxExp.matrixExp(Z);
-        DMatrixRMaj v = new DMatrixRMaj(m0);
-        CommonOps_DDRM.mult(at, new DMatrixRMaj(m0), v);
+        BlochMcConnellPropagator propagator = BlochMcConnellPropagator.forSize(Z.getNumRows());
+        propagator.exp(Z);
         double magA = 0.0;
         double magA0 = 0.0;
-        for (int i = 0; i < v.getNumRows(); i++) {
-            magA += m1[i] * v.get(i, 0);
+        for (int i = 0; i < m0.length; i++) {
+            double v = 0.0;
+            for (int j = 0; j < m0.length; j++) {
+                v += propagator.get(i, j) * m0[j];
+            }
+            magA += m1[i] * v;
             magA0 += m1[i] * m0[i];
         }
 
@@ -28,6 +28,7 @@ import java.util.*;
 import org.apache.commons.math3.optim.PointValuePair;
 import org.nmrfx.chemistry.relax.ResonanceSource;
 import org.comdnmr.util.CoMDOptions;
+import org.comdnmr.util.RandomStreams;
 import org.nmrfx.chemistry.Atom;
 
 /**
@@ -38,10 +39,7 @@ public class R1RhoFitter implements EquationFitter {
     static double[] guesses = null;
     FitFunction calcR1Rho;
     CoMDOptions options;
-    List<Double>[] xValues;
-    List<Double> yValues = new ArrayList<>();
-    List<Double> errValues = new ArrayList<>();
-    List<Integer> idValues = new ArrayList<>();
+    FitData fitData;
     int nCurves = 1;
     int nResidues = 1;
     int[][] states;
@@ -106,10 +104,7 @@ public class R1RhoFitter implements EquationFitter {
 
     @Override
     public void setData(ExperimentSet experimentSet, ResonanceSource[] dynSources) {
-        xValues = new ArrayList[4];
-        for (int j = 0; j < xValues.length; j++) {
-            xValues[j] = new ArrayList<>();
-        }
+        FitData.Builder builder = new FitData.Builder(4, FitData.countValues(experimentSet, dynSources));
         this.dynSources = dynSources.clone();
         nResidues = dynSources.length;
         experimentSet.setupMaps();
@@ -127,52 +122,34 @@ public class R1RhoFitter implements EquationFitter {
                 if (experimentalData != null) {
                     constraints[id] = expData.getConstraints();
                     states[k++] = experimentSet.getStateIndices(resIndex, expData);
-                    double[][] x = experimentalData.getXValues();
-                    double[] y = experimentalData.getYValues();
-                    double[] err = experimentalData.getErrValues();
-                    double field = expData.getNucleusField();
-                    for (int i = 0; i < y.length; i++) {
-                        for (int j = 0; j < x.length; j++) {
-                            xValues[j].add(x[j][i]);
-                        }
-                        xValues[xValues.length - 1].add(field);
-                        yValues.add(y[i]);
-                        errValues.add(err[i]);
-                        idValues.add(id);
-                    }
+                    builder.add(experimentalData, id, expData.getNucleusField());
                     id++;
                 }
             }
             resIndex++;
         }
+        fitData = builder.build(states, stateCount, this.dynSources, constraints);
     }
 
     @Override
     public void setData(List<Double>[] allXValues, List<Double> yValues, List<Double> errValues) {
-        xValues = new ArrayList[allXValues.length];
-        for (int j = 0; j < allXValues.length; j++) {
-            xValues[j] = new ArrayList<>();
-            xValues[j].addAll(allXValues[j]);
-        }
-        this.yValues.addAll(yValues);
-        this.errValues.addAll(errValues);
-        for (Double yValue : yValues) {
-            idValues.add(0);
-        }
-        dynSources = new ResonanceSource[1];
-        dynSources[0] = null;
-
-        stateCount = new int[4];
-        stateCount[0] = 1;
-        stateCount[1] = 1;
-        stateCount[2] = 1;
-        stateCount[3] = 1;
-
-        states = new int[1][4];
-        states[0][0] = 0;
-        states[0][1] = 0;
-        states[0][2] = 0;
-        states[0][3] = 0;
+        setData(FitData.of(allXValues, yValues, errValues, allXValues.length, 1));
+    }
+
+    @Override
+    public void setData(FitData fitData) {
+        this.fitData = fitData;
+        dynSources = fitData.dynSources;
+        stateCount = fitData.stateCount;
+        nResidues = stateCount[0];
+        states = fitData.states;
+        nCurves = states.length;
+        constraints = fitData.constraints;
+    }
+
+    @Override
+    public FitData getFitData() {
+        return fitData;
     }
 
     @Override
@@ -212,22 +189,10 @@ public class R1RhoFitter implements EquationFitter {
 
     @Override
     public void setupFit(String eqn) {
-        double[][] x = new double[xValues.length][yValues.size()];
-        double[] y = new double[yValues.size()];
-        double[] err = new double[yValues.size()];
-        int[] idNums = new int[yValues.size()];
-        for (int i = 0; i < x[0].length; i++) {
-            for (int j = 0; j < xValues.length; j++) {
-                x[j][i] = xValues[j].get(i);
-            }
-            y[i] = yValues.get(i);
-            err[i] = errValues.get(i);
-            idNums[i] = idValues.get(i);
-        }
         calcR1Rho.setEquation(eqn);
-        calcR1Rho.setXY(x, y);
-        calcR1Rho.setIds(idNums);
-        calcR1Rho.setErr(err);
+        calcR1Rho.setXY(fitData.x, fitData.y);
+        calcR1Rho.setIds(fitData.ids);
+        calcR1Rho.setErr(fitData.err);
         calcR1Rho.setMap(stateCount, states);
     }
 
@@ -257,19 +222,7 @@ public class R1RhoFitter implements EquationFitter {
 
     @Override
     public Optional<FitResult> doFit(String eqn, double[] sliderguesses, CoMDOptions options) {
-        double[][] xvals = new double[xValues.length][xValues[0].size()];
-        double[] yvals = new double[yValues.size()];
-        int[] idNums = new int[yValues.size()];
-        for (int i = 0; i < xvals.length; i++) {
-            for (int j = 0; j < xvals[0].length; j++) {
-                xvals[i][j] = xValues[i].get(j);
-            }
-        }
-        for (int i = 0; i < yvals.length; i++) {
-            yvals[i] = yValues.get(i);
-            idNums[i] = idValues.get(i);
-        }
-        double[][] xy = CESTEquations.getXYValues(xvals, yvals, idNums, 0);
+        double[][] xy = CESTEquations.getXYValues(fitData.x, fitData.y, fitData.ids, 0);
         List<CESTPeak> peaks = CESTEquations.cestPeakGuess(xy, "r1rho");
         if (peaks.size() >= 1) {
             setupFit(eqn);
@@ -337,6 +290,7 @@ public class R1RhoFitter implements EquationFitter {
                 double deltaABdiff = options.getDeltaABDiff();
                 if (FitFunction.getCalcError()) {
                     long startTime = System.currentTimeMillis();
+                    calcR1Rho.setRandomSeed(RandomStreams.masterSeed(options.getRandomSeed()), EquationFitter.getRandomTask(dynSources));
                     var errOpt = calcR1Rho.simBoundsStream(pars.clone(),
                             boundaries[0], boundaries[1], sigma, options);
                     long endTime = System.currentTimeMillis();
@@ -356,7 +310,7 @@ public class R1RhoFitter implements EquationFitter {
                         }
                     }
                 }
-                double[][] extras = getFields(xValues, idValues);
+                double[][] extras = fitData.getFields();
                 String refineOpt = options.getOptimizer();
                 String bootstrapOpt = options.getBootStrapOptimizer();
                 long fitTime = calcR1Rho.fitTime;
@@ -369,7 +323,7 @@ public class R1RhoFitter implements EquationFitter {
                 double tol = options.getTolerance();
                 boolean useWeight = options.getWeightFit();
                 CurveFit.CurveFitStats curveStats = new CurveFit.CurveFitStats(refineOpt, bootstrapOpt, fitTime, bootTime, nSamples, useAbs,
-                        useNonParametric, sRadius, fRadius, tol, useWeight);
+                        useNonParametric, sRadius, fRadius, tol, useWeight, calcR1Rho.getRandomSeed());
                 return Optional.of(getResults(this, eqn, parNames, dynSources, map, states, extras, nGroupPars, pars, errEstimates, fitQuality, simPars, exchangeValid, curveStats));
             } else {
                 return Optional.empty();
@@ -1,12 +1,12 @@
 package org.comdnmr.eqnfit;
 
 import org.apache.commons.math3.optim.PointValuePair;
-import org.apache.commons.math3.random.RandomGenerator;
-import org.apache.commons.math3.random.SynchronizedRandomGenerator;
-import org.apache.commons.math3.random.Well19937c;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math3.util.FastMath;
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.sampling.distribution.NormalizedGaussianSampler;
 import org.comdnmr.util.CoMDOptions;
+import org.comdnmr.util.RandomStreams;
 
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -14,8 +14,6 @@ import java.util.stream.IntStream;
 
 public class SSR1RhoFitFunction extends FitFunction {
 
-    static RandomGenerator random = new SynchronizedRandomGenerator(new Well19937c());
-
     public SSR1RhoFitFunction(CoMDOptions options) {
         super(options);
         this.equation = SSR1RhoEquation.CSA;
@@ -101,13 +99,15 @@ public class SSR1RhoFitFunction extends FitFunction {
         String optimizer = options.getBootStrapOptimizer();
         AtomicBoolean failed = new AtomicBoolean(false);
 
+        UniformRandomProvider[] streams = getReplicateStreams(nSim);
         IntStream.range(0, nSim).parallel().forEach(i -> {
 //        IntStream.range(0, nSim).forEach(i -> {
             ExpFitFunction rDisp = new ExpFitFunction(options, xValues, yPred, errValues, idNums);
             rDisp.setEquation(equation.getName());
             double[] newY = new double[yValues.length];
+            NormalizedGaussianSampler gaussian = RandomStreams.gaussian(streams[i]);
             for (int k = 0; k < yValues.length; k++) {
-                newY[k] = yPred[k] + errValues[k] * random.nextGaussian();
+                newY[k] = yPred[k] + errValues[k] * gaussian.sample();
             }
             rDisp.setXY(xValues, newY);
             rDisp.setIds(idNums);
@@ -146,6 +146,7 @@ public class SSR1RhoFitFunction extends FitFunction {
         String optimizer = options.getBootStrapOptimizer();
         AtomicBoolean failed = new AtomicBoolean(false);
 
+        UniformRandomProvider[] streams = getReplicateStreams(nSim);
         IntStream.range(0, nSim).parallel().forEach(i -> {
             SSR1RhoFitFunction rDisp = new SSR1RhoFitFunction(options, xValues, yValues, errValues, idNums);
             rDisp.setEquation(equation.getName());
@@ -157,7 +158,7 @@ public class SSR1RhoFitFunction extends FitFunction {
             do {
                 for (int j = 0; j < xValues.length; j++) {
                     for (int k = 0; k < yValues.length; k++) {
-                        int rI = random.nextInt(yValues.length);
+                        int rI = streams[i].nextInt(yValues.length);
                         newX[j][k] = xValues[j][rI];
                         newY[k] = yValues[rI];
                         newErr[k] = errValues[rI];
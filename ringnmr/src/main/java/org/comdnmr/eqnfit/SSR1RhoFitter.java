@@ -4,6 +4,7 @@ import org.apache.commons.math3.optim.PointValuePair;
 import org.checkerframework.checker.nullness.Opt;
 import org.comdnmr.fit.FitQuality;
 import org.comdnmr.util.CoMDOptions;
+import org.comdnmr.util.RandomStreams;
 import org.nmrfx.chemistry.relax.ResonanceSource;
 
 import java.util.ArrayList;
@@ -16,10 +17,7 @@ public class SSR1RhoFitter implements EquationFitter {
     FitFunction fitFunc;
     CoMDOptions options;
 
-    List<Double>[] xValues;
-    List<Double> yValues = new ArrayList<>();
-    List<Double> errValues = new ArrayList<>();
-    List<Integer> idValues = new ArrayList<>();
+    FitData fitData;
     int nCurves = 1;
     int nResidues = 1;
     int[][] states;
@@ -77,6 +75,7 @@ public class SSR1RhoFitter implements EquationFitter {
         double[][] simPars = null;
         if (FitFunction.getCalcError()) {
             long startTime = System.currentTimeMillis();
+            fitFunc.setRandomSeed(RandomStreams.masterSeed(options.getRandomSeed()), EquationFitter.getRandomTask(dynSources));
             var errOpt = fitFunc.simBoundsStream(pars.clone(),
                     boundaries[0], boundaries[1], sigma, options);
             long endTime = System.currentTimeMillis();
@@ -99,8 +98,8 @@ public class SSR1RhoFitter implements EquationFitter {
         double tol = options.getTolerance();
         boolean useWeight = options.getWeightFit();
         CurveFit.CurveFitStats curveStats = new CurveFit.CurveFitStats(refineOpt, bootstrapOpt, fitTime, bootTime, nSamples, useAbs,
-                useNonParametric, sRadius, fRadius, tol, useWeight);
-        double[][] extras = getFields(xValues, idValues);
+                useNonParametric, sRadius, fRadius, tol, useWeight, fitFunc.getRandomSeed());
+        double[][] extras = fitData.getFields();
         FitResult res = getResults(this, eqn, parNames, dynSources, map, states, extras, nGroupPars, pars, errEstimates, fitQuality, simPars, true, curveStats);
         return Optional.of(res);
     }
@@ -140,13 +139,6 @@ public class SSR1RhoFitter implements EquationFitter {
 
     @Override
     public void setData(List<Double>[] allXValues, List<Double> yValuesLog10, List<Double> errValuesLog10) {
-        xValues = new ArrayList[allXValues.length];
-        for (int j = 0; j < allXValues.length; j++) {
-            xValues[j] = new ArrayList<>();
-            xValues[j].addAll(allXValues[j]);
-        }
-        this.yValues.clear();
-
         // Y-axis for SS R1rho is logarithmic.
         // Need to convert log10(y) -> y
         // and log10(err_y) -> err_y
@@ -156,42 +148,30 @@ public class SSR1RhoFitter implements EquationFitter {
             yValues.add(Math.pow(10.0, yValuesLog10.get(i)));
             errValues.add(Math.pow(10.0, errValuesLog10.get(i)));
         }
-        this.yValues.addAll(yValues);
-        this.errValues.clear();
-        this.errValues.addAll(errValues);
-        this.idValues.clear();
-        yValues.forEach((_item) -> {
-            this.idValues.add(0);
-        });
-        dynSources = new ResonanceSource[1];
-        dynSources[0] = null;
-        nCurves = 1;
-        stateCount = new int[4];
-        stateCount[0] = nResidues;
-        stateCount[1] = 1;
-        stateCount[2] = 1;
-        stateCount[3] = 1;
-        states = new int[1][4];
+        setData(FitData.of(allXValues, yValues, errValues, allXValues.length, nResidues));
+    }
+
+    @Override
+    public void setData(FitData fitData) {
+        this.fitData = fitData;
+        dynSources = fitData.dynSources;
+        stateCount = fitData.stateCount;
+        nResidues = stateCount[0];
+        states = fitData.states;
+        nCurves = states.length;
+    }
+
+    @Override
+    public FitData getFitData() {
+        return fitData;
     }
 
     @Override
     public void setupFit(String eqn) {
-        double[][] x = new double[xValues.length][yValues.size()];
-        double[] y = new double[yValues.size()];
-        double[] err = new double[yValues.size()];
-        int[] idNums = new int[yValues.size()];
-        for (int i = 0; i < x[0].length; i++) {
-            for (int j = 0; j < x.length; j++) {
-                x[j][i] = xValues[j].get(i);
-            }
-            y[i] = yValues.get(i);
-            err[i] = errValues.get(i);
-            idNums[i] = idValues.get(i);
-        }
         fitFunc.setEquation(eqn);
-        fitFunc.setXY(x, y);
-        fitFunc.setIds(idNums);
-        fitFunc.setErr(err);
+        fitFunc.setXY(fitData.x, fitData.y);
+        fitFunc.setIds(fitData.ids);
+        fitFunc.setErr(fitData.err);
         fitFunc.setMap(stateCount, states);
     }
 
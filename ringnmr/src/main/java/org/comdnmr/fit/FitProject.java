@@ -0,0 +1,232 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.fit;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.comdnmr.data.DataIO;
+import org.comdnmr.data.ExperimentSet;
+import org.comdnmr.util.CoMDOptions;
+import org.comdnmr.util.CoMDPreferences;
+
+/**
+ * Fit every resonance of a project from the command line, without the GUI.
+ * The project is a .yaml file as read by {@link DataIO#loadYAMLFile}. The
+ * fits run on a pool with the given number of threads and the results are
+ * written with {@link DataIO#saveResultsFile}, and optionally as NMR-STAR.
+ * Nothing here starts the JavaFX toolkit, so it runs on machines without a
+ * display. Options are kept for this run only: values not given come from
+ * the defaults, not from the stored GUI preferences, and the stored
+ * preferences are left unchanged.
+ * <p>
+ * Results are written to the results file of the project unless -O is
+ * given, and results saved there are reused: only resonances whose data
+ * changed since they were fit, or that have no results, are fit again,
+ * unless the fit settings or equations changed or -F is given.
+ *
+ * <pre>
+ * ringfit -T 16 -n 100 -x 1234 -O results.txt -S project.yaml
+ * </pre>
+ */
+public class FitProject {
+
+    static final String USAGE = String.join("\n",
+            "usage: ringfit [options] project.yaml",
+            "  -O file   results file, default the results file of the project",
+            "  -S        include the fit statistics in the results file",
+            "  -s file   also write the results to an NMR-STAR file",
+            "  -e eqns   comma separated equations to fit, default is the standard set for the mode",
+            "  -T n      number of fitting threads",
+            "  -r opt    refine optimizer: CMA-ES or BOBYQA",
+            "  -b opt    bootstrap optimizer: CMA-ES or BOBYQA",
+            "  -n n      number of bootstrap samples",
+            "  -x seed   random seed for the bootstrap, 0 picks a new seed",
+            "  -R r      starting radius",
+            "  -f exp    final radius exponent",
+            "  -t exp    tolerance exponent",
+            "  -a        fit absolute values",
+            "  -P        use parametric rather than non-parametric bootstrap",
+            "  -w        don't weight the fit",
+            "  -G        don't use neural network guesses",
+            "  -F        fit every resonance, even those with results for unchanged data",
+            "  -h        show this message");
+
+    String projectFile = null;
+    String outFileName = null;
+    String starFileName = null;
+    boolean saveStats = false;
+    boolean fitAll = false;
+    String equations = null;
+
+    public static void main(String[] args) {
+        FitProject fitProject = new FitProject();
+        CoMDPreferences.useSessionPreferences();
+        try {
+            if (!fitProject.parseArgs(args)) {
+                System.out.println(USAGE);
+                return;
+            }
+        } catch (IllegalArgumentException iaE) {
+            System.err.println(iaE.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        try {
+            fitProject.run();
+        } catch (Exception e) {
+            System.err.println("Error fitting " + fitProject.projectFile + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parse the command line and set the fit options in the preferences.
+     *
+     * @param args the command line
+     * @return false if help was requested
+     * @throws IllegalArgumentException if the command line is invalid
+     */
+    boolean parseArgs(String[] args) {
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("-") || (arg.length() != 2)) {
+                files.add(arg);
+                continue;
+            }
+            char option = arg.charAt(1);
+            switch (option) {
+                case 'h' -> {
+                    return false;
+                }
+                case 'S' -> saveStats = true;
+                case 'F' -> fitAll = true;
+                case 'a' -> CoMDPreferences.setAbsValueFit(true);
+                case 'P' -> CoMDPreferences.setNonParametric(false);
+                case 'w' -> CoMDPreferences.setWeightFit(false);
+                case 'G' -> CoMDPreferences.setNeuralNetworkGuess(false);
+                default -> {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Missing value for " + arg);
+                    }
+                    setOption(option, args[++i]);
+                }
+            }
+        }
+        if (files.size() != 1) {
+            throw new IllegalArgumentException("Specify one project file");
+        }
+        projectFile = files.get(0);
+        return true;
+    }
+
+    void setOption(char option, String value) {
+        try {
+            switch (option) {
+                case 'O' -> outFileName = value;
+                case 's' -> starFileName = value;
+                case 'e' -> equations = value;
+                case 'T' -> CoMDPreferences.setNProcesses(Integer.parseInt(value));
+                case 'r' -> CoMDPreferences.setOptimizer(getOptimizer(value));
+                case 'b' -> CoMDPreferences.setBootStrapOptimizer(getOptimizer(value));
+                case 'n' -> CoMDPreferences.setSampleSize(Integer.parseInt(value));
+                case 'x' -> CoMDPreferences.setRandomSeed(Long.parseLong(value));
+                case 'R' -> CoMDPreferences.setStartingRadius(Double.parseDouble(value));
+                case 'f' -> CoMDPreferences.setFinalRadius(Double.parseDouble(value));
+                case 't' -> CoMDPreferences.setTolerance(Double.parseDouble(value));
+                default -> throw new IllegalArgumentException("Unknown option -" + option);
+            }
+        } catch (NumberFormatException nfE) {
+            throw new IllegalArgumentException("Invalid value " + value + " for -" + option);
+        }
+    }
+
+    /**
+     * @return the name of the optimizer. LM is only used by model free fits,
+     * which ringfit doesn't do, so it isn't accepted.
+     */
+    static String getOptimizer(String value) {
+        return switch (value.toUpperCase()) {
+            case "CMA-ES", "CMAES" -> "CMA-ES";
+            case "BOBYQA" -> "BOBYQA";
+            case "LM" -> throw new IllegalArgumentException("LM is only used for model free fits");
+            default -> throw new IllegalArgumentException("Unknown optimizer " + value);
+        };
+    }
+
+    void setEquations(String expMode) {
+        if (equations == null) {
+            return;
+        }
+        String eqnMap = String.join(";true\n", equations.split(",")) + ";true";
+        switch (expMode) {
+            case "cpmg" -> CoMDPreferences.setCPMGEqnMap(eqnMap);
+            case "cest" -> CoMDPreferences.setCESTEqnMap(eqnMap);
+            case "r1rho" -> CoMDPreferences.setR1RhoEqnMap(eqnMap);
+            case "r1", "r2", "rq", "rap" -> CoMDPreferences.setExpEqnMap(eqnMap);
+            default -> throw new IllegalArgumentException("Can't choose equations for mode " + expMode);
+        }
+    }
+
+    /**
+     * Load the project, fit it and write the results.
+     *
+     * @return the number of resonances fit
+     * @throws Exception if the project can't be read or fit, or the results
+     * can't be written
+     */
+    int run() throws Exception {
+        File file = new File(projectFile);
+        if (!file.canRead()) {
+            throw new IOException("Can't read project file " + projectFile);
+        }
+        ExperimentSet experimentSet = DataIO.loadYAMLFile(projectFile);
+        if (experimentSet == null) {
+            throw new IOException("No fit section in project file " + projectFile);
+        }
+        setEquations(experimentSet.getExpMode());
+
+        CoMDOptions options = new CoMDOptions(true);
+        System.out.printf("Fitting %s (%s) with %d threads\n", experimentSet.name(),
+                experimentSet.getExpMode(), options.getNProcesses());
+        long startTime = System.currentTimeMillis();
+        ResidueFitter residueFitter = new ResidueFitter(options);
+        int nFit;
+        if (fitAll) {
+            residueFitter.fitResiduesNow(experimentSet);
+            nFit = experimentSet.getExperimentResults().size();
+        } else {
+            nFit = residueFitter.fitChangedResiduesNow(experimentSet);
+        }
+        long endTime = System.currentTimeMillis();
+        System.out.printf("Fit %d of %d resonances in %.1f s\n", nFit, experimentSet.getExperimentResults().size(),
+                (endTime - startTime) / 1000.0);
+
+        String resultsFileName = outFileName != null ? outFileName : experimentSet.getFileName();
+        DataIO.saveResultsFile(resultsFileName, experimentSet, saveStats);
+        System.out.println("Wrote " + resultsFileName);
+        if (starFileName != null) {
+            DataIO.writeSTAR3File(starFileName);
+            System.out.println("Wrote " + starFileName);
+        }
+        return nFit;
+    }
+}
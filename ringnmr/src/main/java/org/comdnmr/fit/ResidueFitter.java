@@ -29,18 +29,30 @@ import org.comdnmr.eqnfit.CESTFitter;
 import org.comdnmr.eqnfit.CurveFit;
 import org.comdnmr.eqnfit.ExpFitter;
 import org.comdnmr.eqnfit.EquationFitter;
+import org.comdnmr.eqnfit.FitData;
 import org.comdnmr.eqnfit.CPMGFitter;
 import org.comdnmr.eqnfit.CPMGEquation;
 import org.comdnmr.util.ProcessingStatus;
+import org.comdnmr.util.RandomStreams;
 import org.comdnmr.data.ExperimentSet;
 import org.comdnmr.data.ExperimentResult;
+import org.comdnmr.data.ReloadManifest;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.concurrent.Service;
 import javafx.concurrent.Task;
@@ -58,14 +70,14 @@ import org.nmrfx.chemistry.relax.ResonanceSource;
 public class ResidueFitter {
 
     final CoMDOptions options;
-    private final FitResidues processDataset = new FitResidues();
-    final ReadOnlyObjectProperty<Worker.State> stateProperty = processDataset.worker.stateProperty();
+    // created on first use, so fitting with fitResiduesNow never touches JavaFX
+    private FitResidues processDataset = null;
     private boolean isProcessing = false;
     ExperimentSet experimentSet;
     Function<Double, Double> updaterFunction;
     Function<ProcessingStatus, Double> statusFunction;
     List<List<ResonanceSource>> atomFitGroups = null;
-    FitResult fitResult;
+    volatile FitResult fitResult;
 
     public ResidueFitter(CoMDOptions options) {
         this.options = options;
@@ -82,9 +94,89 @@ public class ResidueFitter {
         experimentSet.setupMaps();
         this.atomFitGroups = null;
         experimentSet.clearResidueMap();
-        fitAllAtoms(null);
-        RelaxTypes relaxType = RelaxTypes.valueOf(experimentSet.getExpMode().toUpperCase());
-        DataIO.addRelaxationFitResults(experimentSet, relaxType);
+        startManifest(true);
+        fitGroups(getAllAtoms(), null, false);
+        addRelaxationResults();
+    }
+
+    /**
+     * Fit the resonances whose data changed since their results were fit,
+     * keeping the results of the others. A resonance is fit if it has no
+     * result, or if the manifest of the experiment set doesn't record its
+     * result as fit to its current data. If the fit settings or equations
+     * changed, every resonance is fit. Results of resonances that no longer
+     * have data are removed, so the results are those a full fit would give.
+     *
+     * @param experimentSet the experiment set
+     * @return the number of resonances fit
+     */
+    public int fitChangedResiduesNow(ExperimentSet experimentSet) {
+        this.experimentSet = experimentSet;
+        experimentSet.setupMaps();
+        this.atomFitGroups = null;
+        List<List<ResonanceSource>> allAtoms = getAllAtoms();
+        // groups keep their index in allAtoms, so their ids match those of a full fit
+        List<List<ResonanceSource>> changedAtoms = new ArrayList<>();
+        List<Integer> changedIds = new ArrayList<>();
+        boolean fitAll = startManifest(false);
+        if (fitAll) {
+            experimentSet.clearResidueMap();
+        } else {
+            experimentSet.retainExperimentResults(allAtoms.stream().flatMap(List::stream).toList());
+        }
+        for (int i = 0; i < allAtoms.size(); i++) {
+            List<ResonanceSource> atoms = allAtoms.get(i);
+            if (fitAll || atoms.stream().anyMatch(this::needsFit)) {
+                changedAtoms.add(atoms);
+                changedIds.add(i);
+            }
+        }
+        fitGroups(changedAtoms, changedIds.stream().mapToInt(Integer::intValue).toArray(), null, false);
+        addRelaxationResults();
+        return changedAtoms.stream().mapToInt(List::size).sum();
+    }
+
+    boolean needsFit(ResonanceSource resSource) {
+        return (experimentSet.getExperimentResult(resSource) == null)
+                || !experimentSet.getManifest().isFitTo(resSource, ReloadManifest.hashData(experimentSet, resSource));
+    }
+
+    /**
+     * Set the fit settings in the manifest of the experiment set. The data
+     * hashes recorded with other settings no longer describe the results, so
+     * they are cleared, as they are when all resonances are to be fit.
+     *
+     * @param fitAll true if all resonances will be fit
+     * @return true if the recorded data hashes were cleared
+     */
+    boolean startManifest(boolean fitAll) {
+        ReloadManifest manifest = experimentSet.getManifest();
+        String settings = ReloadManifest.hashSettings(options, experimentSet.getExpMode(),
+                getEquationNames(experimentSet.getExpMode()));
+        if (fitAll || !settings.equals(manifest.getSettings())) {
+            manifest.clearFits();
+            manifest.setSettings(settings);
+            return true;
+        }
+        return false;
+    }
+
+    static List<String> getEquationNames(String expMode) {
+        return switch (expMode) {
+            case "cpmg" -> CPMGFitter.getEquationNames();
+            case "r1", "r2", "rq", "rap" -> ExpFitter.getEquationNames();
+            case "cest" -> CESTFitter.getEquationNames();
+            case "r1rho" -> R1RhoFitter.getEquationNames();
+            default -> List.of();
+        };
+    }
+
+    void addRelaxationResults() {
+        String expMode = experimentSet.getExpMode().toUpperCase();
+        if (expMode.equals("R1") || expMode.equals("R2") || expMode.equals("NOE")) {
+            RelaxTypes relaxType = RelaxTypes.valueOf(expMode);
+            DataIO.addRelaxationFitResults(experimentSet, relaxType);
+        }
     }
 
     public void fitResidues(ExperimentSet experimentSet) {
@@ -100,7 +192,19 @@ public class ResidueFitter {
         if (residueFitGroups == null) {
             experimentSet.clearResidueMap();
         }
-        ((Service) processDataset.worker).restart();
+        startManifest(residueFitGroups == null);
+        ((Service) getProcessDataset().worker).restart();
+    }
+
+    private synchronized FitResidues getProcessDataset() {
+        if (processDataset == null) {
+            processDataset = new FitResidues();
+        }
+        return processDataset;
+    }
+
+    ReadOnlyObjectProperty<Worker.State> stateProperty() {
+        return getProcessDataset().worker.stateProperty();
     }
 
     public void updateProgress(Double f) {
@@ -129,8 +233,10 @@ public class ResidueFitter {
         statusFunction.apply(status);
     }
 
-    public void haltFit() {
-        processDataset.worker.cancel();
+    public synchronized void haltFit() {
+        if (processDataset != null) {
+            processDataset.worker.cancel();
+        }
     }
 
     synchronized void setProcessingOn() {
@@ -160,24 +266,7 @@ public class ResidueFitter {
     }
 
     public void fitAllResidueGroups(Task task) {
-        for (List<ResonanceSource> dynFitGroup : atomFitGroups) {
-            int nResidues = dynFitGroup.size();
-            int nFit = 0;
-            if (task.isCancelled()) {
-                break;
-            }
-            ResonanceSource[] dynGroup = new ResonanceSource[dynFitGroup.size()];
-            dynFitGroup.toArray(dynGroup);
-            List<ExperimentResult> resInfoList = fitResidues(experimentSet, dynGroup, nFit, null);
-            resInfoList.forEach((resInfo) -> {
-                ResonanceSource dynSource = resInfo.getResonanceSource();
-                if (!dynSource.deleted()) {
-                    experimentSet.addExperimentResult(dynSource, resInfo);
-                }
-            });
-            nFit++;
-            updateProgress((1.0 * nFit) / nResidues);
-        }
+        fitGroups(atomFitGroups, task == null ? null : task::isCancelled, true);
     }
 
     public List<List<ResonanceSource>> getAllAtoms() {
@@ -217,26 +306,97 @@ public class ResidueFitter {
     }
 
     public void fitAllAtoms(Task task) {
-        List<List<ResonanceSource>> allAtoms = getAllAtoms();
-        int nGroups = allAtoms.size();
-        int nFit = 0;
-        for (List<ResonanceSource> atomList : allAtoms) {
-            if ((task != null) && task.isCancelled()) {
-                break;
-            }
-            ResonanceSource[] atomGroup = new ResonanceSource[atomList.size()];
-            atomList.toArray(atomGroup);
-            List<ExperimentResult> resInfoList = fitResidues(experimentSet, atomGroup, nFit, null);
-            resInfoList.forEach((resInfo) -> {
-                ResonanceSource fitAtom = resInfo.getResonanceSource();
-                experimentSet.addExperimentResult(fitAtom, resInfo);
+        fitGroups(getAllAtoms(), task == null ? null : task::isCancelled, false);
+    }
+
+    /**
+     * Fit each group of resonances on a work-stealing pool with
+     * options.getNProcesses() threads. The groups are independent, so they can
+     * run in any order, but their results are added to the experiment set in
+     * group order, as each leading run of groups completes, so the result map
+     * is built in the same order as a serial fit. Bootstrap streams started
+     * from within a group run in the same pool.
+     *
+     * @param fitGroups the groups of resonances to fit together
+     * @param cancelled returns true when the fit has been cancelled. If
+     * null, the fit can't be cancelled and progress isn't reported.
+     * @param skipDeleted if true don't store results for deleted resonances
+     */
+    void fitGroups(List<List<ResonanceSource>> fitGroups, BooleanSupplier cancelled, boolean skipDeleted) {
+        fitGroups(fitGroups, null, cancelled, skipDeleted);
+    }
+
+    /**
+     * Fit each group of resonances, as above, with the given group ids.
+     *
+     * @param groupIds the id of each group in the results, or null to number
+     * the groups by their position in fitGroups
+     */
+    void fitGroups(List<List<ResonanceSource>> fitGroups, int[] groupIds, BooleanSupplier cancelled, boolean skipDeleted) {
+        CoMDOptions runOptions = getRunOptions();
+        int nGroups = fitGroups.size();
+        List<ExperimentResult>[] groupResults = new List[nGroups];
+        int[] nextGroup = {0};
+        AtomicInteger nFit = new AtomicInteger(0);
+        List<Callable<Void>> groupTasks = new ArrayList<>();
+        for (int i = 0; i < nGroups; i++) {
+            final int groupIndex = i;
+            final int groupId = groupIds == null ? i : groupIds[i];
+            groupTasks.add(() -> {
+                if ((cancelled != null) && cancelled.getAsBoolean()) {
+                    return null;
+                }
+                List<ResonanceSource> atomList = fitGroups.get(groupIndex);
+                ResonanceSource[] atomGroup = new ResonanceSource[atomList.size()];
+                atomList.toArray(atomGroup);
+                List<ExperimentResult> resInfoList = fitGroup(experimentSet, atomGroup, groupId, null, runOptions);
+                synchronized (groupResults) {
+                    groupResults[groupIndex] = resInfoList;
+                    while ((nextGroup[0] < nGroups) && (groupResults[nextGroup[0]] != null)) {
+                        addGroupResults(groupResults[nextGroup[0]], skipDeleted);
+                        nextGroup[0]++;
+                    }
+                    int n = nFit.incrementAndGet();
+                    if (cancelled != null) {
+                        updateProgress((1.0 * n) / nGroups);
+                    }
+                }
+                return null;
             });
-            nFit++;
-            if (task != null) {
-                updateProgress((1.0 * nFit) / nGroups);
+        }
+        int nThreads = Math.max(1, options.getNProcesses());
+        ForkJoinPool pool = new ForkJoinPool(nThreads);
+        try {
+            for (Future<Void> future : pool.invokeAll(groupTasks)) {
+                future.get();
+            }
+        } catch (InterruptedException iE) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException eE) {
+            Throwable cause = eE.getCause();
+            throw new IllegalStateException(cause.getMessage(), cause);
+        } finally {
+            pool.shutdown();
+            // after a cancel, keep whatever groups did finish
+            synchronized (groupResults) {
+                for (int i = nextGroup[0]; i < nGroups; i++) {
+                    if (groupResults[i] != null) {
+                        addGroupResults(groupResults[i], skipDeleted);
+                    }
+                }
+                nextGroup[0] = nGroups;
             }
         }
+    }
 
+    void addGroupResults(List<ExperimentResult> resInfoList, boolean skipDeleted) {
+        for (ExperimentResult resInfo : resInfoList) {
+            ResonanceSource fitAtom = resInfo.getResonanceSource();
+            if (!skipDeleted || !fitAtom.deleted()) {
+                experimentSet.addExperimentResult(fitAtom, resInfo);
+                experimentSet.getManifest().setFit(fitAtom, ReloadManifest.hashData(experimentSet, fitAtom));
+            }
+        }
     }
 
     EquationFitter getFitter(CoMDOptions options) {
@@ -279,8 +439,20 @@ public class ResidueFitter {
 
     public List<ExperimentResult> fitResidues(ExperimentSet experimentSet, ResonanceSource[] dynSources, int groupId, String useEquation) {
         this.experimentSet = experimentSet;
-        experimentSet.setupMaps();
-        Map<String, FitResult> fitResults = new HashMap<>();
+        return fitGroup(experimentSet, dynSources, groupId, useEquation, getRunOptions());
+    }
+
+    /**
+     * Fit one group of resonances with each active equation. The state index
+     * of the experiment set is built once and then only read, so this can be
+     * called concurrently for different groups.
+     *
+     * @param fitOptions the options of the run, with its master seed fixed
+     */
+    List<ExperimentResult> fitGroup(ExperimentSet experimentSet, ResonanceSource[] dynSources, int groupId, String useEquation,
+            CoMDOptions fitOptions) {
+        Map<String, FitResult> fitResults = new ConcurrentHashMap<>();
+        FitResult fitResult = null;
         double aicMin = Double.MAX_VALUE;
         String bestEquation = "NOEX";
         List<String> equationNames;
@@ -308,18 +480,29 @@ public class ResidueFitter {
             default:
                 throw new IllegalArgumentException("Invalid mode " + experimentSet.getExpMode());
         }
-        for (String equationName : equationNames) {
-            if ((useEquation != null) && !equationName.equals(useEquation)) {
-                continue;
+        List<String> fitEquations = equationNames.stream()
+                .filter(equationName -> (useEquation == null) || equationName.equals(useEquation))
+                .collect(Collectors.toList());
+        // collect the data of the group once, to be shared by the fitter of each equation
+        EquationFitter dataFitter = getFitter(fitOptions);
+        dataFitter.setData(experimentSet, dynSources);
+        FitData fitData = dataFitter.getFitData();
+        if (fitOptions.getNoExEarlyStop() && (fitEquations.size() > 1) && fitEquations.remove("NOEX")) {
+            // the exchange models are only worth fitting if NOEX leaves more than noise
+            fitEquation(fitData, "NOEX", fitOptions).ifPresent(result -> fitResults.put("NOEX", result));
+            FitResult noExResult = fitResults.get("NOEX");
+            if ((noExResult != null) && (noExResult.getRChiSq() <= fitOptions.getNoExRChiSqLimit())) {
+                fitEquations.clear();
             }
+        }
+        // each equation gets its own fitter so the candidates can be fit concurrently
+        fitEquations.parallelStream().forEach(equationName
+                -> fitEquation(fitData, equationName, fitOptions).ifPresent(result -> fitResults.put(equationName, result)));
 
-            EquationFitter equationFitter = getFitter(options);
-            equationFitter.setData(experimentSet, dynSources);
-            CoMDOptions options = new CoMDOptions(true);
-            var fitResultOpt = equationFitter.doFit(equationName, null, options);
-            if (fitResultOpt.isPresent()) {
-                fitResult = fitResultOpt.get();
-                fitResults.put(equationName, fitResult);
+        for (String equationName : equationNames) {
+            FitResult eqnFitResult = fitResults.get(equationName);
+            if (eqnFitResult != null) {
+                fitResult = eqnFitResult;
                 if (fitResult.getAicc() < aicMin) {
                     aicMin = fitResult.getAicc();
                     if (fitResult.exchangeValid()) {
@@ -343,20 +526,40 @@ public class ResidueFitter {
             if ((useEquation != null) && !equationName.equals(useEquation)) {
                 continue;
             }
-            fitResult = fitResults.get(equationName);
-            if (fitResult != null) {
-                int nCurves = fitResult.getNCurves();
+            FitResult eqnFitResult = fitResults.get(equationName);
+            if (eqnFitResult != null) {
+                int nCurves = eqnFitResult.getNCurves();
                 for (int iCurve = 0; iCurve < nCurves; iCurve++) {
-                    CurveFit curveFit = fitResult.getCurveFit(iCurve);
+                    CurveFit curveFit = eqnFitResult.getCurveFit(iCurve);
                     ResonanceSource dynSource = curveFit.getDynamicsSource();
                     ExperimentResult experimentResult = resMap.get(dynSource);
                     experimentResult.addCurveFit(curveFit, bestEquation.equals(equationName));
                 }
             }
         }
+        if (fitResult != null) {
+            this.fitResult = fitResult;
+        }
         return resInfoList;
     }
 
+    Optional<FitResult> fitEquation(FitData fitData, String equationName, CoMDOptions fitOptions) {
+        EquationFitter equationFitter = getFitter(fitOptions);
+        equationFitter.setData(fitData);
+        return equationFitter.doFit(equationName, null, fitOptions);
+    }
+
+    /**
+     * Resolve the master seed of a run once, so that the random streams of
+     * every group and bootstrap replicate of the run derive from it and the
+     * run can be reproduced from the seed recorded with its results.
+     *
+     * @return the options of the ResidueFitter with the master seed fixed
+     */
+    CoMDOptions getRunOptions() {
+        return options.withRandomSeed(RandomStreams.masterSeed(options.getRandomSeed()));
+    }
+
     public FitResult getFitResult() {
         return fitResult;
     }
@@ -7,6 +7,10 @@ public class BootstrapAggregator {
     final int nSel;
     final int nBootStrap;
     final int[][] selections;
+    // nJ source indices and nJ use counts for each bootstrap set in turn
+    final int[] swapIndices;
+    final byte[] counts;
+    private static final Tables[] TABLES = new Tables[5];
     static final int[][] SELECTIONS4 = {
             {0,1,2,3},
 
@@ -66,6 +70,50 @@ public class BootstrapAggregator {
         }
         nSel = selections.length;
         nBootStrap = nSel * nSel * nSel;
+        Tables tables = getTables(this);
+        swapIndices = tables.swapIndices;
+        counts = tables.counts;
+    }
+
+    /**
+     * The index of the source J value for every position of every bootstrap
+     * set, and how often each J value is used by each set. They depend only
+     * on the number of experiments so are made once and shared by all
+     * aggregators.
+     */
+    private static final class Tables {
+
+        final int[] swapIndices;
+        final byte[] counts;
+
+        Tables(BootstrapAggregator aggregator) {
+            int nJ = aggregator.nJ;
+            swapIndices = new int[aggregator.nBootStrap * nJ];
+            counts = new byte[aggregator.nBootStrap * nJ];
+            for (int iSelection = 0; iSelection < aggregator.nBootStrap; iSelection++) {
+                int[][] sel = aggregator.getSelections(iSelection);
+                int offset = iSelection * nJ;
+                for (int iFreq = 0; iFreq < aggregator.nFreq; iFreq++) {
+                    for (int iExp = 0; iExp < aggregator.nExp; iExp++) {
+                        int index = iExp * aggregator.nFreq + iFreq;
+                        int swapIndex = sel[iFreq][iExp] * aggregator.nFreq + iFreq;
+                        swapIndices[offset + index] = swapIndex;
+                        counts[offset + swapIndex]++;
+                    }
+                }
+            }
+        }
+    }
+
+    private static Tables getTables(BootstrapAggregator aggregator) {
+        synchronized (TABLES) {
+            Tables tables = TABLES[aggregator.nExp];
+            if (tables == null) {
+                tables = new Tables(aggregator);
+                TABLES[aggregator.nExp] = tables;
+            }
+            return tables;
+        }
     }
 
     public int getN() {
@@ -73,15 +121,21 @@ public class BootstrapAggregator {
     }
 
     public  int[] getY( int iSelection) {
-        int[] counts = new int[nJ];
-        int[][] sel = getSelections(iSelection);
-        for (int iFreq = 0; iFreq < nFreq; iFreq++) {
-            for (int iExp = 0; iExp < nExp; iExp++) {
-                int swapIndex = sel[iFreq][iExp] * nFreq + iFreq;
-                counts[swapIndex]++;
-            }
+        int[] result = new int[nJ];
+        int offset = iSelection * nJ;
+        for (int j = 0; j < nJ; j++) {
+            result[j] = counts[offset + j];
         }
-        return counts;
+        return result;
+    }
+
+    /**
+     * @param iSelection the bootstrap set
+     * @param j the J value
+     * @return how often J value j is used in the bootstrap set
+     */
+    public int getCount(int iSelection, int j) {
+        return counts[iSelection * nJ + j];
     }
 
     public static void incrCounts(int[] totalCounts, int[] counts) {
@@ -90,11 +144,24 @@ public class BootstrapAggregator {
         }
     }
 
+    /**
+     * Add the use counts of a bootstrap set to the totals without allocating
+     * them as {@link #getY} does.
+     *
+     * @param totalCounts the totals, one for each J value
+     * @param iSelection the bootstrap set
+     */
+    public void incrCounts(int[] totalCounts, int iSelection) {
+        int offset = iSelection * nJ;
+        for (int j = 0; j < nJ; j++) {
+            totalCounts[j] += counts[offset + j];
+        }
+    }
+
     public  int[] getTotalUse() {
         int[] total = new int[nJ];
         for (int i=0;i<getN();i++) {
-            int[] counts = getY( i);
-            incrCounts(total, counts);
+            incrCounts(total, i);
         }
         boolean ok = true;
         for (int i=0;i<nJ;i++) {
@@ -122,15 +189,26 @@ public class BootstrapAggregator {
     }
 
     public  double[][] getBootStrapJ(double[][] jValues, int iSelection) {
-        int[][] sel = getSelections(iSelection);
-        double[][] result = new double[4][nJ];
-        for (int iFreq = 0; iFreq < nFreq; iFreq++) {
-            for (int iExp = 0; iExp < nExp; iExp++) {
-                int index = iExp * nFreq + iFreq;
-                int swapIndex = sel[iFreq][iExp] * nFreq + iFreq;
-                for (int jType = 0; jType < 4; jType++) {  // type is freq, value, error, weight
-                    result[jType][index] = jValues[jType][swapIndex];
-                }
+        return getBootStrapJ(jValues, iSelection, new double[4][nJ]);
+    }
+
+    /**
+     * Gather the J values of a bootstrap set into an existing matrix, so a
+     * fit can reuse one buffer for all its sets.
+     *
+     * @param jValues the J matrix of the original data: frequencies, values,
+     * errors and weights
+     * @param iSelection the bootstrap set
+     * @param result the matrix to fill, at least 4 rows of nJ values
+     * @return result
+     */
+    public double[][] getBootStrapJ(double[][] jValues, int iSelection, double[][] result) {
+        int offset = iSelection * nJ;
+        for (int jType = 0; jType < 4; jType++) {  // type is freq, value, error, weight
+            double[] source = jValues[jType];
+            double[] dest = result[jType];
+            for (int index = 0; index < nJ; index++) {
+                dest[index] = source[swapIndices[offset + index]];
             }
         }
         return result;
@@ -4,14 +4,15 @@ package org.comdnmr.modelfree;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math3.stat.regression.OLSMultipleLinearRegression;
+import org.apache.commons.rng.sampling.distribution.NormalizedGaussianSampler;
+import org.comdnmr.util.CoMDPreferences;
+import org.comdnmr.util.RandomStreams;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
 
 public class DeuteriumMapping {
-    static Random random = new Random();
     static double[][] elements = {
             {0.0, 1.0, 4.0},
             {3.0 / 2.0, 5.0 / 2.0, 1.0},
@@ -145,6 +146,8 @@ public class DeuteriumMapping {
             double[] jValues = new double[nCols];
             OLSMultipleLinearRegression olsMultipleLinearRegression = new OLSMultipleLinearRegression();
             olsMultipleLinearRegression.setNoIntercept(true);
+            long masterSeed = RandomStreams.masterSeed(CoMDPreferences.getRandomSeed());
+            NormalizedGaussianSampler gaussian = RandomStreams.gaussian(RandomStreams.create(masterSeed));
             for (int iRep = 0; iRep < nReplicates; iRep++) {
                 double[] rTemp = new double[rValues.length];
                 if (iRep == 0) {
@@ -153,7 +156,7 @@ public class DeuteriumMapping {
                     }
                 } else {
                     for (int row = 0; row < nRows; row++) {
-                        rTemp[row] = (rValues[row] + random.nextGaussian() * errValueList.get(row)) / errValueList.get(row);
+                        rTemp[row] = (rValues[row] + gaussian.sample() * errValueList.get(row)) / errValueList.get(row);
 
                     }
                 }
@@ -32,6 +32,18 @@ public class DiffusionPars {
         calcDiffusiona(diffType, D, VT, v);
     }
 
+    /**
+     * A copy that can be updated independently of the original.
+     *
+     * @param diffPars the parameters to copy
+     */
+    public DiffusionPars(DiffusionPars diffPars) {
+        this.diffType = diffPars.diffType;
+        this.v = diffPars.v;
+        this.dDiff = diffPars.dDiff == null ? null : diffPars.dDiff.clone();
+        this.a = diffPars.a == null ? null : diffPars.a.clone();
+    }
+
     public void update(double[][] D, double[][] VT) {
         calcDiffusiond(diffType, D);
         calcDiffusiona(diffType, D, VT, v);
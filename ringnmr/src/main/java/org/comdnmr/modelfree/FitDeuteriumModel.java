@@ -4,18 +4,21 @@ import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 import org.apache.commons.math3.optim.PointValuePair;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.rng.sampling.distribution.DirichletSampler;
+import org.apache.commons.rng.simple.JDKRandomWrapper;
 import org.comdnmr.modelfree.models.MFModelIso;
 import org.comdnmr.modelfree.models.MFModelIso2sf;
+import org.comdnmr.util.CoMDPreferences;
+import org.comdnmr.util.RandomStreams;
 import org.nmrfx.chemistry.*;
 import org.nmrfx.chemistry.relax.*;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 public class FitDeuteriumModel extends FitModel {
     Map<String, MolDataValues> molDataValuesMap = null;
-    Random random = new Random();
 
     public void setData(Map<String, MolDataValues> molDataValuesMap) {
         this.molDataValuesMap = molDataValuesMap;
@@ -146,6 +149,8 @@ public class FitDeuteriumModel extends FitModel {
     }
 
     public Map<String, ModelFitResult> testModels(Map<String, MolDataValues> molData, List<String> modelNames) {
+        long masterSeed = RandomStreams.masterSeed(CoMDPreferences.getRandomSeed());
+        randomSeed = masterSeed;
         AtomicInteger counts = new AtomicInteger();
         int n = molData.entrySet().size();
         Map<String, ModelFitResult> results = new ConcurrentHashMap<>();
@@ -163,6 +168,7 @@ public class FitDeuteriumModel extends FitModel {
             }
             MolDataValues resData = e.getValue();
             String key = e.getKey();
+            Random random = RandomStreams.asRandom(RandomStreams.create(masterSeed, key));
             if (!resData.getData().isEmpty()) {
                 if (bootstrapMode != BootstrapMode.PARAMETRIC) {
                     Optional<ModelFitResult> result = testModelsWithBootstrapAggregation(orderParSetMap, resData, key, modelNames, random);
@@ -178,8 +184,8 @@ public class FitDeuteriumModel extends FitModel {
 
     public Optional<ModelFitResult> testModels(Map<String, OrderParSet> orderParSetMap, MolDataValues resData, String key, List<String> modelNames, Random random) {
         Optional<ModelFitResult> result = Optional.empty();
-        Map<String, MolDataValues> molDataRes = new TreeMap<>();
-        molDataRes.put(key, resData);
+        MolDataView resView = resData.view();
+        Map<String, MolDataView> molDataRes = Map.of(key, resView);
         SpectralDensity spectralDensity = new SpectralDensity(key, resData.getJValues());
         Atom atom = resData.atom;
         ResonanceSource resSource = new ResonanceSource(resData.atom);
@@ -196,13 +202,18 @@ public class FitDeuteriumModel extends FitModel {
             localTauFraction = 0.0;
             localFitTau = false;
         }
+        List<MFModelIso> models = new ArrayList<>();
         for (var modelName : modelNames) {
-            MFModelIso model = MFModelIso.buildModel(modelName,
-                    localFitTau, tau, localTauFraction, fitExchange);
+            models.add(MFModelIso.buildModel(modelName,
+                    localFitTau, tau, localTauFraction, fitExchange));
+        }
+        List<Score> scores = fitModels(resView, key, modelNames, models, localTauFraction, localFitTau, random);
+        for (int iModel = 0; iModel < modelNames.size(); iModel++) {
+            String modelName = modelNames.get(iModel);
+            MFModelIso model = models.get(iModel);
             OrderParSet orderParSet = orderParSetMap.get("order_parameter_list_" + modelName);
 
-            resData.setTestModel(model);
-            Score score = tryModel(molDataRes, model, localTauFraction, localFitTau, random);
+            Score score = scores.get(iModel);
             if (score != null) {
                 OrderPar orderPar = makeOrderPar(orderParSet, resSource, score, model, model.getParNames(), score.getPars(), null);
                 if (modelNames.size() > 1) {
@@ -219,7 +230,7 @@ public class FitDeuteriumModel extends FitModel {
         if (bestScore != null) {
             double[][] replicateData = null;
             if (nReplicates > 2) {
-                replicateData = replicates(molDataRes, bestModel, localTauFraction, localFitTau, bestScore.getPars(), random);
+                replicateData = replicates(Map.of(key, resView.withModel(bestModel)), bestModel, localTauFraction, localFitTau, bestScore.getPars(), random);
             }
             OrderParSet orderParSet = orderParSetMap.get("order_parameter_list_best");
             OrderPar orderPar = makeOrderPar(orderParSet, resSource, bestScore, bestModel, bestModel.getParNames(), bestScore.getPars(), replicateData);
@@ -261,8 +272,8 @@ public class FitDeuteriumModel extends FitModel {
 
     public Optional<ModelFitResult> testModelsWithBootstrapAggregation(Map<String, OrderParSet> orderParSetMap, MolDataValues resData, String key, List<String> modelNames, Random random) {
         Optional<ModelFitResult> result = Optional.empty();
-        Map<String, MolDataValues> molDataRes = new TreeMap<>();
-        molDataRes.put(key, resData);
+        MolDataView resView = resData.view();
+        Map<String, MolDataView> molDataRes = Map.of(key, resView);
 
         boolean localFitTau;
         double localTauFraction;
@@ -275,35 +286,33 @@ public class FitDeuteriumModel extends FitModel {
         }
 
         int maxPars = 5;
-        double[][] jData = resData.getJValues();
+        double[][] jData = resView.getJValues();
         int nJ = jData[0].length;
 
-        DirichletSampler dirichlet = DirichletSampler.symmetric(getRandomSource(), nJ, 4.0);
+        DirichletSampler dirichlet = DirichletSampler.symmetric(new JDKRandomWrapper(random), nJ, 4.0);
 
         double[][] replicateData = new double[maxPars][nReplicates];
         MFModelIso[] bestModels = new MFModelIso[nReplicates];
         Score[] bestScores = new Score[nReplicates];
 
+        double[][] repWeights = new double[nReplicates][];
         for (int iRep = 0; iRep < nReplicates; iRep++) {
+            repWeights[iRep] = dirichlet.sample();
+            scaleWeights(repWeights[iRep]);
+        }
+        Random[] repRandoms = replicateRandoms(random, nReplicates);
+        IntStream.range(0, nReplicates).parallel().forEach(iRep -> {
             if (cancelled.get()) {
-                return result;
-            }
-            double[] weights = dirichlet.sample();
-            scaleWeights(weights);
-            for (var molData : molDataRes.values()) {
-                molData.weight(weights);
-                molData.clearBootStrapSet();
+                return;
             }
-            List<Score> scores = new ArrayList<>();
+            MolDataView repView = resView.withWeights(repWeights[iRep]);
             List<MFModelIso> models = new ArrayList<>();
             for (var modelName : modelNames) {
-                MFModelIso model = MFModelIso.buildModel(modelName,
-                        localFitTau, tau, localTauFraction, fitExchange);
-                resData.setTestModel(model);
-                Score score = tryModel(molDataRes, model, localTauFraction, localFitTau, random);
-                scores.add(score);
-                models.add(model);
+                models.add(MFModelIso.buildModel(modelName,
+                        localFitTau, tau, localTauFraction, fitExchange));
             }
+            List<Score> scores = fitModels(repView, key, modelNames, models,
+                    localTauFraction, localFitTau, repRandoms[iRep]);
             int iBest = bestScore(scores);
             if (iBest != -1) {
                 Score bestScore = scores.get(iBest);
@@ -317,9 +326,9 @@ public class FitDeuteriumModel extends FitModel {
                     replicateData[iPar][iRep] = pars[iPar];
                 }
             }
-        }
-        for (var molData : molDataRes.values()) {
-            molData.clearBootStrapSet();
+        });
+        if (cancelled.get()) {
+            return result;
         }
         MFModelIso bestModel = MFModelIso.buildModel("D2sf",
                 localFitTau, tau, localTauFraction, fitExchange);
@@ -348,13 +357,13 @@ public class FitDeuteriumModel extends FitModel {
             orderPar = orderPar.set("model", (double) bestModel.getNumber(), null);
             Atom atom = resData.atom;
             atom.addOrderPar(orderParSet, orderPar);
-            double[][] jValues = resData.getJValues();
+            double[][] jValues = resView.getJValues();
             SpectralDensity spectralDensity = new SpectralDensity(key, jValues);
             atom.addSpectralDensity(key, spectralDensity);
             resData.setTestModel(bestModel);
             Double validationScore = null;
             if (calcValidation) {
-                validationScore = scoreBayesian(molDataRes, bestModel, bestPars, dirichlet,
+                validationScore = scoreBayesian(Map.of(key, resView.withModel(bestModel)), bestModel, bestPars, dirichlet,
                         nReplicates, nReplicates, localFitTau, localTauFraction);
             }
             ModelFitResult modelFitResult = new ModelFitResult(orderPar, replicateData, validationScore);
@@ -363,28 +372,41 @@ public class FitDeuteriumModel extends FitModel {
         return result;
     }
 
-    Score tryModel(Map<String, MolDataValues> molDataRes, MFModelIso model, double localTauFraction, boolean localFitTau, Random random) {
+    Score tryModel(Map<String, MolDataView> molDataRes, MFModelIso model, double localTauFraction, boolean localFitTau, Random random) {
+        model.setTauFraction(localTauFraction);
+        return tryModel(molDataRes, model, model.getStart(), Double.NaN, localTauFraction, localFitTau, random);
+    }
+
+    @Override
+    Score tryModel(Map<String, MolDataView> molDataRes, MFModelIso model, double[] start, double skipValue,
+                   double localTauFraction, boolean localFitTau, Random random) {
         RelaxFit relaxFit = new RelaxFit();
-        relaxFit.setRelaxData(molDataRes);
+        relaxFit.setRelaxViews(molDataRes);
         relaxFit.setLambdaS(lambdaS);
         relaxFit.setLambdaTau(lambdaTau);
         relaxFit.setUseLambda(useLambda);
         relaxFit.setFitJ(true);
         model.setTauFraction(localTauFraction);
-        double[] start = model.getStart();
+        start = start.clone();
         double[] lower = model.getLower();
         double[] upper = model.getUpper();
         double[] keepStart = start.clone();
         int nTries = 3;
         PointValuePair best = null;
+        boolean bestConverged = false;
         for (int i = 0; i < nTries; i++) {
             try {
                 Optional<PointValuePair> fitResultOpt = relaxFit.fitResidueToModel(start, lower, upper);
                 if (fitResultOpt.isPresent() && ((best == null) || (fitResultOpt.get().getValue() < best.getValue()))) {
                     best = fitResultOpt.get();
+                    bestConverged = relaxFit.isConverged();
                 }
             } catch (Exception iaE) {
             }
+            // a warm start that converged, or clearly improved on the simpler model, needs no restarts
+            if ((best != null) && !Double.isNaN(skipValue) && (bestConverged || (best.getValue() <= skipValue))) {
+                break;
+            }
             for (int j = 0; j < start.length; j++) {
                 start[j] = keepStart[j] + random.nextGaussian() * 0.1 * (upper[j] - lower[j]);
             }
@@ -396,7 +418,7 @@ public class FitDeuteriumModel extends FitModel {
     }
 
     @Override
-    double[][] replicates(Map<String, MolDataValues> molDataRes,
+    double[][] replicates(Map<String, MolDataView> molDataRes,
                           MFModelIso bestModel, double localTauFraction,
                           boolean localFitTau, double[] pars, Random random) {
         double[][] repData = new double[pars.length][nReplicates];
@@ -421,16 +443,16 @@ public class FitDeuteriumModel extends FitModel {
     }
 
     @Override
-    Score fitReplicate(Map<String, MolDataValues> molDataRes, MFModelIso model,
+    Score fitReplicate(Map<String, MolDataView> molDataRes, MFModelIso model,
                        double localTauFraction, boolean localFitTau, double[] pars, Random random) {
         RelaxFit relaxFit = new RelaxFit();
-        relaxFit.setRelaxData(molDataRes);
+        relaxFit.setRelaxViews(molDataRes);
         relaxFit.setLambdaS(lambdaS);
         relaxFit.setLambdaTau(lambdaTau);
         relaxFit.setUseLambda(useLambda);
         relaxFit.setFitJ(fitJ);
-        Map<String, MolDataValues> molDataMap = relaxFit.genBootstrap(random, model, pars);
-        relaxFit.setRelaxData(molDataMap);
+        Map<String, MolDataView> molDataMap = relaxFit.genBootstrap(random, model, pars);
+        relaxFit.setRelaxViews(molDataMap);
 
         model.setTauFraction(localTauFraction);
         double[] lower = model.getLower();
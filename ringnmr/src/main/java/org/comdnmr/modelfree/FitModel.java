@@ -12,14 +12,24 @@ import org.comdnmr.BasicFitter;
 import org.comdnmr.eqnfit.ParValueInterface;
 import org.comdnmr.modelfree.models.MFModelIso;
 import org.comdnmr.util.ProcessingStatus;
+import org.comdnmr.util.RandomStreams;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public abstract class FitModel implements BasicFitter {
     public static UniformRandomProvider rng = null;
 
+    /**
+     * Fractional improvement on the score of the simpler model that a warm
+     * started fit that didn't converge must reach before its restarts are
+     * skipped.
+     */
+    static final double WARM_TOLERANCE = 1.0e-3;
+
     Double tau;
     boolean fitTau = false;
     boolean fitJ = false;
@@ -40,6 +50,9 @@ public abstract class FitModel implements BasicFitter {
     AtomicBoolean cancelled = new AtomicBoolean(false);
     boolean useMedian = false;
     boolean calcValidation = false;
+    long randomSeed = 0;
+    boolean warmStart = true;
+    boolean validateWarmStart = false;
 
     Function<Double, Double> updaterFunction;
     Function<ProcessingStatus, Double> statusFunction;
@@ -71,6 +84,14 @@ public abstract class FitModel implements BasicFitter {
     }
 
 
+    /**
+     * @return the master seed of the random numbers used by the most recent
+     * fit. Each residue draws from its own stream derived from this seed.
+     */
+    public long getRandomSeed() {
+        return randomSeed;
+    }
+
     public static UniformRandomProvider getRandomSource() {
         if (rng == null) {
             rng = RandomSource.XO_RO_SHI_RO_128_PP.create();
@@ -85,6 +106,24 @@ public abstract class FitModel implements BasicFitter {
         this.modelNames.addAll(modelNames);
     }
 
+    /**
+     * Returns a generator for each bootstrap replicate of a residue, split
+     * from the residue's generator so the replicates can be fit in parallel
+     * and still give the same results for the same seed.
+     *
+     * @param random the residue's generator
+     * @param n the number of replicates
+     * @return the generators
+     */
+    static Random[] replicateRandoms(Random random, int n) {
+        UniformRandomProvider[] streams = RandomStreams.split(RandomStreams.create(random.nextLong()), n);
+        Random[] randoms = new Random[n];
+        for (int i = 0; i < n; i++) {
+            randoms[i] = RandomStreams.asRandom(streams[i]);
+        }
+        return randoms;
+    }
+
     void scaleWeights(double[] weights) {
         for (int i = 0; i < weights.length; i++) {
             weights[i] = weights[i] * weights.length;
@@ -92,7 +131,7 @@ public abstract class FitModel implements BasicFitter {
 
     }
 
-    public double scoreBayesian(Map<String, MolDataValues> molDataRes, MFModelIso model, double[] pars,
+    public double scoreBayesian(Map<String, MolDataView> molDataRes, MFModelIso model, double[] pars,
                                 DirichletSampler dirichlet, int iStart, int nReplicates,
                                 boolean localFitTau, double localTauFraction) {
         double rssSum = 0.0;
@@ -103,18 +142,19 @@ public abstract class FitModel implements BasicFitter {
         for (int iRep = 0; iRep < nReplicates; iRep++) {
             double[] weights = dirichlet.sample();
             scaleWeights(weights);
-            for (var molData : molDataRes.values()) {
-                molData.weight(weights);
+            Map<String, MolDataView> molDataRep = new TreeMap<>();
+            for (var entry : molDataRes.entrySet()) {
+                molDataRep.put(entry.getKey(), entry.getValue().withWeights(weights));
             }
             model.setTauFraction(localTauFraction);
-            rssSum += scoreModel(molDataRes, pars2);
+            rssSum += scoreModel(molDataRep, pars2);
         }
         return rssSum / nReplicates;
     }
 
-     double scoreModel(Map<String, MolDataValues> molDataRes, double[] pars) {
+     double scoreModel(Map<String, MolDataView> molDataRes, double[] pars) {
         RelaxFit relaxFit = new RelaxFit();
-        relaxFit.setRelaxData(molDataRes);
+        relaxFit.setRelaxViews(molDataRes);
         relaxFit.setLambdaS(lambdaS);
         relaxFit.setLambdaTau(lambdaTau);
         relaxFit.setUseLambda(useLambda);
@@ -143,7 +183,7 @@ public abstract class FitModel implements BasicFitter {
 
     public abstract Map<String, ModelFitResult> testIsoModel();
 
-    double[][] replicates(Map<String, MolDataValues> molDataRes,
+    double[][] replicates(Map<String, MolDataView> molDataRes,
                           MFModelIso bestModel, double localTauFraction,
                           boolean localFitTau, double[] pars, Random random) {
         double[][] repData = new double[pars.length][nReplicates];
@@ -157,16 +197,16 @@ public abstract class FitModel implements BasicFitter {
         return repData;
     }
 
-    Score fitReplicate(Map<String, MolDataValues> molDataRes, MFModelIso model,
+    Score fitReplicate(Map<String, MolDataView> molDataRes, MFModelIso model,
                        double localTauFraction, boolean localFitTau, double[] pars, Random random) {
         RelaxFit relaxFit = new RelaxFit();
-        relaxFit.setRelaxData(molDataRes);
+        relaxFit.setRelaxViews(molDataRes);
         relaxFit.setLambdaS(lambdaS);
         relaxFit.setLambdaTau(lambdaTau);
         relaxFit.setUseLambda(useLambda);
         relaxFit.setFitJ(fitJ);
-        Map<String, MolDataValues> molDataMap = relaxFit.genBootstrap(random, model, pars);
-        relaxFit.setRelaxData(molDataMap);
+        Map<String, MolDataView> molDataMap = relaxFit.genBootstrap(random, model, pars);
+        relaxFit.setRelaxViews(molDataMap);
 
         model.setTauFraction(localTauFraction);
         double[] lower = model.getLower();
@@ -178,6 +218,84 @@ public abstract class FitModel implements BasicFitter {
         return null;
     }
 
+    abstract Score tryModel(Map<String, MolDataView> molDataRes, MFModelIso model, double[] start, double skipValue,
+                            double localTauFraction, boolean localFitTau, Random random);
+
+    /**
+     * Fit a residue to each of the models. The models are fit simplest
+     * first, and when warm starts are on each fit starts from the best fit
+     * of the simpler models it contains (see {@link ModelLattice}). A warm
+     * started fit skips its random restarts if the optimizer converged, or
+     * if it scores better than the simpler model by {@link #WARM_TOLERANCE}.
+     * A fit that only reproduces the simpler model hasn't found a minimum of
+     * its own, so it is restarted. With validation on, each
+     * warm started fit is repeated from the usual start and the better of
+     * the two is kept.
+     *
+     * @param resView the residue's data
+     * @param key the residue's key
+     * @param modelNames the names of the models
+     * @param models the models, in the same order as the names
+     * @param localTauFraction the fraction of tau it can vary by
+     * @param localFitTau whether tau is fit
+     * @param random the random number generator for restarts
+     * @return the scores, in the same order as the models, with null for
+     * models that couldn't be fit
+     */
+    List<Score> fitModels(MolDataView resView, String key, List<String> modelNames, List<MFModelIso> models,
+                          double localTauFraction, boolean localFitTau, Random random) {
+        Score[] scores = new Score[models.size()];
+        double scoreLambdaS = useLambda ? lambdaS : 0.0;
+        double scoreLambdaTau = useLambda ? lambdaTau : 0.0;
+        for (int i : ModelLattice.fitOrder(modelNames)) {
+            MFModelIso model = models.get(i);
+            Map<String, MolDataView> molDataRes = Map.of(key, resView.withModel(model));
+            int iParent = warmStart
+                    ? ModelLattice.bestContained(i, modelNames, scores, scoreLambdaS, scoreLambdaTau) : -1;
+            if (iParent == -1) {
+                scores[i] = tryModel(molDataRes, model, model.getStart(), Double.NaN,
+                        localTauFraction, localFitTau, random);
+                continue;
+            }
+            Score parentScore = scores[iParent];
+            model.setTauFraction(localTauFraction);
+            double[] start = model.getStart(models.get(iParent).getStandardPars(parentScore.getPars()));
+            double parentValue = parentScore.value(scoreLambdaS, scoreLambdaTau);
+            double skipValue = parentValue - WARM_TOLERANCE * Math.abs(parentValue);
+            Score score = tryModel(molDataRes, model, start, skipValue, localTauFraction, localFitTau, random);
+            if (validateWarmStart) {
+                Score coldScore = tryModel(molDataRes, model, model.getStart(), Double.NaN,
+                        localTauFraction, localFitTau, random);
+                if ((coldScore != null) && ((score == null)
+                        || (coldScore.value(scoreLambdaS, scoreLambdaTau) < score.value(scoreLambdaS, scoreLambdaTau)))) {
+                    Logger.getLogger(FitModel.class.getName()).log(Level.INFO, String.format(
+                            "%s model %s: cold start %.5g better than warm start %s", key, modelNames.get(i),
+                            coldScore.value(scoreLambdaS, scoreLambdaTau),
+                            score == null ? "failure" : String.format("%.5g", score.value(scoreLambdaS, scoreLambdaTau))));
+                    score = coldScore;
+                }
+            }
+            scores[i] = score;
+        }
+        return Arrays.asList(scores);
+    }
+
+    /**
+     * @param value whether nested models start from the fits of the simpler
+     * models they contain
+     */
+    public void setWarmStart(boolean value) {
+        warmStart = value;
+    }
+
+    /**
+     * @param value whether warm started fits are checked against fits from
+     * the usual start, reporting any that are worse
+     */
+    public void setValidateWarmStart(boolean value) {
+        validateWarmStart = value;
+    }
+
     public void setUseMedian(boolean value) {
         useMedian = value;
     }
@@ -238,7 +356,7 @@ public abstract class FitModel implements BasicFitter {
         tauFraction = value;
     }
 
-    public boolean fitTau(Map<String, MolDataValues> molDataRes) {
+    public boolean fitTau(Map<String, MolDataView> molDataRes) {
         boolean localFitTau;
 
         if (overT2Limit(molDataRes, t2Limit)) {
@@ -249,7 +367,7 @@ public abstract class FitModel implements BasicFitter {
         return localFitTau;
     }
 
-    boolean overT2Limit(Map<String, MolDataValues> molDataRes, double limit) {
+    boolean overT2Limit(Map<String, MolDataView> molDataRes, double limit) {
         return limit < 1.0e-6 || molDataRes.values().stream().anyMatch(v -> v.getData().stream().anyMatch(d -> d.R2 > limit));
     }
 
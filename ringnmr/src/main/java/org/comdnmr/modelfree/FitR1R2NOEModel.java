@@ -9,8 +9,11 @@ import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 import org.apache.commons.math3.optim.PointValuePair;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.rng.sampling.distribution.DirichletSampler;
+import org.apache.commons.rng.simple.JDKRandomWrapper;
 import org.comdnmr.modelfree.models.MFModelIso;
 import org.comdnmr.modelfree.models.MFModelIso2sf;
+import org.comdnmr.util.CoMDPreferences;
+import org.comdnmr.util.RandomStreams;
 import org.nmrfx.chemistry.*;
 import org.nmrfx.chemistry.relax.*;
 
@@ -18,6 +21,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -180,13 +184,14 @@ public class FitR1R2NOEModel extends FitModel {
     }
 
     public  Map<String, ModelFitResult> testModels(Map<String, MolDataValues> molData, List<String> modelNames) {
-        Random random = new Random();
+        long masterSeed = RandomStreams.masterSeed(CoMDPreferences.getRandomSeed());
+        randomSeed = masterSeed;
         if (tau == null) {
             tau = estimateTau(molData).get("tau");
         }
         AtomicInteger counts = new AtomicInteger();
         int n = molData.entrySet().size();
-        Map<String, ModelFitResult> results = new HashMap<>();
+        Map<String, ModelFitResult> results = new ConcurrentHashMap<>();
         MoleculeBase moleculeBase = MoleculeFactory.getActive();
         Map<String, OrderParSet> orderParSetMap = moleculeBase.orderParSetMap();
         for (var modelName : modelNames) {
@@ -201,6 +206,7 @@ public class FitR1R2NOEModel extends FitModel {
             }
             MolDataValues resData = e.getValue();
             String key = e.getKey();
+            Random random = RandomStreams.asRandom(RandomStreams.create(masterSeed, key));
             if (!resData.getData().isEmpty()) {
                 if (bootstrapMode != BootstrapMode.PARAMETRIC) {
                     Optional<ModelFitResult> result = testModelsWithBootstrapAggregation(orderParSetMap, resData, key, modelNames, random);
@@ -215,7 +221,7 @@ public class FitR1R2NOEModel extends FitModel {
         return results;
     }
 
-    private OrderPar makeOrderPar(OrderParSet orderParSet, MolDataValues resData, Map<String, MolDataValues> molDataRes, String key,
+    private OrderPar makeOrderPar(OrderParSet orderParSet, MolDataValues resData, String key,
                                   Score bestScore, MFModelIso bestModel, double[][] repData) {
         ResonanceSource resSource = new ResonanceSource(resData.atom);
         Atom atom = resData.atom;
@@ -250,8 +256,8 @@ public class FitR1R2NOEModel extends FitModel {
     }
 
     public Optional<ModelFitResult> testModels(Map<String, OrderParSet> orderParSetMap, MolDataValues resData, String key, List<String> modelNames, Random random) {
-        Map<String, MolDataValues> molDataRes = new TreeMap<>();
-        molDataRes.put(key, resData);
+        MolDataView resView = resData.view();
+        Map<String, MolDataView> molDataRes = Map.of(key, resView);
 
         MFModelIso bestModel = null;
         Score bestScore = null;
@@ -265,17 +271,23 @@ public class FitR1R2NOEModel extends FitModel {
             localTauFraction = 0.0;
             localFitTau = false;
         }
+        List<MFModelIso> models = new ArrayList<>();
         for (var modelName : modelNames) {
-            MFModelIso model = MFModelIso.buildModel(modelName,
-                    localFitTau, tau, localTauFraction, fitExchange);
-            resData.setTestModel(model);
-            Score score = tryModel(molDataRes, model, localTauFraction, localFitTau, random);
+            models.add(MFModelIso.buildModel(modelName,
+                    localFitTau, tau, localTauFraction, fitExchange));
+        }
+        List<Score> scores = fitModels(resView, key, modelNames, models, localTauFraction, localFitTau, random);
+        for (int iModel = 0; iModel < modelNames.size(); iModel++) {
+            String modelName = modelNames.get(iModel);
+            MFModelIso model = models.get(iModel);
+            Score score = scores.get(iModel);
+            Map<String, MolDataView> modelRes = Map.of(key, resView.withModel(model));
             OrderParSet orderParSet = orderParSetMap.get("order_parameter_list_"+ modelName);
             double[][] repData = null;
             if (nReplicates > 2) {
                 double[] pars = score.getPars();
-                repData = replicates(molDataRes, model, localTauFraction, localFitTau, pars, random);
-                OrderPar orderPar = makeOrderPar(orderParSet, resData, molDataRes, key, score, model, repData);
+                repData = replicates(modelRes, model, localTauFraction, localFitTau, pars, random);
+                OrderPar orderPar = makeOrderPar(orderParSet, resData, key, score, model, repData);
             }
             if (useLambda || (modelNames.size() == 1) || (score.aicc().isPresent() && ((bestScore == null) || (score.aicc().get() < lowestAIC))))  {
                 lowestAIC = score.aicc().isPresent() ? score.aicc().get() : null;
@@ -291,10 +303,10 @@ public class FitR1R2NOEModel extends FitModel {
             var parNames = bestModel.getParNames();
             replicateData = null;
             if (nReplicates > 2) {
-                replicateData = replicates(molDataRes, bestModel, localTauFraction, localFitTau, pars, random);
+                replicateData = replicates(Map.of(key, resView.withModel(bestModel)), bestModel, localTauFraction, localFitTau, pars, random);
             }
             OrderParSet orderParSet = orderParSetMap.get("order_parameter_list_best");
-            OrderPar orderPar = makeOrderPar(orderParSet, resData, molDataRes, key, bestScore, bestModel, replicateData);
+            OrderPar orderPar = makeOrderPar(orderParSet, resData, key, bestScore, bestModel, replicateData);
             ModelFitResult modelFitResult = new ModelFitResult(orderPar, replicateData, null);
             result = Optional.of(modelFitResult);
         }
@@ -303,8 +315,8 @@ public class FitR1R2NOEModel extends FitModel {
 
     public Optional<ModelFitResult> testModelsWithBootstrapAggregation(Map<String, OrderParSet> orderParSetMap, MolDataValues resData, String key, List<String> modelNames, Random random) {
         Optional<ModelFitResult> result = Optional.empty();
-        Map<String, MolDataValues> molDataRes = new TreeMap<>();
-        molDataRes.put(key, resData);
+        MolDataView resView = resData.view();
+        Map<String, MolDataView> molDataRes = Map.of(key, resView);
 
         boolean localFitTau;
         double localTauFraction;
@@ -323,47 +335,45 @@ public class FitR1R2NOEModel extends FitModel {
         List<Integer> iRepList = null;
         DirichletSampler dirichlet = null;
         if (bootstrapMode == BootstrapMode.BAYESIAN) {
-            dirichlet = DirichletSampler.symmetric(getRandomSource(), nJ, 4.0);
+            dirichlet = DirichletSampler.symmetric(new JDKRandomWrapper(random), nJ, 4.0);
         } else {
             nReplicates = Math.min(nReplicates, bootstrapAggregator.getN());
             iRepList = IntStream.range(0, bootstrapAggregator.getN()).boxed().collect(Collectors.toList());
-            Collections.shuffle(iRepList);
+            Collections.shuffle(iRepList, random);
         }
         double[][] replicateData = new double[maxPars][nReplicates];
         MFModelIso[] bestModels = new MFModelIso[nReplicates];
         Score[] bestScores = new Score[nReplicates];
 
         int[] totalCounts = new int[nJ];
+        double[][] repWeights = new double[nReplicates][];
         for (int iRep = 0; iRep < nReplicates; iRep++) {
+            if (bootstrapMode == BootstrapMode.BAYESIAN) {
+                repWeights[iRep] = dirichlet.sample();
+                scaleWeights(repWeights[iRep]);
+            } else {
+                bootstrapAggregator.incrCounts(totalCounts, iRepList.get(iRep));
+            }
+        }
+        Random[] repRandoms = replicateRandoms(random, nReplicates);
+        final List<Integer> repSets = iRepList;
+        IntStream.range(0, nReplicates).parallel().forEach(iRep -> {
             if (cancelled.get()) {
-                return result;
+                return;
             }
+            MolDataView repView;
             if (bootstrapMode == BootstrapMode.BAYESIAN) {
-                double[] weights = dirichlet.sample();
-                scaleWeights(weights);
-                for (var molData : molDataRes.values()) {
-                    molData.weight(weights);
-                    molData.clearBootStrapSet();
-                }
+                repView = resView.withWeights(repWeights[iRep]);
             } else {
-                int bootStrapSet = iRepList.get(iRep);
-                for (var molData : molDataRes.values()) {
-                    molData.setBootstrapAggregator(bootstrapAggregator);
-                    molData.setBootstrapSet(bootStrapSet);
-                    molData.weight(null);
-                }
-                BootstrapAggregator.incrCounts(totalCounts, bootstrapAggregator.getY(bootStrapSet));
+                repView = resView.withBootstrapSet(bootstrapAggregator, repSets.get(iRep));
             }
-            List<Score> scores = new ArrayList<>();
             List<MFModelIso> models = new ArrayList<>();
             for (var modelName : modelNames) {
-                MFModelIso model = MFModelIso.buildModel(modelName,
-                        localFitTau, tau, localTauFraction, fitExchange);
-                resData.setTestModel(model);
-                Score score = tryModel(molDataRes, model, localTauFraction, localFitTau, random);
-                scores.add(score);
-                models.add(model);
+                models.add(MFModelIso.buildModel(modelName,
+                        localFitTau, tau, localTauFraction, fitExchange));
             }
+            List<Score> scores = fitModels(repView, key, modelNames, models,
+                    localTauFraction, localFitTau, repRandoms[iRep]);
             int iBest = bestScore(scores);
             if (iBest != -1) {
                 Score bestScore = scores.get(iBest);
@@ -377,13 +387,13 @@ public class FitR1R2NOEModel extends FitModel {
                     replicateData[iPar][iRep] = pars[iPar];
                 }
             }
+        });
+        if (cancelled.get()) {
+            return result;
         }
         for (int i=0;i< totalCounts.length;i++) {
             totalCounts[i] /= nReplicates;
         }
-        for (var molData : molDataRes.values()) {
-            molData.clearBootStrapSet();;
-        }
         MFModelIso bestModel = MFModelIso.buildModel("2sf",
                 localFitTau, tau, localTauFraction, fitExchange);
 
@@ -409,11 +419,14 @@ public class FitR1R2NOEModel extends FitModel {
                 if (bootstrapMode == BootstrapMode.BAYESIAN) {
                     parError = sumStat.getStandardDeviation();
                 } else {
-                    for (int j = 0; j < nJ; j++) {
-                        for (int i = 0; i < nReplicates; i++) {
-                            int[] y = bootstrapAggregator.getY(iRepList.get(i));
-                            cov[j][iPar] += (y[j] - totalCounts[j]) * (replicateData[iPar][i] - parValue);
+                    for (int i = 0; i < nReplicates; i++) {
+                        int iSelection = iRepList.get(i);
+                        double delta = replicateData[iPar][i] - parValue;
+                        for (int j = 0; j < nJ; j++) {
+                            cov[j][iPar] += (bootstrapAggregator.getCount(iSelection, j) - totalCounts[j]) * delta;
                         }
+                    }
+                    for (int j = 0; j < nJ; j++) {
                         cov[j][iPar] /= nReplicates;
                     }
 
@@ -432,14 +445,15 @@ public class FitR1R2NOEModel extends FitModel {
             SpectralDensity spectralDensity = new SpectralDensity(key, jValues);
             atom.addSpectralDensity(key, spectralDensity);
             resData.setTestModel(bestModel);
+            Map<String, MolDataView> bestRes = Map.of(key, resView.withModel(bestModel));
             Double validationScore = null;
             if (calcValidation) {
                 if (bootstrapMode == BootstrapMode.BAYESIAN) {
-                    validationScore = scoreBayesian(molDataRes, bestModel, bestPars, dirichlet,
+                    validationScore = scoreBayesian(bestRes, bestModel, bestPars, dirichlet,
                             nReplicates, nReplicates, localFitTau, localTauFraction);
                 } else {
                     if ((nReplicates + nReplicates) <= iRepList.size()) {
-                        validationScore = scoreBootstrap(molDataRes, bestModel, bestPars, bootstrapAggregator, iRepList,
+                        validationScore = scoreBootstrap(bestRes, bestModel, bestPars, bootstrapAggregator, iRepList,
                                 nReplicates, nReplicates, localFitTau, localTauFraction);
                     }
                 }
@@ -450,7 +464,7 @@ public class FitR1R2NOEModel extends FitModel {
         return result;
     }
 
-    public double scoreBootstrap(Map<String, MolDataValues> molDataRes, MFModelIso model, double[] pars,
+    public double scoreBootstrap(Map<String, MolDataView> molDataRes, MFModelIso model, double[] pars,
                                  BootstrapAggregator bootstrapAggregator, List<Integer> iRepList, int iStart, int nReplicates,
                                  boolean localFitTau, double localTauFraction) {
         double rssSum = 0.0;
@@ -460,34 +474,47 @@ public class FitR1R2NOEModel extends FitModel {
         System.arraycopy(pars, startPar, pars2, 0, pars2.length);
         for (int iRep = 0; iRep < nReplicates; iRep++) {
             int bootStrapSet = iRepList.get(iRep + iStart);
-            for (var molData : molDataRes.values()) {
-                molData.setBootstrapAggregator(bootstrapAggregator);
-                molData.setBootstrapSet(bootStrapSet);
+            Map<String, MolDataView> molDataRep = new TreeMap<>();
+            for (var entry : molDataRes.entrySet()) {
+                molDataRep.put(entry.getKey(), entry.getValue().withBootstrapSet(bootstrapAggregator, bootStrapSet));
             }
             model.setTauFraction(localTauFraction);
-            rssSum += scoreModel(molDataRes, pars2);
+            rssSum += scoreModel(molDataRep, pars2);
         }
         return rssSum / nReplicates;
     }
 
-    Score tryModel(Map<String, MolDataValues> molDataRes, MFModelIso model, double localTauFraction, boolean localFitTau, Random random) {
+    Score tryModel(Map<String, MolDataView> molDataRes, MFModelIso model, double localTauFraction, boolean localFitTau, Random random) {
+        model.setTauFraction(localTauFraction);
+        return tryModel(molDataRes, model, model.getStart(), Double.NaN, localTauFraction, localFitTau, random);
+    }
+
+    @Override
+    Score tryModel(Map<String, MolDataView> molDataRes, MFModelIso model, double[] start, double skipValue,
+                   double localTauFraction, boolean localFitTau, Random random) {
         RelaxFit relaxFit = new RelaxFit();
-        relaxFit.setRelaxData(molDataRes);
+        relaxFit.setRelaxViews(molDataRes);
         relaxFit.setLambdaS(lambdaS);
         relaxFit.setLambdaTau(lambdaTau);
         relaxFit.setUseLambda(useLambda);
         relaxFit.setFitJ(fitJ);
         model.setTauFraction(localTauFraction);
-        double[] start = model.getStart();
+        start = start.clone();
         double[] lower = model.getLower();
         double[] upper = model.getUpper();
         double[] keepStart = start.clone();
         int nTries = 3;
         PointValuePair best = null;
+        boolean bestConverged = false;
         for (int i = 0; i < nTries; i++) {
             Optional<PointValuePair> fitResultOpt = relaxFit.fitResidueToModel(start, lower, upper);
             if (fitResultOpt.isPresent() && ((i == 0) || (fitResultOpt.get().getValue() < best.getValue()))) {
                 best = fitResultOpt.get();
+                bestConverged = relaxFit.isConverged();
+            }
+            // a warm start that converged, or clearly improved on the simpler model, needs no restarts
+            if ((best != null) && !Double.isNaN(skipValue) && (bestConverged || (best.getValue() <= skipValue))) {
+                break;
             }
             for (int j = 0; j < start.length; j++) {
                 start[j] = keepStart[j] + random.nextGaussian() * 0.1 * (upper[j] - lower[j]);
@@ -0,0 +1,137 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.modelfree;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Which isotropic models contain which. A model contains a simpler one when
+ * some choice of its extra parameters gives the simpler model's spectral
+ * density, so 1f and 1s contain 1 (with a very short internal correlation
+ * time), 2f contains 1f and 2s contains 1s (with the other order parameter
+ * 1), 1sf contains 1s, and 2sf contains 2f and 2s. The fit of a model can
+ * start from the fit of a model it contains, and should end at least as
+ * well.
+ */
+final class ModelLattice {
+
+    private static final Map<String, List<String>> PARENTS = Map.of(
+            "1", List.of(),
+            "1f", List.of("1"),
+            "1s", List.of("1"),
+            "2f", List.of("1f"),
+            "2s", List.of("1s"),
+            "1sf", List.of("1s"),
+            "2sf", List.of("2f", "2s"),
+            "2sfx", List.of("2f", "2s"));
+
+    private ModelLattice() {
+    }
+
+    /**
+     * @return the model name without the "model" and deuterium "D" prefixes
+     */
+    static String baseName(String modelName) {
+        if (modelName.startsWith("model")) {
+            modelName = modelName.substring(5);
+        }
+        if (modelName.startsWith("D")) {
+            modelName = modelName.substring(1);
+        }
+        return modelName;
+    }
+
+    static boolean isDeuterium(String modelName) {
+        if (modelName.startsWith("model")) {
+            modelName = modelName.substring(5);
+        }
+        return modelName.startsWith("D");
+    }
+
+    /**
+     * @return the number of steps from the model to the simplest model it
+     * contains, 0 for models not in the lattice
+     */
+    static int depth(String modelName) {
+        int depth = 0;
+        for (String parent : PARENTS.getOrDefault(baseName(modelName), List.of())) {
+            depth = Math.max(depth, depth(parent) + 1);
+        }
+        return depth;
+    }
+
+    /**
+     * @return the base names of all the models the model contains
+     */
+    static Set<String> contained(String modelName) {
+        Set<String> result = new HashSet<>();
+        for (String parent : PARENTS.getOrDefault(baseName(modelName), List.of())) {
+            result.add(parent);
+            result.addAll(contained(parent));
+        }
+        return result;
+    }
+
+    /**
+     * @param modelNames the models
+     * @return the indices of the models, simplest first and otherwise in
+     * their original order
+     */
+    static List<Integer> fitOrder(List<String> modelNames) {
+        return IntStream.range(0, modelNames.size()).boxed()
+                .sorted(Comparator.comparingInt(i -> depth(modelNames.get(i))))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Find the fitted model to start a model's fit from: the one with the
+     * best score of the models it contains.
+     *
+     * @param iModel the index of the model
+     * @param modelNames the models
+     * @param scores the scores of the models fit so far, null for the others
+     * @param lambdaS the weight of the order parameter complexity
+     * @param lambdaTau the weight of the correlation time complexity
+     * @return the index of the model, or -1 if none of the models it
+     * contains has been fit
+     */
+    static int bestContained(int iModel, List<String> modelNames, Score[] scores, double lambdaS, double lambdaTau) {
+        String modelName = modelNames.get(iModel);
+        Set<String> contained = contained(modelName);
+        boolean deuterium = isDeuterium(modelName);
+        int best = -1;
+        double bestValue = Double.MAX_VALUE;
+        for (int i = 0; i < modelNames.size(); i++) {
+            String name = modelNames.get(i);
+            if ((scores[i] != null) && (isDeuterium(name) == deuterium) && contained.contains(baseName(name))) {
+                double value = scores[i].value(lambdaS, lambdaTau);
+                if (value < bestValue) {
+                    bestValue = value;
+                    best = i;
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -28,6 +28,8 @@ public class MolDataValues {
     Integer bootstrapSet = null;
     BootstrapAggregator bootstrapAggregator = null;
     double[] weights = null;
+    private MolDataView.SharedJ sharedJ = null;
+    private volatile MolDataView view = null;
 
     public MolDataValues(String specifier, double[] vector, DynamicsSource dynSourceFactory) {
         this.specifier = specifier;
@@ -47,6 +49,44 @@ public class MolDataValues {
         this.specifier = atom.getFullName();
     }
 
+    /**
+     * Returns a snapshot of the current data, test model, bootstrap set and
+     * weights for fitting. The snapshot is kept until one of them is
+     * changed, and all snapshots of this residue share the J values of the
+     * original data. The setters and the creation of the snapshot are
+     * synchronized, so a snapshot never mixes values from before and after a
+     * change.
+     *
+     * @return the view
+     */
+    public MolDataView view() {
+        MolDataView result = view;
+        if (result == null) {
+            synchronized (this) {
+                result = view;
+                if (result == null) {
+                    result = makeView();
+                    view = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private MolDataView makeView() {
+        if (sharedJ == null) {
+            sharedJ = new MolDataView.SharedJ(List.copyOf(dataValues), jValues);
+        }
+        double[] viewWeights = weights == null ? null : weights.clone();
+        return new MolDataView(atom, specifier, vector.clone(), sharedJ.dataValues(), model,
+                bootstrapAggregator, bootstrapSet, viewWeights, sharedJ);
+    }
+
+    private void dataChanged() {
+        sharedJ = null;
+        view = null;
+    }
+
     public Atom getAtom() {
         return atom;
     }
@@ -60,20 +100,23 @@ public class MolDataValues {
         return sBuilder.toString();
     }
 
-    public void weight(double[] weights) {
+    public synchronized void weight(double[] weights) {
         this.weights = weights;
+        view = null;
     }
 
-    public void addData(RelaxDataValue value) {
+    public synchronized void addData(RelaxDataValue value) {
         dataValues.add(value);
+        dataChanged();
     }
 
     public List<RelaxDataValue> getData() {
         return dataValues;
     }
 
-    public void setTestModel(MFModel model) {
+    public synchronized void setTestModel(MFModel model) {
         this.model = model;
+        view = null;
     }
 
     public MFModel getTestModel() {
@@ -84,25 +127,36 @@ public class MolDataValues {
         return vector;
     }
 
-    public void setBootstrapAggregator(BootstrapAggregator bootstrapAggregator) {
+    public synchronized void setBootstrapAggregator(BootstrapAggregator bootstrapAggregator) {
         this.bootstrapAggregator = bootstrapAggregator;
+        view = null;
     }
 
-    public void setBootstrapSet(int iSet) {
+    public synchronized void setBootstrapSet(int iSet) {
         bootstrapSet = iSet;
-        jValues = null;
+        bootstrapChanged();
     }
 
-    public void clearBootStrapSet() {
+    public synchronized void clearBootStrapSet() {
         bootstrapSet = null;
-        jValues = null;
+        bootstrapChanged();
     }
 
-    public void clearJ() {
+    private void bootstrapChanged() {
+        // J values set explicitly don't apply to a bootstrap set, calculated ones are kept
+        if (jValues != null) {
+            jValues = null;
+            sharedJ = null;
+        }
+        view = null;
+    }
+
+    public synchronized void clearJ() {
         jValues = null;
+        dataChanged();
     }
 
-    public double[][] calcJ() {
+    static double[][] calcJ(List<RelaxDataValue> dataValues) {
         var dataOpt = dataValues.stream().findFirst();
         if (dataOpt.isPresent()) {
             if (dataOpt.get() instanceof DeuteriumDataValue) {
@@ -114,6 +168,10 @@ public class MolDataValues {
         return new double[0][0];
     }
 
+    public double[][] calcJ() {
+        return calcJ(dataValues);
+    }
+
     public List<double[][]> calcIndependentJ() {
         var dataOpt = dataValues.stream().findFirst();
         List<double[][]> result = new ArrayList<>();
@@ -134,27 +192,21 @@ public class MolDataValues {
         return result;
     }
 
-    public void setJValues(double[][] jValuesSet) {
+    public synchronized void setJValues(double[][] jValuesSet) {
         jValues = new double[jValuesSet.length][jValuesSet[0].length];
         for (int i=0;i<jValuesSet.length;i++) {
             for (int j=0;j<jValuesSet[i].length;j++) {
                 jValues[i][j] = jValuesSet[i][j];
             }
         }
+        dataChanged();
     }
 
+    /**
+     * @return the J matrix of the current view. The arrays are shared by
+     * the view and must not be changed.
+     */
     public double[][] getJValues() {
-        if (jValues == null) {
-            if (bootstrapSet != null) {
-                jValues = bootstrapAggregator.getBootStrapJ(calcJ(), bootstrapSet);
-            } else {
-                jValues = calcJ();
-            }
-        }
-        if (weights != null) {
-            System.arraycopy(weights, 0, jValues[jValues.length -1], 0, weights.length);
-        }
-        return jValues;
-
+        return view().getJValues();
     }
 }
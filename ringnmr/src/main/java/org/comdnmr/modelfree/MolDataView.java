@@ -0,0 +1,178 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.modelfree;
+
+import java.util.List;
+import org.comdnmr.modelfree.models.MFModel;
+import org.nmrfx.chemistry.Atom;
+
+/**
+ * An unchanging snapshot of one residue's relaxation data as seen by a fit:
+ * the relaxation values, the model being tested, the bootstrap set and the
+ * weights. The J matrix is calculated when first needed and kept. Changing
+ * the model, bootstrap set or weights gives a new view, and views derived
+ * from the same residue share the J matrix of the original data, so each
+ * bootstrap set only has to gather its values. As nothing in a view changes,
+ * replicates and models can be fit in parallel from views of the same
+ * residue. The model itself is not copied, so a model should only be used
+ * by one fit at a time.
+ */
+public final class MolDataView {
+
+    private final Atom atom;
+    private final String specifier;
+    private final double[] vector;
+    private final List<RelaxDataValue> dataValues;
+    private final MFModel model;
+    private final BootstrapAggregator bootstrapAggregator;
+    private final Integer bootstrapSet;
+    private final double[] weights;
+    private final SharedJ sharedJ;
+    private volatile double[][] jValues = null;
+
+    /**
+     * The J matrix of a residue's unresampled data, calculated once for all
+     * the views of the residue.
+     */
+    static final class SharedJ {
+
+        private final List<RelaxDataValue> dataValues;
+        private final double[][] fixedJ;
+        private volatile double[][] jValues = null;
+
+        SharedJ(List<RelaxDataValue> dataValues, double[][] fixedJ) {
+            this.dataValues = dataValues;
+            this.fixedJ = fixedJ;
+        }
+
+        List<RelaxDataValue> dataValues() {
+            return dataValues;
+        }
+
+        boolean isFixed() {
+            return fixedJ != null;
+        }
+
+        double[][] get() {
+            if (fixedJ != null) {
+                return fixedJ;
+            }
+            double[][] result = jValues;
+            if (result == null) {
+                result = MolDataValues.calcJ(dataValues);
+                jValues = result;
+            }
+            return result;
+        }
+    }
+
+    MolDataView(Atom atom, String specifier, double[] vector, List<RelaxDataValue> dataValues, MFModel model,
+            BootstrapAggregator bootstrapAggregator, Integer bootstrapSet, double[] weights, SharedJ sharedJ) {
+        this.atom = atom;
+        this.specifier = specifier;
+        this.vector = vector;
+        this.dataValues = dataValues;
+        this.model = model;
+        this.bootstrapAggregator = bootstrapAggregator;
+        this.bootstrapSet = bootstrapSet;
+        this.weights = weights;
+        this.sharedJ = sharedJ;
+    }
+
+    /**
+     * @param model the model to test
+     * @return a view of the same data with the model
+     */
+    public MolDataView withModel(MFModel model) {
+        return new MolDataView(atom, specifier, vector, dataValues, model,
+                bootstrapAggregator, bootstrapSet, weights, sharedJ);
+    }
+
+    /**
+     * @param bootstrapAggregator the aggregator that defines the sets
+     * @param bootstrapSet the bootstrap set
+     * @return a view that fits the J values of the bootstrap set, with no
+     * weights
+     */
+    public MolDataView withBootstrapSet(BootstrapAggregator bootstrapAggregator, int bootstrapSet) {
+        return new MolDataView(atom, specifier, vector, dataValues, model,
+                bootstrapAggregator, bootstrapSet, null, sharedJ);
+    }
+
+    /**
+     * @param weights the weights of the J values, which are copied
+     * @return a view that fits the J values of the original data with the
+     * weights
+     */
+    public MolDataView withWeights(double[] weights) {
+        return new MolDataView(atom, specifier, vector, dataValues, model,
+                null, null, weights == null ? null : weights.clone(), sharedJ);
+    }
+
+    public Atom getAtom() {
+        return atom;
+    }
+
+    public String getSpecifier() {
+        return specifier;
+    }
+
+    /**
+     * @return the bond vector. The array is shared and must not be changed.
+     */
+    public double[] getVector() {
+        return vector;
+    }
+
+    public List<RelaxDataValue> getData() {
+        return dataValues;
+    }
+
+    public MFModel getTestModel() {
+        return model;
+    }
+
+    public Integer getBootstrapSet() {
+        return bootstrapSet;
+    }
+
+    /**
+     * Returns the J matrix: rows of frequencies, values, errors and weights.
+     * The matrix is calculated the first time it is needed and the same
+     * arrays are returned afterwards, so they must not be changed.
+     *
+     * @return the J matrix
+     */
+    public double[][] getJValues() {
+        double[][] result = jValues;
+        if (result == null) {
+            result = sharedJ.get();
+            if ((bootstrapSet != null) && !sharedJ.isFixed()) {
+                result = bootstrapAggregator.getBootStrapJ(result, bootstrapSet);
+            }
+            if (weights != null) {
+                result = result.clone();
+                double[] weightRow = result[result.length - 1].clone();
+                System.arraycopy(weights, 0, weightRow, 0, weights.length);
+                result[result.length - 1] = weightRow;
+            }
+            jValues = result;
+        }
+        return result;
+    }
+}
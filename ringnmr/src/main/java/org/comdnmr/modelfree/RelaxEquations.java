@@ -88,6 +88,11 @@ public class RelaxEquations {
     private final double sf;
     private final double wI;
     private final double wS;
+    // field dependent factors of the R1, R2 and NOE expressions
+    private final double r1Dipolar;
+    private final double r2Dipolar;
+    private final double r2CSA;
+    private final double noeDipolar;
     double[] wValues;
 
     //   consider using scaled versions (smaller exponents)
@@ -118,6 +123,10 @@ public class RelaxEquations {
             wValues = new double[]{0.0, wS, wI - wS, wI, wI + wS};
         }
         this.sf = sf;
+        r1Dipolar = d2 / 4.0;
+        r2Dipolar = d2 / 8.0;
+        r2CSA = c2 / 6.0;
+        noeDipolar = d2 / 4.0 * (gammaI / gammaS);
     }
 
     public static RelaxEquations getRelaxEquations(double sf, String elem1, String elem2) {
@@ -637,6 +646,50 @@ public class RelaxEquations {
         return dipolarContrib + csaContrib + Rex;
     }
 
+    /**
+     * R1, R2 and NOE calculated together from one set of spectral density
+     * values, sharing the terms the three have in common and using the
+     * field dependent factors computed when this object was created.
+     *
+     * @param J double[]. Array of spectral density function values, J(w).
+     * @param Rex double. Rate of exchange, Rex, value.
+     * @param rates double[]. Array, of length at least 3, that is set to the
+     * R1, R2 and NOE values.
+     */
+    public void rates(double[] J, double Rex, double[] rates) {
+        double jS = J[S];
+        double jImS = J[ImS];
+        double jIpS6 = 6.0 * J[IpS];
+        double j04 = 4.0 * J[0];
+        double dipolarSum = jImS + 3.0 * jS + jIpS6;
+        double r1 = r1Dipolar * dipolarSum + c2 * jS;
+        rates[0] = r1;
+        rates[1] = r2Dipolar * (j04 + dipolarSum + 6.0 * J[I]) + r2CSA * (j04 + 3.0 * jS) + Rex;
+        rates[2] = 1.0 + noeDipolar / r1 * (jIpS6 - jImS);
+    }
+
+    /**
+     * Derivatives of R1, R2 (without Rex) and NOE with respect to one
+     * parameter, from the spectral density values and their derivatives with
+     * respect to the parameter.
+     *
+     * @param J double[]. Array of spectral density function values, J(w).
+     * @param dJ double[]. Derivatives of the J values.
+     * @param dRates double[]. Array of at least 3 values for the derivatives
+     * of R1, R2 and NOE.
+     */
+    public void rateDerivatives(double[] J, double[] dJ, double[] dRates) {
+        double r1 = r1Dipolar * (J[ImS] + 3.0 * J[S] + 6.0 * J[IpS]) + c2 * J[S];
+        double dDipolarSum = dJ[ImS] + 3.0 * dJ[S] + 6.0 * dJ[IpS];
+        double dR1 = r1Dipolar * dDipolarSum + c2 * dJ[S];
+        double dj04 = 4.0 * dJ[0];
+        double noeSum = 6.0 * J[IpS] - J[ImS];
+        double dNoeSum = 6.0 * dJ[IpS] - dJ[ImS];
+        dRates[0] = dR1;
+        dRates[1] = r2Dipolar * (dj04 + dDipolarSum + 6.0 * dJ[I]) + r2CSA * (dj04 + 3.0 * dJ[S]);
+        dRates[2] = noeDipolar * (dNoeSum * r1 - noeSum * dR1) / (r1 * r1);
+    }
+
     public double R1_D(double[] J) {
         double jw = J[1];
         double j2w = J[2];
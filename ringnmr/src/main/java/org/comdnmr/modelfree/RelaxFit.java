@@ -1,6 +1,7 @@
 package org.comdnmr.modelfree;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 import org.apache.commons.math3.geometry.euclidean.threed.NotARotationMatrixException;
 import org.apache.commons.math3.geometry.euclidean.threed.Rotation;
@@ -9,6 +10,7 @@ import org.apache.commons.math3.geometry.euclidean.threed.RotationOrder;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.optim.PointValuePair;
 import org.comdnmr.data.Fitter;
+import org.comdnmr.util.CoMDPreferences;
 import static org.comdnmr.modelfree.RelaxFit.DiffusionType.ANISOTROPIC;
 import static org.comdnmr.modelfree.RelaxFit.DiffusionType.OBLATE;
 import static org.comdnmr.modelfree.RelaxFit.DiffusionType.PROLATE;
@@ -36,6 +38,7 @@ public class RelaxFit {
     boolean logJMode = false;
     boolean fitJ = false;
     Map<String, MolDataValues> molDataValues;
+    Map<String, MolDataView> molDataViews;
     double[] bestPars;
     double[] parErrs;
     double bestAIC;
@@ -62,6 +65,17 @@ public class RelaxFit {
 
     double globalTau = 4.0e-9;
     boolean useGlobalTau = false;
+    int nEvaluations = 0;
+    boolean converged = false;
+    // reused by calcDeltaSqR, a RelaxFit is only used by one thread at a time
+    final double[] jBuffer = new double[5];
+    final double[] rateBuffer = new double[3];
+    static final int DMAT_CHUNK_SIZE = 32;
+    // per residue buffers of valueDMat, each only used by the thread evaluating its chunk
+    private List<MolDataView> dMatViews = List.of();
+    private double[][] dMatResPars = new double[0][];
+    private double[][] dMatModelPars = new double[0][];
+    private boolean dMatParallel = false;
 
     public double getGlobalTau() {
         return globalTau;
@@ -122,8 +136,41 @@ public class RelaxFit {
         return new double[]{0.75 * isoD, isoD, 1.25 * isoD};
     }
 
+    /**
+     * Fit the current state of each residue's data. Changes made to the
+     * residues, such as setting the test model, are seen by later fits.
+     *
+     * @param molDataValues the residues to fit
+     */
     public void setRelaxData(Map<String, MolDataValues> molDataValues) {
         this.molDataValues = molDataValues;
+        this.molDataViews = null;
+    }
+
+    /**
+     * Fit snapshots of the residues. The views are never changed by the fit
+     * so they can be shared by fits running at the same time.
+     *
+     * @param molDataViews the residues to fit
+     */
+    public void setRelaxViews(Map<String, MolDataView> molDataViews) {
+        this.molDataViews = molDataViews;
+        this.molDataValues = null;
+    }
+
+    Map<String, MolDataView> viewMap() {
+        if (molDataViews != null) {
+            return molDataViews;
+        }
+        Map<String, MolDataView> views = new LinkedHashMap<>();
+        for (var entry : molDataValues.entrySet()) {
+            views.put(entry.getKey(), entry.getValue().view());
+        }
+        return views;
+    }
+
+    Collection<MolDataView> views() {
+        return viewMap().values();
     }
 
     public void setDiffusionType(DiffusionType type) {
@@ -367,7 +414,7 @@ public class RelaxFit {
         return new Array2DRowRealMatrix(rot.getMatrix()).transpose().getData();
     }
 
-    double[] calcDeltaSqJ(MolDataValues molData, double[] resPars, MFModel testModel, boolean report) {
+    double[] calcDeltaSqJ(MolDataView molData, double[] resPars, MFModel testModel, boolean report) {
         double sumSq = 0.0;
         double sumSqNW = 0.0;
         double[][] jValues = molData.getJValues();
@@ -408,7 +455,7 @@ public class RelaxFit {
         return new double[]{sumSq, complexityS, complexityTau, nValues};
     }
 
-    double[] calcDeltaSqR(MolDataValues molData, double[] resPars, MFModel testModel) {
+    double[] calcDeltaSqR(MolDataView molData, double[] resPars, MFModel testModel) {
         double sumComplexityS = 0.0;
         double sumComplexityTau = 0.0;
         double sumSq = 0.0;
@@ -416,22 +463,20 @@ public class RelaxFit {
         for (RelaxDataValue value : molData.getData()) {
             R1R2NOEDataValue dValue  = (R1R2NOEDataValue) value;
             RelaxEquations relaxObj = dValue.relaxObj;
-            double[] J = testModel.calc(relaxObj.wValues, resPars);
+            testModel.calc(relaxObj.wValues, resPars, jBuffer);
             sumComplexityS += testModel.getComplexityS();
             sumComplexityTau += testModel.getComplexityTau();
-            double r1 = relaxObj.R1(J);
             // fixme rEx should be field dependent
             double rEx = testModel.includesEx() ? resPars[resPars.length - 1] : 0.0;
-            double r2 = relaxObj.R2(J, rEx);
-            double noe = relaxObj.NOE(J);
-            double delta2 = dValue.score2(r1, r2, noe);
+            relaxObj.rates(jBuffer, rEx, rateBuffer);
+            double delta2 = dValue.score2(rateBuffer[0], rateBuffer[1], rateBuffer[2]);
             sumSq += delta2;
             nPar += 3;
         }
         return new double[]{sumSq, sumComplexityS, sumComplexityTau, nPar};
     }
 
-    double[] calcDeltaSq(MolDataValues molData, double[] resPars, MFModel testModel, boolean report) {
+    double[] calcDeltaSq(MolDataView molData, double[] resPars, MFModel testModel, boolean report) {
         if (fitJ) {
             return calcDeltaSqJ(molData, resPars, testModel, report);
         } else {
@@ -450,7 +495,7 @@ public class RelaxFit {
         boolean parsOK = true;
         double sumComplexityS = 0.0;
         double sumComplexityTau = 0.0;
-        for (MolDataValues molData : molDataValues.values()) {
+        for (MolDataView molData : views()) {
             MFModel testModel = molData.getTestModel();
             double[] resPars;
             if (useGlobalTau) {
@@ -487,14 +532,13 @@ public class RelaxFit {
         return score;
     }
 
-    public Map<String, MolDataValues> genBootstrap(Random random, MFModel model, double[] pars) {
-        var newMolDataValues = new HashMap<String, MolDataValues>();
+    public Map<String, MolDataView> genBootstrap(Random random, MFModel model, double[] pars) {
+        var newMolDataViews = new HashMap<String, MolDataView>();
 
-        for (var entry : molDataValues.entrySet()) {
-            MolDataValues molData = entry.getValue();
-            MolDataValues newMolData = new MolDataValues(molData.atom, molData.vector);
+        for (var entry : viewMap().entrySet()) {
+            MolDataView molData = entry.getValue();
+            MolDataValues newMolData = new MolDataValues(molData.getAtom(), molData.getVector());
             newMolData.setTestModel(model);
-            newMolDataValues.put(entry.getKey(), newMolData);
             MFModel testModel = newMolData.getTestModel();
             double[] resPars;
             if (useGlobalTau) {
@@ -514,8 +558,9 @@ public class RelaxFit {
                     randomize(random, testModel, newMolData, dValue,resPars);
                 }
             }
+            newMolDataViews.put(entry.getKey(), newMolData.view());
         }
-        return newMolDataValues;
+        return newMolDataViews;
     }
 
     private void randomize(Random random, MFModel testModel, MolDataValues newMolData, R1R2NOEDataValue dValue, double[] resPars) {
@@ -540,6 +585,7 @@ public class RelaxFit {
     }
 
     public double value(double[] pars, double[][] values) {
+        nEvaluations++;
         var score = score(pars, false);
         return score.value(getLambdaS(), getLambdaTau());
     }
@@ -549,7 +595,7 @@ public class RelaxFit {
         int n = 0;
         boolean parsOK = true;
         int parStart = 1;
-        for (MolDataValues molData : molDataValues.values()) {
+        for (MolDataView molData : views()) {
             MFModel testModel = molData.getTestModel();
             int nResPars = testModel.getNPars();
             double[] resPars = new double[nResPars + 1];
@@ -579,48 +625,118 @@ public class RelaxFit {
         return rms;
     }
 
+    /**
+     * Make the per residue parameter buffers used by {@link #valueDMat} if
+     * the residues or their models have changed since the last call. The
+     * residues are only evaluated in parallel when there are enough of them
+     * and each has its own model, as a model holds the tensor terms of its
+     * residue during the evaluation.
+     */
+    private void prepareDMat(int nDiffPars) {
+        Collection<MolDataView> views = views();
+        boolean same = views.size() == dMatViews.size();
+        if (same) {
+            int i = 0;
+            for (MolDataView view : views) {
+                if ((view != dMatViews.get(i)) || (dMatResPars[i].length != view.getTestModel().getNPars() + nDiffPars)) {
+                    same = false;
+                    break;
+                }
+                i++;
+            }
+        }
+        if (same) {
+            return;
+        }
+        dMatViews = new ArrayList<>(views);
+        int nViews = dMatViews.size();
+        dMatResPars = new double[nViews][];
+        dMatModelPars = new double[nViews][];
+        Set<MFModel> models = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < nViews; i++) {
+            MFModel model = dMatViews.get(i).getTestModel();
+            models.add(model);
+            dMatResPars[i] = new double[model.getNPars() + nDiffPars];
+            dMatModelPars[i] = new double[model.getNPars()];
+        }
+        dMatParallel = (models.size() == nViews) && (nViews >= 2 * DMAT_CHUNK_SIZE);
+    }
+
+    /**
+     * The rms difference between the experimental and predicted rho values
+     * of all the residues for a diffusion tensor. The residues are split
+     * into fixed chunks that are evaluated in parallel for large systems,
+     * and the tensor terms of each residue are calculated once per call
+     * rather than once per field.
+     *
+     * @param pars the diffusion constants followed by the tensor angles
+     * @param values not used
+     * @return the rms difference
+     */
     public double valueDMat(double[] pars, double[][] values) {
         if (diffusionType == OBLATE || diffusionType == PROLATE) {
             Arrays.sort(pars, 0, 2);
         } else if (diffusionType == ANISOTROPIC) {
             Arrays.sort(pars, 0, 3);
         }
-        double[][] valD = null;
-        double[][] valVT = null;
+        final double[][] valD;
+        final double[][] valVT;
         if (diffusionType != DiffusionType.ISOTROPIC) {
             valD = parsToD(pars, diffusionType);
             valVT = parsToVT(pars, diffusionType);
+        } else {
+            valD = null;
+            valVT = null;
         }
-        double sumSq = 0.0;
         int nDiffPars = diffusionType.getNDiffusionPars() + diffusionType.getNAnglePars();
-        int n = 0;
-        for (MolDataValues molData : molDataValues.values()) {
-            MFModel model = molData.getTestModel();
-            for (RelaxDataValue value : molData.getData()) {
-                R1R2NOEDataValue dValue  = (R1R2NOEDataValue) value;
-                RelaxEquations relaxObj = dValue.relaxObj;
-                double[] v = molData.vector;
-                int nModelPars = model.getNPars();
-                double[] resPars = new double[nModelPars + nDiffPars];
+        prepareDMat(nDiffPars);
+        int nViews = dMatViews.size();
+        int nChunks = (nViews + DMAT_CHUNK_SIZE - 1) / DMAT_CHUNK_SIZE;
+        double[] chunkSumSq = new double[nChunks];
+        int[] chunkN = new int[nChunks];
+        IntStream chunks = IntStream.range(0, nChunks);
+        if (dMatParallel) {
+            chunks = chunks.parallel();
+        }
+        chunks.forEach(iChunk -> {
+            double sumSq = 0.0;
+            int n = 0;
+            int end = Math.min(nViews, (iChunk + 1) * DMAT_CHUNK_SIZE);
+            for (int i = iChunk * DMAT_CHUNK_SIZE; i < end; i++) {
+                MolDataView molData = dMatViews.get(i);
+                MFModel model = molData.getTestModel();
+                double[] resPars = dMatResPars[i];
+                Arrays.fill(resPars, 0.0);
                 System.arraycopy(pars, 0, resPars, 0, nDiffPars);
                 resPars[resPars.length - 1] = 1.0; //Model 0: S2 = 1.0, all others null.
-                double[] valJ;
+                double[] modelPars = resPars;
                 if (model instanceof MFModelIso) {
                     resPars[0] = 1.0 / (6.0 * resPars[0]);
-                    valJ = model.calc(relaxObj.wValues, resPars);
                 } else {
-                    valJ = getJDiffusion(resPars, relaxObj, (MFModelAniso) model, v, valD, valVT);
+                    modelPars = dMatModelPars[i];
+                    System.arraycopy(resPars, nDiffPars, modelPars, 0, modelPars.length);
+                    ((MFModelAniso) model).update(valD, valVT);
+                }
+                for (RelaxDataValue value : molData.getData()) {
+                    R1R2NOEDataValue dValue = (R1R2NOEDataValue) value;
+                    double[] valJ = model.calc(dValue.relaxObj.wValues, modelPars);
+                    double rhoExp = dValue.calcExpRho(valJ);
+                    double rhoPred = dValue.calcPredRho(valJ);
+                    double delta = rhoPred - rhoExp;
+                    sumSq += delta * delta;
+                    n++;
                 }
-                double rhoExp = dValue.calcExpRho(valJ);
-                double rhoPred = dValue.calcPredRho(valJ);
-                double delta = rhoPred - rhoExp;
-                sumSq += delta * delta;
-                n++;
             }
+            chunkSumSq[iChunk] = sumSq;
+            chunkN[iChunk] = n;
+        });
+        double sumSq = 0.0;
+        int n = 0;
+        for (int iChunk = 0; iChunk < nChunks; iChunk++) {
+            sumSq += chunkSumSq[iChunk];
+            n += chunkN[iChunk];
         }
-
         return n == 0 ? 0.0 : Math.sqrt(sumSq / n);
-
     }
 
     public void dumpValues(double[] pars) {
@@ -633,18 +749,18 @@ public class RelaxFit {
         double[][] valVT = parsToVT(pars, diffusionType);
         int modelNum = 1;
         int nDiffPars = diffusionType.getNDiffusionPars() + diffusionType.getNAnglePars();
-        for (MolDataValues molData : molDataValues.values()) {
+        for (MolDataView molData : views()) {
             for (RelaxDataValue value : molData.getData()) {
                 R1R2NOEDataValue dValue  = (R1R2NOEDataValue) value;
                 RelaxEquations relaxObj = dValue.relaxObj;
-                double[] v = molData.vector;
+                double[] v = molData.getVector();
                 double[] resPars = new double[nParsPerModel[modelNum] + nDiffPars];
                 System.arraycopy(pars, 0, resPars, 0, nDiffPars);
                 resPars[resPars.length - 1] = 1.0; //Model 0: S2 = 1.0, all others null.
                 double[] valJ = getJDiffusion(resPars, relaxObj, modelNum, v, valD, valVT);
                 double rhoExp = dValue.calcExpRho(valJ);
                 double rhoPred = dValue.calcPredRho(valJ);
-                System.out.println(rhoExp + " " + rhoPred + " " + (rhoExp - rhoPred) + " " + molData.specifier);
+                System.out.println(rhoExp + " " + rhoPred + " " + (rhoExp - rhoPred) + " " + molData.getSpecifier());
             }
         }
     }
@@ -665,6 +781,24 @@ public class RelaxFit {
         return parErrs;
     }
 
+    /**
+     * @return the number of objective evaluations made by the last
+     * {@link #fitResidueToModel}, including those of a least squares fit
+     * that fell back to CMA-ES
+     */
+    public int getEvaluations() {
+        return nEvaluations;
+    }
+
+    /**
+     * @return true if the last {@link #fitResidueToModel} converged by least
+     * squares. CMA-ES stops without a convergence test, so its fits aren't
+     * reported as converged.
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
     public Fitter getFitter() {
         return bestFitter;
     }
@@ -705,7 +839,29 @@ public class RelaxFit {
 
     }
 
+    /**
+     * Fit the residues to their models with the optimizer in the
+     * preferences. With the LM optimizer fits that {@link RelaxLeastSquares}
+     * can do are done by least squares, and fits it can't do, or that don't
+     * converge, are done with CMA-ES.
+     *
+     * @param start the starting parameters
+     * @param lower the lower bounds
+     * @param upper the upper bounds
+     * @return the best parameters and their value
+     */
     public Optional<PointValuePair> fitResidueToModel(double[] start, double[] lower, double[] upper) {
+        nEvaluations = 0;
+        converged = false;
+        if (CoMDPreferences.getOptimizer().equals("LM") && RelaxLeastSquares.canFit(this)) {
+            RelaxLeastSquares leastSquares = new RelaxLeastSquares(this);
+            Optional<PointValuePair> result = leastSquares.fit(start, lower, upper);
+            nEvaluations += leastSquares.getEvaluations();
+            if (result.isPresent()) {
+                converged = true;
+                return result;
+            }
+        }
         Fitter fitter = Fitter.getArrayFitter(this::value);
         try {
             return Optional.of(fitter.fit(start, lower, upper, 10.0));
@@ -726,6 +882,69 @@ public class RelaxFit {
     }
 
     public PointValuePair fitDiffusion(double[] guesses) {
+        PointValuePair result = fitDiffusionFrom(guesses);
+        if (result != null) {
+            bestPars = result.getPoint();
+            bestChiSq = result.getValue();
+        }
+        return result;
+    }
+
+    /**
+     * Fit the diffusion tensor from each of the angle guesses of the
+     * diffusion type, keeping the best fit. When every residue has an
+     * anisotropic model the guesses are fit at the same time, each with its
+     * own copy of the models.
+     *
+     * @param isoD the isotropic diffusion constant the diffusion constant
+     * guesses are made from
+     * @return the best fit, or empty if no fit succeeded
+     */
+    public Optional<PointValuePair> fitDiffusionStarts(double isoD) {
+        int nDiffPars = diffusionType.getNDiffusionPars();
+        int nAnglePars = diffusionType.getNAnglePars();
+        int nStarts = diffusionType.getNAngleGuesses();
+        Map<String, MolDataView> views = viewMap();
+        boolean concurrent = (nStarts > 1)
+                && views.values().stream().allMatch(view -> view.getTestModel() instanceof MFModelAniso);
+        PointValuePair[] results = new PointValuePair[nStarts];
+        IntStream starts = IntStream.range(0, nStarts);
+        if (concurrent) {
+            starts = starts.parallel();
+        }
+        starts.forEach(iStart -> {
+            double[] guess = new double[nDiffPars + nAnglePars];
+            System.arraycopy(diffusionType.getGuess(isoD), 0, guess, 0, nDiffPars);
+            System.arraycopy(diffusionType.getAngles(iStart), 0, guess, nDiffPars, nAnglePars);
+            RelaxFit startFit = concurrent ? copyForDiffusion(views) : this;
+            results[iStart] = startFit.fitDiffusionFrom(guess);
+        });
+        PointValuePair best = null;
+        for (PointValuePair result : results) {
+            if ((result != null) && ((best == null) || (result.getValue() < best.getValue()))) {
+                best = result;
+            }
+        }
+        if (best != null) {
+            bestPars = best.getPoint();
+            bestChiSq = best.getValue();
+        }
+        return Optional.ofNullable(best);
+    }
+
+    private RelaxFit copyForDiffusion(Map<String, MolDataView> views) {
+        Map<String, MolDataView> copies = new LinkedHashMap<>();
+        for (var entry : views.entrySet()) {
+            MolDataView view = entry.getValue();
+            copies.put(entry.getKey(), view.withModel(((MFModelAniso) view.getTestModel()).copy()));
+        }
+        RelaxFit relaxFit = new RelaxFit();
+        relaxFit.setRelaxViews(copies);
+        relaxFit.setDiffusionType(diffusionType);
+        return relaxFit;
+    }
+
+    private PointValuePair fitDiffusionFrom(double[] guesses) {
         Fitter fitter = Fitter.getArrayFitter(this::valueDMat);
         double[] lower = new double[guesses.length];
         double[] upper = new double[guesses.length];
@@ -740,10 +959,7 @@ public class RelaxFit {
             upper[i] = guesses[i] + Math.PI / 4.0;
         }
         try {
-            PointValuePair result = fitter.fit(guesses, lower, upper, 10.0);
-            bestPars = result.getPoint();
-            bestChiSq = result.getValue();
-            return result;
+            return fitter.fit(guesses, lower, upper, 10.0);
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -0,0 +1,298 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.modelfree;
+
+import java.util.Arrays;
+import java.util.Optional;
+import org.apache.commons.math3.exception.MathIllegalStateException;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresBuilder;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresOptimizer;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresProblem;
+import org.apache.commons.math3.fitting.leastsquares.LevenbergMarquardtOptimizer;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.util.Pair;
+import org.comdnmr.modelfree.models.MFModelIso;
+
+/**
+ * Levenberg-Marquardt fit of the residues of a {@link RelaxFit} to their
+ * isotropic models, using the analytic derivatives of the spectral densities
+ * and of the relaxation rates. The residuals are the same weighted
+ * differences that make up the RelaxFit score, so the best fit is the same
+ * as that of the other optimizers. Each bounded parameter is fit as u, with
+ * p = lower + (upper - lower) (1 + sin(u)) / 2, so the optimizer itself is
+ * unbounded. Parameters with equal bounds are held fixed.
+ */
+public class RelaxLeastSquares {
+
+    static final int MAX_ITERATIONS = 200;
+    static final int MAX_EVALUATIONS = 1000;
+    static final double EDGE = 1.0e-6;
+
+    final RelaxFit relaxFit;
+    int nEvaluations = 0;
+    int nIterations = 0;
+
+    public RelaxLeastSquares(RelaxFit relaxFit) {
+        this.relaxFit = relaxFit;
+    }
+
+    /**
+     * @param relaxFit the fit
+     * @return true if the fit can be done by least squares: every residue
+     * has an isotropic model, the R1, R2 and NOE values or J values are fit
+     * and the score has no complexity terms
+     */
+    public static boolean canFit(RelaxFit relaxFit) {
+        if (relaxFit.useLambda()) {
+            return false;
+        }
+        for (MolDataView molData : relaxFit.views()) {
+            if (!(molData.getTestModel() instanceof MFModelIso)) {
+                return false;
+            }
+            if (!relaxFit.getFitJ()) {
+                for (RelaxDataValue value : molData.getData()) {
+                    if (!(value instanceof R1R2NOEDataValue)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of residual and derivative evaluations of the last
+     * fit
+     */
+    public int getEvaluations() {
+        return nEvaluations;
+    }
+
+    /**
+     * @return the number of iterations of the last fit
+     */
+    public int getIterations() {
+        return nIterations;
+    }
+
+    /**
+     * Fit the parameters. The fit fails if it doesn't converge within the
+     * iteration limit or ends with parameters that break the model's
+     * constraints, and the caller should then try another optimizer.
+     *
+     * @param start the starting parameters
+     * @param lower the lower bounds
+     * @param upper the upper bounds
+     * @return the best parameters and the RelaxFit value at them, or empty
+     * if the fit failed
+     */
+    public Optional<PointValuePair> fit(double[] start, double[] lower, double[] upper) {
+        nEvaluations = 0;
+        nIterations = 0;
+        int nPars = start.length;
+        int[] freePars = new int[nPars];
+        int nFree = 0;
+        for (int i = 0; i < nPars; i++) {
+            if (upper[i] > lower[i]) {
+                freePars[nFree++] = i;
+            }
+        }
+        if (nFree == 0) {
+            return Optional.empty();
+        }
+        double[] u0 = new double[nFree];
+        for (int k = 0; k < nFree; k++) {
+            int i = freePars[k];
+            double f = 2.0 * (start[i] - lower[i]) / (upper[i] - lower[i]) - 1.0;
+            f = Math.max(-1.0 + EDGE, Math.min(1.0 - EDGE, f));
+            u0[k] = Math.asin(f);
+        }
+        int nResiduals = countResiduals();
+        double[] residuals = new double[nResiduals];
+        double[][] jacobian = new double[nResiduals][nPars];
+        final int nFit = nFree;
+        LeastSquaresProblem problem = new LeastSquaresBuilder()
+                .start(u0)
+                .target(new double[nResiduals])
+                .model(point -> {
+                    double[] u = point.toArray();
+                    double[] pars = toPars(u, start, lower, upper, freePars, nFit);
+                    evaluate(pars, residuals, jacobian);
+                    double[][] jacobianU = new double[nResiduals][nFit];
+                    for (int k = 0; k < nFit; k++) {
+                        int i = freePars[k];
+                        double dPdU = 0.5 * (upper[i] - lower[i]) * Math.cos(u[k]);
+                        for (int iRes = 0; iRes < nResiduals; iRes++) {
+                            jacobianU[iRes][k] = jacobian[iRes][i] * dPdU;
+                        }
+                    }
+                    return new Pair<RealVector, RealMatrix>(new ArrayRealVector(residuals),
+                            new Array2DRowRealMatrix(jacobianU, false));
+                })
+                .lazyEvaluation(false)
+                .maxEvaluations(MAX_EVALUATIONS)
+                .maxIterations(MAX_ITERATIONS)
+                .build();
+        LeastSquaresOptimizer.Optimum optimum;
+        try {
+            optimum = new LevenbergMarquardtOptimizer().optimize(problem);
+        } catch (MathIllegalStateException e) {
+            return Optional.empty();
+        }
+        nIterations = optimum.getIterations();
+        double[] pars = toPars(optimum.getPoint().toArray(), start, lower, upper, freePars, nFit);
+        Score score = relaxFit.score(pars, false);
+        double value = score.value(relaxFit.getLambdaS(), relaxFit.getLambdaTau());
+        if (!score.parsOK() || !Double.isFinite(value)) {
+            return Optional.empty();
+        }
+        return Optional.of(new PointValuePair(pars, value));
+    }
+
+    static double[] toPars(double[] u, double[] start, double[] lower, double[] upper, int[] freePars, int nFree) {
+        double[] pars = start.clone();
+        for (int k = 0; k < nFree; k++) {
+            int i = freePars[k];
+            pars[i] = lower[i] + 0.5 * (upper[i] - lower[i]) * (1.0 + Math.sin(u[k]));
+        }
+        return pars;
+    }
+
+    int countResiduals() {
+        int n = 0;
+        for (MolDataView molData : relaxFit.views()) {
+            if (relaxFit.getFitJ()) {
+                n += molData.getJValues()[0].length;
+            } else {
+                n += 3 * molData.getData().size();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Calculate the residuals and their derivatives with respect to the
+     * fit parameters.
+     *
+     * @param pars the fit parameters
+     * @param residuals array for the residuals
+     * @param jacobian array with a row for each residual and a column for
+     * each parameter
+     */
+    void evaluate(double[] pars, double[] residuals, double[][] jacobian) {
+        nEvaluations++;
+        int iRes = 0;
+        for (MolDataView molData : relaxFit.views()) {
+            MFModelIso testModel = (MFModelIso) molData.getTestModel();
+            double[] resPars;
+            // fit parameter of model parameter i is i + parOffset
+            int parOffset;
+            if (relaxFit.useGlobalTau) {
+                resPars = new double[testModel.getNPars() + 1];
+                resPars[0] = relaxFit.globalTau;
+                System.arraycopy(pars, 0, resPars, 1, resPars.length - 1);
+                parOffset = -1;
+            } else {
+                resPars = pars;
+                parOffset = 0;
+            }
+            if (relaxFit.getFitJ()) {
+                iRes = evaluateJ(molData, testModel, resPars, parOffset, residuals, jacobian, iRes);
+            } else {
+                iRes = evaluateRates(molData, testModel, resPars, parOffset, residuals, jacobian, iRes);
+            }
+        }
+    }
+
+    int evaluateJ(MolDataView molData, MFModelIso testModel, double[] resPars, int parOffset,
+            double[] residuals, double[][] jacobian, int iRes) {
+        double[][] jValues = molData.getJValues();
+        double[] omegas = jValues[0];
+        double[] weights = jValues[jValues.length - 1];
+        double[] jCalc = new double[omegas.length];
+        double[][] dJ = new double[testModel.getNJPars()][omegas.length];
+        testModel.calc(omegas, resPars, jCalc);
+        testModel.calcDerivatives(omegas, dJ);
+        for (int i = 0; i < omegas.length; i++, iRes++) {
+            double sqrtWeight = Math.sqrt(weights[i]);
+            double scale;
+            if (relaxFit.getLogJMode()) {
+                double high = jValues[1][i] + jValues[2][i];
+                double low = jValues[1][i] - jValues[2][i];
+                double jErr = Math.abs(Math.log10(high) - Math.log10(low)) / 2.0;
+                residuals[iRes] = sqrtWeight * (Math.log10(jCalc[i]) - Math.log10(jValues[1][i])) / jErr;
+                scale = sqrtWeight / (jErr * jCalc[i] * Math.log(10.0));
+            } else {
+                residuals[iRes] = sqrtWeight * (jCalc[i] - jValues[1][i]) / jValues[2][i];
+                scale = sqrtWeight / jValues[2][i];
+            }
+            Arrays.fill(jacobian[iRes], 0.0);
+            for (int k = 0; k < dJ.length; k++) {
+                int iPar = k + parOffset;
+                if (iPar >= 0) {
+                    jacobian[iRes][iPar] += scale * dJ[k][i];
+                }
+            }
+        }
+        return iRes;
+    }
+
+    int evaluateRates(MolDataView molData, MFModelIso testModel, double[] resPars, int parOffset,
+            double[] residuals, double[][] jacobian, int iRes) {
+        double[] J = new double[5];
+        double[] rates = new double[3];
+        double[] dRates = new double[3];
+        int nJPars = testModel.getNJPars();
+        double rEx = testModel.includesEx() ? resPars[resPars.length - 1] : 0.0;
+        for (RelaxDataValue value : molData.getData()) {
+            R1R2NOEDataValue dValue = (R1R2NOEDataValue) value;
+            RelaxEquations relaxObj = dValue.relaxObj;
+            double[][] dJ = new double[nJPars][relaxObj.wValues.length];
+            testModel.calc(relaxObj.wValues, resPars, J);
+            testModel.calcDerivatives(relaxObj.wValues, dJ);
+            relaxObj.rates(J, rEx, rates);
+            double[] errs = {dValue.R1err, dValue.R2err, dValue.NOEerr};
+            residuals[iRes] = (rates[0] - dValue.R1) / errs[0];
+            residuals[iRes + 1] = (rates[1] - dValue.R2) / errs[1];
+            residuals[iRes + 2] = (rates[2] - dValue.NOE) / errs[2];
+            for (int iRate = 0; iRate < 3; iRate++) {
+                Arrays.fill(jacobian[iRes + iRate], 0.0);
+            }
+            for (int k = 0; k < nJPars; k++) {
+                int iPar = k + parOffset;
+                if (iPar >= 0) {
+                    relaxObj.rateDerivatives(J, dJ[k], dRates);
+                    for (int iRate = 0; iRate < 3; iRate++) {
+                        jacobian[iRes + iRate][iPar] = dRates[iRate] / errs[iRate];
+                    }
+                }
+            }
+            if (testModel.includesEx()) {
+                int iPar = resPars.length - 1 + parOffset;
+                jacobian[iRes + 1][iPar] = 1.0 / errs[1];
+            }
+            iRes += 3;
+        }
+        return iRes;
+    }
+}
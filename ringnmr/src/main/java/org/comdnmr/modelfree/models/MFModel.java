@@ -40,6 +40,20 @@ public abstract class MFModel {
 
     public abstract double[] calc(double[] omega);
 
+    /**
+     * Calculate the spectral density at each of the omegas into J, which
+     * must be at least as long as omegas. Models that can fill J directly
+     * override this so that repeated evaluations don't allocate.
+     *
+     * @param omegas the frequencies (rad/s)
+     * @param pars the model parameters
+     * @param J array for the spectral density values
+     */
+    public void calc(double[] omegas, double[] pars, double[] J) {
+        double[] values = calc(omegas, pars);
+        System.arraycopy(values, 0, J, 0, values.length);
+    }
+
     public double[] getParValues(double... parValues) {
         int n = fitTau ? nPars + 1 : nPars;
         int start = fitTau ? 0 : 1;
@@ -50,6 +50,20 @@ public abstract class MFModelAniso extends MFModel {
         a = diffPars.a;
     }
 
+    MFModelAniso(MFModelAniso model) {
+        diffPars = new DiffusionPars(model.diffPars);
+        dDiff = diffPars.dDiff;
+        a = diffPars.a;
+        includeEx = model.includeEx;
+        targetTau = model.targetTau;
+    }
+
+    /**
+     * @return a model of the same type for the same bond vector, which can
+     * be updated and calculated by another thread
+     */
+    public abstract MFModelAniso copy();
+
     public List<String> getAllParNames(String... pars) {
         var parNames = new ArrayList<String>();
         for (var par : pars) {
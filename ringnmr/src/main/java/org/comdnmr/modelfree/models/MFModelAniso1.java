@@ -43,6 +43,16 @@ public class MFModelAniso1 extends MFModelAniso {
         nPars = 1;
     }
 
+    MFModelAniso1(MFModelAniso1 model) {
+        super(model);
+        nPars = 1;
+    }
+
+    @Override
+    public MFModelAniso1 copy() {
+        return new MFModelAniso1(this);
+    }
+
     @Override
     public List<String> getParNames() {
         return getAllParNames("S2");
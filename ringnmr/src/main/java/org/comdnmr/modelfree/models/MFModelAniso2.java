@@ -37,6 +37,16 @@ public class MFModelAniso2 extends MFModelAniso1 {
         nPars = 2;
     }
 
+    MFModelAniso2(MFModelAniso2 model) {
+        super(model);
+        nPars = 2;
+    }
+
+    @Override
+    public MFModelAniso2 copy() {
+        return new MFModelAniso2(this);
+    }
+
     @Override
     double calc(double omega2, int i) {
         double[] eF = diffPars.calcDiffusione(tauF);
@@ -38,6 +38,16 @@ public class MFModelAniso5 extends MFModelAniso2 {
 
     }
 
+    MFModelAniso5(MFModelAniso5 model) {
+        super(model);
+        nPars = 3;
+    }
+
+    @Override
+    public MFModelAniso5 copy() {
+        return new MFModelAniso5(this);
+    }
+
     @Override
     double calc(double omega2, int i) {
         double[] eF = diffPars.calcDiffusione(tauF);
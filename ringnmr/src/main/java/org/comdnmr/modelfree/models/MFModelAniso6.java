@@ -37,6 +37,16 @@ public class MFModelAniso6 extends MFModelAniso5 {
         nPars = 4;
     }
 
+    MFModelAniso6(MFModelAniso6 model) {
+        super(model);
+        nPars = 4;
+    }
+
+    @Override
+    public MFModelAniso6 copy() {
+        return new MFModelAniso6(this);
+    }
+
     @Override
     double calc(double omega2, int i) {
         double[] eF = diffPars.calcDiffusione(tauF);
@@ -90,10 +90,122 @@ public abstract class MFModelIso extends MFModel {
         return targetTau + targetTau * tauFrac;
     }
 
+    public abstract void pars(double[] pars);
+
+    /**
+     * Calculate the spectral density at each of the omegas, with the current
+     * parameters, into J.
+     *
+     * @param omegas the frequencies (rad/s)
+     * @param J array, at least as long as omegas, for the values
+     */
+    public abstract void calcJ(double[] omegas, double[] J);
+
+    /**
+     * Calculate the derivatives of the spectral density at each of the
+     * omegas with respect to each parameter, using the parameters last set
+     * with {@link #pars}. Row i of dJ is for parameter i of the parameter
+     * array. Rex doesn't change J so has no row.
+     *
+     * @param omegas the frequencies (rad/s)
+     * @param dJ {@link #getNJPars} rows, each at least as long as omegas,
+     * for the derivatives
+     */
+    public abstract void calcDerivatives(double[] omegas, double[][] dJ);
+
+    /**
+     * @return the number of parameters the spectral density depends on: all
+     * of them except Rex
+     */
+    public int getNJPars() {
+        return (fitTau ? nPars + 1 : nPars) - (includeEx ? 1 : 0);
+    }
+
+    /**
+     * @return the Lorentzian tau / (1 + omega^2 tau^2)
+     */
+    static double lorentz(double omega2, double tau) {
+        return tau / (1.0 + omega2 * tau * tau);
+    }
+
+    /**
+     * @return the derivative of the Lorentzian with respect to tau
+     */
+    static double dLorentz(double omega2, double tau) {
+        double x = omega2 * tau * tau;
+        return (1.0 - x) / ((1.0 + x) * (1.0 + x));
+    }
+
+    @Override
+    public double[] calc(double[] omegas) {
+        double[] J = new double[omegas.length];
+        calcJ(omegas, J);
+        return J;
+    }
+
+    @Override
+    public void calc(double[] omegas, double[] pars, double[] J) {
+        pars(pars);
+        calcJ(omegas, J);
+    }
+
     public abstract double[] getStart();
 
     public abstract double[] getStandardPars(double[] pars);
 
+    /**
+     * @return for each parameter after tau, the index in the standard
+     * parameters (tau, Sf2, Tau_f, Ss2, Tau_s) of the value it corresponds
+     * to, leaving out Rex
+     */
+    abstract int[] standardIndices();
+
+    /**
+     * Start parameters taken from the fit of a simpler model that this model
+     * contains. The simpler model's order parameter goes to Sf2 or Ss2 when
+     * this model only has one of them. Correlation times the simpler model
+     * doesn't have keep their usual start values, and every value is kept a
+     * little inside the bounds so the fit can move away from the simpler
+     * model.
+     *
+     * @param standardPars the standard parameters of the simpler model's fit,
+     * as from {@link #getStandardPars}
+     * @return the start parameters
+     */
+    public double[] getStart(double[] standardPars) {
+        double[] start = getStart();
+        double[] lower = getLower();
+        double[] upper = getUpper();
+        int[] indices = standardIndices();
+        boolean hasSf2 = false;
+        boolean hasSs2 = false;
+        for (int index : indices) {
+            hasSf2 |= index == 1;
+            hasSs2 |= index == 3;
+        }
+        double s2 = standardPars[1] * standardPars[3];
+        int parStart = 0;
+        if (fitTau) {
+            start[0] = standardPars[0];
+            parStart = 1;
+        }
+        for (int i = 0; i < indices.length; i++) {
+            double value = switch (indices[i]) {
+                case 1 -> hasSs2 ? standardPars[1] : s2;
+                case 3 -> hasSf2 ? standardPars[3] : s2;
+                default -> standardPars[indices[i]];
+            };
+            if (value > 0.0) {
+                start[parStart + i] = value;
+            }
+        }
+        for (int i = 0; i < start.length; i++) {
+            double margin = 0.01 * (upper[i] - lower[i]);
+            start[i] = Math.max(lower[i] + margin, Math.min(upper[i] - margin, start[i]));
+        }
+        return start;
+    }
+
 
     public static MFModelIso buildModel(String modelName, boolean fitTau,
                                         double tau, double tauFrac,
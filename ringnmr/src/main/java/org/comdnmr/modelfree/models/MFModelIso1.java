@@ -51,17 +51,30 @@ public class MFModelIso1 extends MFModelIso {
     }
 
     public double spectralDensity(double s2, double omega, double tau) {
-        return 0.4 * s2 / sN * tau / (1.0 + Math.pow(omega * tau, 2.0));
+        double omegaTau = omega * tau;
+        return 0.4 * s2 / sN * tau / (1.0 + omegaTau * omegaTau);
     }
     @Override
-    public double[] calc(double[] omegas) {
-        double[] J = new double[omegas.length];
+    public void calcJ(double[] omegas, double[] J) {
         int j = 0;
         for (double omega : omegas) {
             omega *= 1.0e-9;
             J[j++] = 1.0e-9 * spectralDensity(sf2, omega, tauM);
         }
-        return J;
+    }
+
+    @Override
+    public void calcDerivatives(double[] omegas, double[][] dJ) {
+        int parStart = fitTau ? 1 : 0;
+        double s2 = sf2 / sN;
+        for (int j = 0; j < omegas.length; j++) {
+            double omega = omegas[j] * 1.0e-9;
+            double omega2 = omega * omega;
+            if (fitTau) {
+                dJ[0][j] = 0.4e-9 * s2 * dLorentz(omega2, tauM);
+            }
+            dJ[parStart][j] = 0.4e-9 / sN * lorentz(omega2, tauM);
+        }
     }
 
     @Override
@@ -79,6 +92,11 @@ public class MFModelIso1 extends MFModelIso {
         this.sf2 = pars[parStart];
     }
 
+    @Override
+    int[] standardIndices() {
+        return new int[]{1};
+    }
+
     @Override
     public double[] getStandardPars(double[] pars) {
         pars(pars);
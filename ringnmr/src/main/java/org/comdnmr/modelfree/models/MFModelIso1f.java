@@ -52,19 +52,37 @@ public class MFModelIso1f extends MFModelIso1 {
     }
 
     @Override
-    public double[] calc(double[] omegas) {
-        double[] J = new double[omegas.length];
+    public void calcJ(double[] omegas, double[] J) {
         double sf2 = this.sf2 / sN;
         int j = 0;
+        double tauf = tauM * tauF / (tauM + tauF);
         for (double omega : omegas) {
             omega *= 1.0e-9;
             double omega2 = omega * omega;
-            double tauf = tauM * tauF / (tauM + tauF);
             double value1 = sf2 * tauM / (1.0 + omega2 * tauM * tauM);
             double value2 = (1.0 - sf2) * (tauf) / (1.0 + omega2 * tauf * tauf);
             J[j++] = 0.4e-9 * (value1 + value2);
         }
-        return J;
+    }
+
+    @Override
+    public void calcDerivatives(double[] omegas, double[][] dJ) {
+        int parStart = fitTau ? 1 : 0;
+        double sf2 = this.sf2 / sN;
+        double tauf = tauM * tauF / (tauM + tauF);
+        // derivatives of tauf with respect to tauM and tauF
+        double dTaufM = (tauf / tauM) * (tauf / tauM);
+        double dTaufF = (tauf / tauF) * (tauf / tauF);
+        for (int j = 0; j < omegas.length; j++) {
+            double omega = omegas[j] * 1.0e-9;
+            double omega2 = omega * omega;
+            double dValue2 = (1.0 - sf2) * dLorentz(omega2, tauf);
+            if (fitTau) {
+                dJ[0][j] = 0.4e-9 * (sf2 * dLorentz(omega2, tauM) + dValue2 * dTaufM);
+            }
+            dJ[parStart][j] = 0.4e-9 / sN * (lorentz(omega2, tauM) - lorentz(omega2, tauf));
+            dJ[parStart + 1][j] = 0.4e-9 * dValue2 * dTaufF;
+        }
     }
 
     @Override
@@ -91,6 +109,11 @@ public class MFModelIso1f extends MFModelIso1 {
         return calc(omegas);
     }
 
+    @Override
+    int[] standardIndices() {
+        return new int[]{1, 2};
+    }
+
     @Override
     public double[] getStandardPars(double[] pars) {
         pars(pars);
@@ -53,19 +53,37 @@ public class MFModelIso1s extends MFModelIso {
     }
 
     @Override
-    public double[] calc(double[] omegas) {
-        double[] J = new double[omegas.length];
+    public void calcJ(double[] omegas, double[] J) {
         double ss2 = this.ss2 / sN;
         int j = 0;
+        double tauf = tauM * tauS / (tauM + tauS);
         for (double omega : omegas) {
             omega *= 1.0e-9;
             double omega2 = omega * omega;
-            double tauf = tauM * tauS / (tauM + tauS);
             double value1 = ss2 * tauM / (1.0 + omega2 * tauM * tauM);
             double value2 = (1.0 - ss2) * (tauf) / (1.0 + omega2 * tauf * tauf);
             J[j++] = 0.4e-9 * (value1 + value2);
         }
-        return J;
+    }
+
+    @Override
+    public void calcDerivatives(double[] omegas, double[][] dJ) {
+        int parStart = fitTau ? 1 : 0;
+        double ss2 = this.ss2 / sN;
+        double taus = tauM * tauS / (tauM + tauS);
+        // derivatives of taus with respect to tauM and tauS
+        double dTausM = (taus / tauM) * (taus / tauM);
+        double dTausS = (taus / tauS) * (taus / tauS);
+        for (int j = 0; j < omegas.length; j++) {
+            double omega = omegas[j] * 1.0e-9;
+            double omega2 = omega * omega;
+            double dValue2 = (1.0 - ss2) * dLorentz(omega2, taus);
+            if (fitTau) {
+                dJ[0][j] = 0.4e-9 * (ss2 * dLorentz(omega2, tauM) + dValue2 * dTausM);
+            }
+            dJ[parStart][j] = 0.4e-9 / sN * (lorentz(omega2, tauM) - lorentz(omega2, taus));
+            dJ[parStart + 1][j] = 0.4e-9 * dValue2 * dTausS;
+        }
     }
 
     @Override
@@ -85,6 +103,11 @@ public class MFModelIso1s extends MFModelIso {
         this.tauS = pars[parStart + 1];
     }
 
+    @Override
+    int[] standardIndices() {
+        return new int[]{3, 4};
+    }
+
     @Override
     public double[] getStandardPars(double[] pars) {
         pars(pars);
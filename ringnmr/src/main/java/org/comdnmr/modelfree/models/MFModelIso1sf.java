@@ -52,8 +52,7 @@ public class MFModelIso1sf extends MFModelIso2f {
     }
 
     @Override
-    public double[] calc(double[] omegas) {
-        double[] J = new double[omegas.length];
+    public void calcJ(double[] omegas, double[] J) {
         int j = 0;
         double ss2 = this.ss2;
         double sf2 = 1.0 / sN;
@@ -77,7 +76,55 @@ public class MFModelIso1sf extends MFModelIso2f {
         complexityTau
                 = (Math.log10(tauS + 0.001) + 3.0)
                 + (Math.log10(tauF + 0.001) + 3.0);
-        return J;
+    }
+
+    @Override
+    public void calcDerivatives(double[] omegas, double[][] dJ) {
+        int parStart = fitTau ? 1 : 0;
+        double[][] dJSF = new double[5][omegas.length];
+        calcDerivatives(omegas, tauM, tauF, 1.0 / sN, ss2, tauS, dJSF);
+        if (fitTau) {
+            System.arraycopy(dJSF[0], 0, dJ[0], 0, omegas.length);
+        }
+        for (int i = 0; i < 3; i++) {
+            System.arraycopy(dJSF[i + 2], 0, dJ[parStart + i], 0, omegas.length);
+        }
+    }
+
+    /**
+     * Derivatives of the spectral density with the fast and slow motions
+     * combined, with respect to tauM, sf2, tauF, ss2 and tauS in rows 0 to 4
+     * of dJ. The sf2 value is already scaled.
+     */
+    static void calcDerivatives(double[] omegas, double tauM, double tauF, double sf2, double ss2, double tauS,
+            double[][] dJ) {
+        double s2 = ss2 * sf2;
+        // J = 0.4 (s2 L(tauM) + sf2 (1 - ss2) L(tauMS) + (1 - sf2) ss2 L(tauMF)
+        //      + (1 - sf2) (1 - ss2) L(tauMFS))
+        double tauMS = tauM * tauS / (tauM + tauS);
+        double tauMF = tauM * tauF / (tauM + tauF);
+        double tauMFS = tauF * tauM * tauS / (tauF * (tauM + tauS) + tauM * tauS);
+        for (int j = 0; j < omegas.length; j++) {
+            double omega = omegas[j] * 1.0e-9;
+            double omega2 = omega * omega;
+            double lM = lorentz(omega2, tauM);
+            double lS = lorentz(omega2, tauMS);
+            double lF = lorentz(omega2, tauMF);
+            double lFS = lorentz(omega2, tauMFS);
+            double dS = sf2 * (1.0 - ss2) * dLorentz(omega2, tauMS);
+            double dF = (1.0 - sf2) * ss2 * dLorentz(omega2, tauMF);
+            double dFS = (1.0 - sf2) * (1.0 - ss2) * dLorentz(omega2, tauMFS);
+            dJ[0][j] = 0.4e-9 * (s2 * dLorentz(omega2, tauM)
+                    + dS * (tauMS / tauM) * (tauMS / tauM)
+                    + dF * (tauMF / tauM) * (tauMF / tauM)
+                    + dFS * (tauMFS / tauM) * (tauMFS / tauM));
+            dJ[1][j] = 0.4e-9 * (ss2 * lM + (1.0 - ss2) * lS - ss2 * lF - (1.0 - ss2) * lFS);
+            dJ[2][j] = 0.4e-9 * (dF * (tauMF / tauF) * (tauMF / tauF)
+                    + dFS * (tauMFS / tauF) * (tauMFS / tauF));
+            dJ[3][j] = 0.4e-9 * (sf2 * lM - sf2 * lS + (1.0 - sf2) * lF - (1.0 - sf2) * lFS);
+            dJ[4][j] = 0.4e-9 * (dS * (tauMS / tauS) * (tauMS / tauS)
+                    + dFS * (tauMFS / tauS) * (tauMFS / tauS));
+        }
     }
 
     @Override
@@ -117,6 +164,11 @@ public class MFModelIso1sf extends MFModelIso2f {
         return sortPars;
     }
 
+    @Override
+    int[] standardIndices() {
+        return new int[]{2, 3, 4};
+    }
+
     @Override
     public double[] getStandardPars(double[] pars) {
         return sortPars(pars);
@@ -52,22 +52,44 @@ public class MFModelIso2f extends MFModelIso1f {
     }
 
     @Override
-    public double[] calc(double[] omegas) {
-        double[] J = new double[omegas.length];
+    public void calcJ(double[] omegas, double[] J) {
         int j = 0;
         double ss2 = this.ss2;
         double sf2 = this.sf2 / sN;
         double s2 = sf2 * ss2;
+        double tauf = tauM * tauF / (tauM + tauF);
         for (double omega : omegas) {
             omega *= 1.0e-9;
             double omega2 = omega * omega;
-            double tauf = tauM * tauF / (tauM + tauF);
             double value1 = s2 * tauM / (1.0 + omega2 * tauM * tauM);
             double value2 = (ss2 - s2) * (tauf) / (1.0 + omega2 * tauf * tauf);
 
             J[j++] = 0.4e-9 * (value1 + value2);
         }
-        return J;
+    }
+
+    @Override
+    public void calcDerivatives(double[] omegas, double[][] dJ) {
+        int parStart = fitTau ? 1 : 0;
+        double ss2 = this.ss2;
+        double sf2 = this.sf2 / sN;
+        double s2 = sf2 * ss2;
+        double tauf = tauM * tauF / (tauM + tauF);
+        double dTaufM = (tauf / tauM) * (tauf / tauM);
+        double dTaufF = (tauf / tauF) * (tauf / tauF);
+        for (int j = 0; j < omegas.length; j++) {
+            double omega = omegas[j] * 1.0e-9;
+            double omega2 = omega * omega;
+            double lM = lorentz(omega2, tauM);
+            double lF = lorentz(omega2, tauf);
+            double dValue2 = (ss2 - s2) * dLorentz(omega2, tauf);
+            if (fitTau) {
+                dJ[0][j] = 0.4e-9 * (s2 * dLorentz(omega2, tauM) + dValue2 * dTaufM);
+            }
+            dJ[parStart][j] = 0.4e-9 * ss2 / sN * (lM - lF);
+            dJ[parStart + 1][j] = 0.4e-9 * dValue2 * dTaufF;
+            dJ[parStart + 2][j] = 0.4e-9 * (sf2 * lM + (1.0 - sf2) * lF);
+        }
     }
 
     @Override
@@ -89,6 +111,11 @@ public class MFModelIso2f extends MFModelIso1f {
         this.ss2 = pars[parStart + 2];
     }
 
+    @Override
+    int[] standardIndices() {
+        return new int[]{1, 2, 3};
+    }
+
     @Override
     public double[] getStandardPars(double[] pars) {
         pars(pars);
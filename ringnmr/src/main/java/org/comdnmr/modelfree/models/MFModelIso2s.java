@@ -52,21 +52,43 @@ public class MFModelIso2s extends MFModelIso1s {
     }
 
     @Override
-    public double[] calc(double[] omegas) {
-        double[] J = new double[omegas.length];
+    public void calcJ(double[] omegas, double[] J) {
         int j = 0;
         double ss2 = this.ss2 / sN;
         double sf2 = this.sf2;
         double s2 = sf2 * ss2;
+        double taus = tauM * tauS / (tauM + tauS);
         for (double omega : omegas) {
             omega *= 1.0e-9;
             double omega2 = omega * omega;
-            double taus = tauM * tauS / (tauM + tauS);
             double value1 = s2 * tauM / (1.0 + omega2 * tauM * tauM);
             double value2 = (sf2 - s2) * (taus) / (1.0 + omega2 * taus * taus);
             J[j++] = 0.4e-9 * (value1 + value2);
         }
-        return J;
+    }
+
+    @Override
+    public void calcDerivatives(double[] omegas, double[][] dJ) {
+        int parStart = fitTau ? 1 : 0;
+        double ss2 = this.ss2 / sN;
+        double sf2 = this.sf2;
+        double s2 = sf2 * ss2;
+        double taus = tauM * tauS / (tauM + tauS);
+        double dTausM = (taus / tauM) * (taus / tauM);
+        double dTausS = (taus / tauS) * (taus / tauS);
+        for (int j = 0; j < omegas.length; j++) {
+            double omega = omegas[j] * 1.0e-9;
+            double omega2 = omega * omega;
+            double lM = lorentz(omega2, tauM);
+            double lS = lorentz(omega2, taus);
+            double dValue2 = (sf2 - s2) * dLorentz(omega2, taus);
+            if (fitTau) {
+                dJ[0][j] = 0.4e-9 * (s2 * dLorentz(omega2, tauM) + dValue2 * dTausM);
+            }
+            dJ[parStart][j] = 0.4e-9 * (ss2 * lM + (1.0 - ss2) * lS);
+            dJ[parStart + 1][j] = 0.4e-9 * dValue2 * dTausS;
+            dJ[parStart + 2][j] = 0.4e-9 * sf2 / sN * (lM - lS);
+        }
     }
 
     @Override
@@ -88,6 +110,11 @@ public class MFModelIso2s extends MFModelIso1s {
         this.ss2 = pars[parStart + 2];
     }
 
+    @Override
+    int[] standardIndices() {
+        return new int[]{1, 4, 3};
+    }
+
     @Override
     public double[] getStandardPars(double[] pars) {
         pars(pars);
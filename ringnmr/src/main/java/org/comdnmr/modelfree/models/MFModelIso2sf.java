@@ -54,8 +54,7 @@ public class MFModelIso2sf extends MFModelIso2f {
     }
 
     @Override
-    public double[] calc(double[] omegas) {
-        double[] J = new double[omegas.length];
+    public void calcJ(double[] omegas, double[] J) {
         int j = 0;
         double ss2 = this.ss2;
         double sf2 = this.sf2 / sN;
@@ -75,7 +74,35 @@ public class MFModelIso2sf extends MFModelIso2f {
         complexityTau =
                 Math.log10((tauS + tauPrime) / tauPrime) +
                         Math.log10((tauF + tauPrime) / tauPrime);
-        return J;
+    }
+
+    @Override
+    public void calcDerivatives(double[] omegas, double[][] dJ) {
+        int parStart = fitTau ? 1 : 0;
+        double ss2 = this.ss2;
+        double sf2 = this.sf2 / sN;
+        double s2 = ss2 * sf2;
+        // J = 0.4 (s2 L(tauM) + (1 - sf2) L(tauMF) + sf2 (1 - ss2) L(tauMS))
+        double tauMF = tauM * tauF / (tauM + tauF);
+        double tauMS = tauM * tauS / (tauM + tauS);
+        for (int j = 0; j < omegas.length; j++) {
+            double omega = omegas[j] * 1.0e-9;
+            double omega2 = omega * omega;
+            double lM = lorentz(omega2, tauM);
+            double lF = lorentz(omega2, tauMF);
+            double lS = lorentz(omega2, tauMS);
+            double dF = (1.0 - sf2) * dLorentz(omega2, tauMF);
+            double dS = sf2 * (1.0 - ss2) * dLorentz(omega2, tauMS);
+            if (fitTau) {
+                dJ[0][j] = 0.4e-9 * (s2 * dLorentz(omega2, tauM)
+                        + dF * (tauMF / tauM) * (tauMF / tauM)
+                        + dS * (tauMS / tauM) * (tauMS / tauM));
+            }
+            dJ[parStart][j] = 0.4e-9 / sN * (ss2 * lM - lF + (1.0 - ss2) * lS);
+            dJ[parStart + 1][j] = 0.4e-9 * dF * (tauMF / tauF) * (tauMF / tauF);
+            dJ[parStart + 2][j] = 0.4e-9 * sf2 * (lM - lS);
+            dJ[parStart + 3][j] = 0.4e-9 * dS * (tauMS / tauS) * (tauMS / tauS);
+        }
     }
 
     @Override
@@ -126,6 +153,11 @@ public class MFModelIso2sf extends MFModelIso2f {
         return sortPars;
     }
 
+    @Override
+    int[] standardIndices() {
+        return new int[]{1, 2, 3, 4};
+    }
+
     @Override
     public double[] getStandardPars(double[] pars) {
         return sortPars(pars);
@@ -3,8 +3,7 @@ package org.comdnmr.modelfree.models;
 public class MFModelIso2sfx extends MFModelIso2sf {
 
     @Override
-    public double[] calc(double[] omegas) {
-        double[] J = new double[omegas.length];
+    public void calcJ(double[] omegas, double[] J) {
         int j = 0;
         double ss2 = this.ss2;
         double sf2 = this.sf2 / sN;
@@ -27,7 +26,21 @@ public class MFModelIso2sfx extends MFModelIso2sf {
         complexityTau =
                 Math.log10((tauS + tauPrime) / tauPrime) +
                         Math.log10((tauF + tauPrime) / tauPrime);
-        return J;
+    }
 
+    @Override
+    public void calcDerivatives(double[] omegas, double[][] dJ) {
+        int parStart = fitTau ? 1 : 0;
+        double[][] dJSF = new double[5][omegas.length];
+        MFModelIso1sf.calcDerivatives(omegas, tauM, tauF, sf2 / sN, ss2, tauS, dJSF);
+        if (fitTau) {
+            System.arraycopy(dJSF[0], 0, dJ[0], 0, omegas.length);
+        }
+        for (int j = 0; j < omegas.length; j++) {
+            dJ[parStart][j] = dJSF[1][j] / sN;
+        }
+        for (int i = 1; i < 4; i++) {
+            System.arraycopy(dJSF[i + 1], 0, dJ[parStart + i], 0, omegas.length);
+        }
     }
 }
@@ -0,0 +1,247 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.util;
+
+import org.ejml.data.DMatrixRMaj;
+
+/**
+ * Matrix exponential for the small (6x6 and 7x7) Bloch-McConnell matrices of
+ * the exact CEST and R1rho models. It uses the same Pade approximation with
+ * scaling and squaring as {@link MtxExp#matrixExp(DMatrixRMaj)}, but works
+ * on row major arrays allocated once per thread and size, and solves the
+ * Pade system with an inline LU decomposition, so propagating an offset
+ * doesn't allocate.
+ *
+ * <pre>
+ * BlochMcConnellPropagator propagator = BlochMcConnellPropagator.forSize(7);
+ * propagator.exp(Z);
+ * double a30 = propagator.get(3, 0);
+ * </pre>
+ */
+public final class BlochMcConnellPropagator {
+
+    static final int MAX_SIZE = 8;
+    static final int PADE_ORDER = 6;
+    private static final ThreadLocal<BlochMcConnellPropagator[]> PROPAGATORS
+            = ThreadLocal.withInitial(() -> new BlochMcConnellPropagator[MAX_SIZE + 1]);
+
+    private final int n;
+    private final double[] a;
+    private final double[] x;
+    private final double[] x1;
+    private final double[] e;
+    private final double[] d;
+    private final double[] result;
+
+    BlochMcConnellPropagator(int n) {
+        this.n = n;
+        int nn = n * n;
+        a = new double[nn];
+        x = new double[nn];
+        x1 = new double[nn];
+        e = new double[nn];
+        d = new double[nn];
+        result = new double[nn];
+    }
+
+    /**
+     * Returns the propagator for matrices of the given size belonging to the
+     * calling thread. The returned object must not be shared with other
+     * threads.
+     *
+     * @param n the number of rows (and columns) of the matrix
+     * @return the propagator
+     */
+    public static BlochMcConnellPropagator forSize(int n) {
+        if ((n < 1) || (n > MAX_SIZE)) {
+            throw new IllegalArgumentException("Propagator size must be between 1 and " + MAX_SIZE + ", not " + n);
+        }
+        BlochMcConnellPropagator[] propagators = PROPAGATORS.get();
+        BlochMcConnellPropagator propagator = propagators[n];
+        if (propagator == null) {
+            propagator = new BlochMcConnellPropagator(n);
+            propagators[n] = propagator;
+        }
+        return propagator;
+    }
+
+    public int getSize() {
+        return n;
+    }
+
+    /**
+     * Calculate exp(Z). The result is available from {@link #get} until the
+     * next call.
+     *
+     * @param Z the matrix, with the same size as this propagator
+     */
+    public void exp(DMatrixRMaj Z) {
+        if ((Z.getNumRows() != n) || (Z.getNumCols() != n)) {
+            throw new IllegalArgumentException("Matrix is " + Z.getNumRows() + "x" + Z.getNumCols()
+                    + ", propagator is " + n + "x" + n);
+        }
+        exp(Z.data);
+    }
+
+    /**
+     * Calculate exp(Z) for a matrix stored in row major order. The result is
+     * available from {@link #get} until the next call.
+     *
+     * @param z the n*n matrix elements in row major order
+     */
+    public void exp(double[] z) {
+        int nn = n * n;
+        double sumSq = 0.0;
+        for (int i = 0; i < nn; i++) {
+            sumSq += z[i] * z[i];
+        }
+        int exponent = (int) (Math.log(Math.sqrt(sumSq)) / Math.log(2));  // log base 2 of the norm of Z
+        int s = Math.max(0, exponent + 1);
+        double scale = Math.pow(2, s);
+        for (int i = 0; i < nn; i++) {
+            a[i] = z[i] / scale;
+            x1[i] = a[i];
+        }
+        double c = 0.5;
+        for (int i = 0; i < nn; i++) {
+            e[i] = c * a[i];
+            d[i] = -c * a[i];
+        }
+        for (int i = 0; i < n; i++) {
+            e[i * n + i] += 1.0;
+            d[i * n + i] += 1.0;
+        }
+
+        boolean p = true;
+        for (int k = 2; k <= PADE_ORDER; k++) {
+            c = c * (PADE_ORDER - k + 1) / (k * (2 * PADE_ORDER - k + 1));
+            multiply(a, x1, x);
+            System.arraycopy(x, 0, x1, 0, nn);
+            for (int i = 0; i < nn; i++) {
+                double cx = c * x[i];
+                e[i] += cx;
+                if (p) {
+                    d[i] += cx;
+                } else {
+                    d[i] -= cx;
+                }
+            }
+            p = !p;
+        }
+
+        solve(d, e, result);
+
+        for (int k = 1; k <= s; k++) {
+            multiply(result, result, x);
+            System.arraycopy(x, 0, result, 0, nn);
+        }
+    }
+
+    /**
+     * @param row row index
+     * @param col column index
+     * @return element of the most recent exp(Z)
+     */
+    public double get(int row, int col) {
+        return result[row * n + col];
+    }
+
+    /**
+     * Multiply the most recent exp(Z) by a vector.
+     *
+     * @param v the vector
+     * @param out array of length n to store exp(Z) v
+     */
+    public void multiply(double[] v, double[] out) {
+        for (int i = 0; i < n; i++) {
+            double sum = 0.0;
+            int row = i * n;
+            for (int j = 0; j < n; j++) {
+                sum += result[row + j] * v[j];
+            }
+            out[i] = sum;
+        }
+    }
+
+    private void multiply(double[] m1, double[] m2, double[] out) {
+        for (int i = 0; i < n; i++) {
+            int row = i * n;
+            for (int j = 0; j < n; j++) {
+                double sum = 0.0;
+                for (int k = 0; k < n; k++) {
+                    sum += m1[row + k] * m2[k * n + j];
+                }
+                out[row + j] = sum;
+            }
+        }
+    }
+
+    /**
+     * Solve m * out = rhs by LU decomposition with partial pivoting. m and
+     * rhs are overwritten.
+     */
+    private void solve(double[] m, double[] rhs, double[] out) {
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            double max = Math.abs(m[col * n + col]);
+            for (int i = col + 1; i < n; i++) {
+                double value = Math.abs(m[i * n + col]);
+                if (value > max) {
+                    max = value;
+                    pivot = i;
+                }
+            }
+            if (pivot != col) {
+                swapRows(m, col, pivot);
+                swapRows(rhs, col, pivot);
+            }
+            double diag = m[col * n + col];
+            for (int i = col + 1; i < n; i++) {
+                double f = m[i * n + col] / diag;
+                if (f != 0.0) {
+                    for (int j = col; j < n; j++) {
+                        m[i * n + j] -= f * m[col * n + j];
+                    }
+                    for (int j = 0; j < n; j++) {
+                        rhs[i * n + j] -= f * rhs[col * n + j];
+                    }
+                }
+            }
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double diag = m[i * n + i];
+            for (int j = 0; j < n; j++) {
+                double sum = rhs[i * n + j];
+                for (int k = i + 1; k < n; k++) {
+                    sum -= m[i * n + k] * out[k * n + j];
+                }
+                out[i * n + j] = sum / diag;
+            }
+        }
+    }
+
+    private void swapRows(double[] m, int r1, int r2) {
+        int o1 = r1 * n;
+        int o2 = r2 * n;
+        for (int j = 0; j < n; j++) {
+            double t = m[o1 + j];
+            m[o1 + j] = m[o2 + j];
+            m[o2 + j] = t;
+        }
+    }
+}
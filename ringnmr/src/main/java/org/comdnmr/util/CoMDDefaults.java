@@ -23,7 +23,11 @@ public class CoMDDefaults {
     static final Boolean NON_PARAMETRIC_BOOTSTRAP = true;
     static final Boolean NEURAL_NETWORK_GUESS = true;
     static final Boolean CAL_R1RHO_CORR = true;
+    static final Boolean NOEX_EARLY_STOP = false;
+    static final Double NOEX_RCHISQ_LIMIT = 1.0;
     static final Integer SAMPLE_SIZE = 50; // 
+    static final Long RANDOM_SEED = 0L;
+    static final Integer N_PROCESSES = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
     static final String OPTIMIZER = "CMA-ES";
     static final String BOOTSTRAP_OPTIMIZER = "CMA-ES";
 
@@ -76,6 +80,20 @@ public class CoMDDefaults {
         return TOLERANCE;
     }
 
+    /**
+     * @return whether to skip exchange equations when NOEX fits within the noise
+     */
+    public static Boolean getNoExEarlyStop() {
+        return NOEX_EARLY_STOP;
+    }
+
+    /**
+     * @return the reduced chi-square at or below which NOEX fits within the noise
+     */
+    public static Double getNoExRChiSqLimit() {
+        return NOEX_RCHISQ_LIMIT;
+    }
+
     /**
      * @return the weightFit
      */
@@ -118,6 +136,21 @@ public class CoMDDefaults {
         return SAMPLE_SIZE;
     }
 
+    /**
+     * @return the master seed for bootstrap random numbers, 0 to choose a
+     * new seed for each fit
+     */
+    public static Long getRandomSeed() {
+        return RANDOM_SEED;
+    }
+
+    /**
+     * @return the number of residue groups to fit in parallel
+     */
+    public static Integer getNProcesses() {
+        return N_PROCESSES;
+    }
+
     /**
      * @return the optimizer
      */
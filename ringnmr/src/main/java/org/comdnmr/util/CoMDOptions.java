@@ -12,9 +12,27 @@ package org.comdnmr.util;
 public class CoMDOptions {
 
     final boolean usePrefs;
+    final Long randomSeed;
 
     public CoMDOptions(boolean usePrefs) {
+        this(usePrefs, null);
+    }
+
+    private CoMDOptions(boolean usePrefs, Long randomSeed) {
         this.usePrefs = usePrefs;
+        this.randomSeed = randomSeed;
+    }
+
+    /**
+     * Returns options that are the same as these, but with a fixed master
+     * seed, so that every fit of a run derives its random streams from the
+     * same seed.
+     *
+     * @param randomSeed the master seed
+     * @return the options
+     */
+    public CoMDOptions withRandomSeed(long randomSeed) {
+        return new CoMDOptions(usePrefs, randomSeed);
     }
 
     /**
@@ -64,6 +82,20 @@ public class CoMDOptions {
         return usePrefs ? CoMDPreferences.getTolerance() : CoMDDefaults.getTolerance();
     }
 
+    /**
+     * @return whether to skip exchange equations when NOEX fits within the noise
+     */
+    public Boolean getNoExEarlyStop() {
+        return usePrefs ? CoMDPreferences.getNoExEarlyStop() : CoMDDefaults.getNoExEarlyStop();
+    }
+
+    /**
+     * @return the reduced chi-square at or below which NOEX fits within the noise
+     */
+    public Double getNoExRChiSqLimit() {
+        return usePrefs ? CoMDPreferences.getNoExRChiSqLimit() : CoMDDefaults.getNoExRChiSqLimit();
+    }
+
     /**
      * @return the weightFit
      */
@@ -99,6 +131,24 @@ public class CoMDOptions {
         return usePrefs ? CoMDPreferences.getSampleSize() : CoMDDefaults.getSampleSize();
     }
 
+    /**
+     * @return the master seed for bootstrap random numbers, 0 to choose a
+     * new seed for each run
+     */
+    public Long getRandomSeed() {
+        if (randomSeed != null) {
+            return randomSeed;
+        }
+        return usePrefs ? CoMDPreferences.getRandomSeed() : CoMDDefaults.getRandomSeed();
+    }
+
+    /**
+     * @return the number of residue groups to fit in parallel
+     */
+    public Integer getNProcesses() {
+        return usePrefs ? CoMDPreferences.getNProcesses() : CoMDDefaults.getNProcesses();
+    }
+
     /**
      * @return the optimizer
      */
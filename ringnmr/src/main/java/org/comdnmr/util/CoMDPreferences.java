@@ -47,6 +47,10 @@ public class CoMDPreferences {
     static private Boolean neuralNetworkGuess = null;
     static private Boolean calR1rhoCorr = null;
     static private Integer sampleSize = null;
+    static private Long randomSeed = null;
+    static private Integer nProcesses = null;
+    static private Boolean noExEarlyStop = null;
+    static private Double noExRChiSqLimit = null;
     static private String optimizer = null;
     static private String bootStrapOptimizer = null;
     private static Map<String, Boolean> cestEqnMap = null;
@@ -60,12 +64,51 @@ public class CoMDPreferences {
     private static final String DEFAULT_EXP_EQNS = "EXPAB;true";
     private static final String DEFAULT_NOE_EQNS = "NOE;true";
     private static Double deltaABdiff = null;
+    private static Preferences sessionPrefs = null;
 
     static Preferences getPrefs() {
+        if (sessionPrefs != null) {
+            return sessionPrefs;
+        }
         Preferences prefs = Preferences.userNodeForPackage(CoMDPreferences.class);
         return prefs;
     }
 
+    /**
+     * Keep the preferences in memory for the rest of the session instead of
+     * in the user's stored preferences. Batch runs use this so the options
+     * given on the command line don't change the stored preferences, and so
+     * values that aren't given come from CoMDDefaults rather than from
+     * whatever was last used in the GUI.
+     */
+    public static synchronized void useSessionPreferences() {
+        sessionPrefs = new SessionPreferences();
+        refField = null;
+        cpmgMaxFreq = null;
+        rexRatio = null;
+        startRadius = null;
+        finalRadius = null;
+        tolerance = null;
+        weightFit = null;
+        absValueFit = null;
+        nonParametricBootstrap = null;
+        neuralNetworkGuess = null;
+        calR1rhoCorr = null;
+        sampleSize = null;
+        randomSeed = null;
+        nProcesses = null;
+        noExEarlyStop = null;
+        noExRChiSqLimit = null;
+        optimizer = null;
+        bootStrapOptimizer = null;
+        cestEqnMap = null;
+        cpmgEqnMap = null;
+        r1rhoEqnMap = null;
+        expEqnMap = null;
+        noeEqnMap = null;
+        deltaABdiff = null;
+    }
+
     public static Double getCPMGMaxFreq() {
         if (cpmgMaxFreq == null) {
             String value = getPrefs().get("CPMG_MAX_FREQ", "2000.0");
@@ -117,6 +160,40 @@ public class CoMDPreferences {
         }
     }
 
+    public static Long getRandomSeed() {
+        if (randomSeed == null) {
+            String value = getPrefs().get("RANDOM_SEED", String.valueOf(CoMDDefaults.getRandomSeed()));
+            randomSeed = Long.parseLong(value);
+        }
+        return randomSeed;
+    }
+
+    public static void setRandomSeed(Long value) {
+        randomSeed = value;
+        if (value != null) {
+            getPrefs().put("RANDOM_SEED", value.toString());
+        } else {
+            getPrefs().remove("RANDOM_SEED");
+        }
+    }
+
+    public static Integer getNProcesses() {
+        if (nProcesses == null) {
+            String value = getPrefs().get("NPROCESSES", String.valueOf(CoMDDefaults.getNProcesses()));
+            nProcesses = Integer.parseInt(value);
+        }
+        return nProcesses;
+    }
+
+    public static void setNProcesses(Integer value) {
+        nProcesses = value;
+        if (value != null) {
+            getPrefs().put("NPROCESSES", value.toString());
+        } else {
+            getPrefs().remove("NPROCESSES");
+        }
+    }
+
     public static String getOptimizer() {
         if (optimizer == null) {
             String value = getPrefs().get("OPTIMIZER", CoMDDefaults.getOptimizer());
@@ -236,6 +313,40 @@ public class CoMDPreferences {
         }
     }
 
+    public static Boolean getNoExEarlyStop() {
+        if (noExEarlyStop == null) {
+            String value = getPrefs().get("NOEX_EARLY_STOP", String.valueOf(CoMDDefaults.getNoExEarlyStop()));
+            noExEarlyStop = Boolean.parseBoolean(value);
+        }
+        return noExEarlyStop;
+    }
+
+    public static void setNoExEarlyStop(Boolean value) {
+        noExEarlyStop = value;
+        if (value != null) {
+            getPrefs().put("NOEX_EARLY_STOP", value.toString());
+        } else {
+            getPrefs().remove("NOEX_EARLY_STOP");
+        }
+    }
+
+    public static Double getNoExRChiSqLimit() {
+        if (noExRChiSqLimit == null) {
+            String value = getPrefs().get("NOEX_RCHISQ_LIMIT", String.valueOf(CoMDDefaults.getNoExRChiSqLimit()));
+            noExRChiSqLimit = Double.parseDouble(value);
+        }
+        return noExRChiSqLimit;
+    }
+
+    public static void setNoExRChiSqLimit(Double value) {
+        noExRChiSqLimit = value;
+        if (value != null) {
+            getPrefs().put("NOEX_RCHISQ_LIMIT", value.toString());
+        } else {
+            getPrefs().remove("NOEX_RCHISQ_LIMIT");
+        }
+    }
+
     public static Boolean getWeightFit() {
         if (weightFit == null) {
             String value = getPrefs().get("WEIGHT_FIT", String.valueOf(CoMDDefaults.getWeightFit()));
@@ -0,0 +1,214 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.util;
+
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * A complex number that is updated in place, for inner loops where the
+ * allocation of a new {@link org.apache.commons.math3.complex.Complex} for
+ * every operation dominates the cost. Each operation replaces the value of
+ * this object and returns it so calls can be chained. The formulas follow
+ * those of Complex so results agree to rounding, but there is none of the
+ * NaN and infinity bookkeeping. Instances are not thread safe.
+ */
+public final class MutableComplex {
+
+    public double re;
+    public double im;
+
+    public MutableComplex() {
+    }
+
+    public MutableComplex(double re, double im) {
+        this.re = re;
+        this.im = im;
+    }
+
+    public MutableComplex set(double re, double im) {
+        this.re = re;
+        this.im = im;
+        return this;
+    }
+
+    public MutableComplex set(MutableComplex z) {
+        re = z.re;
+        im = z.im;
+        return this;
+    }
+
+    public MutableComplex add(MutableComplex z) {
+        re += z.re;
+        im += z.im;
+        return this;
+    }
+
+    public MutableComplex add(double value) {
+        re += value;
+        return this;
+    }
+
+    public MutableComplex subtract(MutableComplex z) {
+        re -= z.re;
+        im -= z.im;
+        return this;
+    }
+
+    public MutableComplex subtract(double value) {
+        re -= value;
+        return this;
+    }
+
+    public MutableComplex multiply(MutableComplex z) {
+        double r = re * z.re - im * z.im;
+        double i = re * z.im + im * z.re;
+        re = r;
+        im = i;
+        return this;
+    }
+
+    public MutableComplex multiply(double value) {
+        re *= value;
+        im *= value;
+        return this;
+    }
+
+    public MutableComplex square() {
+        double r = re * re - im * im;
+        double i = re * im + im * re;
+        re = r;
+        im = i;
+        return this;
+    }
+
+    public MutableComplex divide(MutableComplex z) {
+        double c = z.re;
+        double d = z.im;
+        double r;
+        double i;
+        if (FastMath.abs(c) < FastMath.abs(d)) {
+            double q = c / d;
+            double denominator = c * q + d;
+            r = (re * q + im) / denominator;
+            i = (im * q - re) / denominator;
+        } else {
+            double q = d / c;
+            double denominator = d * q + c;
+            r = (im * q + re) / denominator;
+            i = (im - re * q) / denominator;
+        }
+        re = r;
+        im = i;
+        return this;
+    }
+
+    public MutableComplex divide(double value) {
+        re /= value;
+        im /= value;
+        return this;
+    }
+
+    public double abs() {
+        if (FastMath.abs(re) < FastMath.abs(im)) {
+            if (im == 0.0) {
+                return FastMath.abs(re);
+            }
+            double q = re / im;
+            return FastMath.abs(im) * FastMath.sqrt(1 + q * q);
+        } else {
+            if (re == 0.0) {
+                return FastMath.abs(im);
+            }
+            double q = im / re;
+            return FastMath.abs(re) * FastMath.sqrt(1 + q * q);
+        }
+    }
+
+    public MutableComplex sqrt() {
+        if (re == 0.0 && im == 0.0) {
+            return this;
+        }
+        double t = FastMath.sqrt((FastMath.abs(re) + abs()) / 2.0);
+        if (re >= 0.0) {
+            im = im / (2.0 * t);
+            re = t;
+        } else {
+            re = FastMath.abs(im) / (2.0 * t);
+            im = FastMath.copySign(1.0, im) * t;
+        }
+        return this;
+    }
+
+    public MutableComplex log() {
+        double r = FastMath.log(abs());
+        double i = FastMath.atan2(im, re);
+        re = r;
+        im = i;
+        return this;
+    }
+
+    public MutableComplex exp() {
+        double expRe = FastMath.exp(re);
+        double r = expRe * FastMath.cos(im);
+        double i = expRe * FastMath.sin(im);
+        re = r;
+        im = i;
+        return this;
+    }
+
+    /**
+     * Raise to a real power as exp(x log(z)), the same way as Complex.pow,
+     * so results match it to rounding. Use {@link #square} when an exact
+     * square is wanted.
+     *
+     * @param x the exponent
+     * @return this
+     */
+    public MutableComplex pow(double x) {
+        return log().multiply(x).exp();
+    }
+
+    public MutableComplex sin() {
+        double r = FastMath.sin(re) * FastMath.cosh(im);
+        double i = FastMath.cos(re) * FastMath.sinh(im);
+        re = r;
+        im = i;
+        return this;
+    }
+
+    public MutableComplex cos() {
+        double r = FastMath.cos(re) * FastMath.cosh(im);
+        double i = -FastMath.sin(re) * FastMath.sinh(im);
+        re = r;
+        im = i;
+        return this;
+    }
+
+    public MutableComplex cosh() {
+        double r = FastMath.cosh(re) * FastMath.cos(im);
+        double i = FastMath.sinh(re) * FastMath.sin(im);
+        re = r;
+        im = i;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + re + ", " + im + ")";
+    }
+}
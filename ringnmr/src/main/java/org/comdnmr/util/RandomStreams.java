@@ -0,0 +1,198 @@
+/*
+ * CoMD/NMR Software : A Program for Analyzing NMR Dynamics Data
+ * Copyright (C) 2018-2019 Bruce A Johnson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.comdnmr.util;
+
+import java.util.Random;
+import org.apache.commons.rng.JumpableUniformRandomProvider;
+import org.apache.commons.rng.UniformRandomProvider;
+import org.apache.commons.rng.sampling.distribution.NormalizedGaussianSampler;
+import org.apache.commons.rng.sampling.distribution.ZigguratSampler;
+import org.apache.commons.rng.simple.RandomSource;
+
+/**
+ * Independent random number streams for parallel bootstrapping. All streams
+ * of a fit derive from one master seed: each task (a residue or group of
+ * residues) gets a generator seeded from the master seed and the task name,
+ * and each bootstrap replicate gets a stream split from the task generator
+ * by jumping it ahead. Replicates never share a generator, so they don't
+ * contend for a lock, and because the streams are split before the
+ * replicates are scheduled the results don't depend on which thread runs
+ * which replicate. Fitting again with the same master seed reproduces the
+ * error estimates exactly.
+ *
+ * <pre>
+ * JumpableUniformRandomProvider source = RandomStreams.create(masterSeed, "A:12.N");
+ * UniformRandomProvider[] streams = RandomStreams.split(source, nSim);
+ * </pre>
+ */
+public final class RandomStreams {
+
+    private static final RandomSource SOURCE = RandomSource.XO_RO_SHI_RO_128_PP;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private RandomStreams() {
+    }
+
+    /**
+     * @return a new, randomly chosen, master seed
+     */
+    public static long newSeed() {
+        long seed;
+        do {
+            seed = RandomSource.createLong();
+        } while (seed == 0);
+        return seed;
+    }
+
+    /**
+     * Returns the master seed to use for a fit: the seed set in the
+     * preferences, or a new seed if that is null or 0.
+     *
+     * @param seed the seed from the preferences
+     * @return the master seed
+     */
+    public static long masterSeed(Long seed) {
+        return (seed == null) || (seed == 0) ? newSeed() : seed;
+    }
+
+    /**
+     * @param masterSeed the master seed
+     * @return the generator for a fit with a single task
+     */
+    public static JumpableUniformRandomProvider create(long masterSeed) {
+        return create(masterSeed, "");
+    }
+
+    /**
+     * Returns the generator for one task of a fit. Different tasks with the
+     * same master seed get unrelated generators.
+     *
+     * @param masterSeed the master seed
+     * @param task the name of the task, for example the residue being fit
+     * @return the generator
+     */
+    public static JumpableUniformRandomProvider create(long masterSeed, String task) {
+        long state = masterSeed ^ hash(task);
+        long[] seed = new long[2];
+        for (int i = 0; i < seed.length; i++) {
+            state += GOLDEN_GAMMA;
+            seed[i] = mix(state);
+        }
+        return (JumpableUniformRandomProvider) SOURCE.create(seed);
+    }
+
+    /**
+     * Split a generator into independent streams, one for each replicate.
+     * Stream i is the same for a given generator state no matter how many
+     * threads later consume the streams. The generator is advanced past all
+     * the streams.
+     *
+     * @param source the generator to split
+     * @param n the number of streams
+     * @return the streams
+     */
+    public static UniformRandomProvider[] split(JumpableUniformRandomProvider source, int n) {
+        UniformRandomProvider[] streams = new UniformRandomProvider[n];
+        for (int i = 0; i < n; i++) {
+            streams[i] = source.jump();
+        }
+        return streams;
+    }
+
+    /**
+     * @param rng the stream
+     * @return a sampler of normally distributed values with mean 0 and
+     * standard deviation 1 drawn from the stream
+     */
+    public static NormalizedGaussianSampler gaussian(UniformRandomProvider rng) {
+        return ZigguratSampler.NormalizedGaussian.of(rng);
+    }
+
+    /**
+     * Returns a {@link Random} that draws from a stream, for code that takes
+     * a java.util.Random. Unlike a shared Random it must only be used by one
+     * thread, and setSeed has no effect.
+     *
+     * @param rng the stream
+     * @return the Random
+     */
+    public static Random asRandom(UniformRandomProvider rng) {
+        return new StreamRandom(rng);
+    }
+
+    private static long hash(String task) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < task.length(); i++) {
+            h ^= task.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final class StreamRandom extends Random {
+
+        private final transient UniformRandomProvider rng;
+        private final transient NormalizedGaussianSampler gaussian;
+
+        StreamRandom(UniformRandomProvider rng) {
+            this.rng = rng;
+            gaussian = gaussian(rng);
+        }
+
+        @Override
+        public synchronized void setSeed(long seed) {
+            // the state belongs to the stream, and Random's constructor calls this
+        }
+
+        @Override
+        protected int next(int bits) {
+            return rng.nextInt() >>> (32 - bits);
+        }
+
+        @Override
+        public int nextInt() {
+            return rng.nextInt();
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            return rng.nextInt(bound);
+        }
+
+        @Override
+        public long nextLong() {
+            return rng.nextLong();
+        }
+
+        @Override
+        public double nextDouble() {
+            return rng.nextDouble();
+        }
+
+        @Override
+        public double nextGaussian() {
+            return gaussian.sample();
+        }
+    }
+}
@@ -30,8 +30,14 @@ import org.apache.commons.text.StringSubstitutor;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -42,6 +48,9 @@ import java.util.regex.Pattern;
 public class DataGenerator {
 
     static private final ObjectMapper objectMapper = new ObjectMapper();
+    static private final String SHARD_NAME = "shard-%05d.bin";
+    static private final String MANIFEST_NAME = "manifest.json";
+    static private final String X_COUNT = "x_count";
     private final JsonNode config;
     private final int nDatasets;
     private final int nNoiseDuplicates;
@@ -234,6 +243,185 @@ public class DataGenerator {
             profileInterpolatedList);
     }
 
+    /**
+     * Receives the progress of {@link #generateShards}. It's called from the
+     * worker threads as each shard is written, so must be thread safe.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void progress(String experimentName, String enumName, long nDone, long nTotal);
+    }
+
+    /**
+     * Generate the datasets of the current experiment and enum in parallel,
+     * writing them to binary shards rather than keeping them in memory. Each
+     * shard holds the records of shardSize datasets (each with
+     * n_noise_duplicates records), and only the shards being generated are
+     * held in memory. The layout of the shards is described by the manifest,
+     * written once all shards are complete. Random values are drawn from the
+     * ThreadLocalRandom of each worker thread.
+     *
+     * @param directory the directory to write the shards and manifest to
+     * @param shardSize the number of datasets per shard
+     * @param listener receives the progress, may be null
+     * @return the path of the manifest, or null if there is no current
+     * dataset
+     * @throws IOException if a shard or the manifest can't be written
+     */
+    public Path generateShards(Path directory, int shardSize, ProgressListener listener) throws IOException {
+        if (currentExperimentName == null) {
+            return null;
+        }
+        if (shardSize < 1) {
+            throw new IllegalArgumentException("Shard size must be at least 1");
+        }
+
+        JsonNode experimentInfo = config.get("data_types").get(currentExperimentName);
+        Sampler xValuesSampler = getXValuesSampler(experimentInfo);
+        Sampler variableSampler = getVariableSampler(experimentInfo);
+        List<Sampler> constantSamplers = getConstantSamplers(experimentInfo);
+        List<DependantGenerator> dependantGenerators = getDependantGenerators(experimentInfo);
+        List<Sampler> parameterSamplers = getParameterSamplers(experimentInfo);
+        xValuesInterpolation = getXValuesInterpolation(experimentInfo);
+
+        setVarSize(variableSampler);
+        setParSize(parameterSamplers);
+        setDepSize(dependantGenerators);
+        setXSize(constantSamplers);
+
+        List<ShardWriter.Column> columns = new ArrayList<>();
+        for (String name : samplerColumnNames(parameterSamplers)) {
+            columns.add(new ShardWriter.Column(name, "parameters", 1, false));
+        }
+        for (String name : samplerColumnNames(constantSamplers)) {
+            columns.add(new ShardWriter.Column(name, "constants", 1, false));
+        }
+        columns.add(new ShardWriter.Column(variableSampler.name, "variable", varSize, false));
+        for (int i = 0; i < depSize; i++) {
+            columns.add(new ShardWriter.Column(dependantGenerators.get(i).getName(), "dependants", varSize, false));
+        }
+        columns.add(new ShardWriter.Column(X_COUNT, "x_values", 1, false));
+        columns.add(new ShardWriter.Column(xValuesSampler.name, "x_values", 1, true));
+        columns.add(new ShardWriter.Column("profile", "profile", varSize, true));
+        columns.add(new ShardWriter.Column("profile_noisy", "profile_noisy", varSize, true));
+        columns.add(new ShardWriter.Column("profile_interpolation", "profile_interpolation",
+            varSize * xValuesInterpolation.size(), false));
+        int iConstants = parSize;
+        int iVariable = iConstants + constantSamplers.size();
+        int iDependants = iVariable + 1;
+        int iXCount = iDependants + depSize;
+
+        EquationType cls = fetchEquationClass();
+        int[][] map = makeMaps(parameterSamplers);
+        double maxVariance = experimentInfo.get("variance_max").asDouble();
+        double[] xInterpolation = ArrayUtils.toPrimitive(xValuesInterpolation.toArray(new Double[0]));
+
+        Files.createDirectories(directory);
+        int nShards = (nDatasets + shardSize - 1) / shardSize;
+        long nTotal = (long) nDatasets * nNoiseDuplicates;
+        AtomicLong nDone = new AtomicLong();
+        List<Map<String, Object>> shardEntries = new ArrayList<>(Collections.nCopies(nShards, null));
+
+        try {
+            IntStream.range(0, nShards).parallel().forEach(iShard -> {
+                int first = iShard * shardSize;
+                int last = Math.min(nDatasets, first + shardSize);
+                // Dependant generators keep the state of the dataset being
+                // made, so each shard needs its own
+                List<DependantGenerator> generators = getDependantGenerators(experimentInfo);
+                ShardWriter writer = new ShardWriter(columns, (last - first) * nNoiseDuplicates);
+
+                for (int n = first; n < last; n++) {
+                    List<Double> xValues = xValuesSampler.sample();
+                    List<Double> variables = variableSampler.sample();
+                    List<Double> constants = sampleConstants(constantSamplers);
+                    List<List<Double>> dependants = generateDependants(variables, generators);
+
+                    double[] par = makePar(parameterSamplers, variables);
+                    double[][][] x = makeX(xValues, variables, constants, dependants);
+                    double[][] profiles = calculateProfiles(cls, par, map, x);
+                    double[] xArray = ArrayUtils.toPrimitive(xValues.toArray(new Double[0]));
+                    boolean interpolate = !Arrays.equals(xArray, xInterpolation);
+
+                    for (int p = 0; p < nNoiseDuplicates; p++) {
+                        int column = 0;
+                        for (double value : par) {
+                            writer.add(column++, value);
+                        }
+                        for (double value : constants) {
+                            writer.add(column++, value);
+                        }
+                        writer.add(iVariable, variables);
+                        for (int i = 0; i < depSize; i++) {
+                            writer.add(iDependants + i, dependants.get(i));
+                        }
+                        writer.add(iXCount, xArray.length);
+                        writer.add(iXCount + 1, xArray);
+                        for (double[] profile : profiles) {
+                            writer.add(iXCount + 2, profile);
+                        }
+                        for (double[] profile : profiles) {
+                            double sd = Math.sqrt(ThreadLocalRandom.current().nextDouble(0.0, maxVariance));
+                            double[] noisy = new double[profile.length];
+                            for (int i = 0; i < noisy.length; i++) {
+                                noisy[i] = profile[i] + sd * ThreadLocalRandom.current().nextGaussian();
+                            }
+                            writer.add(iXCount + 3, noisy);
+                            writer.add(iXCount + 4, interpolate ? interpolateProfile(noisy, xArray, xInterpolation) : noisy);
+                        }
+                        writer.endRecord(xArray.length);
+                    }
+                }
+
+                try {
+                    shardEntries.set(iShard, writer.write(directory.resolve(String.format(SHARD_NAME, iShard))));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                long done = nDone.addAndGet((long) (last - first) * nNoiseDuplicates);
+                if (listener != null) {
+                    listener.progress(currentExperimentName, currentEnumName, done, nTotal);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("experiment", currentExperimentName);
+        manifest.put("enum", currentEnumName);
+        manifest.put("dtype", "float32");
+        manifest.put("byte_order", "little_endian");
+        manifest.put("n_datasets", nDatasets);
+        manifest.put("n_noise_duplicates", nNoiseDuplicates);
+        manifest.put("n_records", nTotal);
+        manifest.put("ragged_length", X_COUNT);
+        manifest.put("columns", columns.stream().map(ShardWriter.Column::asHashMap).collect(Collectors.toList()));
+        manifest.put("shards", shardEntries);
+        Path manifestPath = directory.resolve(MANIFEST_NAME);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(manifestPath.toFile(), manifest);
+        return manifestPath;
+    }
+
+    private double[][] calculateProfiles(EquationType cls, double[] par, int[][] map, double[][][] x) {
+        double[][] profiles = new double[varSize][x[0].length];
+        for (int varIdx = 0; varIdx < varSize; varIdx++) {
+            for (int xValueIdx = 0; xValueIdx < x[0].length; xValueIdx++) {
+                profiles[varIdx][xValueIdx] = cls.calculate(par, map[varIdx], x[varIdx][xValueIdx], 0);
+            }
+        }
+        return profiles;
+    }
+
+    private static double[] interpolateProfile(double[] yValues, double[] xValues, double[] xValuesInterpolation) {
+        PolynomialSplineFunction spline = new SplineInterpolator().interpolate(xValues, yValues);
+        double[] yInterpolated = new double[xValuesInterpolation.length];
+        for (int i = 0; i < yInterpolated.length; i++) {
+            yInterpolated[i] = spline.value(xValuesInterpolation[i]);
+        }
+        return yInterpolated;
+    }
+
     void printMilestoneMessage(int n, int p) {
         int datasetNumber = n * nNoiseDuplicates + p;
         if ((datasetNumber + 1) % 10000 == 0 && (datasetNumber + 1) != nDatasets * nNoiseDuplicates) {
@@ -372,18 +560,26 @@ public class DataGenerator {
 
     private List<DataList<Double>> initializeListsFromSamplers(List<Sampler> samplers) {
        List<DataList<Double>> lists = new ArrayList<>();
+        for (String name : samplerColumnNames(samplers)) {
+            lists.add(new DataList<Double>(name));
+        }
+        return lists;
+    }
+
+    private List<String> samplerColumnNames(List<Sampler> samplers) {
+        List<String> names = new ArrayList<>();
         for (Sampler sampler : samplers) {
             String name = sampler.getName();
             if (isRelaxationRateSampler(sampler) > 0) {
                 String nameTemplate = "%s<%d>";
                 for (int i = 1; i <= varSize; i++) {
-                    lists.add(new DataList<Double>(String.format(nameTemplate, name, i)));
+                    names.add(String.format(nameTemplate, name, i));
                 }
             } else {
-                lists.add(new DataList<Double>(name));
+                names.add(name);
             }
         }
-        return lists;
+        return names;
     }
 
     private List<DataList<List<Double>>> initializeListsFromGenerators(List<DependantGenerator> generators) {
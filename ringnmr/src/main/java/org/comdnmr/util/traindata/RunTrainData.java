@@ -1,11 +1,30 @@
 package org.comdnmr.util.traindata;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 public class RunTrainData {
+    static final String DEFAULT_CONFIG = "/home/simonhulse/Documents/projects/ring-guessing/config.json";
+    static final int DEFAULT_SHARD_SIZE = 10000;
+
+    /**
+     * Generate the training data of every experiment and enum of a config,
+     * writing the shards of each to its enum_dir.
+     *
+     * @param args the config file and, optionally, the number of datasets
+     * per shard
+     */
     public static void main( String[] args ) throws Exception {
-        try {
-            DataGenerator generator = new DataGenerator("/home/simonhulse/Documents/projects/ring-guessing/config.json");
-        } catch (Exception e) {
-            throw e;
+        String configFile = args.length > 0 ? args[0] : DEFAULT_CONFIG;
+        int shardSize = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SHARD_SIZE;
+        DataGenerator generator = new DataGenerator(configFile);
+        while (generator.hasAnotherDataset()) {
+            generator.nextDataset();
+            Path directory = Paths.get(generator.getDataDirectory());
+            Path manifestPath = generator.generateShards(directory, shardSize,
+                (experimentName, enumName, nDone, nTotal) -> System.out.println(
+                    String.format("[%s - %s]: %d/%d datasets created", experimentName, enumName, nDone, nTotal)));
+            System.out.println("Wrote " + manifestPath);
         }
     }
 }
@@ -0,0 +1,139 @@
+package org.comdnmr.util.traindata;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Collects the records of one shard as float32 columns and writes them to a
+ * binary file. Each column is written whole, in the order the columns were
+ * given, as little-endian float32 values. A column with a fixed width has
+ * width values per record. A ragged column has width values per x-value of
+ * the record, so its length in the shard is width times the total number of
+ * x-values of the shard's records.
+ */
+final class ShardWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    record Column(String name, String group, int width, boolean ragged) {
+
+        Map<String, Object> asHashMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("name", name);
+            map.put("group", group);
+            map.put("width", width);
+            map.put("ragged", ragged);
+            return map;
+        }
+    }
+
+    private final List<Column> columns;
+    private final float[][] values;
+    private final int[] sizes;
+    private int nRecords = 0;
+    private long nXValues = 0;
+
+    /**
+     * @param columns the columns
+     * @param nRecords the expected number of records, used to size the
+     * columns
+     */
+    ShardWriter(List<Column> columns, int nRecords) {
+        this.columns = columns;
+        values = new float[columns.size()][];
+        sizes = new int[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new float[Math.max(1, columns.get(i).width() * nRecords)];
+        }
+    }
+
+    void add(int column, double value) {
+        ensureCapacity(column, 1);
+        values[column][sizes[column]++] = (float) value;
+    }
+
+    void add(int column, double[] data) {
+        ensureCapacity(column, data.length);
+        float[] columnValues = values[column];
+        int size = sizes[column];
+        for (double value : data) {
+            columnValues[size++] = (float) value;
+        }
+        sizes[column] = size;
+    }
+
+    void add(int column, List<Double> data) {
+        ensureCapacity(column, data.size());
+        float[] columnValues = values[column];
+        int size = sizes[column];
+        for (double value : data) {
+            columnValues[size++] = (float) value;
+        }
+        sizes[column] = size;
+    }
+
+    /**
+     * Mark the end of a record.
+     *
+     * @param nX the number of x-values of the record
+     */
+    void endRecord(int nX) {
+        nRecords++;
+        nXValues += nX;
+    }
+
+    private void ensureCapacity(int column, int nMore) {
+        int needed = sizes[column] + nMore;
+        if (needed > values[column].length) {
+            values[column] = Arrays.copyOf(values[column], Math.max(needed, 2 * values[column].length));
+        }
+    }
+
+    /**
+     * Write the shard.
+     *
+     * @param path the file to write
+     * @return the manifest entry of the shard
+     * @throws IOException if the file can't be written
+     */
+    Map<String, Object> write(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < values.length; i++) {
+                float[] columnValues = values[i];
+                for (int j = 0; j < sizes[i]; j++) {
+                    if (!buffer.hasRemaining()) {
+                        flush(channel, buffer);
+                    }
+                    buffer.putFloat(columnValues[j]);
+                }
+            }
+            flush(channel, buffer);
+        }
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("file", path.getFileName().toString());
+        entry.put("n_records", nRecords);
+        entry.put("n_x_values", nXValues);
+        return entry;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
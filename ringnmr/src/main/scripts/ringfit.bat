@@ -0,0 +1,42 @@
+@echo off
+
+rem ringfit.bat [ options ] project.yaml
+rem
+rem fit a project without the GUI, run "ringfit -h" for the options
+rem
+rem optional environment variables:
+rem
+rem JAVA_HOME  - directory of JDK/JRE, if not set then 'java' must be found on PATH
+rem CLASSPATH  - colon separated list of additional jar files & class directories
+rem JAVA_OPTS  - list of JVM options, e.g. "-Xmx256m -Dfoo=bar"
+rem
+
+
+if "%OS%" == "Windows_NT" setlocal
+
+set ringver=${project.version}
+set ringmain=org.comdnmr.fit.FitProject
+
+if "%NMRFXP_MEMORY%" == "" (
+    set heapmem=2048
+) else (
+    set heapmem=%NMRFXP_MEMORY%
+)
+
+set dir=%~dp0
+
+set javaexe=java
+set cp="%dir%ringnmr-%ringver%.jar;%dir%lib/Manifest.jar"
+
+if not "%JAVA_HOME%" == "" (
+    set javaexe="%JAVA_HOME%\bin\java.exe"
+)
+
+set testjava="%dir%jre\bin\java.exe"
+
+if exist %testjava% (
+    set javaexe=%testjava%
+    set cp="%dir%lib/ringnmr-%ringver%.jar;%dir%lib/Manifest.jar"
+)
+
+%javaexe% -Djava.awt.headless=true -mx%heapmem%m -cp %cp% %JAVA_OPTS% %ringmain% %*
@@ -0,0 +1,150 @@
+package org.comdnmr.data;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nmrfx.chemistry.MoleculeFactory;
+
+public class DataIOTest {
+
+    static final double TOL = 1.0e-12;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    ExperimentSet experimentSet;
+
+    @Before
+    public void setup() {
+        MoleculeFactory.clearAllMolecules();
+        MoleculeFactory.setActive(null);
+        DataIO.clearTableCache();
+        experimentSet = new ExperimentSet("test", "test_out.txt");
+    }
+
+    String writeFile(String name, String... lines) throws Exception {
+        Path path = folder.getRoot().toPath().resolve(name);
+        Files.write(path, List.of(lines));
+        return path.toString();
+    }
+
+    // the data of each residue, by residue number
+    static Map<String, ExperimentData> byResidue(Experiment experiment) {
+        Map<String, ExperimentData> result = new TreeMap<>();
+        for (var source : experiment.getDynamicsSources()) {
+            ExperimentData data = experiment.getResidueData(source);
+            ExperimentData.DataValue dataValue = data.getDataValues().get(0);
+            Assert.assertEquals("H", dataValue.getAtomName());
+            result.put(dataValue.getResidue(), data);
+        }
+        return result;
+    }
+
+    @Test
+    public void testLoadTextFile() throws Exception {
+        String fileName = writeFile("r1.txt",
+                "Residue\t0.01\terr\t0.02\terr\t0.04\terr",
+                "5\t100.0\t2.0\t80.0\t1.5\t60.0\t1.0",
+                "6\t90.0\t3.0\t70.0\t2.5\t50.0\t2.0");
+        Experiment experiment = new T1Experiment(experimentSet, "r1", "N15", 600.0, 298.0);
+        DataIO.loadTextFile(experiment, fileName, experimentSet, "N15", 298.0, 600.0,
+                DataIO.XCONV.IDENTITY, "r1", new DynamicsSource(true, true, true, true));
+
+        Assert.assertSame(experiment, experimentSet.getExperimentData("r1"));
+        Map<String, ExperimentData> data = byResidue(experiment);
+        Assert.assertEquals(List.of("5", "6"), List.copyOf(data.keySet()));
+        ExperimentData res5 = data.get("5");
+        Assert.assertArrayEquals(new double[]{0.01, 0.02, 0.04}, res5.getXValues()[0], TOL);
+        Assert.assertArrayEquals(new double[]{100.0, 80.0, 60.0}, res5.getYValues(), TOL);
+        Assert.assertArrayEquals(new double[]{2.0, 1.5, 1.0}, res5.getErrValues(), TOL);
+        Assert.assertEquals(0, res5.getDataValues().get(0).getPeak());
+        ExperimentData res6 = data.get("6");
+        Assert.assertArrayEquals(new double[]{90.0, 70.0, 50.0}, res6.getYValues(), TOL);
+        Assert.assertArrayEquals(new double[]{3.0, 2.5, 2.0}, res6.getErrValues(), TOL);
+        Assert.assertEquals(1, res6.getDataValues().get(0).getPeak());
+        Assert.assertNotNull(experimentSet.getExperimentResult(res6.getSource()));
+    }
+
+    @Test
+    public void testLoadPeakFileErrors() throws Exception {
+        String fileName = writeFile("r1.mpk2",
+                "id\tlab1\t0.01\terr\t0.02\terr\t0.04\terr",
+                "3\t5.H\t100.0\t2.0\t80.0\t1.5\t60.0\t1.0",
+                "4\t6.H\t90.0\t3.0\tNA\tNA\t50.0\t2.0");
+        Experiment experiment = new T1Experiment(experimentSet, "r1", "N15", 600.0, 298.0);
+        HashMap<String, Object> errorPars = new HashMap<>();
+        errorPars.put("mode", "measured");
+        DataIO.loadPeakFile(fileName, experiment, experimentSet, DataIO.XCONV.IDENTITY, DataIO.YCONV.IDENTITY,
+                errorPars, new double[]{0.0, 0.0, 1.0}, new DynamicsSource(true, true, true, true));
+
+        Map<String, ExperimentData> data = byResidue(experiment);
+        Assert.assertEquals(List.of("5", "6"), List.copyOf(data.keySet()));
+        ExperimentData res5 = data.get("5");
+        Assert.assertArrayEquals(new double[]{0.01, 0.02, 0.04}, res5.getXValues()[0], TOL);
+        Assert.assertArrayEquals(new double[]{100.0, 80.0, 60.0}, res5.getYValues(), TOL);
+        Assert.assertArrayEquals(new double[]{2.0, 1.5, 1.0}, res5.getErrValues(), TOL);
+        Assert.assertEquals(3, res5.getDataValues().get(0).getPeak());
+        // the blank value and its error are skipped
+        ExperimentData res6 = data.get("6");
+        Assert.assertArrayEquals(new double[]{90.0, 50.0}, res6.getYValues(), TOL);
+        Assert.assertArrayEquals(new double[]{3.0, 2.0}, res6.getErrValues(), TOL);
+        Assert.assertEquals(4, res6.getDataValues().get(0).getPeak());
+    }
+
+    @Test
+    public void testLoadPeakFileReplicates() throws Exception {
+        String fileName = writeFile("cpmg.mpk2",
+                "id\tlab1\t0\t100\t200\t200",
+                "7\t8.H\t100.0\t60.0\t50.0\t52.0");
+        double tau = 0.04;
+        double noise = 2.0;
+        Experiment experiment = new CPMGExperiment(experimentSet, "cpmg", "N15", 600.0, tau, 298.0);
+        HashMap<String, Object> errorPars = new HashMap<>();
+        errorPars.put("mode", "noise");
+        errorPars.put("value", String.valueOf(noise));
+        DataIO.loadPeakFile(fileName, experiment, experimentSet, DataIO.XCONV.IDENTITY, DataIO.YCONV.RATE,
+                errorPars, new double[]{0.0, 0.0, 1.0}, new DynamicsSource(true, true, true, true));
+
+        Map<String, ExperimentData> data = byResidue(experiment);
+        Assert.assertEquals(List.of("8"), List.copyOf(data.keySet()));
+        ExperimentData res8 = data.get("8");
+        Assert.assertArrayEquals(new double[]{100.0, 200.0, 200.0}, res8.getXValues()[0], TOL);
+        double[] yValues = {-Math.log(0.60) / tau, -Math.log(0.50) / tau, -Math.log(0.52) / tau};
+        Assert.assertArrayEquals(yValues, res8.getYValues(), TOL);
+        // a single value's error comes from its intensity, the replicates' from the replicate
+        // intensities less their average, which stays 1 as the reference isn't replicated
+        double repIntensity = (50.0 - 1.0) + (52.0 - 1.0);
+        double[] errValues = {noise / (60.0 * tau), noise / (repIntensity * tau), noise / (repIntensity * tau)};
+        Assert.assertArrayEquals(errValues, res8.getErrValues(), TOL);
+        Assert.assertEquals(7, res8.getDataValues().get(0).getPeak());
+    }
+
+    @Test
+    public void testTableCache() throws Exception {
+        Path small = Path.of(writeFile("small.txt", "Residue\t0.01\terr", "5\t100.0\t2.0"));
+        PeakTable table = DataIO.readTable(small, false);
+        Assert.assertSame(table, DataIO.readTable(small, false));
+        Files.write(small, List.of("Residue\t0.01\terr", "5\t90.0\t2.0"));
+        PeakTable changed = DataIO.readTable(small, false);
+        Assert.assertNotSame(table, changed);
+        Assert.assertEquals(90.0, changed.rows.get(0).getDouble(1), 0.0);
+
+        // two files of over half the limit can't both be kept, the least recently used goes
+        String comment = "#" + "x".repeat((int) (DataIO.MAX_CACHED_BYTES / 2));
+        Path big1 = Path.of(writeFile("big1.txt", comment, "Residue"));
+        Path big2 = Path.of(writeFile("big2.txt", comment, "Residue"));
+        PeakTable big1Table = DataIO.readTable(big1, true);
+        Assert.assertSame(changed, DataIO.readTable(small, false));
+        DataIO.readTable(big2, true);
+        Assert.assertSame(changed, DataIO.readTable(small, false));
+        Assert.assertNotSame(big1Table, DataIO.readTable(big1, true));
+    }
+}
@@ -0,0 +1,105 @@
+package org.comdnmr.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.comdnmr.fit.ResidueFitter;
+import org.comdnmr.util.CoMDOptions;
+import org.comdnmr.util.CoMDPreferences;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.nmrfx.chemistry.relax.ResonanceSource;
+
+public class ExperimentSetTest {
+
+    static final double[] DELAYS = {0.01, 0.02, 0.04, 0.08, 0.16, 0.32, 0.64};
+    static final double[][] CONDITIONS = {{600.0, 25.0}, {600.0, 35.0}, {800.0, 25.0}, {800.0, 35.0}};
+
+    ExperimentSet experimentSet;
+    List<ResonanceSource> sources = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        CoMDPreferences.useSessionPreferences();
+        CoMDPreferences.setSampleSize(5);
+        CoMDPreferences.setNeuralNetworkGuess(false);
+        DynamicsSource factory = new DynamicsSource(true, true, true, true);
+        experimentSet = new ExperimentSet("stress", "stress_out.txt");
+        experimentSet.setExpMode("r1");
+        for (int iRes = 0; iRes < 32; iRes++) {
+            int resNum = iRes + 2;
+            sources.add(factory.createFromAtomSpecifiers("stress." + resNum, resNum + ".H").orElseThrow());
+        }
+        for (double[] conditions : CONDITIONS) {
+            String expName = "r1_" + (int) conditions[0] + "_" + (int) conditions[1];
+            Experiment experiment = new Experiment(experimentSet, expName, "H1", conditions[0], conditions[1], "r1");
+            experimentSet.addExperimentData(expName, experiment);
+            for (int iRes = 0; iRes < sources.size(); iRes++) {
+                double rate = 1.0 + 0.1 * iRes + conditions[0] / 1000.0;
+                double[][] xValues = {DELAYS.clone()};
+                double[] yValues = new double[DELAYS.length];
+                double[] errValues = new double[DELAYS.length];
+                for (int i = 0; i < DELAYS.length; i++) {
+                    yValues[i] = 100.0 * Math.exp(-rate * DELAYS[i]);
+                    errValues[i] = 1.0;
+                }
+                ResonanceSource source = sources.get(iRes);
+                experiment.addResidueData(source, new ExperimentData(experiment, source, xValues, yValues, errValues));
+            }
+        }
+    }
+
+    @Test
+    public void testStateIndices() {
+        Assert.assertArrayEquals(new int[]{3, 2, 2, 1}, experimentSet.getStateCount(3));
+        Experiment experiment = experimentSet.getExperimentData("r1_800_35");
+        int[] state = experimentSet.getStateIndices(5, experiment);
+        Assert.assertEquals(5, state[0]);
+        Assert.assertEquals(experimentSet.getStateIndices(0, experimentSet.getExperimentData("r1_800_25"))[1], state[1]);
+        Assert.assertEquals(experimentSet.getStateIndices(0, experimentSet.getExperimentData("r1_600_35"))[2], state[2]);
+        Assert.assertEquals(ExperimentSet.getStateString(state), experiment.getState());
+
+        Experiment newField = new Experiment(experimentSet, "r1_900_25", "H1", 900.0, 25.0, "r1");
+        experimentSet.addExperimentData("r1_900_25", newField);
+        Assert.assertArrayEquals(new int[]{1, 3, 2, 1}, experimentSet.getStateCount(1));
+        Assert.assertEquals(2, experimentSet.getStateIndices(0, newField)[1]);
+        Assert.assertEquals(3, experimentSet.getFields().length);
+    }
+
+    @Test
+    public void testConcurrentFits() throws Exception {
+        int[][] expected = new int[CONDITIONS.length][];
+        List<Experiment> experiments = new ArrayList<>(experimentSet.getExperimentData());
+        for (int i = 0; i < experiments.size(); i++) {
+            expected[i] = experimentSet.getStateIndices(0, experiments.get(i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<ExperimentResult>>> futures = new ArrayList<>();
+            for (int iRound = 0; iRound < 4; iRound++) {
+                for (int iRes = 0; iRes < sources.size(); iRes++) {
+                    int groupId = iRes;
+                    ResonanceSource[] atoms = {sources.get(iRes)};
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < experiments.size(); i++) {
+                            experimentSet.setupMaps();
+                            Assert.assertArrayEquals(expected[i], experimentSet.getStateIndices(0, experiments.get(i)));
+                        }
+                        ResidueFitter residueFitter = new ResidueFitter(new CoMDOptions(true));
+                        return residueFitter.fitResidues(experimentSet, atoms, groupId, "EXPAB");
+                    }));
+                }
+            }
+            for (Future<List<ExperimentResult>> future : futures) {
+                List<ExperimentResult> results = future.get();
+                Assert.assertEquals(1, results.size());
+                Assert.assertEquals(CONDITIONS.length, results.get(0).getCurveSets("EXPAB").size());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.comdnmr.data;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PeakTableTest {
+
+    @Test
+    public void testSplit() {
+        String[] lines = {"a\tb\t\tc", "\t12\t", "one", "x\t\t"};
+        for (String line : lines) {
+            Assert.assertArrayEquals(line.split("\t", -1), PeakTable.split(line));
+        }
+    }
+
+    @Test
+    public void testTokenize() {
+        PeakTable.Row row = PeakTable.tokenize(" 12.H \t1.5e3\t\tNA\t-0.25\tabc\t1e400");
+        Assert.assertEquals(7, row.size());
+        Assert.assertEquals("12.H", row.getString(0));
+        Assert.assertFalse(row.isNumber(0));
+        Assert.assertEquals(1500.0, row.getDouble(1), 0.0);
+        Assert.assertTrue(row.isBlankOrNA(2));
+        Assert.assertTrue(row.isBlankOrNA(3));
+        Assert.assertEquals(-0.25, row.getDouble(4), 0.0);
+        try {
+            row.getDouble(5);
+            Assert.fail("non-numeric field parsed");
+        } catch (NumberFormatException nFE) {
+        }
+        Assert.assertEquals(Double.POSITIVE_INFINITY, row.getDouble(6), 0.0);
+    }
+
+    @Test
+    public void testParseMatchesParseDouble() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10.0, random.nextInt(30) - 15);
+            String text = random.nextBoolean() ? Double.toString(value) : String.format("%.6f", value);
+            PeakTable.Row row = PeakTable.tokenize(text);
+            Assert.assertEquals(text, Double.parseDouble(text), row.getDouble(0), 0.0);
+        }
+    }
+}
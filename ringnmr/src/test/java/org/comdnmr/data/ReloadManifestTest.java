@@ -0,0 +1,65 @@
+package org.comdnmr.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.comdnmr.util.CoMDOptions;
+import org.junit.Assert;
+import org.junit.Test;
+import org.nmrfx.chemistry.relax.ResonanceSource;
+
+public class ReloadManifestTest {
+
+    @Test
+    public void testManifestPath() {
+        Assert.assertEquals("project_out" + ReloadManifest.EXTENSION,
+                ReloadManifest.manifestPath("dir/project_out.txt").getFileName().toString());
+    }
+
+    @Test
+    public void testHashSettings() {
+        CoMDOptions options = new CoMDOptions(false);
+        String hash = ReloadManifest.hashSettings(options, "cpmg", List.of("NOEX", "CPMGFAST"));
+        Assert.assertEquals(hash, ReloadManifest.hashSettings(options, "cpmg", List.of("NOEX", "CPMGFAST")));
+        Assert.assertNotEquals(hash, ReloadManifest.hashSettings(options, "cpmg", List.of("NOEX")));
+    }
+
+    @Test
+    public void testHashData() throws IOException {
+        DynamicsSource factory = new DynamicsSource(true, true, true, true);
+        ResonanceSource source = factory.createFromAtomSpecifiers("manifest.5", "5.H").orElseThrow();
+        ResonanceSource source2 = factory.createFromAtomSpecifiers("manifest.6", "6.H").orElseThrow();
+        ExperimentSet experimentSet = new ExperimentSet("manifest", "manifest_out.txt");
+        Experiment experiment = new Experiment(experimentSet, "exp", "H1", 600.0, 25.0, "cpmg");
+        experimentSet.addExperimentData("exp", experiment);
+        double[][] xValues = {{50.0, 100.0, 200.0}};
+        double[] errValues = {0.1, 0.1, 0.1};
+        experiment.addResidueData(source, new ExperimentData(experiment, source, xValues, new double[]{12.0, 11.0, 10.0}, errValues));
+        experiment.addResidueData(source2, new ExperimentData(experiment, source2, xValues, new double[]{9.0, 9.0, 9.0}, errValues));
+        experimentSet.setupMaps();
+
+        String hash = ReloadManifest.hashData(experimentSet, source);
+        Assert.assertEquals(hash, ReloadManifest.hashData(experimentSet, source));
+        Assert.assertNotEquals(hash, ReloadManifest.hashData(experimentSet, source2));
+
+        ReloadManifest manifest = experimentSet.getManifest();
+        manifest.setSettings("settings");
+        manifest.setInput("exp.txt", "abc");
+        manifest.setFit(source, hash);
+        experimentSet.addExperimentResult(source, new ExperimentResult(experimentSet, source, 0, 1));
+        Path path = Files.createTempFile("manifest", ReloadManifest.EXTENSION);
+        try {
+            manifest.save(path, experimentSet);
+            ReloadManifest loaded = ReloadManifest.load(path).orElseThrow();
+            Assert.assertEquals("settings", loaded.getSettings());
+            Assert.assertEquals("abc", loaded.getInputs().get("exp.txt"));
+            Assert.assertTrue(loaded.isFitTo(source, hash));
+
+            experiment.addResidueData(source, new ExperimentData(experiment, source, xValues, new double[]{12.0, 11.0, 10.5}, errValues));
+            Assert.assertFalse(loaded.isFitTo(source, ReloadManifest.hashData(experimentSet, source)));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.comdnmr.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.comdnmr.eqnfit.CurveFit;
+import org.comdnmr.eqnfit.FitResult;
+import org.comdnmr.eqnfit.PlotEquation;
+import org.comdnmr.fit.FitQuality;
+import org.junit.Assert;
+import org.junit.Test;
+import org.nmrfx.chemistry.relax.ResonanceSource;
+
+public class ResultsStoreTest {
+
+    @Test
+    public void testStorePath() {
+        Assert.assertEquals("project_out" + ResultsStore.EXTENSION,
+                ResultsStore.storePath("dir/project_out.txt").getFileName().toString());
+    }
+
+    static ExperimentSet makeResults(ResonanceSource source, double[] pars, double[] errs, double[] samples) {
+        ExperimentSet experimentSet = new ExperimentSet("store", "store_out.txt");
+        experimentSet.setExpMode("cpmg");
+
+        Map<String, Double> parMap = new HashMap<>();
+        parMap.put("R2", pars[0]);
+        parMap.put("R2.sd", errs[0]);
+        parMap.put("RMS", 0.25);
+        PlotEquation plotEquation = new PlotEquation("cpmg", "CPMGFAST", pars, errs, new double[]{1.0});
+        CurveFit curveFit = new CurveFit("0:0:0", source, parMap, plotEquation);
+        Map<String, double[]> simsMap = new HashMap<>();
+        simsMap.put("R2", samples);
+        CurveFit.CurveFitStats stats = new CurveFit.CurveFitStats("CMA-ES", "BOBYQA", 12, 340, 500,
+                false, true, 20.0, 1.0e-5, 1.0e-5, true, 1234L);
+        FitResult fitResult = new FitResult(new String[]{"R2", "Rex", "Kex"}, List.of(curveFit), "CPMGFAST", 1,
+                new FitQuality(0.25, 7.4, 8.1, 1.2, 20), simsMap, true, stats);
+        ExperimentResult result = new ExperimentResult(experimentSet, source, 3, 1, 12);
+        result.addCurveFit(curveFit, true);
+        result.addFitResult(fitResult);
+        experimentSet.addExperimentResult(source, result);
+        return experimentSet;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        DynamicsSource factory = new DynamicsSource(true, true, true, true);
+        ResonanceSource source = factory.createFromAtomSpecifiers("store.12", "12.H").orElseThrow();
+        double[] pars = {9.2, 2.9, 259.3};
+        double[] errs = {0.1, 0.08, 18.0};
+        double[] samples = new double[500];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = 9.0 + i * 0.001;
+        }
+        ExperimentSet experimentSet = makeResults(source, pars, errs, samples);
+
+        Path path = Files.createTempFile("store", ResultsStore.EXTENSION);
+        try {
+            ResultsStore.save(path, experimentSet);
+            ExperimentSet loadedSet = new ExperimentSet("store", "store_out.txt");
+            try (ResultsStore.Reader reader = new ResultsStore.Reader(path)) {
+                Assert.assertEquals("cpmg", reader.getExpMode());
+                ExperimentResult loaded = reader.read(source, loadedSet).orElseThrow();
+                Assert.assertEquals("CPMGFAST", loaded.getBestEquationName());
+                CurveFit loadedCurve = loaded.getCurveFit("CPMGFAST", "0:0:0");
+                Assert.assertArrayEquals(pars, loadedCurve.getEquation().getPars(), 0.0);
+                Assert.assertArrayEquals(errs, loadedCurve.getEquation().getErrs(), 0.0);
+                Assert.assertEquals(0.25, loadedCurve.getParMap().get("RMS"), 0.0);
+                FitResult loadedFit = loaded.getFitResult("CPMGFAST");
+                Assert.assertArrayEquals(samples, loadedFit.getSimsMap().get("R2"), 0.0);
+                Assert.assertEquals(8.1, loadedFit.getAicc(), 0.0);
+                Assert.assertEquals(1234L, loadedFit.getCurveFitStats().getRandomSeed());
+                Assert.assertTrue(loadedFit.exchangeValid());
+            }
+            try (ResultsStore.Reader reader = new ResultsStore.Reader(path, false)) {
+                Assert.assertEquals(Set.of(source.getAtomKey()), reader.keys());
+            }
+            // a store read in full doesn't keep the file mapped, so it can be saved again
+            ResultsStore.save(path, experimentSet);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testDamagedStore() throws IOException {
+        DynamicsSource factory = new DynamicsSource(true, true, true, true);
+        ResonanceSource source = factory.createFromAtomSpecifiers("store.14", "14.H").orElseThrow();
+        ExperimentSet experimentSet = makeResults(source, new double[]{9.2, 2.9, 259.3},
+                new double[]{0.1, 0.08, 18.0}, new double[]{9.1, 9.2, 9.3});
+        Path dirPath = Files.createTempDirectory("store");
+        Path textPath = dirPath.resolve("store_out.txt");
+        Path storePath = ResultsStore.storePath(textPath.toString());
+        try {
+            Files.writeString(textPath, String.join("\n",
+                    "Residue\tPeak\tGrpSz\tGroup\tState\tEquation\tRMS\tAIC\tBest\tR2\tR2.sd",
+                    "14\t14\t1\t0\t0:0:0\tNOEX\t1.28\t49.95\tbest\t9.22\t0.09",
+                    ""));
+            ResultsStore.save(storePath, experimentSet);
+            try (var stream = Files.list(dirPath)) {
+                Assert.assertEquals(2, stream.count());
+            }
+            // a store cut short, but newer than the text results
+            byte[] bytes = Files.readAllBytes(storePath);
+            Files.write(storePath, Arrays.copyOf(bytes, bytes.length / 2));
+            Files.setLastModifiedTime(storePath, FileTime.fromMillis(Files.getLastModifiedTime(textPath).toMillis() + 1000));
+
+            ExperimentSet loadedSet = DataIO.loadResultsFile("cpmg", textPath.toString(), factory);
+            Assert.assertEquals(1, loadedSet.getExperimentResults().size());
+            Assert.assertEquals("NOEX", loadedSet.getExperimentResults().get(0).getBestEquationName());
+        } finally {
+            try (var stream = Files.list(dirPath)) {
+                for (Path file : stream.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dirPath);
+        }
+    }
+}
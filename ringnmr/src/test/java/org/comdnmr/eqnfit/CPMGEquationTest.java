@@ -0,0 +1,85 @@
+package org.comdnmr.eqnfit;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.tensorflow.ndarray.Shape;
+
+public class CPMGEquationTest {
+
+    double[][] getXValues() {
+        double[] fieldsX = {60.8, 81.1};
+        double[] fieldsH = {600.0, 800.0};
+        int nPerField = 15;
+        int n = fieldsX.length * nPerField;
+        double[][] x = new double[4][n];
+        int k = 0;
+        for (int iField = 0; iField < fieldsX.length; iField++) {
+            for (int i = 0; i < nPerField; i++) {
+                x[0][k] = 50.0 + i * 100.0;
+                x[1][k] = fieldsX[iField];
+                x[2][k] = fieldsH[iField];
+                x[3][k] = 0.04;
+                k++;
+            }
+        }
+        return x;
+    }
+
+    void checkBatch(CPMGEquation equation, double[] par) {
+        double[][] x = getXValues();
+        int[] map = new int[par.length];
+        for (int i = 0; i < map.length; i++) {
+            map[i] = i;
+        }
+        int n = x[0].length;
+        double[] yBatch = new double[n];
+        equation.calculate(par, map, x, 0, yBatch);
+        double[] ax = new double[x.length];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < ax.length; j++) {
+                ax[j] = x[j][i];
+            }
+            double yScalar = equation.calculate(par, map, ax, 0);
+            Assert.assertEquals(yScalar, yBatch[i], 1.0e-12);
+        }
+    }
+
+    @Test
+    public void testFastBatch() {
+        checkBatch(CPMGEquation.CPMGFAST, new double[]{500.0, 12.0, 0.5});
+        checkBatch(CPMGEquation.CPMGFAST, new double[]{0.0, 12.0, 0.5});
+    }
+
+    @Test
+    public void testSlowBatch() {
+        checkBatch(CPMGEquation.CPMGSLOW, new double[]{500.0, 0.9, 12.0, 1.5});
+        checkBatch(CPMGEquation.CPMGSLOW, new double[]{2000.0, 0.95, 8.0, 0.3});
+    }
+
+    @Test
+    public void testDefaultBatch() {
+        checkBatch(CPMGEquation.NOEX, new double[]{12.0});
+    }
+
+    @Test
+    public void testNetworkBatches() {
+        int inputSize = 69;
+        Assert.assertEquals(256, CPMGEquation.networkBatchLimit(Shape.of(Shape.UNKNOWN_SIZE, inputSize), 256));
+        Assert.assertEquals(256, CPMGEquation.networkBatchLimit(Shape.unknown(), 256));
+        // a network saved with a batch size of 1 gets one residue per call
+        Assert.assertEquals(1, CPMGEquation.networkBatchLimit(Shape.of(1, inputSize), 256));
+
+        List<Integer> residues = IntStream.range(0, 7).boxed().collect(Collectors.toList());
+        List<List<Integer>> batches = CPMGEquation.batches(residues, 3);
+        Assert.assertEquals(List.of(List.of(0, 1, 2), List.of(3, 4, 5), List.of(6)), batches);
+        List<List<Integer>> single = CPMGEquation.batches(residues,
+                CPMGEquation.networkBatchLimit(Shape.of(1, inputSize), 256));
+        Assert.assertEquals(7, single.size());
+        for (int i = 0; i < single.size(); i++) {
+            Assert.assertEquals(List.of(i), single.get(i));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.comdnmr.eqnfit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CPMGMQKernelTest {
+
+    @Test
+    public void testMatchesComplex() {
+        double[] kExs = {100.0, 500.0, 2000.0, 8000.0};
+        double[] pAs = {0.85, 0.95, 0.99};
+        double[] deltaCs = {0.3, 1.0, 3.0};
+        double[] deltaHs = {0.0, 0.05, 0.3};
+        double[] taus = {0.0, 0.04};
+        double[][] fields = {{150.9, 600.0}, {201.2, 800.0}};
+        double R2 = 15.0;
+        for (double kEx : kExs) {
+            for (double pA : pAs) {
+                for (double deltaC : deltaCs) {
+                    for (double deltaH : deltaHs) {
+                        for (double tau : taus) {
+                            for (double[] field : fields) {
+                                for (int i = 0; i < 20; i++) {
+                                    double vcpmg = 50.0 + i * 100.0;
+                                    double expected = CPMGMQKernel.calculateComplex(kEx, pA, R2, deltaC, deltaH,
+                                            vcpmg, field[0], field[1], tau);
+                                    double value = CPMGMQKernel.calculate(kEx, pA, R2, deltaC, deltaH,
+                                            vcpmg, field[0], field[1], tau);
+                                    Assert.assertEquals(expected, value, 1.0e-12 * Math.max(1.0, Math.abs(expected)));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
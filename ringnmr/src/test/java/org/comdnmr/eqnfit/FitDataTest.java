@@ -0,0 +1,52 @@
+package org.comdnmr.eqnfit;
+
+import org.comdnmr.data.CPMGExperiment;
+import org.comdnmr.data.DynamicsSource;
+import org.comdnmr.data.ExperimentData;
+import org.comdnmr.data.ExperimentSet;
+import org.comdnmr.util.CoMDOptions;
+import org.junit.Assert;
+import org.junit.Test;
+import org.nmrfx.chemistry.relax.ResonanceSource;
+
+public class FitDataTest {
+
+    @Test
+    public void testCPMGLayout() {
+        DynamicsSource factory = new DynamicsSource(true, true, true, true);
+        ResonanceSource source = factory.createFromAtomSpecifiers("fitdata.7", "7.N").orElseThrow();
+        ExperimentSet experimentSet = new ExperimentSet("fitdata", "fitdata_out.txt");
+        experimentSet.setExpMode("cpmg");
+        double[][] xValues = {{50.0, 100.0, 200.0}};
+        double[] errValues = {0.1, 0.1, 0.1};
+        CPMGExperiment exp600 = new CPMGExperiment(experimentSet, "cpmg600", "N15", 600.0, 0.04, 25.0);
+        experimentSet.addExperimentData("cpmg600", exp600);
+        exp600.addResidueData(source, new ExperimentData(exp600, source, xValues, new double[]{12.0, 11.0, 10.0}, errValues));
+        CPMGExperiment exp800 = new CPMGExperiment(experimentSet, "cpmg800", "N15", 800.0, 0.04, 25.0);
+        experimentSet.addExperimentData("cpmg800", exp800);
+        exp800.addResidueData(source, new ExperimentData(exp800, source, xValues, new double[]{14.0, 12.0, 10.0}, errValues));
+
+        CPMGFitter fitter = new CPMGFitter(new CoMDOptions(false));
+        fitter.setData(experimentSet, new ResonanceSource[]{source});
+        FitData fitData = fitter.getFitData();
+        Assert.assertEquals(6, fitData.size());
+        Assert.assertEquals(4, fitData.x.length);
+        Assert.assertArrayEquals(new double[]{50.0, 100.0, 200.0, 50.0, 100.0, 200.0}, fitData.x[0], 0.0);
+        Assert.assertArrayEquals(new int[]{0, 0, 0, 1, 1, 1}, fitData.ids);
+        Assert.assertEquals(0.04, fitData.x[3][5], 0.0);
+        // the order of the experiments isn't fixed, but each curve keeps its own field
+        for (int i = 0; i < fitData.size(); i += 3) {
+            double firstY = fitData.x[2][i] == 600.0 ? 12.0 : 14.0;
+            Assert.assertEquals(firstY, fitData.y[i], 0.0);
+            Assert.assertEquals(fitData.x[2][i], fitData.x[2][i + 2], 0.0);
+        }
+        Assert.assertNotEquals(fitData.x[2][0], fitData.x[2][3], 0.0);
+
+        CPMGFitter sharingFitter = new CPMGFitter(new CoMDOptions(false));
+        sharingFitter.setData(fitData);
+        sharingFitter.setupFit("NOEX");
+        Assert.assertSame(fitData.y, sharingFitter.getFitModel().yValues);
+        Assert.assertArrayEquals(fitter.getStateCount(), sharingFitter.getStateCount());
+        Assert.assertEquals(2, fitData.getFields().length);
+    }
+}
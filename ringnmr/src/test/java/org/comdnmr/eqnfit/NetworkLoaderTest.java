@@ -0,0 +1,131 @@
+package org.comdnmr.eqnfit;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NetworkLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static final class StubNetwork implements AutoCloseable {
+
+        final String name;
+        boolean closed = false;
+
+        StubNetwork(File dir) {
+            name = dir.getName();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    Path writeArchive(String name, String content) throws Exception {
+        Path path = folder.getRoot().toPath().resolve(name);
+        try (OutputStream out = Files.newOutputStream(path);
+             ZipOutputStream zipStream = new ZipOutputStream(out)) {
+            for (String network : List.of("a", "b")) {
+                zipStream.putNextEntry(new ZipEntry(NetworkLoader.NAME + "/" + network + "/model.txt"));
+                zipStream.write(content.getBytes(StandardCharsets.UTF_8));
+                zipStream.closeEntry();
+            }
+        }
+        return path;
+    }
+
+    NetworkLoader<StubNetwork> makeLoader(Path archive, List<StubNetwork> loaded) throws Exception {
+        File rootDir = new File(folder.getRoot(), NetworkLoader.NAME);
+        return new NetworkLoader<>(archive.toUri().toURL(), rootDir, dir -> {
+            StubNetwork network = new StubNetwork(dir);
+            loaded.add(network);
+            return network;
+        });
+    }
+
+    String readExtracted(String network) throws Exception {
+        Path path = folder.getRoot().toPath().resolve(NetworkLoader.NAME).resolve(network).resolve("model.txt");
+        return Files.readString(path, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        Path archive = writeArchive("networks.zip", "v1");
+        List<StubNetwork> loaded = new ArrayList<>();
+        NetworkLoader<StubNetwork> loader = makeLoader(archive, loaded);
+        loader.setMaxNetworks(2);
+        for (String name : List.of("a", "b", "c")) {
+            Assert.assertEquals(name, loader.withNetwork(name, network -> network.name));
+        }
+        // a was used least recently
+        Assert.assertTrue(loaded.get(0).closed);
+        Assert.assertFalse(loaded.get(1).closed);
+        Assert.assertFalse(loaded.get(2).closed);
+
+        // using b again leaves c as the least recently used
+        loader.withNetwork("b", network -> network);
+        loader.withNetwork("d", network -> network);
+        Assert.assertEquals(4, loaded.size());
+        Assert.assertFalse(loaded.get(1).closed);
+        Assert.assertTrue(loaded.get(2).closed);
+
+        loader.setMaxNetworks(1);
+        Assert.assertTrue(loaded.get(1).closed);
+        Assert.assertFalse(loaded.get(3).closed);
+
+        // a network in use isn't closed, the idle one is
+        loader.withNetwork("d", outer -> {
+            loader.withNetwork("e", inner -> inner);
+            Assert.assertFalse(outer.closed);
+            return null;
+        });
+        Assert.assertEquals(5, loaded.size());
+        Assert.assertTrue(loaded.get(4).closed);
+        Assert.assertFalse(loaded.get(3).closed);
+        NetworkLoader.Metrics metrics = loader.getMetrics();
+        Assert.assertEquals(5, metrics.nLoads());
+        Assert.assertEquals(2, metrics.nHits());
+        Assert.assertEquals(4, metrics.nEvictions());
+        Assert.assertEquals(1, metrics.nResident());
+    }
+
+    @Test
+    public void testExtraction() throws Exception {
+        Path archive = writeArchive("networks.zip", "v1");
+        List<StubNetwork> loaded = new ArrayList<>();
+        Assert.assertTrue(makeLoader(archive, loaded).getMetrics().extracted());
+        Assert.assertEquals("v1", readExtracted("a"));
+        Assert.assertFalse(makeLoader(archive, loaded).getMetrics().extracted());
+
+        // a touched archive is checked but not extracted again
+        FileTime modified = Files.getLastModifiedTime(archive);
+        Files.setLastModifiedTime(archive, FileTime.fromMillis(modified.toMillis() + 10000));
+        Assert.assertFalse(makeLoader(archive, loaded).getMetrics().extracted());
+        Assert.assertFalse(makeLoader(archive, loaded).getMetrics().extracted());
+
+        // a changed archive is extracted again
+        writeArchive("networks.zip", "v2");
+        Files.setLastModifiedTime(archive, FileTime.fromMillis(modified.toMillis() + 20000));
+        Assert.assertTrue(makeLoader(archive, loaded).getMetrics().extracted());
+        Assert.assertEquals("v2", readExtracted("b"));
+
+        // as is an incomplete extraction
+        Files.delete(folder.getRoot().toPath().resolve(NetworkLoader.NAME).resolve(NetworkLoader.CHECKSUM_FILE));
+        Assert.assertTrue(makeLoader(archive, loaded).getMetrics().extracted());
+        Assert.assertFalse(makeLoader(archive, loaded).getMetrics().extracted());
+    }
+}
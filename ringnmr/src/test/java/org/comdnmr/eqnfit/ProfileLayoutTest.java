@@ -0,0 +1,47 @@
+package org.comdnmr.eqnfit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProfileLayoutTest {
+
+    @Test
+    public void testLayoutAndCache() {
+        ProfileLayout.clearCache();
+        double[][] x = {
+            {-2.0, 1.0, -1.0, 2.0, 0.0},
+            {25.0, 50.0, 25.0, 50.0, 25.0}
+        };
+        int[] ids = {0, 1, 0, 1, 0};
+        ProfileLayout layout = ProfileLayout.get(x, ids, ids.length);
+        Assert.assertEquals(2, layout.indices.length);
+        Assert.assertArrayEquals(new int[]{0, 2, 4}, layout.indices[0]);
+        Assert.assertArrayEquals(new int[]{1, 3}, layout.indices[1]);
+        Assert.assertArrayEquals(new double[]{-2.0, -1.0, 0.0}, layout.x[0][0], 0.0);
+        Assert.assertArrayEquals(new double[]{50.0, 50.0}, layout.x[1][1], 0.0);
+        Assert.assertEquals(0, ProfileLayout.getHits());
+        Assert.assertEquals(1, ProfileLayout.getMisses());
+
+        // same conditions in different arrays, as in a parametric bootstrap
+        ProfileLayout layout2 = ProfileLayout.get(new double[][]{x[0].clone(), x[1].clone()}, ids.clone(), ids.length);
+        Assert.assertSame(layout, layout2);
+        Assert.assertEquals(1, ProfileLayout.getHits());
+
+        x[0][0] = -3.0;
+        ProfileLayout layout3 = ProfileLayout.get(x, ids, ids.length);
+        Assert.assertNotSame(layout, layout3);
+        Assert.assertEquals(2, ProfileLayout.getMisses());
+
+        // a resampled replicate is laid out without touching the cache
+        ProfileLayout resampled = ProfileLayout.of(x, new int[]{1, 1, 0, 0, 0}, 4);
+        Assert.assertArrayEquals(new int[]{2, 3}, resampled.indices[0]);
+        Assert.assertArrayEquals(new double[]{-3.0, 1.0}, resampled.x[1][0], 0.0);
+        Assert.assertEquals(2, ProfileLayout.getMisses());
+        Assert.assertEquals(1, ProfileLayout.getHits());
+
+        ProfileLayout.setMaxBytes(0);
+        Assert.assertTrue(ProfileLayout.getCacheBytes() > 0);
+        ProfileLayout.setMaxBytes(ProfileLayout.DEFAULT_MAX_BYTES);
+        ProfileLayout.clearCache();
+    }
+}
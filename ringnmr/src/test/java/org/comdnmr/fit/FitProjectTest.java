@@ -0,0 +1,94 @@
+package org.comdnmr.fit;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import org.comdnmr.util.CoMDPreferences;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FitProjectTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setup() {
+        CoMDPreferences.useSessionPreferences();
+    }
+
+    @Test
+    public void testParseArgs() {
+        FitProject fitProject = new FitProject();
+        String[] args = {"-T", "3", "-n", "20", "-x", "1234", "-r", "bobyqa", "-P", "-S",
+            "-e", "CPMGFAST,CPMGSLOW", "-O", "fit.txt", "project.yaml"};
+        Assert.assertTrue(fitProject.parseArgs(args));
+        fitProject.setEquations("cpmg");
+        Assert.assertEquals("project.yaml", fitProject.projectFile);
+        Assert.assertEquals("fit.txt", fitProject.outFileName);
+        Assert.assertTrue(fitProject.saveStats);
+        Assert.assertEquals(3, CoMDPreferences.getNProcesses().intValue());
+        Assert.assertEquals(20, CoMDPreferences.getSampleSize().intValue());
+        Assert.assertEquals(1234L, CoMDPreferences.getRandomSeed().longValue());
+        Assert.assertEquals("BOBYQA", CoMDPreferences.getOptimizer());
+        Assert.assertFalse(CoMDPreferences.getNonParametricBootstrap());
+        List<String> equations = CoMDPreferences.getActiveCPMGEquations();
+        Assert.assertEquals(2, equations.size());
+        Assert.assertTrue(equations.contains("CPMGFAST") && equations.contains("CPMGSLOW"));
+    }
+
+    @Test
+    public void testSessionDefaults() {
+        CoMDPreferences.setSampleSize(7);
+        CoMDPreferences.useSessionPreferences();
+        Assert.assertEquals(50, CoMDPreferences.getSampleSize().intValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingValue() {
+        new FitProject().parseArgs(new String[]{"project.yaml", "-n"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadOptimizer() {
+        new FitProject().parseArgs(new String[]{"-r", "simplex", "project.yaml"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testModelFreeOptimizer() {
+        new FitProject().parseArgs(new String[]{"-r", "LM", "project.yaml"});
+    }
+
+    @Test
+    public void testRefitOnlyChanged() throws Exception {
+        File yamlFile = folder.newFile("project.yaml");
+        Files.writeString(yamlFile.toPath(), String.join("\n",
+                "fit:",
+                "  mode: r1",
+                "  data:",
+                "    - file: r1.txt",
+                "      B0: 600.0",
+                "      nucleus: N15",
+                "      temperature: 25.0",
+                ""));
+        File dataFile = new File(folder.getRoot(), "r1.txt");
+        Files.writeString(dataFile.toPath(), String.join("\n",
+                "Residue\t0.1\terr\t0.3\terr\t0.6\terr\t1.0\terr\t1.5\terr",
+                "5\t90.5\t1.0\t74.1\t1.0\t54.9\t1.0\t36.8\t1.0\t22.3\t1.0",
+                "6\t81.9\t1.0\t54.9\t1.0\t30.1\t1.0\t13.5\t1.0\t5.0\t1.0",
+                ""));
+        String[] args = {"-T", "1", "-n", "5", "-x", "1234", yamlFile.toString()};
+
+        FitProject fitProject = new FitProject();
+        Assert.assertTrue(fitProject.parseArgs(args));
+        Assert.assertEquals(2, fitProject.run());
+        Assert.assertTrue(new File(folder.getRoot(), "project_out.txt").exists());
+
+        FitProject refitProject = new FitProject();
+        Assert.assertTrue(refitProject.parseArgs(args));
+        Assert.assertEquals(0, refitProject.run());
+    }
+}
@@ -0,0 +1,76 @@
+package org.comdnmr.fit.calc;
+
+import org.comdnmr.util.BlochMcConnellPropagator;
+import org.comdnmr.util.MtxExp;
+import org.ejml.data.DMatrixRMaj;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlochMcConnellPropagatorTest {
+
+    double[][] getCESTMatrix(double offset, double tdelay) {
+        double pb = 0.05;
+        double kex = 200.0;
+        double R1A = 1.5;
+        double R1B = 1.5;
+        double R2A = 10.0;
+        double R2B = 30.0;
+        double k1 = pb * kex;
+        double km1 = (1 - pb) * kex;
+        double deltaA = offset * 2.0 * Math.PI;
+        double deltaB = (offset - 400.0) * 2.0 * Math.PI;
+        double omegaB1 = 25.0 * 2.0 * Math.PI;
+        double[][] Z = {
+            {0, 0, 0, 0, 0, 0, 0},
+            {0, -R2A - k1, -deltaA, 0, km1, 0, 0},
+            {0, deltaA, -R2A - k1, -omegaB1, 0, km1, 0},
+            {2 * R1A * (1 - pb), 0, omegaB1, -R1A - k1, 0, 0, km1},
+            {0, k1, 0, 0, -R2B - km1, -deltaB, 0},
+            {0, 0, k1, 0, deltaB, -R2B - km1, -omegaB1},
+            {2 * R1B * pb, 0, 0, k1, 0, omegaB1, -R1B - km1}};
+        for (double[] row : Z) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] *= tdelay;
+            }
+        }
+        return Z;
+    }
+
+    @Test
+    public void testMatchesMtxExp() {
+        BlochMcConnellPropagator propagator = BlochMcConnellPropagator.forSize(7);
+        for (double offset = -1000.0; offset <= 1000.0; offset += 50.0) {
+            double[][] Z = getCESTMatrix(offset, 0.3);
+            double[][] expected = MtxExp.matrixExp(Z);
+            propagator.exp(new DMatrixRMaj(Z));
+            for (int i = 0; i < 7; i++) {
+                for (int j = 0; j < 7; j++) {
+                    Assert.assertEquals(expected[i][j], propagator.get(i, j), 1.0e-10);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNilpotent() {
+        double[][] Z = {
+            {0.0, 6.0, 0.0, 0.0},
+            {0.0, 0.0, 6.0, 0.0},
+            {0.0, 0.0, 0.0, 6.0},
+            {0.0, 0.0, 0.0, 0.0}
+        };
+        double[][] valid = {
+            {1.0, 6.0, 18.0, 36.0},
+            {0.0, 1.0, 6.0, 18.0},
+            {0.0, 0.0, 1.0, 6.0},
+            {0.0, 0.0, 0.0, 1.0}
+        };
+        BlochMcConnellPropagator propagator = BlochMcConnellPropagator.forSize(4);
+        propagator.exp(new DMatrixRMaj(Z));
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                Assert.assertEquals(valid[i][j], propagator.get(i, j), 6.0e-13);
+            }
+        }
+    }
+}
@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.math3.optim.PointValuePair;
 import org.comdnmr.data.DataIO;
@@ -362,6 +363,73 @@ public class DRefineTest {
         Assert.assertEquals(0.0, value, 0.11);
     }
 
+    @Test
+    public void testValueDMatParallel() throws Exception {
+        // two copies of each residue, so there are enough for the chunks to be evaluated in parallel
+        Map<String, MolDataValues> molData = new TreeMap<>();
+        for (var entry : loadTestData().entrySet()) {
+            for (int iCopy = 0; iCopy < 2; iCopy++) {
+                MolDataValues copy = new MolDataValues(entry.getValue().getAtom(), entry.getValue().getVector());
+                entry.getValue().getData().forEach(copy::addData);
+                copy.setTestModel(new MFModelAniso1(DiffusionType.ANISOTROPIC, copy.getVector()));
+                molData.put(entry.getKey() + "_" + iCopy, copy);
+            }
+        }
+        Assert.assertTrue(molData.size() >= 64);
+        double[] pars = {4.4170 * 1e7, 4.5832 * 1e7, 6.0129 * 1e7, Math.toRadians(98.06),
+            Math.toRadians(68.64), Math.toRadians(77.42)};
+
+        RelaxFit relaxFit = new RelaxFit();
+        relaxFit.setRelaxData(molData);
+        relaxFit.setDiffusionType(DiffusionType.ANISOTROPIC);
+        double value = relaxFit.valueDMat(pars.clone(), null);
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            double singleThreadValue = pool.submit(() -> relaxFit.valueDMat(pars.clone(), null)).get();
+            Assert.assertEquals(value, singleThreadValue, 0.0);
+        } finally {
+            pool.shutdown();
+        }
+
+        // groups of 32 residues are evaluated serially, combine their rms values
+        List<String> keys = new ArrayList<>(molData.keySet());
+        double sumSq = 0.0;
+        int n = 0;
+        for (int start = 0; start < keys.size(); start += 32) {
+            Map<String, MolDataValues> group = new TreeMap<>();
+            int groupN = 0;
+            for (String key : keys.subList(start, Math.min(keys.size(), start + 32))) {
+                group.put(key, molData.get(key));
+                groupN += molData.get(key).getData().size();
+            }
+            RelaxFit groupFit = new RelaxFit();
+            groupFit.setRelaxData(group);
+            groupFit.setDiffusionType(DiffusionType.ANISOTROPIC);
+            double groupValue = groupFit.valueDMat(pars.clone(), null);
+            sumSq += groupValue * groupValue * groupN;
+            n += groupN;
+        }
+        Assert.assertEquals(Math.sqrt(sumSq / n), value, 1.0e-12 * value);
+    }
+
+    @Test
+    public void testFitDiffusionStarts() {
+        RelaxFit relaxFit = new RelaxFit();
+        Map<String, MolDataValues> molData = loadTestData();
+        for (MolDataValues molDataValue : molData.values()) {
+            MFModelAniso1 model = new MFModelAniso1(DiffusionType.ANISOTROPIC, molDataValue.getVector());
+            molDataValue.setTestModel(model);
+        }
+        relaxFit.setRelaxData(molData);
+        relaxFit.setDiffusionType(DiffusionType.ANISOTROPIC);
+        double isoD = 1.0 / (6.0 * 3.3e-9);
+        Optional<PointValuePair> fitResult = relaxFit.fitDiffusionStarts(isoD);
+        Assert.assertTrue(fitResult.isPresent());
+        Assert.assertEquals(0.1, fitResult.get().getValue(), 0.01);
+        double value = relaxFit.valueDMat(relaxFit.getPars().clone(), null);
+        Assert.assertEquals(fitResult.get().getValue(), value, 1.0e-9);
+    }
+
     @Test
     public void testValueDMatFile() {
         RelaxFit relaxFit = new RelaxFit();
@@ -0,0 +1,59 @@
+package org.comdnmr.modelfree;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BootstrapAggregatorTest {
+
+    double[][] makeJ(int nJ) {
+        double[][] jValues = new double[4][nJ];
+        for (int jType = 0; jType < 4; jType++) {
+            for (int i = 0; i < nJ; i++) {
+                jValues[jType][i] = 100.0 * jType + i;
+            }
+        }
+        return jValues;
+    }
+
+    @Test
+    public void testTables() {
+        for (int nExp = 2; nExp <= 4; nExp++) {
+            BootstrapAggregator aggregator = new BootstrapAggregator(nExp);
+            int nJ = nExp * aggregator.nFreq;
+            double[][] jValues = makeJ(nJ);
+            double[][] buffer = new double[4][nJ];
+            for (int iSelection = 0; iSelection < aggregator.getN(); iSelection++) {
+                int[][] sel = aggregator.getSelections(iSelection);
+                int[] expCounts = new int[nJ];
+                double[][] expJ = new double[4][nJ];
+                for (int iFreq = 0; iFreq < aggregator.nFreq; iFreq++) {
+                    for (int iExp = 0; iExp < nExp; iExp++) {
+                        int index = iExp * aggregator.nFreq + iFreq;
+                        int swapIndex = sel[iFreq][iExp] * aggregator.nFreq + iFreq;
+                        expCounts[swapIndex]++;
+                        for (int jType = 0; jType < 4; jType++) {
+                            expJ[jType][index] = jValues[jType][swapIndex];
+                        }
+                    }
+                }
+                Assert.assertArrayEquals(expCounts, aggregator.getY(iSelection));
+                aggregator.getBootStrapJ(jValues, iSelection, buffer);
+                for (int jType = 0; jType < 4; jType++) {
+                    Assert.assertArrayEquals(expJ[jType], buffer[jType], 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIncrCounts() {
+        BootstrapAggregator aggregator = new BootstrapAggregator(4);
+        int[] total1 = new int[12];
+        int[] total2 = new int[12];
+        for (int iSelection = 0; iSelection < aggregator.getN(); iSelection += 7) {
+            BootstrapAggregator.incrCounts(total1, aggregator.getY(iSelection));
+            aggregator.incrCounts(total2, iSelection);
+        }
+        Assert.assertArrayEquals(total1, total2);
+    }
+}
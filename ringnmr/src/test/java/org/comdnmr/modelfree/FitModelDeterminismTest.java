@@ -0,0 +1,116 @@
+package org.comdnmr.modelfree;
+
+import org.comdnmr.data.DynamicsSource;
+import org.comdnmr.modelfree.models.MFModelIso;
+import org.junit.Assert;
+import org.junit.Test;
+import org.nmrfx.chemistry.relax.OrderParSet;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+public class FitModelDeterminismTest {
+
+    static final long SEED = 1234L;
+    static final int N_REPLICATES = 8;
+
+    Map<String, OrderParSet> makeOrderParSetMap(List<String> modelNames) {
+        Map<String, OrderParSet> orderParSetMap = new HashMap<>();
+        for (var modelName : modelNames) {
+            orderParSetMap.computeIfAbsent("order_parameter_list_" + modelName, OrderParSet::new);
+        }
+        orderParSetMap.computeIfAbsent("order_parameter_list_best", OrderParSet::new);
+        return orderParSetMap;
+    }
+
+    MolDataValues makeR1R2NOEData() {
+        double[] v = {0.0, 1.0, 2.0};
+        MolDataValues resData = new MolDataValues("3.CB", v, new DynamicsSource(true, true, true, true));
+        MFModelIso model = MFModelIso.buildModel("2sf", false, 10.0, 1.0, false);
+        double[] pars = {0.3, 0.0, 0.3, 0.2};
+        for (double sf : new double[]{600.0e6, 800.0e6}) {
+            RelaxEquations rlxEq = RelaxEquations.getRelaxEquations(sf, "H", "N");
+            double[] valJ = model.calc(rlxEq.wValues, pars);
+            double r1 = rlxEq.R1(valJ);
+            double r2 = rlxEq.R2(valJ, 0.0);
+            double noe = rlxEq.NOE(valJ);
+            resData.addData(new R1R2NOEDataValue(resData, r1, r1 * 0.03, r2, r2 * 0.03, noe, 0.05, rlxEq));
+        }
+        return resData;
+    }
+
+    MolDataValues makeDeuteriumData() {
+        double[] rValues = {475.0, 35.83, 0.45, 215.35, 1.99, 27.83, 0.95, 174.0, 4.8,
+                900.0, 31.58, 0.28, 210.2, 1.0, 21.23, 0.4, 197.1, 2.0};
+        double[] v = {0.0, 1.0, 2.0};
+        MolDataValues resData = new MolDataValues("13.CB", v, new DynamicsSource(true, true, true, true));
+        for (int i = 0; i < rValues.length; i += 9) {
+            RelaxEquations relaxObj = RelaxEquations.getRelaxEquations(rValues[i] * 1E6, "D", "C");
+            resData.addData(new DeuteriumDataValue(resData, rValues[i + 1], rValues[i + 2],
+                    rValues[i + 3], rValues[i + 4], rValues[i + 5], rValues[i + 6],
+                    rValues[i + 7], rValues[i + 8], relaxObj));
+        }
+        return resData;
+    }
+
+    double[][] fitR1R2NOE() {
+        FitR1R2NOEModel fitModel = new FitR1R2NOEModel();
+        fitModel.setTau(10.0);
+        fitModel.setBootstrapMode(FitModel.BootstrapMode.BAYESIAN);
+        fitModel.setNReplicates(N_REPLICATES);
+        List<String> modelNames = List.of("2sf");
+        Optional<ModelFitResult> result = fitModel.testModelsWithBootstrapAggregation(makeOrderParSetMap(modelNames),
+                makeR1R2NOEData(), "3.CB", modelNames, new Random(SEED));
+        Assert.assertTrue(result.isPresent());
+        return result.get().replicateData();
+    }
+
+    double[][] fitDeuterium() {
+        FitDeuteriumModel fitModel = new FitDeuteriumModel();
+        fitModel.setTau(12.0);
+        fitModel.setFitJ(true);
+        fitModel.setBootstrapMode(FitModel.BootstrapMode.BAYESIAN);
+        fitModel.setNReplicates(N_REPLICATES);
+        List<String> modelNames = List.of("D1f");
+        Optional<ModelFitResult> result = fitModel.testModelsWithBootstrapAggregation(makeOrderParSetMap(modelNames),
+                makeDeuteriumData(), "13.CB", modelNames, new Random(SEED));
+        Assert.assertTrue(result.isPresent());
+        return result.get().replicateData();
+    }
+
+    // the replicate fits run as a parallel stream, so they use the pool of the calling task
+    static double[][] runInPool(int nThreads, Supplier<double[][]> fit) throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(nThreads);
+        try {
+            return pool.submit(fit::get).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    void checkReproducible(Supplier<double[][]> fit) throws Exception {
+        double[][] parallel1 = runInPool(4, fit);
+        double[][] parallel2 = runInPool(4, fit);
+        double[][] serial = runInPool(1, fit);
+        Assert.assertEquals(N_REPLICATES, parallel1[0].length);
+        for (int iPar = 0; iPar < parallel1.length; iPar++) {
+            Assert.assertArrayEquals(parallel1[iPar], parallel2[iPar], 0.0);
+            Assert.assertArrayEquals(parallel1[iPar], serial[iPar], 0.0);
+        }
+    }
+
+    @Test
+    public void testR1R2NOEReplicates() throws Exception {
+        checkReproducible(this::fitR1R2NOE);
+    }
+
+    @Test
+    public void testDeuteriumReplicates() throws Exception {
+        checkReproducible(this::fitDeuterium);
+    }
+}
@@ -0,0 +1,113 @@
+package org.comdnmr.modelfree;
+
+import org.comdnmr.data.DynamicsSource;
+import org.comdnmr.modelfree.models.MFModelIso;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MolDataViewTest {
+
+    MolDataValues makeData() {
+        double[] v = {0.0, 1.0, 2.0};
+        MolDataValues resData = new MolDataValues("3.CB", v, new DynamicsSource(true, true, true, true));
+        MFModelIso model = makeModel();
+        double[] pars = {0.3, 0.0, 0.3, 0.2};
+        for (double sf : new double[]{600.0e6, 800.0e6}) {
+            RelaxEquations rlxEq = RelaxEquations.getRelaxEquations(sf, "H", "N");
+            double[] valJ = model.calc(rlxEq.wValues, pars);
+            double r1 = rlxEq.R1(valJ);
+            double r2 = rlxEq.R2(valJ, 0.0);
+            double noe = rlxEq.NOE(valJ);
+            resData.addData(new R1R2NOEDataValue(resData, r1, r1 * 0.03, r2, r2 * 0.03, noe, 0.05, rlxEq));
+        }
+        return resData;
+    }
+
+    MFModelIso makeModel() {
+        return MFModelIso.buildModel("2sf", false, 10.0, 1.0, false);
+    }
+
+    @Test
+    public void testSharedJ() {
+        MolDataValues resData = makeData();
+        MolDataView view = resData.view();
+        double[][] jValues = view.getJValues();
+        Assert.assertSame(view, resData.view());
+        Assert.assertSame(jValues, view.withModel(makeModel()).getJValues());
+
+        double[] weights = new double[jValues[0].length];
+        MolDataView weighted = view.withWeights(weights);
+        for (int i = 0; i < jValues.length - 1; i++) {
+            Assert.assertSame(jValues[i], weighted.getJValues()[i]);
+        }
+
+        // a new test model gives a new view, but the J values aren't recalculated
+        resData.setTestModel(makeModel());
+        MolDataView newView = resData.view();
+        Assert.assertNotSame(view, newView);
+        Assert.assertSame(jValues, newView.getJValues());
+
+        // new data gives new J values
+        resData.addData(resData.getData().get(0));
+        Assert.assertNotSame(jValues, resData.view().getJValues());
+        Assert.assertSame(jValues, view.getJValues());
+    }
+
+    @Test
+    public void testIsolation() {
+        MolDataValues resData = makeData();
+        MFModelIso model = makeModel();
+        resData.setTestModel(model);
+        MolDataView view = resData.view();
+        double[][] jValues = view.getJValues();
+        double[] weightRow = jValues[jValues.length - 1].clone();
+
+        MFModelIso otherModel = makeModel();
+        MolDataView modelView = view.withModel(otherModel);
+        Assert.assertSame(otherModel, modelView.getTestModel());
+        Assert.assertSame(model, view.getTestModel());
+
+        BootstrapAggregator bootstrapAggregator = new BootstrapAggregator(2);
+        MolDataView bootstrapView = view.withBootstrapSet(bootstrapAggregator, 1);
+        Assert.assertEquals(Integer.valueOf(1), bootstrapView.getBootstrapSet());
+        Assert.assertNull(view.getBootstrapSet());
+        double[][] bootstrapJ = bootstrapAggregator.getBootStrapJ(jValues, 1);
+        for (int i = 0; i < bootstrapJ.length; i++) {
+            Assert.assertArrayEquals(bootstrapJ[i], bootstrapView.getJValues()[i], 0.0);
+        }
+
+        double[] weights = new double[weightRow.length];
+        weights[0] = 2.0;
+        MolDataView weighted = view.withWeights(weights);
+        Assert.assertEquals(2.0, weighted.getJValues()[jValues.length - 1][0], 0.0);
+        Assert.assertArrayEquals(weightRow, view.getJValues()[jValues.length - 1], 0.0);
+
+        // changing the residue doesn't change views already made
+        resData.setTestModel(otherModel);
+        resData.setBootstrapAggregator(bootstrapAggregator);
+        resData.setBootstrapSet(0);
+        Assert.assertSame(model, view.getTestModel());
+        Assert.assertNull(view.getBootstrapSet());
+        Assert.assertSame(jValues, view.getJValues());
+        Assert.assertEquals(Integer.valueOf(0), resData.view().getBootstrapSet());
+    }
+
+    @Test
+    public void testWeightsCopied() {
+        MolDataValues resData = makeData();
+        MolDataView view = resData.view();
+        int nJ = view.getJValues()[0].length;
+        int iWeight = view.getJValues().length - 1;
+
+        double[] weights = new double[nJ];
+        weights[1] = 3.0;
+        MolDataView weighted = view.withWeights(weights);
+        weights[1] = 5.0;
+        Assert.assertEquals(3.0, weighted.getJValues()[iWeight][1], 0.0);
+
+        resData.weight(weights);
+        MolDataView residueWeighted = resData.view();
+        weights[1] = 7.0;
+        Assert.assertEquals(5.0, residueWeighted.getJValues()[iWeight][1], 0.0);
+    }
+}
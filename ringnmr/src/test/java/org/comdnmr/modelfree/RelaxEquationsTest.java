@@ -1,5 +1,6 @@
 package org.comdnmr.modelfree;
 
+import org.comdnmr.modelfree.models.MFModelIso;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -100,4 +101,63 @@ public class RelaxEquationsTest {
         double noe = relaxEquations.NOE(j);
         System.out.println(noe);
     }
+
+    @Test
+    public void testRates() {
+        String[] modelNames = {"1", "1f", "1s", "1sf", "2f", "2s", "2sf", "D2sf"};
+        double[] rates = new double[3];
+        for (double sf : new double[]{500.0e6, 800.0e6}) {
+            RelaxEquations relaxEquations = new RelaxEquations(sf, "H", "N");
+            double[] w = relaxEquations.getW();
+            for (String modelName : modelNames) {
+                MFModelIso model = MFModelIso.buildModel(modelName, true, 8.0, 0.5, true);
+                double[] pars = model.getStart();
+                double[] J = new double[w.length];
+                model.calc(w, pars, J);
+                Assert.assertArrayEquals(modelName, model.calc(w, pars), J, 0.0);
+                double rEx = pars[pars.length - 1];
+                relaxEquations.rates(J, rEx, rates);
+                double r1 = relaxEquations.R1(J);
+                Assert.assertEquals(modelName, r1, rates[0], 1.0e-12 * r1);
+                double r2 = relaxEquations.R2(J, rEx);
+                Assert.assertEquals(modelName, r2, rates[1], 1.0e-12 * r2);
+                Assert.assertEquals(modelName, relaxEquations.NOE(J), rates[2], 1.0e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testRateDerivatives() {
+        String[] modelNames = {"1", "1f", "1s", "1sf", "2f", "2s", "2sf", "D2sf"};
+        double[] rates = new double[3];
+        double[] dRates = new double[3];
+        RelaxEquations relaxEquations = new RelaxEquations(600.0e6, "H", "N");
+        double[] w = relaxEquations.getW();
+        for (String modelName : modelNames) {
+            MFModelIso model = MFModelIso.buildModel(modelName, true, 8.0, 0.5, false);
+            double[] pars = model.getStart();
+            double[] J = model.calc(w, pars);
+            double[][] dJ = new double[model.getNJPars()][w.length];
+            model.calcDerivatives(w, dJ);
+            relaxEquations.rates(J, 0.0, rates);
+            for (int iPar = 0; iPar < pars.length; iPar++) {
+                double h = Math.abs(pars[iPar]) * 1.0e-6;
+                double[] parsHigh = pars.clone();
+                double[] parsLow = pars.clone();
+                parsHigh[iPar] += h;
+                parsLow[iPar] -= h;
+                double[] ratesHigh = new double[3];
+                double[] ratesLow = new double[3];
+                relaxEquations.rates(model.calc(w, parsHigh), 0.0, ratesHigh);
+                relaxEquations.rates(model.calc(w, parsLow), 0.0, ratesLow);
+                model.pars(pars);
+                relaxEquations.rateDerivatives(J, dJ[iPar], dRates);
+                for (int iRate = 0; iRate < 3; iRate++) {
+                    double numeric = (ratesHigh[iRate] - ratesLow[iRate]) / (2.0 * h);
+                    double tol = 1.0e-5 * Math.max(Math.abs(numeric), 1.0e-6);
+                    Assert.assertEquals(modelName + " " + iPar, numeric, dRates[iRate], tol);
+                }
+            }
+        }
+    }
 }
@@ -51,4 +51,72 @@ public class MFModelTest {
         Assert.assertArrayEquals(jValues[0], jValues[1], 1.0e-9);
     }
 
-}
\ No newline at end of file
+
+    void checkDerivatives(MFModelIso model, double[] pars) {
+        RelaxEquations rlxEq = RelaxEquations.getRelaxEquations(600.0e6, "H", "N");
+        double[] omegas = rlxEq.getW();
+        int nJPars = model.getNJPars();
+        double[][] dJ = new double[nJPars][omegas.length];
+        model.pars(pars);
+        model.calcDerivatives(omegas, dJ);
+        for (int iPar = 0; iPar < nJPars; iPar++) {
+            double h = Math.abs(pars[iPar]) * 1.0e-6;
+            double[] parsHigh = pars.clone();
+            double[] parsLow = pars.clone();
+            parsHigh[iPar] += h;
+            parsLow[iPar] -= h;
+            double[] jHigh = model.calc(omegas, parsHigh);
+            double[] jLow = model.calc(omegas, parsLow);
+            for (int j = 0; j < omegas.length; j++) {
+                double numeric = (jHigh[j] - jLow[j]) / (2.0 * h);
+                double tol = 1.0e-5 * Math.max(Math.abs(numeric), 1.0e-12);
+                Assert.assertEquals(model.getName() + " par " + iPar, numeric, dJ[iPar][j], tol);
+            }
+        }
+    }
+
+    @Test
+    public void testDerivatives() {
+        double tau = 8.0;
+        double[][] modelPars = {
+            {tau, 0.8}, {tau, 0.8, 0.05}, {tau, 0.7, 1.2},
+            {tau, 0.05, 0.7, 1.2}, {tau, 0.8, 0.05, 0.9}, {tau, 0.9, 1.2, 0.7},
+            {tau, 0.8, 0.05, 0.7, 1.2}};
+        String[] modelNames = {"1", "1f", "1s", "1sf", "2f", "2s", "2sf"};
+        for (int i = 0; i < modelNames.length; i++) {
+            for (String prefix : new String[]{"", "D"}) {
+                MFModelIso model = MFModelIso.buildModel(prefix + modelNames[i], true, tau, 0.5, false);
+                checkDerivatives(model, modelPars[i]);
+                MFModelIso modelEx = MFModelIso.buildModel(prefix + modelNames[i], true, tau, 0.5, true);
+                double[] parsEx = new double[modelPars[i].length + 1];
+                System.arraycopy(modelPars[i], 0, parsEx, 0, modelPars[i].length);
+                parsEx[parsEx.length - 1] = 2.0;
+                checkDerivatives(modelEx, parsEx);
+            }
+        }
+        MFModelIso2sfx model2sfx = new MFModelIso2sfx();
+        model2sfx.setSScale(9.0);
+        checkDerivatives(model2sfx, modelPars[modelPars.length - 1]);
+    }
+
+    @Test
+    public void testWarmStart() {
+        double tau = 8.0;
+        MFModelIso model1 = MFModelIso.buildModel("1", true, tau, 0.5, false);
+        double[] stdPars = model1.getStandardPars(new double[]{7.5, 0.8});
+
+        MFModelIso model1s = MFModelIso.buildModel("1s", true, tau, 0.5, false);
+        double[] start1s = model1s.getStart(stdPars);
+        Assert.assertEquals(7.5, start1s[0], 1.0e-9);
+        Assert.assertEquals(0.8, start1s[1], 1.0e-9);
+        Assert.assertEquals(model1s.getStart()[2], start1s[2], 1.0e-9);
+
+        MFModelIso model2s = MFModelIso.buildModel("2s", true, tau, 0.5, false);
+        double[] start2s = model2s.getStart(stdPars);
+        double[] upper = model2s.getUpper();
+        Assert.assertEquals(0.8, start2s[1], 1.0e-9);
+        Assert.assertTrue(start2s[3] < upper[3]);
+        Assert.assertEquals(upper[3], start2s[3], 0.02 * (upper[3] - model2s.getLower()[3]));
+    }
+
+}
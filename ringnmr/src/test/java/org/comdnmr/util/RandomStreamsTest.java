@@ -0,0 +1,67 @@
+package org.comdnmr.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.apache.commons.rng.UniformRandomProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RandomStreamsTest {
+
+    double[] draw(long seed, String task, int nStreams, int nValues, boolean parallel) {
+        UniformRandomProvider[] streams = RandomStreams.split(RandomStreams.create(seed, task), nStreams);
+        double[] values = new double[nStreams * nValues];
+        IntStream range = IntStream.range(0, nStreams);
+        if (parallel) {
+            range = range.parallel();
+        }
+        range.forEach(i -> {
+            var gaussian = RandomStreams.gaussian(streams[i]);
+            for (int j = 0; j < nValues; j++) {
+                values[i * nValues + j] = gaussian.sample();
+            }
+        });
+        return values;
+    }
+
+    @Test
+    public void testReproducible() {
+        double[] serial = draw(1234L, "12.N", 50, 20, false);
+        double[] parallel = draw(1234L, "12.N", 50, 20, true);
+        Assert.assertArrayEquals(serial, parallel, 0.0);
+    }
+
+    @Test
+    public void testIndependentTasks() {
+        double[] a = draw(1234L, "12.N", 4, 20, false);
+        double[] b = draw(1234L, "13.N", 4, 20, false);
+        double[] c = draw(1235L, "12.N", 4, 20, false);
+        Assert.assertFalse(Arrays.equals(a, b));
+        Assert.assertFalse(Arrays.equals(a, c));
+    }
+
+    @Test
+    public void testIndependentStreams() {
+        UniformRandomProvider[] streams = RandomStreams.split(RandomStreams.create(99L), 2);
+        long[] first = new long[100];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = streams[0].nextLong();
+        }
+        for (int i = 0; i < first.length; i++) {
+            Assert.assertNotEquals(first[i], streams[1].nextLong());
+        }
+    }
+
+    @Test
+    public void testAsRandom() {
+        Random r1 = RandomStreams.asRandom(RandomStreams.create(7L, "key"));
+        Random r2 = RandomStreams.asRandom(RandomStreams.create(7L, "key"));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(r1.nextGaussian(), r2.nextGaussian(), 0.0);
+            int j = r1.nextInt(10);
+            Assert.assertEquals(j, r2.nextInt(10));
+            Assert.assertTrue((j >= 0) && (j < 10));
+        }
+    }
+}
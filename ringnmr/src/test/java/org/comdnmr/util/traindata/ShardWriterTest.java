@@ -0,0 +1,114 @@
+package org.comdnmr.util.traindata;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class ShardWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static final String CONFIG = String.join("\n",
+        "{",
+        "  \"root_dir\": \"ROOT\",",
+        "  \"enum_dir\": \"{root_dir}/{experiment}/{enum}\",",
+        "  \"ring_data_path\": \"{enum_dir}/data.json\",",
+        "  \"n_datasets\": 3,",
+        "  \"n_noise_duplicates\": 2,",
+        "  \"R1_scale_factor\": 1.0,",
+        "  \"R2_scale_factor\": 2.0,",
+        "  \"data_types\": {",
+        "    \"CPMGEquation\": {",
+        "      \"x_values\": {\"name\": \"nu_cpmg\", \"sampling\": {\"type\": \"Explicit\", \"value\": [50.0, 200.0, 500.0, 1000.0]}},",
+        "      \"x_values_interpolation\": {\"name\": \"nu_cpmg\", \"sampling\": {\"type\": \"Explicit\", \"value\": [50.0, 200.0, 500.0, 1000.0]}},",
+        "      \"variable\": {\"name\": \"B0\", \"sampling\": {\"type\": \"Explicit\", \"value\": [600.0, 800.0]},",
+        "        \"dependants\": [{\"name\": \"B0_X\", \"relation\": \"Multiply\", \"sampling\": {\"type\": \"Explicit\", \"value\": [0.10136]}}]},",
+        "      \"constants\": [{\"name\": \"tau\", \"sampling\": {\"type\": \"Explicit\", \"value\": [0.04]}}],",
+        "      \"variance_max\": 0.04,",
+        "      \"enums\": {\"CPMGFAST\": [[\"Kex\", 400.0, 600.0], [\"R2\", 10.0, 14.0], [\"dPPMmin\", 0.2, 0.4]]}",
+        "    }",
+        "  }",
+        "}");
+
+    static float[] readFloats(Path path) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        float[] values = new float[buffer.remaining() / Float.BYTES];
+        buffer.asFloatBuffer().get(values);
+        return values;
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        List<ShardWriter.Column> columns = List.of(
+            new ShardWriter.Column("Kex", "parameters", 1, false),
+            new ShardWriter.Column("nu_cpmg", "x_values", 1, true));
+        ShardWriter writer = new ShardWriter(columns, 1);
+        writer.add(0, 1.5);
+        writer.add(1, new double[]{50.0, 100.0});
+        writer.endRecord(2);
+        writer.add(0, 2.5);
+        writer.add(1, List.of(200.0));
+        writer.endRecord(1);
+
+        Path path = folder.getRoot().toPath().resolve("shard.bin");
+        Map<String, Object> entry = writer.write(path);
+        Assert.assertEquals("shard.bin", entry.get("file"));
+        Assert.assertEquals(2, entry.get("n_records"));
+        Assert.assertEquals(3L, entry.get("n_x_values"));
+        // each column whole, in order
+        Assert.assertArrayEquals(new float[]{1.5f, 2.5f, 50.0f, 100.0f, 200.0f}, readFloats(path), 0.0f);
+    }
+
+    @Test
+    public void testGenerateShards() throws Exception {
+        Path configPath = folder.newFile("config.json").toPath();
+        Files.writeString(configPath, CONFIG);
+        DataGenerator generator = new DataGenerator(configPath.toString());
+        Assert.assertTrue(generator.hasAnotherDataset());
+        generator.nextDataset();
+        Path directory = folder.getRoot().toPath().resolve("shards");
+        Path manifestPath = generator.generateShards(directory, 2, null);
+
+        Map<String, Object> manifest = new ObjectMapper().readValue(manifestPath.toFile(), Map.class);
+        Assert.assertEquals("float32", manifest.get("dtype"));
+        Assert.assertEquals("little_endian", manifest.get("byte_order"));
+        Assert.assertEquals(6, ((Number) manifest.get("n_records")).intValue());
+        List<Map<String, Object>> columns = (List<Map<String, Object>>) manifest.get("columns");
+        List<Map<String, Object>> shards = (List<Map<String, Object>>) manifest.get("shards");
+        Assert.assertEquals(2, shards.size());
+
+        int nRecords = 0;
+        for (Map<String, Object> shard : shards) {
+            int shardRecords = ((Number) shard.get("n_records")).intValue();
+            long nXValues = ((Number) shard.get("n_x_values")).longValue();
+            Assert.assertEquals(4L * shardRecords, nXValues);
+            nRecords += shardRecords;
+            float[] values = readFloats(directory.resolve((String) shard.get("file")));
+            int offset = 0;
+            for (Map<String, Object> column : columns) {
+                int width = ((Number) column.get("width")).intValue();
+                long length = (Boolean) column.get("ragged") ? width * nXValues : (long) width * shardRecords;
+                if (column.get("name").equals("x_count")) {
+                    for (int i = 0; i < shardRecords; i++) {
+                        Assert.assertEquals(4.0f, values[offset + i], 0.0f);
+                    }
+                } else if (column.get("name").equals("tau")) {
+                    Assert.assertEquals(0.04f, values[offset], 0.0f);
+                }
+                offset += length;
+            }
+            Assert.assertEquals(values.length, offset);
+        }
+        Assert.assertEquals(6, nRecords);
+    }
+}